@@ -2,10 +2,19 @@ package org.c_3po;
 
 import org.c_3po.cmd.ArgumentsParser;
 import org.c_3po.cmd.CmdArguments;
+import org.c_3po.daemon.BuildDaemon;
+import org.c_3po.daemon.BuildDaemonClient;
+import org.c_3po.deploy.DirectorySyncTarget;
+import org.c_3po.deploy.OutputSync;
+import org.c_3po.generation.MultiSiteBuilder;
 import org.c_3po.generation.SiteGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 public class Main {
     private static final Logger LOG = LoggerFactory.getLogger(Main.class);
 
@@ -25,6 +34,79 @@ public class Main {
             LOG.debug("autoBuild is: {}", cmdArguments.isAutoBuild());
             LOG.debug("fingerprint is: {}", cmdArguments.shouldFingerprintAssets());
             LOG.debug("purgeUnusedCss is: {}", cmdArguments.shouldPurgeUnusedCss());
+            LOG.debug("virtualThreads is: {}", cmdArguments.shouldUseVirtualThreads());
+            LOG.debug("daemonMode is: {}", cmdArguments.getDaemonMode());
+            LOG.debug("checkLinks is: {}", cmdArguments.shouldCheckLinks());
+            LOG.debug("sitesFile is: {}", cmdArguments.getSitesFile());
+            LOG.debug("shards is: {}", cmdArguments.getShardCount());
+            LOG.debug("syncTarget is: {}", cmdArguments.getSyncTarget());
+            LOG.debug("syncManifest is: {}", cmdArguments.getSyncManifest());
+            LOG.debug("syncOnly is: {}", cmdArguments.isSyncOnly());
+            LOG.debug("profile is: {}", cmdArguments.shouldProfile());
+
+            // Sync a site that has been built before without building it again
+            if (cmdArguments.isSyncOnly()) {
+                if (cmdArguments.validate()) {
+                    syncIfRequested(cmdArguments);
+                }
+                return;
+            }
+
+            // Build several sites at once
+            if (cmdArguments.isMultiSiteBuild()) {
+                if (cmdArguments.isAutoBuild() || cmdArguments.getDaemonMode() != CmdArguments.DaemonMode.OFF) {
+                    LOG.warn("Neither auto-build mode nor the daemon is supported when building several sites. " +
+                            "Building without them.");
+                }
+                if (cmdArguments.shouldSync()) {
+                    LOG.warn("Syncing is not supported when building several sites. Building without it.");
+                }
+                if (cmdArguments.shouldProfile()) {
+                    LOG.warn("Profiling is not supported when building several sites. Building without it.");
+                }
+                MultiSiteBuilder multiSiteBuilder =
+                        MultiSiteBuilder.fromSitesFile(Paths.get(cmdArguments.getSitesFile()), cmdArguments);
+                if (multiSiteBuilder.validate()) {
+                    multiSiteBuilder.build();
+                }
+                return;
+            }
+
+            // Deal with the build daemon
+            switch (cmdArguments.getDaemonMode()) {
+                case RUN:
+                    try (BuildDaemon daemon = BuildDaemon.start(BuildDaemon.defaultInfoFile())) {
+                        daemon.run();
+                    }
+                    return;
+                case STOP:
+                    if (!BuildDaemonClient.stop(BuildDaemon.defaultInfoFile())) {
+                        LOG.info("There's no daemon running");
+                    }
+                    return;
+                case USE:
+                    if (cmdArguments.isAutoBuild()) {
+                        LOG.info("Auto-build mode is not supported by the daemon. Building without it.");
+                        break;
+                    }
+                    if (cmdArguments.shouldProfile()) {
+                        LOG.info("Profiling is not supported by the daemon. Building without it.");
+                        break;
+                    }
+                    var exitCode = BuildDaemonClient.build(BuildDaemon.defaultInfoFile(), Arrays.asList(args),
+                            System.out);
+                    if (exitCode.isPresent()) {
+                        if (exitCode.getAsInt() != 0) {
+                            System.exit(exitCode.getAsInt());
+                        }
+                        syncIfRequested(cmdArguments);
+                        return;
+                    }
+                    LOG.info("There's no daemon running. Building without it.");
+                    break;
+                default:
+                    break;
+            }
 
             // Do cmd arguments validation
             final boolean cmdArgsValid = cmdArguments.validate();
@@ -33,9 +115,19 @@ public class Main {
             if (cmdArgsValid) {
                 SiteGenerator siteGenerator = SiteGenerator.fromCmdArguments(cmdArguments);
                 if (cmdArguments.isAutoBuild()) {
+                    if (cmdArguments.shouldSync()) {
+                        LOG.warn("Syncing is not supported in auto-build mode. Building without it.");
+                    }
+                    if (cmdArguments.shouldProfile()) {
+                        LOG.warn("Profiling is not supported in auto-build mode. Building without it.");
+                    }
                     siteGenerator.generateOnFileChange();
                 } else {
+                    if (cmdArguments.shouldProfile() && cmdArguments.getShardCount() > 1) {
+                        LOG.warn("Profiling is not supported when building in shards. Building without it.");
+                    }
                     siteGenerator.generate();
+                    syncIfRequested(cmdArguments);
                 }
             }
 
@@ -46,6 +138,18 @@ public class Main {
         }
     }
 
+    /**
+     * Syncs the built site to the requested target directory, if there's one.
+     */
+    private static void syncIfRequested(CmdArguments cmdArguments) throws IOException {
+        if (cmdArguments.shouldSync()) {
+            var syncTargetDir = Paths.get(cmdArguments.getSyncTarget());
+            var syncTarget = cmdArguments.getSyncManifest().isEmpty() ? DirectorySyncTarget.of(syncTargetDir)
+                    : DirectorySyncTarget.of(syncTargetDir, Paths.get(cmdArguments.getSyncManifest()));
+            OutputSync.sync(Paths.get(cmdArguments.getDestinationDirectory()), syncTarget);
+        }
+    }
+
     private static class UncaughtExceptionHandler implements Thread.UncaughtExceptionHandler {
 
         @Override
@@ -15,6 +15,16 @@ public class ArgumentsParser {
         boolean autoBuild = false;
         boolean fingerprint = false;
         boolean purgeUnusedCss = false;
+        boolean virtualThreads = false;
+        CmdArguments.DaemonMode daemonMode = CmdArguments.DaemonMode.OFF;
+        boolean checkLinks = false;
+        String sitesFileName = "";
+        int shardCount = 1;
+        String shard = "";
+        String syncTarget = "";
+        String syncManifest = "";
+        boolean syncOnly = false;
+        boolean profile = false;
 
         for (int i = 0; i < args.length; i++) {
             String argument = args[i];
@@ -43,8 +53,82 @@ public class ArgumentsParser {
             if ("--purge-unused-css".equals(argument) || "-p".equals(argument)) {
                 purgeUnusedCss = true;
             }
+
+            if ("--virtual-threads".equals(argument)) {
+                virtualThreads = true;
+            }
+
+            if ("--daemon".equals(argument)) {
+                daemonMode = CmdArguments.DaemonMode.RUN;
+            }
+
+            if ("--use-daemon".equals(argument)) {
+                daemonMode = CmdArguments.DaemonMode.USE;
+            }
+
+            if ("--stop-daemon".equals(argument)) {
+                daemonMode = CmdArguments.DaemonMode.STOP;
+            }
+
+            if ("--check-links".equals(argument)) {
+                checkLinks = true;
+            }
+
+            if ("--sites".equals(argument) && i < args.length - 1) {
+                sitesFileName = args[i + 1];
+                i++;
+            }
+
+            if ("--shards".equals(argument) && i < args.length - 1) {
+                try {
+                    shardCount = Integer.parseInt(args[i + 1]);
+                } catch (NumberFormatException e) {
+                    LOG.warn("Ignoring invalid number of shards '{}'", args[i + 1]);
+                }
+                i++;
+            }
+
+            if ("--sync".equals(argument) && i < args.length - 1) {
+                syncTarget = args[i + 1];
+                i++;
+            }
+
+            if ("--sync-manifest".equals(argument) && i < args.length - 1) {
+                syncManifest = args[i + 1];
+                i++;
+            }
+
+            if ("--sync-only".equals(argument)) {
+                syncOnly = true;
+            }
+
+            if ("--profile".equals(argument)) {
+                profile = true;
+            }
+
+            // Note: Passed by the coordinator of a sharded build to its workers
+            if ("--shard".equals(argument) && i < args.length - 1) {
+                shard = args[i + 1];
+                i++;
+            }
         }
 
-        return new CmdArguments(sourceDirectoryName, destinationDirectoryName, autoBuild, fingerprint, purgeUnusedCss);
+        return CmdArguments.builder()
+                .sourceDirectory(sourceDirectoryName)
+                .destinationDirectory(destinationDirectoryName)
+                .autoBuild(autoBuild)
+                .fingerprintAssets(fingerprint)
+                .purgeCss(purgeUnusedCss)
+                .virtualThreads(virtualThreads)
+                .daemonMode(daemonMode)
+                .checkLinks(checkLinks)
+                .sitesFile(sitesFileName)
+                .shardCount(shardCount)
+                .shard(shard)
+                .syncTarget(syncTarget)
+                .syncManifest(syncManifest)
+                .syncOnly(syncOnly)
+                .profile(profile)
+                .build();
     }
 }
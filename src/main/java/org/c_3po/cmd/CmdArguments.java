@@ -14,19 +14,92 @@ import java.nio.file.Paths;
 public class CmdArguments {
     private static final Logger LOG = LoggerFactory.getLogger(CmdArguments.class);
 
+    /**
+     * How C-3PO interacts with a resident build daemon.
+     */
+    public enum DaemonMode {
+        /** Build within this process. */
+        OFF,
+        /** Run as a daemon building sites on behalf of clients. */
+        RUN,
+        /** Let a running daemon do the build, if there's one. */
+        USE,
+        /** Stop a running daemon. */
+        STOP
+    }
+
     private final String sourceDirectory;
     private final String destinationDirectory;
     private final boolean autoBuild;
     private final boolean fingerprintAssets;
     private final boolean purgeCss;
+    private final boolean virtualThreads;
+    private final DaemonMode daemonMode;
+    private final boolean checkLinks;
+    private final String sitesFile;
+    private final int shardCount;
+    private final String shard;
+    private final String syncTarget;
+    private final String syncManifest;
+    private final boolean syncOnly;
+    private final boolean profile;
 
     public CmdArguments(String sourceDirectory, String destinationDirectory, boolean autoBuild,
                         boolean fingerprintAssets, boolean purgeCss) {
-        this.sourceDirectory = sourceDirectory;
-        this.destinationDirectory = destinationDirectory;
-        this.autoBuild = autoBuild;
-        this.fingerprintAssets = fingerprintAssets;
-        this.purgeCss = purgeCss;
+        this(builder()
+                .sourceDirectory(sourceDirectory)
+                .destinationDirectory(destinationDirectory)
+                .autoBuild(autoBuild)
+                .fingerprintAssets(fingerprintAssets)
+                .purgeCss(purgeCss));
+    }
+
+    private CmdArguments(Builder builder) {
+        this.sourceDirectory = builder.sourceDirectory;
+        this.destinationDirectory = builder.destinationDirectory;
+        this.autoBuild = builder.autoBuild;
+        this.fingerprintAssets = builder.fingerprintAssets;
+        this.purgeCss = builder.purgeCss;
+        this.virtualThreads = builder.virtualThreads;
+        this.daemonMode = builder.daemonMode;
+        this.checkLinks = builder.checkLinks;
+        this.sitesFile = builder.sitesFile;
+        this.shardCount = builder.shardCount;
+        this.shard = builder.shard;
+        this.syncTarget = builder.syncTarget;
+        this.syncManifest = builder.syncManifest;
+        this.syncOnly = builder.syncOnly;
+        this.profile = builder.profile;
+    }
+
+    /**
+     * @return a builder of arguments that default to building a site once, without any options
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder of arguments that default to these ones, e.g. to have another site built
+     * with the same options
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .sourceDirectory(sourceDirectory)
+                .destinationDirectory(destinationDirectory)
+                .autoBuild(autoBuild)
+                .fingerprintAssets(fingerprintAssets)
+                .purgeCss(purgeCss)
+                .virtualThreads(virtualThreads)
+                .daemonMode(daemonMode)
+                .checkLinks(checkLinks)
+                .sitesFile(sitesFile)
+                .shardCount(shardCount)
+                .shard(shard)
+                .syncTarget(syncTarget)
+                .syncManifest(syncManifest)
+                .syncOnly(syncOnly)
+                .profile(profile);
     }
 
     public String getSourceDirectory() {
@@ -49,10 +122,114 @@ public class CmdArguments {
         return purgeCss;
     }
 
+    public boolean shouldUseVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public DaemonMode getDaemonMode() {
+        return daemonMode;
+    }
+
+    public boolean shouldCheckLinks() {
+        return checkLinks;
+    }
+
+    /**
+     * @return the file listing the sites to build at once or an empty string
+     */
+    public String getSitesFile() {
+        return sitesFile;
+    }
+
+    public boolean isMultiSiteBuild() {
+        return sitesFile != null && !sitesFile.isEmpty();
+    }
+
+    /**
+     * @return the number of worker processes to build the site with
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return the shard to build as a worker of a sharded build, e.g. `0/4`, or an empty string
+     */
+    public String getShard() {
+        return shard;
+    }
+
+    /**
+     * @return the directory to sync the site to once it's built or an empty string
+     */
+    public String getSyncTarget() {
+        return syncTarget;
+    }
+
+    public boolean shouldSync() {
+        return syncTarget != null && !syncTarget.isEmpty();
+    }
+
+    /**
+     * @return the file to keep the manifest of the last sync in or an empty string to keep it
+     * next to the sync target
+     */
+    public String getSyncManifest() {
+        return syncManifest;
+    }
+
+    /**
+     * @return true if the destination directory, as built before, is to be synced without
+     * building the site again
+     */
+    public boolean isSyncOnly() {
+        return syncOnly;
+    }
+
+    /**
+     * @return true if the time and memory it takes to render pages is to be attributed to
+     * templates and reported
+     */
+    public boolean shouldProfile() {
+        return profile;
+    }
+
     public boolean validate() throws IOException {
         boolean validationResult = true;
 
-        validationResult = isSrcAndDestNotTheSame();
+        if (syncOnly) {
+            if (!shouldSync()) {
+                LOG.error("There's no target to sync to, please pass one with '--sync <dir>'");
+                validationResult = false;
+            }
+            if (destinationDirectory.isEmpty()) {
+                LOG.error("There's no site to sync, please pass the directory it has been built to with 'dest'");
+                validationResult = false;
+            }
+            if (isMultiSiteBuild()) {
+                LOG.error("Syncing is not supported when building several sites");
+                validationResult = false;
+            }
+        } else {
+            validationResult = isSrcAndDestNotTheSame();
+        }
+
+        if (shardCount < 1) {
+            LOG.error("The number of shards must be at least 1 but is {}", shardCount);
+            validationResult = false;
+        }
+
+        if (shouldSync() && Paths.get(syncTarget).toAbsolutePath().normalize()
+                .equals(Paths.get(destinationDirectory).toAbsolutePath().normalize())) {
+            LOG.error("'dest' and the sync target locate the same directory, please use different directories");
+            validationResult = false;
+        }
+
+        if (shouldSync() && syncManifest != null && !syncManifest.isEmpty() && Paths.get(syncManifest)
+                .toAbsolutePath().normalize().startsWith(Paths.get(syncTarget).toAbsolutePath().normalize())) {
+            LOG.error("The sync manifest is located within the sync target, please keep it outside of it");
+            validationResult = false;
+        }
 
         return validationResult;
     }
@@ -64,6 +241,16 @@ public class CmdArguments {
                 ", destinationDirectory='" + destinationDirectory + '\'' +
                 ", fingerprintAssets='" + fingerprintAssets + '\'' +
                 ", purgeCss='" + purgeCss + '\'' +
+                ", virtualThreads='" + virtualThreads + '\'' +
+                ", daemonMode='" + daemonMode + '\'' +
+                ", checkLinks='" + checkLinks + '\'' +
+                ", sitesFile='" + sitesFile + '\'' +
+                ", shardCount='" + shardCount + '\'' +
+                ", shard='" + shard + '\'' +
+                ", syncTarget='" + syncTarget + '\'' +
+                ", syncManifest='" + syncManifest + '\'' +
+                ", syncOnly='" + syncOnly + '\'' +
+                ", profile='" + profile + '\'' +
                 ", autoBuild=" + autoBuild +
                 '}';
     }
@@ -84,4 +271,104 @@ public class CmdArguments {
         }
         return !dirsAreTheSame;
     }
+
+    public static final class Builder {
+        private String sourceDirectory = "";
+        private String destinationDirectory = "";
+        private boolean autoBuild;
+        private boolean fingerprintAssets;
+        private boolean purgeCss;
+        private boolean virtualThreads;
+        private DaemonMode daemonMode = DaemonMode.OFF;
+        private boolean checkLinks;
+        private String sitesFile = "";
+        private int shardCount = 1;
+        private String shard = "";
+        private String syncTarget = "";
+        private String syncManifest = "";
+        private boolean syncOnly;
+        private boolean profile;
+
+        private Builder() {
+        }
+
+        public Builder sourceDirectory(String sourceDirectory) {
+            this.sourceDirectory = sourceDirectory;
+            return this;
+        }
+
+        public Builder destinationDirectory(String destinationDirectory) {
+            this.destinationDirectory = destinationDirectory;
+            return this;
+        }
+
+        public Builder autoBuild(boolean autoBuild) {
+            this.autoBuild = autoBuild;
+            return this;
+        }
+
+        public Builder fingerprintAssets(boolean fingerprintAssets) {
+            this.fingerprintAssets = fingerprintAssets;
+            return this;
+        }
+
+        public Builder purgeCss(boolean purgeCss) {
+            this.purgeCss = purgeCss;
+            return this;
+        }
+
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        public Builder daemonMode(DaemonMode daemonMode) {
+            this.daemonMode = daemonMode;
+            return this;
+        }
+
+        public Builder checkLinks(boolean checkLinks) {
+            this.checkLinks = checkLinks;
+            return this;
+        }
+
+        public Builder sitesFile(String sitesFile) {
+            this.sitesFile = sitesFile;
+            return this;
+        }
+
+        public Builder shardCount(int shardCount) {
+            this.shardCount = shardCount;
+            return this;
+        }
+
+        public Builder shard(String shard) {
+            this.shard = shard;
+            return this;
+        }
+
+        public Builder syncTarget(String syncTarget) {
+            this.syncTarget = syncTarget;
+            return this;
+        }
+
+        public Builder syncManifest(String syncManifest) {
+            this.syncManifest = syncManifest;
+            return this;
+        }
+
+        public Builder syncOnly(boolean syncOnly) {
+            this.syncOnly = syncOnly;
+            return this;
+        }
+
+        public Builder profile(boolean profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        public CmdArguments build() {
+            return new CmdArguments(this);
+        }
+    }
 }
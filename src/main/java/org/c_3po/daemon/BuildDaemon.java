@@ -0,0 +1,272 @@
+package org.c_3po.daemon;
+
+import ch.qos.logback.classic.LoggerContext;
+import org.c_3po.cmd.ArgumentsParser;
+import org.c_3po.cmd.CmdArguments;
+import org.c_3po.generation.GenerationException;
+import org.c_3po.generation.SiteGenerator;
+import org.c_3po.util.ChecksumCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A resident process that builds sites on behalf of {@link BuildDaemonClient}s.
+ *
+ * Building within a resident process saves JVM startup, class loading and JIT warm-up
+ * on every build. Besides, a site generator, including its template engine, is kept per
+ * source directory and reused by subsequent builds of the same site.
+ *
+ * The daemon listens on a loopback socket. Its port along with a secret token that clients
+ * need to present is written to an info file only the current user can read. Builds are
+ * run one at a time and the log output of a build is streamed back to the client.
+ *
+ * Protocol: A client sends the token, a command and, for builds, its working directory and
+ * its command line arguments, one per line, terminated by an empty line. For builds, the
+ * daemon answers with log lines and a final line holding the exit code.
+ */
+public class BuildDaemon implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(BuildDaemon.class);
+    private static final int MAX_CACHED_GENERATORS = 8;
+    private static final int REQUEST_TIMEOUT_MILLIS = 10_000;
+
+    static final String PROPERTY_PORT = "port";
+    static final String PROPERTY_TOKEN = "token";
+    static final String COMMAND_BUILD = "build";
+    static final String COMMAND_STOP = "stop";
+    static final String LOG_LINE_PREFIX = "log ";
+    static final String EXIT_LINE_PREFIX = "exit ";
+
+    private final ServerSocket serverSocket;
+    private final Path infoFile;
+    private final String token;
+
+    // Note: Access-ordered to evict the generator of the site that has been built least recently
+    private final Map<String, SiteGenerator> siteGenerators =
+            new LinkedHashMap<>(MAX_CACHED_GENERATORS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SiteGenerator> eldest) {
+                    return size() > MAX_CACHED_GENERATORS;
+                }
+            };
+
+    private BuildDaemon(ServerSocket serverSocket, Path infoFile, String token) {
+        this.serverSocket = serverSocket;
+        this.infoFile = infoFile;
+        this.token = token;
+    }
+
+    /**
+     * The info file used unless stated otherwise, located in the user's home directory.
+     */
+    public static Path defaultInfoFile() {
+        return Paths.get(System.getProperty("user.home"), ".c3po", "daemon.properties");
+    }
+
+    /**
+     * Binds a new daemon to a free loopback port and publishes it in the given info file.
+     *
+     * @throws IOException if another daemon publishing the same info file is still running
+     */
+    public static BuildDaemon start(Path infoFile) throws IOException {
+        if (BuildDaemonClient.isRunning(infoFile)) {
+            throw new IOException(String.format("Another daemon published in '%s' is already running", infoFile));
+        }
+
+        var serverSocket = new ServerSocket();
+        try {
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            var tokenBytes = new byte[32];
+            new SecureRandom().nextBytes(tokenBytes);
+            var token = ChecksumCalculator.encodeHexString(tokenBytes);
+            writeInfoFile(infoFile, serverSocket.getLocalPort(), token);
+            return new BuildDaemon(serverSocket, infoFile, token);
+        } catch (IOException | RuntimeException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves requests until the daemon is stopped by a client or closed.
+     */
+    public void run() {
+        LOG.info("Daemon is listening on port {}. Stop it with `c-3po --stop-daemon`.", getPort());
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                handle(socket);
+            } catch (SocketException e) {
+                if (!serverSocket.isClosed()) {
+                    LOG.warn("Failed to handle a request", e);
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to handle a request", e);
+            }
+        }
+        LOG.info("Daemon has stopped");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            serverSocket.close();
+        } finally {
+            Files.deleteIfExists(infoFile);
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+        var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+
+        var request = new ArrayList<String>();
+        for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+            request.add(line);
+        }
+        if (request.isEmpty()) {
+
+            // Note: Clients connect without sending anything to check if the daemon is running
+            return;
+        }
+        if (request.size() < 2 || !isValidToken(request.get(0))) {
+            LOG.warn("Rejecting a request with a missing or invalid token");
+            return;
+        }
+        socket.setSoTimeout(0);
+
+        var command = request.get(1);
+        if (COMMAND_STOP.equals(command)) {
+            out.println(EXIT_LINE_PREFIX + 0);
+            close();
+        } else if (COMMAND_BUILD.equals(command) && request.size() >= 3) {
+            var exitCode = buildStreamingLog(Paths.get(request.get(2)), request.subList(3, request.size()), out);
+            out.println(EXIT_LINE_PREFIX + exitCode);
+        } else {
+            LOG.warn("Rejecting unknown command '{}'", command);
+            out.println(EXIT_LINE_PREFIX + 1);
+        }
+    }
+
+    private boolean isValidToken(String candidate) {
+
+        // Note: Constant time comparison to not give away how much of a guessed token is right
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                candidate.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int buildStreamingLog(Path workingDir, List<String> args, PrintWriter out) {
+        var loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        var rootLogger = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+        var appender = new LogStreamingAppender(out, LOG_LINE_PREFIX);
+        appender.setContext(loggerContext);
+        appender.start();
+        rootLogger.addAppender(appender);
+        try {
+            return build(workingDir, args);
+        } finally {
+            rootLogger.detachAppender(appender);
+            appender.stop();
+        }
+    }
+
+    private int build(Path workingDir, List<String> args) {
+        var parsedArguments = new ArgumentsParser().processCmdLineArguments(args.toArray(new String[0]));
+
+        // Note: Relative directories are meant relative to the client's working directory
+        var cmdArguments = parsedArguments.toBuilder()
+                .sourceDirectory(workingDir.resolve(parsedArguments.getSourceDirectory()).normalize().toString())
+                .destinationDirectory(
+                        workingDir.resolve(parsedArguments.getDestinationDirectory()).normalize().toString())
+                .daemonMode(CmdArguments.DaemonMode.OFF)
+                .build();
+
+        try {
+            if (cmdArguments.isAutoBuild()) {
+                LOG.error("Auto-build mode is not supported by the daemon. Run it without `--use-daemon`.");
+                return 1;
+            }
+            if (!cmdArguments.validate()) {
+                return 1;
+            }
+
+            siteGeneratorFor(cmdArguments).generate();
+            return 0;
+        } catch (IOException | GenerationException | RuntimeException e) {
+            LOG.error("Build failed", e);
+            return 1;
+        }
+    }
+
+    /**
+     * Returns the site generator built for the given arguments before, if there's one and
+     * the settings and ignore files it has been created from haven't changed since.
+     */
+    private SiteGenerator siteGeneratorFor(CmdArguments cmdArguments) throws IOException {
+        var sourceDir = Paths.get(cmdArguments.getSourceDirectory());
+        var key = cmdArguments + "|" + lastModified(sourceDir.resolve(SiteGenerator.C_3PO_SETTINGS_FILE_NAME))
+                + "|" + lastModified(sourceDir.resolve(SiteGenerator.C_3PO_IGNORE_FILE_NAME));
+
+        var siteGenerator = siteGenerators.get(key);
+        if (siteGenerator == null) {
+            LOG.debug("Creating a new site generator for '{}'", sourceDir);
+            siteGenerator = SiteGenerator.fromCmdArguments(cmdArguments);
+            siteGenerators.put(key, siteGenerator);
+        }
+        return siteGenerator;
+    }
+
+    private static long lastModified(Path file) throws IOException {
+        return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+    }
+
+    private static void writeInfoFile(Path infoFile, int port, String token) throws IOException {
+        Files.createDirectories(infoFile.toAbsolutePath().getParent());
+
+        var tempFile = infoFile.resolveSibling(infoFile.getFileName() + ".tmp");
+        Files.deleteIfExists(tempFile);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(tempFile, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(tempFile);
+        }
+
+        var properties = new Properties();
+        properties.setProperty(PROPERTY_PORT, String.valueOf(port));
+        properties.setProperty(PROPERTY_TOKEN, token);
+        try (var out = Files.newOutputStream(tempFile)) {
+            properties.store(out, "C-3PO build daemon");
+        }
+        Files.move(tempFile, infoFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,136 @@
+package org.c_3po.daemon;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Properties;
+
+/**
+ * A thin client handing builds over to a running {@link BuildDaemon}.
+ */
+public class BuildDaemonClient {
+    private static final Logger LOG = LoggerFactory.getLogger(BuildDaemonClient.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+
+    // Make it non-instantiable and prohibit subclassing.
+    private BuildDaemonClient() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Lets the daemon published in the given info file build a site according to the given command
+     * line arguments. Its log output is printed to the given stream while the build is running.
+     *
+     * @return the exit code of the build or an empty optional if no daemon is running
+     */
+    public static OptionalInt build(Path infoFile, List<String> args, PrintStream logOut) {
+        var request = new StringBuilder();
+        request.append(BuildDaemon.COMMAND_BUILD).append('\n');
+        request.append(Paths.get("").toAbsolutePath()).append('\n');
+        args.forEach(arg -> request.append(arg).append('\n'));
+        return send(infoFile, request.toString(), logOut);
+    }
+
+    /**
+     * Stops the daemon published in the given info file.
+     *
+     * @return true if a daemon has been stopped, false if none was running
+     */
+    public static boolean stop(Path infoFile) {
+        return send(infoFile, BuildDaemon.COMMAND_STOP + "\n", System.out).isPresent();
+    }
+
+    /**
+     * Checks if the daemon published in the given info file accepts connections.
+     */
+    static boolean isRunning(Path infoFile) {
+        try (var socket = connect(infoFile)) {
+            return socket != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static OptionalInt send(Path infoFile, String request, PrintStream logOut) {
+        Socket socket;
+        try {
+            socket = connect(infoFile);
+        } catch (IOException e) {
+            LOG.debug("No daemon is reachable", e);
+            return OptionalInt.empty();
+        }
+        if (socket == null) {
+            return OptionalInt.empty();
+        }
+
+        try (socket) {
+            var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.print(readInfo(infoFile).getProperty(BuildDaemon.PROPERTY_TOKEN) + "\n" + request + "\n");
+            out.flush();
+
+            var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.startsWith(BuildDaemon.LOG_LINE_PREFIX)) {
+                    logOut.println(line.substring(BuildDaemon.LOG_LINE_PREFIX.length()));
+                } else if (line.startsWith(BuildDaemon.EXIT_LINE_PREFIX)) {
+                    return OptionalInt.of(Integer.parseInt(line.substring(BuildDaemon.EXIT_LINE_PREFIX.length())));
+                }
+            }
+
+            LOG.error("Daemon closed the connection without reporting a result. Is the token in '{}' outdated?",
+                    infoFile);
+            return OptionalInt.of(1);
+        } catch (IOException | NumberFormatException e) {
+            LOG.error("Lost connection to the daemon", e);
+            return OptionalInt.of(1);
+        }
+    }
+
+    /**
+     * @return a socket connected to the daemon or null if there's no info file
+     */
+    private static Socket connect(Path infoFile) throws IOException {
+        if (!Files.exists(infoFile)) {
+            return null;
+        }
+
+        int port;
+        try {
+            port = Integer.parseInt(readInfo(infoFile).getProperty(BuildDaemon.PROPERTY_PORT, ""));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring daemon info file '{}' because it doesn't hold a valid port", infoFile);
+            return null;
+        }
+        var socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static Properties readInfo(Path infoFile) throws IOException {
+        var properties = new Properties();
+        try (var in = Files.newInputStream(infoFile)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+}
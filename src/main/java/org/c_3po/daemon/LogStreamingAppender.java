@@ -0,0 +1,44 @@
+package org.c_3po.daemon;
+
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+
+import java.io.PrintWriter;
+
+/**
+ * Streams log events to a daemon client while a build is running on its behalf.
+ */
+class LogStreamingAppender extends AppenderBase<ILoggingEvent> {
+    private final PrintWriter out;
+    private final String linePrefix;
+    private final PatternLayout layout = new PatternLayout();
+
+    LogStreamingAppender(PrintWriter out, String linePrefix) {
+        this.out = out;
+        this.linePrefix = linePrefix;
+    }
+
+    @Override
+    public void start() {
+        layout.setContext(getContext());
+        layout.setPattern("%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n");
+        layout.start();
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        layout.stop();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+
+        // Note: Multi-line messages and stack traces are split up since the protocol is line-based
+        for (String line : layout.doLayout(event).split("\\R")) {
+            out.println(linePrefix + line);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.c_3po.deploy;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Syncs a site to a local directory, e.g. the root directory of a web server on the same machine.
+ * Files are copied next to their destination and moved into place, so they are replaced atomically.
+ *
+ * The manifest of the last sync is kept outside of the directory, so it's never served along with
+ * the site. Unless its location is given, it's kept next to the directory, e.g. the manifest of
+ * `/var/www/html` is `/var/www/html.c3po-manifest.properties`.
+ */
+public final class DirectorySyncTarget implements SyncTarget {
+    private static final String TEMP_FILE_SUFFIX = ".c3po-sync";
+
+    private final Path dir;
+    private final Path manifestFile;
+
+    private DirectorySyncTarget(Path dir, Path manifestFile) {
+        this.dir = dir;
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the directory is a root directory, which there's no
+     * place next to for the manifest
+     */
+    public static DirectorySyncTarget of(Path dir) {
+        var normalizedDir = dir.toAbsolutePath().normalize();
+        if (normalizedDir.getFileName() == null) {
+            throw new IllegalArgumentException("Can't keep the manifest next to sync target '" + normalizedDir
+                    + "'. Pass the file to keep it in instead.");
+        }
+        return of(normalizedDir, normalizedDir.resolveSibling(normalizedDir.getFileName() + OutputManifest.FILE_NAME));
+    }
+
+    /**
+     * @param manifestFile the file to keep the manifest of the last sync in
+     * @throws IllegalArgumentException if the manifest file is located within the directory
+     */
+    public static DirectorySyncTarget of(Path dir, Path manifestFile) {
+        var normalizedDir = dir.toAbsolutePath().normalize();
+        var normalizedManifestFile = manifestFile.toAbsolutePath().normalize();
+        if (normalizedManifestFile.startsWith(normalizedDir)) {
+            throw new IllegalArgumentException("Manifest file '" + normalizedManifestFile
+                    + "' must be located outside of sync target '" + normalizedDir + "'");
+        }
+        return new DirectorySyncTarget(normalizedDir, normalizedManifestFile);
+    }
+
+    @Override
+    public OutputManifest readManifest() throws IOException {
+        return Files.exists(manifestFile) ? OutputManifest.read(manifestFile) : null;
+    }
+
+    @Override
+    public void upload(String path, Path file, OutputManifest.Entry entry) throws IOException {
+        var targetFile = resolve(path);
+        Files.createDirectories(targetFile.getParent());
+        var tempFile = targetFile.resolveSibling(targetFile.getFileName() + TEMP_FILE_SUFFIX);
+        Files.copy(file, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tempFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        var targetFile = resolve(path);
+        Files.deleteIfExists(targetFile);
+
+        // Note: Directories left empty are removed as well, up to the target's root
+        for (var parent = targetFile.getParent(); !parent.equals(dir); parent = parent.getParent()) {
+            try {
+                Files.deleteIfExists(parent);
+            } catch (DirectoryNotEmptyException e) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void writeManifest(OutputManifest manifest) throws IOException {
+        manifest.writeTo(manifestFile);
+    }
+
+    /**
+     * Note: Paths come from a manifest, which might have been tampered with. Hence, they are
+     * never allowed to escape the target directory.
+     */
+    private Path resolve(String path) throws IOException {
+        var file = dir.resolve(path).normalize();
+        if (!file.startsWith(dir) || file.equals(dir)) {
+            throw new IOException("Path '" + path + "' is outside of sync target '" + dir + "'");
+        }
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+}
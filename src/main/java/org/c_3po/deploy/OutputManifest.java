@@ -0,0 +1,214 @@
+package org.c_3po.deploy;
+
+import org.c_3po.generation.assets.Fingerprinter;
+import org.c_3po.util.ChecksumCalculator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Lists the files of a generated site along with their size, content hash and content type
+ * and whether they are fingerprinted. Written as part of each build, so that deploying the
+ * site only needs to transfer the files that have changed. See {@link OutputSync}.
+ *
+ * Each file is a property keyed by its path relative to the site's root, e.g.
+ * `css/main.css=1042,1700000000000,3f4c...,false,text/css`.
+ */
+public final class OutputManifest {
+    public static final String FILE_NAME = ".c3po-manifest.properties";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    // Note: Covers the types of a website that the JDK's file name map lacks or gets wrong
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+            Map.entry("html", "text/html"),
+            Map.entry("css", "text/css"),
+            Map.entry("js", "text/javascript"),
+            Map.entry("json", "application/json"),
+            Map.entry("xml", "application/xml"),
+            Map.entry("txt", "text/plain"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2"));
+
+    private final Map<String, Entry> entries;
+
+    private OutputManifest(Map<String, Entry> entries) {
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Lists the files of the given site. Hashes of files that haven't changed since the previous
+     * manifest was created are taken over, so only new and changed files are read. Fingerprinted
+     * files aren't read at all since their name tells their hash.
+     *
+     * @param previous the manifest of the previous build or null
+     */
+    public static OutputManifest create(Path outputDir, OutputManifest previous) throws IOException {
+        Map<String, Entry> entries = new TreeMap<>();
+        Files.walkFileTree(outputDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String path = outputDir.relativize(file).toString().replace('\\', '/');
+                if (!attrs.isRegularFile() || path.equals(FILE_NAME)) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                long size = attrs.size();
+                long lastModified = attrs.lastModifiedTime().toMillis();
+                String fileName = file.getFileName().toString();
+                boolean fingerprinted = Fingerprinter.isFingerprinted(fileName);
+
+                String hash;
+                Entry previousEntry = previous != null ? previous.get(path) : null;
+                if (fingerprinted) {
+                    hash = Fingerprinter.fingerprintOf(fileName);
+                } else if (previousEntry != null && previousEntry.size == size
+                        && previousEntry.lastModified == lastModified) {
+                    hash = previousEntry.hash;
+                } else {
+                    hash = ChecksumCalculator.sha1(file);
+                }
+
+                entries.put(path, new Entry(path, size, lastModified, hash, fingerprinted, contentTypeOf(fileName)));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new OutputManifest(entries);
+    }
+
+    public static OutputManifest read(Path file) throws IOException {
+        var properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+
+        Map<String, Entry> entries = new TreeMap<>();
+        for (String path : properties.stringPropertyNames()) {
+            String[] fields = properties.getProperty(path).split(",", 5);
+            try {
+                if (fields.length != 5) {
+                    throw new IllegalArgumentException("Expected 5 fields but got " + fields.length);
+                }
+                entries.put(path, new Entry(path, Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2],
+                        Boolean.parseBoolean(fields[3]), fields[4]));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed entry '" + path + "' in output manifest '" + file + "'", e);
+            }
+        }
+        return new OutputManifest(entries);
+    }
+
+    public void writeTo(Path file) throws IOException {
+        var properties = new Properties();
+        for (Entry entry : entries.values()) {
+            properties.setProperty(entry.path, entry.size + "," + entry.lastModified + "," + entry.hash + ","
+                    + entry.fingerprinted + "," + entry.contentType);
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        var tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            properties.store(out, "Files generated by C-3PO");
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the entries keyed by path, sorted by path
+     */
+    public Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the entry of the given path or null if there's no such file
+     */
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    private static String contentTypeOf(String fileName) {
+        int dotIndex = fileName.lastIndexOf('.');
+        String extension = dotIndex >= 0 ? fileName.substring(dotIndex + 1).toLowerCase(Locale.ROOT) : "";
+        String contentType = CONTENT_TYPES.get(extension);
+        if (contentType == null) {
+            contentType = URLConnection.getFileNameMap().getContentTypeFor(fileName);
+        }
+        return contentType != null ? contentType : DEFAULT_CONTENT_TYPE;
+    }
+
+    /**
+     * A file of the generated site.
+     */
+    public static final class Entry {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private final boolean fingerprinted;
+        private final String contentType;
+
+        private Entry(String path, long size, long lastModified, String hash, boolean fingerprinted,
+                      String contentType) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.fingerprinted = fingerprinted;
+            this.contentType = contentType;
+        }
+
+        /**
+         * @return the path relative to the site's root, separated by slashes
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the SHA-1 hash of the file's content as a hex string
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        public boolean isFingerprinted() {
+            return fingerprinted;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return true if the other entry stands for a file of the same content
+         */
+        public boolean hasSameContent(Entry other) {
+            return other != null && size == other.size && hash.equals(other.hash)
+                    && contentType.equals(other.contentType);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.c_3po.deploy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Deploys a generated site by transferring only the files that have changed since the last sync.
+ *
+ * What has changed is told by comparing the site's output manifest against the one the target
+ * keeps from the last sync, so neither side is scanned or hashed again. Files are transferred
+ * in an order that never lets visitors of the target run into a missing asset:
+ *
+ * <ol>
+ *     <li>Fingerprinted assets, which no deployed page references yet</li>
+ *     <li>Other files, e.g. images and scripts that aren't fingerprinted</li>
+ *     <li>HTML documents, which might reference the assets uploaded before</li>
+ *     <li>Deletion of stale files, which no uploaded page references anymore</li>
+ * </ol>
+ */
+public final class OutputSync {
+    private static final Logger LOG = LoggerFactory.getLogger(OutputSync.class);
+    private static final String HTML_CONTENT_TYPE = "text/html";
+
+    private OutputSync() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Syncs the given site to the given target.
+     *
+     * @param outputDir the destination directory of a build, containing its output manifest
+     * @throws IOException if the site has no output manifest or a file failed to be transferred.
+     * The target then still has the manifest of the last complete sync, so the next sync picks
+     * up where this one failed.
+     */
+    public static Result sync(Path outputDir, SyncTarget target) throws IOException {
+        var manifestFile = outputDir.resolve(OutputManifest.FILE_NAME);
+        if (Files.notExists(manifestFile)) {
+            throw new IOException("There's no output manifest '" + manifestFile + "'. Build the site first.");
+        }
+        var manifest = OutputManifest.read(manifestFile);
+
+        var syncedManifest = target.readManifest();
+        if (syncedManifest == null) {
+            LOG.info("Nothing has been synced to '{}' yet. Uploading all files without deleting any.", target);
+        }
+
+        // Find changed and stale files
+        List<OutputManifest.Entry> uploads = new ArrayList<>();
+        for (OutputManifest.Entry entry : manifest.getEntries().values()) {
+            var syncedEntry = syncedManifest != null ? syncedManifest.get(entry.getPath()) : null;
+            if (!entry.hasSameContent(syncedEntry)) {
+                uploads.add(entry);
+            }
+        }
+        uploads.sort(Comparator.comparingInt(OutputSync::uploadPhase));
+
+        List<OutputManifest.Entry> deletions = new ArrayList<>();
+        if (syncedManifest != null) {
+            for (OutputManifest.Entry syncedEntry : syncedManifest.getEntries().values()) {
+                if (manifest.get(syncedEntry.getPath()) == null) {
+                    deletions.add(syncedEntry);
+                }
+            }
+        }
+
+        // Note: Pages are deleted before the assets they might have referenced
+        deletions.sort(Comparator.comparingInt(OutputSync::uploadPhase).reversed());
+
+        // Transfer
+        for (OutputManifest.Entry entry : uploads) {
+            LOG.debug("Uploading '{}' to '{}'", entry.getPath(), target);
+            target.upload(entry.getPath(), outputDir.resolve(entry.getPath()), entry);
+        }
+        for (OutputManifest.Entry entry : deletions) {
+            LOG.debug("Deleting '{}' from '{}'", entry.getPath(), target);
+            target.delete(entry.getPath());
+        }
+        target.writeManifest(manifest);
+
+        var result = new Result(uploads.size(), deletions.size(), manifest.getEntries().size() - uploads.size());
+        LOG.info("Synced '{}' to '{}': uploaded {}, deleted {}, left {} unchanged files", outputDir, target,
+                result.getUploadCount(), result.getDeletionCount(), result.getUnchangedCount());
+        return result;
+    }
+
+    private static int uploadPhase(OutputManifest.Entry entry) {
+        if (entry.isFingerprinted()) {
+            return 0;
+        } else if (!entry.getContentType().equals(HTML_CONTENT_TYPE)) {
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+
+    /**
+     * The number of files a sync has transferred and left as they are.
+     */
+    public static final class Result {
+        private final int uploadCount;
+        private final int deletionCount;
+        private final int unchangedCount;
+
+        private Result(int uploadCount, int deletionCount, int unchangedCount) {
+            this.uploadCount = uploadCount;
+            this.deletionCount = deletionCount;
+            this.unchangedCount = unchangedCount;
+        }
+
+        public int getUploadCount() {
+            return uploadCount;
+        }
+
+        public int getDeletionCount() {
+            return deletionCount;
+        }
+
+        public int getUnchangedCount() {
+            return unchangedCount;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.c_3po.deploy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Where a generated site is deployed to by {@link OutputSync}, e.g. a web server's root directory.
+ *
+ * A target keeps the manifest of what has been synced to it last, so that the next sync can
+ * tell which files have changed without looking at the target's files. The manifest lists every
+ * file of the site, so it must never be served along with them.
+ */
+public interface SyncTarget {
+
+    /**
+     * @return the manifest written by the last sync or null if nothing has been synced yet
+     */
+    OutputManifest readManifest() throws IOException;
+
+    /**
+     * Puts the given file at the given path, replacing any file there. Visitors of the target
+     * must never see a partially transferred file.
+     *
+     * @param path the path relative to the target's root, separated by slashes
+     */
+    void upload(String path, Path file, OutputManifest.Entry entry) throws IOException;
+
+    /**
+     * Deletes the file at the given path if there's one.
+     */
+    void delete(String path) throws IOException;
+
+    /**
+     * Stores the manifest of what has been synced. Called once all files are in place.
+     */
+    void writeManifest(OutputManifest manifest) throws IOException;
+}
@@ -0,0 +1,195 @@
+package org.c_3po.generation;
+
+import org.c_3po.generation.assets.AssetReferences;
+import org.c_3po.generation.assets.AssetSubstitutes;
+import org.c_3po.generation.assets.Fingerprinter;
+import org.c_3po.io.FileHashes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Fingerprints the stylesheets, JavaScript files and images of a site and replaces references
+ * to them. Keeps the asset substitutes, i.e. the fingerprinted path of each asset, across builds,
+ * so that a rebuild only needs to fingerprint the assets it has copied.
+ */
+final class AssetFingerprinting {
+    private static final Logger LOG = LoggerFactory.getLogger(AssetFingerprinting.class);
+
+    private final Path destinationDirectoryPath;
+    private final Path substitutesFile;
+    private final FileHashes fileHashes;
+    private final boolean deduplicate;
+
+    // Note: Null until assets have been fingerprinted
+    private volatile Map<String, String> assetSubstitutes;
+
+    // Note: The substitutes of the previous build, which references in generated documents are
+    // replaced by before they're compared to their files. Null if there are none.
+    private volatile Map<String, String> writtenAssetSubstitutes;
+
+    private AssetFingerprinting(Path destinationDirectoryPath, Path substitutesFile, FileHashes fileHashes,
+                                boolean deduplicate) {
+        this.destinationDirectoryPath = destinationDirectoryPath;
+        this.substitutesFile = substitutesFile;
+        this.fileHashes = fileHashes;
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * @param substitutesFile the file the asset substitutes are kept in between builds
+     * @param deduplicate true if copies of the same asset in different directories share one fingerprinted file
+     */
+    static AssetFingerprinting create(Path destinationDirectoryPath, Path substitutesFile, FileHashes fileHashes,
+                                      boolean deduplicate) {
+        return new AssetFingerprinting(destinationDirectoryPath, substitutesFile, fileHashes, deduplicate);
+    }
+
+    /**
+     * @return the substitutes that references in documents are to be replaced by or null if there are none yet
+     */
+    Map<String, String> getSubstitutes() {
+        return assetSubstitutes != null ? assetSubstitutes : writtenAssetSubstitutes;
+    }
+
+    /**
+     * Fingerprints all assets and replaces references in all documents.
+     */
+    void fingerprintAll(Properties settings, BuildExecutor executor) throws IOException {
+        Map<String, String> assetSubstitutes = AssetSubstitutes.create();
+        assetSubstitutes.putAll(Fingerprinter.fingerprintStylesheets(stylesheetDirectory(), destinationDirectoryPath,
+                executor, fileHashes));
+        assetSubstitutes.putAll(Fingerprinter.fingerprintJsFiles(jsDirectory(), destinationDirectoryPath, executor,
+                fileHashes));
+        assetSubstitutes.putAll(Fingerprinter.fingerprintImageFiles(imageDirectory(), destinationDirectoryPath,
+                executor, fileHashes));
+
+        // Let copies of the same asset in different directories share one fingerprinted file
+        if (deduplicate) {
+            assetSubstitutes = Fingerprinter.deduplicate(assetSubstitutes, destinationDirectoryPath);
+        }
+        this.assetSubstitutes = assetSubstitutes;
+
+        // Replace references
+        AssetReferences.replaceAssetsReferencesInDir(destinationDirectoryPath, assetSubstitutes, settings, executor);
+        storeSubstitutes(assetSubstitutes);
+    }
+
+    /**
+     * Fingerprints just the given assets and replaces references in the given documents as well
+     * as in those still referencing an outdated fingerprinted version of the assets.
+     *
+     * Falls back to fingerprinting all assets if there are no substitutes of a previous build to
+     * update or if deduplicated assets might share their fingerprinted file with other ones.
+     */
+    void fingerprint(Collection<Path> assets, Collection<Path> documents, Properties settings,
+                     BuildExecutor executor) throws IOException {
+        Map<String, String> previousAssetSubstitutes = this.assetSubstitutes;
+        if (previousAssetSubstitutes == null || deduplicate) {
+            fingerprintAll(settings, executor);
+            return;
+        }
+
+        Map<String, String> assetSubstitutes = AssetSubstitutes.copyOf(previousAssetSubstitutes);
+        Set<String> outdatedFileNames = new HashSet<>();
+        for (Path asset : assets) {
+            Map<String, String> substitutes;
+            if (asset.startsWith(stylesheetDirectory())) {
+                substitutes = Fingerprinter.fingerprintStylesheet(asset, destinationDirectoryPath, fileHashes);
+            } else if (asset.startsWith(jsDirectory())) {
+                substitutes = Fingerprinter.fingerprintJsFile(asset, destinationDirectoryPath, fileHashes);
+            } else if (asset.startsWith(imageDirectory())) {
+                substitutes = Fingerprinter.fingerprintImageFile(asset, destinationDirectoryPath, fileHashes);
+            } else {
+                continue;
+            }
+
+            substitutes.forEach((assetPath, fingerprintedPath) -> {
+                var previousFingerprintedPath = assetSubstitutes.put(assetPath, fingerprintedPath);
+                if (previousFingerprintedPath != null && !previousFingerprintedPath.equals(fingerprintedPath)) {
+                    outdatedFileNames.add(Paths.get(previousFingerprintedPath).getFileName().toString());
+                }
+            });
+        }
+        this.assetSubstitutes = assetSubstitutes;
+
+        // Replace references
+        Set<Path> affectedDocuments = new LinkedHashSet<>(documents);
+        affectedDocuments.addAll(AssetReferences.findDocsMentioning(destinationDirectoryPath, outdatedFileNames));
+        AssetReferences.replaceAssetsReferencesInFiles(destinationDirectoryPath, affectedDocuments, assetSubstitutes,
+                settings, executor);
+        storeSubstitutes(assetSubstitutes);
+    }
+
+    /**
+     * Replaces references in all documents again, e.g. once the base URL has changed since whether
+     * an absolute URL refers to an asset of this website depends on it. Does nothing unless assets
+     * have been fingerprinted before.
+     */
+    void replaceReferences(Properties settings, BuildExecutor executor) throws IOException {
+        Map<String, String> assetSubstitutes = this.assetSubstitutes;
+        if (assetSubstitutes != null) {
+            AssetReferences.replaceAssetsReferencesInDir(destinationDirectoryPath, assetSubstitutes, settings,
+                    executor);
+        }
+    }
+
+    /**
+     * Loads the asset substitutes of the previous build, so that the documents of this one can
+     * be compared to their files with the same references.
+     */
+    void loadPreviousSubstitutes() {
+        if (this.writtenAssetSubstitutes != null || Files.notExists(substitutesFile)) {
+            return;
+        }
+
+        var properties = new Properties();
+        Map<String, String> substitutes = AssetSubstitutes.create();
+        try (InputStream in = Files.newInputStream(substitutesFile)) {
+            properties.load(in);
+            properties.stringPropertyNames().forEach(key -> substitutes.put(key, properties.getProperty(key)));
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Failed to load asset substitutes of previous build from '{}'", substitutesFile);
+            return;
+        }
+        this.writtenAssetSubstitutes = substitutes;
+    }
+
+    private void storeSubstitutes(Map<String, String> assetSubstitutes) throws IOException {
+        var properties = new Properties();
+        properties.putAll(assetSubstitutes);
+
+        Files.createDirectories(substitutesFile.getParent());
+        Path tempFile = substitutesFile.resolveSibling(substitutesFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            properties.store(out, null);
+        }
+        Files.move(tempFile, substitutesFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.writtenAssetSubstitutes = assetSubstitutes;
+    }
+
+    private Path stylesheetDirectory() {
+        return destinationDirectoryPath.resolve("css");
+    }
+
+    private Path jsDirectory() {
+        return destinationDirectoryPath.resolve("js");
+    }
+
+    private Path imageDirectory() {
+        return destinationDirectoryPath.resolve("img");
+    }
+}
@@ -0,0 +1,251 @@
+package org.c_3po.generation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Executes the file-level operations of a build, like rendering a page or copying
+ * an asset, concurrently.
+ *
+ * A build executor lives as long as a single build. Operations are forked within a
+ * {@link TaskGroup} which is joined before the build moves on to the next stage.
+ *
+ * Either a pool of platform threads or, on Java 21 and later, virtual threads run the
+ * operations. Since the number of virtual threads is unbounded, operations acquire a
+ * permit before they start. File permits limit the number of files open at once while
+ * CPU permits limit CPU-heavy operations to the number of available cores.
+ *
+ * A build executor may be cancelled cooperatively, e.g. when a build is superseded by a newer
+ * one. Operations that haven't started yet are skipped then, while running ones are left to
+ * finish rather than being interrupted, which could leave a file half-written.
+ */
+public final class BuildExecutor implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(BuildExecutor.class);
+    private static final int CPU_PERMITS = Runtime.getRuntime().availableProcessors();
+    private static final int FILE_PERMITS = Math.max(16, 4 * CPU_PERMITS);
+
+    public enum Mode {
+        PLATFORM_THREADS, VIRTUAL_THREADS
+    }
+
+    private final ExecutorService executorService;
+    private final Mode mode;
+    private final Semaphore filePermits;
+    private final Semaphore cpuPermits;
+    private final boolean owner;
+    private final BooleanSupplier cancelled;
+
+    private BuildExecutor(ExecutorService executorService, Mode mode) {
+        this(executorService, mode, new Semaphore(FILE_PERMITS), new Semaphore(CPU_PERMITS), true, () -> false);
+    }
+
+    private BuildExecutor(ExecutorService executorService, Mode mode, Semaphore filePermits, Semaphore cpuPermits,
+                          boolean owner, BooleanSupplier cancelled) {
+        this.executorService = executorService;
+        this.mode = mode;
+        this.filePermits = filePermits;
+        this.cpuPermits = cpuPermits;
+        this.owner = owner;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Creates a build executor running operations on threads of the given kind. Falls back
+     * to platform threads if virtual threads are requested but not supported by the JVM.
+     */
+    public static BuildExecutor create(Mode mode) {
+        if (mode == Mode.VIRTUAL_THREADS) {
+
+            // Note: Looked up reflectively because C-3PO still supports Java 11
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return new BuildExecutor((ExecutorService) factory.invoke(null), mode);
+            } catch (ReflectiveOperationException e) {
+                LOG.warn("Virtual threads require Java 21 or later. Falling back to platform threads.");
+            }
+        }
+
+        var threadCount = new AtomicInteger();
+        var executorService = Executors.newFixedThreadPool(2 * CPU_PERMITS, runnable -> {
+            var thread = new Thread(runnable, "c-3po-build-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new BuildExecutor(executorService, Mode.PLATFORM_THREADS);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public TaskGroup newTaskGroup() {
+        return new TaskGroup();
+    }
+
+    /**
+     * Returns a build executor that runs operations on the threads of this one and shares its
+     * permits, e.g. for the builds of several sites running at once. Closing it has no effect,
+     * the threads are shut down when this build executor is closed.
+     */
+    public BuildExecutor share() {
+        return new BuildExecutor(executorService, mode, filePermits, cpuPermits, false, cancelled);
+    }
+
+    /**
+     * Returns a build executor that's cancelled as soon as the given condition is met. It takes
+     * the place of this one, i.e. closing it shuts the threads down if closing this one would.
+     */
+    public BuildExecutor cancelledWhen(BooleanSupplier cancelled) {
+        return new BuildExecutor(executorService, mode, filePermits, cpuPermits, owner,
+                Objects.requireNonNull(cancelled));
+    }
+
+    /**
+     * Shuts the executor down and waits for operations that are still running. These are
+     * operations of a cancelled task group, e.g. because the build has been superseded, which
+     * must not overwrite outputs of the next build. Has no effect on a shared build executor.
+     */
+    @Override
+    public void close() {
+        if (!owner) {
+            return;
+        }
+        executorService.shutdown();
+
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                if (executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+                LOG.debug("Waiting for cancelled build operations to finish");
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A group of concurrently running operations that are joined as a whole.
+     *
+     * If one operation fails, the others are cancelled and joining the group fails
+     * with the exception of the failed operation. Closing a group cancels operations
+     * that haven't finished yet, so no operation outlives the group it was forked in.
+     * Once the build executor is cancelled, joining fails with an {@link InterruptedIOException}.
+     *
+     * A task group is meant to be used by the thread that created it. Operations
+     * must not fork operations into the group they are running in.
+     */
+    public final class TaskGroup implements AutoCloseable {
+        private final CompletionService<Object> completionService = new ExecutorCompletionService<>(executorService);
+        private final List<Future<?>> futures = new ArrayList<>();
+        private int joinedCount;
+
+        private TaskGroup() {
+        }
+
+        /**
+         * Forks an operation that is mostly busy reading or writing files.
+         */
+        public <T> Future<T> forkFileTask(Callable<T> task) {
+            return fork(task, filePermits);
+        }
+
+        /**
+         * Forks an operation that is mostly busy computing, e.g. compiling or resizing.
+         */
+        public <T> Future<T> forkCpuTask(Callable<T> task) {
+            return fork(task, cpuPermits);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> Future<T> fork(Callable<T> task, Semaphore permits) {
+            Future<Object> future = completionService.submit(() -> {
+                skipIfCancelled();
+                permits.acquire();
+                try {
+                    skipIfCancelled();
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+            futures.add(future);
+            return (Future<T>) future;
+        }
+
+        /**
+         * Waits until all operations forked so far have finished.
+         *
+         * @throws IOException the exception of the first failing operation, wrapped
+         *                     into an IOException if it's neither an IOException nor unchecked
+         */
+        public void join() throws IOException {
+            try {
+                for (; joinedCount < futures.size(); joinedCount++) {
+                    try {
+                        completionService.take().get();
+                    } catch (ExecutionException e) {
+                        cancelAll();
+                        throw asIOException(e.getCause());
+                    }
+                }
+            } catch (InterruptedException e) {
+                cancelAll();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for build operations to finish");
+            }
+        }
+
+        @Override
+        public void close() {
+            cancelAll();
+        }
+
+        private void skipIfCancelled() throws InterruptedIOException {
+            if (cancelled.getAsBoolean()) {
+                throw new InterruptedIOException("Build has been cancelled");
+            }
+        }
+
+        private void cancelAll() {
+
+            // Note: Operations of a cancelled build aren't interrupted, see above
+            var mayInterrupt = !cancelled.getAsBoolean();
+            futures.forEach(future -> future.cancel(mayInterrupt));
+        }
+
+        private IOException asIOException(Throwable cause) {
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                return new IOException(cause);
+            }
+        }
+    }
+}
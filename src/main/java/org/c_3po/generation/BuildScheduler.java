@@ -0,0 +1,242 @@
+package org.c_3po.generation;
+
+import org.c_3po.io.watch.FileChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the builds of auto-build mode on a thread of its own, so that watching for changes
+ * never waits for a build.
+ *
+ * Changes arriving while a build is running supersede it: the build is cancelled and a new
+ * one is started which covers both the changes of the cancelled build and the new ones. Each
+ * build first renders the pages that have been edited most recently, so that these are
+ * fresh right away, before it builds everything else affected by the changes.
+ *
+ * Cancelling is cooperative. The build thread is never interrupted, since an interrupt
+ * while writing a file closes the file's channel and might leave it half-written.
+ */
+final class BuildScheduler implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(BuildScheduler.class);
+    static final int RECENT_PAGES_LIMIT = 8;
+
+    enum State {
+        IDLE, RENDERING_RECENT_PAGES, BUILDING
+    }
+
+    /**
+     * The steps of a build. Both are expected to check whether they have been cancelled between
+     * the operations they consist of and to give up by throwing an exception if so.
+     */
+    interface Builder {
+
+        /**
+         * Renders the given pages, and nothing else, as fast as possible.
+         */
+        void renderPages(List<Path> pages, BooleanSupplier cancelled) throws IOException, GenerationException;
+
+        /**
+         * Builds everything affected by the given changes.
+         */
+        void build(List<FileChange> changes, BooleanSupplier cancelled) throws IOException, GenerationException;
+    }
+
+    private final Builder builder;
+    private final DirectoryStream.Filter<Path> pageFilter;
+    private final Thread buildThread;
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private final List<FileChange> pendingChanges = new ArrayList<>();
+    private final LinkedHashSet<Path> recentPages = new LinkedHashSet<>();
+    private boolean pagesEdited;
+    private State state = State.IDLE;
+    private boolean cancelRequested;
+    private boolean closed;
+    private long completedBuildCount;
+
+    private BuildScheduler(Builder builder, DirectoryStream.Filter<Path> pageFilter) {
+        this.builder = builder;
+        this.pageFilter = pageFilter;
+        this.buildThread = new Thread(this::runBuilds, "c-3po-build-scheduler");
+    }
+
+    /**
+     * Creates a scheduler and starts its build thread.
+     *
+     * @param pageFilter accepts the files that {@link Builder#renderPages} is able to render
+     */
+    static BuildScheduler start(Builder builder, DirectoryStream.Filter<Path> pageFilter) {
+        var scheduler = new BuildScheduler(Objects.requireNonNull(builder), Objects.requireNonNull(pageFilter));
+        scheduler.buildThread.start();
+        return scheduler;
+    }
+
+    /**
+     * Schedules a build for the given changes, superseding the running build if there is one.
+     */
+    void submit(List<FileChange> changes) throws IOException {
+        List<Path> editedPages = new ArrayList<>();
+        List<Path> deletedPaths = new ArrayList<>();
+        for (FileChange change : changes) {
+            if (change.getKind() == FileChange.Kind.DELETED) {
+                deletedPaths.add(change.getPath());
+            } else if (!change.isDirectory() && pageFilter.accept(change.getPath())) {
+                editedPages.add(change.getPath());
+            }
+        }
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Build scheduler has been closed");
+            }
+
+            pendingChanges.addAll(changes);
+            recentPages.removeIf(page -> deletedPaths.stream().anyMatch(page::startsWith));
+            pagesEdited |= !editedPages.isEmpty();
+            for (Path page : editedPages) {
+                recentPages.remove(page);
+                recentPages.add(page);
+            }
+            while (recentPages.size() > RECENT_PAGES_LIMIT) {
+                recentPages.remove(recentPages.iterator().next());
+            }
+
+            if (state != State.IDLE && !cancelRequested) {
+                LOG.info("Cancelling the running build in favour of new changes");
+                cancelRequested = true;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    State getState() {
+        synchronized (lock) {
+            return state;
+        }
+    }
+
+    /**
+     * Waits until all changes submitted so far have been built.
+     *
+     * @return the number of builds that have been completed, i.e. that haven't been cancelled
+     */
+    long awaitIdle() throws InterruptedException {
+        synchronized (lock) {
+            while (state != State.IDLE || !pendingChanges.isEmpty()) {
+                lock.wait();
+            }
+            return completedBuildCount;
+        }
+    }
+
+    private void runBuilds() {
+        List<FileChange> changes = new ArrayList<>();
+        for (;;) {
+            List<Path> pages = new ArrayList<>();
+            synchronized (lock) {
+                while (pendingChanges.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+
+                        // Note: Nothing interrupts the build thread, it's stopped by closing
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+
+                // Note: The changes of a cancelled build are still to be built
+                changes.addAll(pendingChanges);
+                pendingChanges.clear();
+                if (pagesEdited) {
+
+                    // Most recently edited pages first
+                    pages.addAll(recentPages);
+                    Collections.reverse(pages);
+                    pagesEdited = false;
+                }
+                cancelRequested = false;
+                state = State.RENDERING_RECENT_PAGES;
+                lock.notifyAll();
+            }
+
+            boolean completed = false;
+            long startTime = System.nanoTime();
+            try {
+                if (!pages.isEmpty()) {
+                    builder.renderPages(pages, this::isCancelRequested);
+                    LOG.info("Rendered {} recently edited pages in {} ms", pages.size(), millisSince(startTime));
+                }
+
+                setState(State.BUILDING);
+                builder.build(changes, this::isCancelRequested);
+                LOG.info("Finished build in {} ms", millisSince(startTime));
+                completed = true;
+            } catch (IOException | GenerationException | RuntimeException e) {
+                if (isCancelRequested()) {
+                    LOG.info("Build has been superseded by new changes after {} ms", millisSince(startTime));
+                } else {
+                    LOG.error("Build failed", e);
+                    completed = true;
+                }
+            } finally {
+                synchronized (lock) {
+                    if (completed) {
+                        changes.clear();
+                        completedBuildCount++;
+                    } else {
+                        pagesEdited |= !pages.isEmpty();
+                    }
+                    state = State.IDLE;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private boolean isCancelRequested() {
+        synchronized (lock) {
+            return cancelRequested || closed;
+        }
+    }
+
+    private void setState(State newState) {
+        synchronized (lock) {
+            state = newState;
+            lock.notifyAll();
+        }
+    }
+
+    private static long millisSince(long startTime) {
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+
+    /**
+     * Cancels the running build and waits for the build thread to stop, which is as soon as
+     * the running build has given up.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            buildThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.c_3po.generation;
+
+import org.c_3po.util.ChecksumCalculator;
+import org.thymeleaf.Configuration;
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.templateparser.ITemplateParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template parser that parses each distinct template only once, no matter how many
+ * template engines use it. This way sites built together share the parsing of the layouts
+ * and fragments they have in common.
+ *
+ * Note: Thymeleaf only tells a parser the template name, which means different templates
+ * for different sites, e.g. `_layouts/main`. Parsed templates are therefore keyed by the
+ * hash of their source. Each caller gets a copy since Thymeleaf modifies the documents it's
+ * handed.
+ */
+final class CachingTemplateParser implements ITemplateParser {
+    private static final int MAX_CACHED_TEMPLATES = 1000;
+
+    private final ITemplateParser parser;
+    private final Map<String, Document> documents = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Document> eldest) {
+            return size() > MAX_CACHED_TEMPLATES;
+        }
+    };
+
+    CachingTemplateParser(ITemplateParser parser) {
+        this.parser = parser;
+    }
+
+    @Override
+    public Document parseTemplate(Configuration configuration, String documentName, Reader source) {
+        String content;
+        try (source) {
+            var writer = new StringWriter();
+            source.transferTo(writer);
+            content = writer.toString();
+        } catch (IOException e) {
+            throw new TemplateInputException("Failed to read template '" + documentName + "'", e);
+        }
+
+        var key = ChecksumCalculator.sha1(content);
+        Document document;
+        synchronized (documents) {
+            document = documents.get(key);
+        }
+        if (document == null) {
+            document = parser.parseTemplate(configuration, documentName, new StringReader(content));
+            synchronized (documents) {
+                documents.put(key, document);
+            }
+        }
+
+        // Note: The cached document itself is never handed out, so it's only ever read
+        return document.clone(false);
+    }
+
+    @Override
+    public List<Node> parseFragment(Configuration configuration, String fragment) {
+        return parser.parseFragment(configuration, fragment);
+    }
+}
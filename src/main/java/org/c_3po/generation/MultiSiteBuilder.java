@@ -0,0 +1,167 @@
+package org.c_3po.generation;
+
+import org.c_3po.cmd.CmdArguments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds several sites at once within a single process.
+ *
+ * The sites are listed in a properties file, each with a source and a destination directory
+ * relative to that file:
+ *
+ * <pre>
+ * blog.src=sites/blog
+ * blog.dest=build/blog
+ * docs.src=sites/docs
+ * docs.dest=build/docs
+ * </pre>
+ *
+ * All sites are built in parallel and share the threads running build operations as well as
+ * parsed templates, compiled SASS files and file hashes. This pays off for sites sharing
+ * layouts, SASS partials or vendor assets.
+ */
+public final class MultiSiteBuilder {
+    private static final Logger LOG = LoggerFactory.getLogger(MultiSiteBuilder.class);
+    private static final String SOURCE_SUFFIX = ".src";
+    private static final String DESTINATION_SUFFIX = ".dest";
+
+    private final Map<String, CmdArguments> sites;
+    private final BuildExecutor.Mode executionMode;
+
+    private MultiSiteBuilder(Map<String, CmdArguments> sites, BuildExecutor.Mode executionMode) {
+        this.sites = sites;
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Reads the sites to build from the given file. All other options, like fingerprinting,
+     * are taken from the command line arguments and apply to all sites.
+     */
+    public static MultiSiteBuilder fromSitesFile(Path sitesFile, CmdArguments cmdArguments) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(sitesFile)) {
+            properties.load(in);
+        }
+
+        Path baseDir = sitesFile.toAbsolutePath().getParent();
+        Map<String, CmdArguments> sites = new TreeMap<>();
+        Map<Path, String> sourceDirs = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.endsWith(SOURCE_SUFFIX)) {
+                continue;
+            }
+
+            String name = key.substring(0, key.length() - SOURCE_SUFFIX.length());
+            String destination = properties.getProperty(name + DESTINATION_SUFFIX);
+            if (destination == null || destination.isBlank()) {
+                throw new IllegalArgumentException(
+                        "Site '" + name + "' in '" + sitesFile + "' lacks '" + name + DESTINATION_SUFFIX + "'");
+            }
+
+            // Note: Sites built from the same source directory would race for its cache directory
+            Path sourceDir = baseDir.resolve(properties.getProperty(key).trim()).normalize();
+            String otherSite = sourceDirs.put(sourceDir, name);
+            if (otherSite != null) {
+                throw new IllegalArgumentException(
+                        "Sites '" + otherSite + "' and '" + name + "' share the source directory '" + sourceDir + "'");
+            }
+
+            // Note: Options that aren't supported when building several sites are turned off
+            sites.put(name, cmdArguments.toBuilder()
+                    .sourceDirectory(sourceDir.toString())
+                    .destinationDirectory(baseDir.resolve(destination.trim()).toString())
+                    .autoBuild(false)
+                    .daemonMode(CmdArguments.DaemonMode.OFF)
+                    .sitesFile("")
+                    .syncTarget("")
+                    .syncManifest("")
+                    .profile(false)
+                    .build());
+        }
+        if (sites.isEmpty()) {
+            throw new IllegalArgumentException("There are no sites listed in '" + sitesFile + "'");
+        }
+
+        return new MultiSiteBuilder(Collections.unmodifiableMap(sites), cmdArguments.shouldUseVirtualThreads()
+                ? BuildExecutor.Mode.VIRTUAL_THREADS : BuildExecutor.Mode.PLATFORM_THREADS);
+    }
+
+    /**
+     * @return the arguments of each site to build by name
+     */
+    public Map<String, CmdArguments> getSites() {
+        return sites;
+    }
+
+    /**
+     * Validates the arguments of all sites.
+     */
+    public boolean validate() throws IOException {
+        boolean valid = true;
+        for (Map.Entry<String, CmdArguments> site : sites.entrySet()) {
+            if (!site.getValue().validate()) {
+                LOG.error("Site '{}' is not configured properly", site.getKey());
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Builds all sites. A failing site doesn't stop the others from being built.
+     *
+     * @throws GenerationException if at least one site failed to build
+     */
+    public void build() throws GenerationException {
+        LOG.info("Building {} sites: {}", sites.size(), sites.keySet());
+
+        var threadCount = new AtomicInteger();
+        ExecutorService siteThreads = Executors.newFixedThreadPool(sites.size(), runnable -> {
+            var thread = new Thread(runnable, "c-3po-site-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Note: The site threads mostly wait for the build operations they fork into the shared executor
+        List<String> failedSites = new ArrayList<>();
+        try (var sharedResources = SharedResources.create(executionMode)) {
+            Map<String, Future<?>> builds = new LinkedHashMap<>();
+            sites.forEach((name, cmdArguments) -> builds.put(name, siteThreads.submit(() -> {
+                long startTime = System.nanoTime();
+                SiteGenerator.fromCmdArguments(cmdArguments, sharedResources).generate();
+                LOG.info("Built site '{}' in {} ms", name, (System.nanoTime() - startTime) / 1_000_000);
+                return null;
+            })));
+
+            for (Map.Entry<String, Future<?>> build : builds.entrySet()) {
+                try {
+                    build.getValue().get();
+                } catch (ExecutionException e) {
+                    LOG.error("Failed to build site '{}'", build.getKey(), e.getCause());
+                    failedSites.add(build.getKey());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenerationException("Interrupted while building sites");
+        } finally {
+            siteThreads.shutdownNow();
+        }
+
+        if (!failedSites.isEmpty()) {
+            throw new GenerationException("Failed to build sites " + failedSites);
+        }
+    }
+}
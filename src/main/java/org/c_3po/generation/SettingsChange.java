@@ -0,0 +1,72 @@
+package org.c_3po.generation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The settings, i.e. the keys of a `.c3posettings` file, that have been added, removed or
+ * changed between two versions of it.
+ */
+final class SettingsChange {
+    private static final SettingsChange NONE = new SettingsChange(Collections.emptySet());
+
+    private final Set<String> changedKeys;
+
+    private SettingsChange(Set<String> changedKeys) {
+        this.changedKeys = Collections.unmodifiableSet(changedKeys);
+    }
+
+    static SettingsChange none() {
+        return NONE;
+    }
+
+    static SettingsChange between(Properties previous, Properties current) {
+        Objects.requireNonNull(previous, "previous must not be null");
+        Objects.requireNonNull(current, "current must not be null");
+
+        Set<String> changedKeys = new TreeSet<>();
+        for (String key : previous.stringPropertyNames()) {
+            if (!Objects.equals(previous.getProperty(key), current.getProperty(key))) {
+                changedKeys.add(key);
+            }
+        }
+        for (String key : current.stringPropertyNames()) {
+            if (previous.getProperty(key) == null) {
+                changedKeys.add(key);
+            }
+        }
+        return new SettingsChange(changedKeys);
+    }
+
+    boolean isEmpty() {
+        return changedKeys.isEmpty();
+    }
+
+    /**
+     * @return the changed keys, sorted
+     */
+    Set<String> getChangedKeys() {
+        return changedKeys;
+    }
+
+    boolean affects(String key) {
+        return changedKeys.contains(key);
+    }
+
+    boolean affectsAny(Collection<String> keys) {
+        return keys.stream().anyMatch(changedKeys::contains);
+    }
+
+    /**
+     * @return the changed keys among the given ones, sorted
+     */
+    Set<String> changedKeysAmong(Collection<String> keys) {
+        Set<String> changedKeysAmong = new TreeSet<>(changedKeys);
+        changedKeysAmong.retainAll(keys);
+        return changedKeysAmong;
+    }
+}
@@ -0,0 +1,66 @@
+package org.c_3po.generation;
+
+import java.nio.file.Path;
+
+/**
+ * One of the parts the source files of a site are partitioned into for a sharded build.
+ *
+ * A file belongs to a shard by the hash of its path relative to the source directory.
+ * This spreads the pages of a large directory evenly across shards and yields the same
+ * partition in every process.
+ */
+final class Shard {
+    private final int index;
+    private final int count;
+
+    private Shard(int index, int count) {
+        this.index = index;
+        this.count = count;
+    }
+
+    static Shard of(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+        }
+        return new Shard(index, count);
+    }
+
+    /**
+     * Parses a shard given as `index/count`, e.g. `0/4` for the first of four shards.
+     */
+    static Shard parse(String shard) {
+        int separatorIndex = shard.indexOf('/');
+        try {
+            if (separatorIndex != -1) {
+                return of(Integer.parseInt(shard.substring(0, separatorIndex).trim()),
+                        Integer.parseInt(shard.substring(separatorIndex + 1).trim()));
+            }
+        } catch (NumberFormatException e) {
+            // Handled below
+        }
+        throw new IllegalArgumentException("Invalid shard '" + shard + "', expected '<index>/<count>'");
+    }
+
+    /**
+     * @param relativePath the path of a source file relative to the source directory
+     */
+    boolean contains(Path relativePath) {
+
+        // Note: String#hashCode is specified, so all processes agree on it unlike on Path#hashCode
+        var key = relativePath.toString().replace('\\', '/');
+        return Math.floorMod(key.hashCode(), count) == index;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,96 @@
+package org.c_3po.generation;
+
+import org.c_3po.Main;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the workers of a sharded build, each in a process of its own, and merges their reports.
+ *
+ * Workers are started with the same Java runtime and class path as the coordinator. Each of
+ * them renders the pages and copies the assets of its shard into the shared destination
+ * directory and reports back via a file in the given report directory.
+ */
+final class ShardCoordinator {
+    private static final Logger LOG = LoggerFactory.getLogger(ShardCoordinator.class);
+
+    private ShardCoordinator() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Runs the given number of workers and waits for all of them to finish.
+     *
+     * @param jvmOptions options passed to the JVM of each worker, e.g. `-Xmx2g`
+     * @return the merged report of all workers
+     * @throws GenerationException if a worker failed
+     */
+    static ShardReport run(Path sourceDir, Path destinationDir, int shardCount, boolean virtualThreads,
+                           List<String> jvmOptions, Path reportDir) throws IOException, GenerationException {
+        Files.createDirectories(reportDir);
+        for (int i = 0; i < shardCount; i++) {
+            Files.deleteIfExists(reportFile(reportDir, i));
+        }
+
+        LOG.info("Starting {} workers to build the website in shards", shardCount);
+        List<Process> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                List<String> command = new ArrayList<>();
+                command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+                command.addAll(jvmOptions);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(Main.class.getName());
+                command.add("-src");
+                command.add(sourceDir.toAbsolutePath().toString());
+                command.add("-dest");
+                command.add(destinationDir.toAbsolutePath().toString());
+                if (virtualThreads) {
+                    command.add("--virtual-threads");
+                }
+                command.add("--shard");
+                command.add(Shard.of(i, shardCount).toString());
+
+                // Note: Workers log to the console of the coordinator
+                workers.add(new ProcessBuilder(command).inheritIO().start());
+            }
+
+            List<Integer> failedShards = new ArrayList<>();
+            for (int i = 0; i < workers.size(); i++) {
+                int exitCode = workers.get(i).waitFor();
+                if (exitCode != 0) {
+                    LOG.error("Worker building shard {} terminated with exit code {}",
+                            Shard.of(i, shardCount), exitCode);
+                    failedShards.add(i);
+                }
+            }
+            if (!failedShards.isEmpty()) {
+                throw new GenerationException("Abort build because the workers building shards " + failedShards +
+                        " failed. See log for more details.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenerationException("Interrupted while waiting for the workers building shards");
+        } finally {
+            workers.forEach(Process::destroy);
+        }
+
+        var report = new ShardReport();
+        for (int i = 0; i < shardCount; i++) {
+            report.merge(ShardReport.readFrom(reportFile(reportDir, i)));
+        }
+        return report;
+    }
+
+    static Path reportFile(Path reportDir, int shardIndex) {
+        return reportDir.resolve("shard-" + shardIndex + ".properties");
+    }
+}
@@ -0,0 +1,79 @@
+package org.c_3po.generation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * What a worker of a sharded build reports back to the coordinator: the number of files
+ * it has generated and the source files it failed to generate. Can be used concurrently.
+ */
+final class ShardReport {
+    private int outputCount;
+    private final List<String> failures = new ArrayList<>();
+
+    synchronized void addOutput() {
+        outputCount++;
+    }
+
+    synchronized void addFailure(Path sourceFile, String reason) {
+        failures.add(sourceFile + ": " + reason);
+    }
+
+    synchronized int getOutputCount() {
+        return outputCount;
+    }
+
+    synchronized List<String> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    /**
+     * Adds the outputs and failures of the given report to this one.
+     */
+    synchronized void merge(ShardReport report) {
+        outputCount += report.getOutputCount();
+        failures.addAll(report.getFailures());
+    }
+
+    synchronized void writeTo(Path file) throws IOException {
+        var properties = new Properties();
+        properties.setProperty("outputCount", String.valueOf(outputCount));
+        properties.setProperty("failureCount", String.valueOf(failures.size()));
+        for (int i = 0; i < failures.size(); i++) {
+            properties.setProperty("failure." + i, failures.get(i));
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        var tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            properties.store(out, null);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static ShardReport readFrom(Path file) throws IOException {
+        var properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+
+        var report = new ShardReport();
+        try {
+            report.outputCount = Integer.parseInt(properties.getProperty("outputCount", "0"));
+            int failureCount = Integer.parseInt(properties.getProperty("failureCount", "0"));
+            for (int i = 0; i < failureCount; i++) {
+                report.failures.add(properties.getProperty("failure." + i, ""));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed shard report '" + file + "'", e);
+        }
+        return report;
+    }
+}
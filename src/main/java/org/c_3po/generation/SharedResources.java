@@ -0,0 +1,61 @@
+package org.c_3po.generation;
+
+import org.c_3po.generation.sass.SassProcessor;
+import org.c_3po.io.FileHashes;
+import org.thymeleaf.templatemode.ITemplateModeHandler;
+import org.thymeleaf.templatemode.StandardTemplateModeHandlers;
+import org.thymeleaf.templatemode.TemplateModeHandler;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The resources shared by the site generators of sites built within the same process:
+ * the threads running build operations, the parsed templates, the compiled SASS files and
+ * the hashes of files.
+ */
+final class SharedResources implements AutoCloseable {
+    private final BuildExecutor executor;
+    private final Set<ITemplateModeHandler> templateModeHandlers;
+    private final SassProcessor sassProcessor = SassProcessor.getCachingInstance();
+    private final FileHashes fileHashes = FileHashes.create();
+
+    private SharedResources(BuildExecutor executor) {
+        this.executor = executor;
+
+        // Note: Replaces the parser of the template mode that C-3PO uses
+        var legacyHtml5 = StandardTemplateModeHandlers.LEGACYHTML5;
+        this.templateModeHandlers = new HashSet<>(StandardTemplateModeHandlers.ALL_TEMPLATE_MODE_HANDLERS);
+        this.templateModeHandlers.remove(legacyHtml5);
+        this.templateModeHandlers.add(new TemplateModeHandler(legacyHtml5.getTemplateModeName(),
+                new CachingTemplateParser(legacyHtml5.getTemplateParser()), legacyHtml5.getTemplateWriter()));
+    }
+
+    static SharedResources create(BuildExecutor.Mode executionMode) {
+        return new SharedResources(BuildExecutor.create(executionMode));
+    }
+
+    /**
+     * @return a build executor running operations on the shared threads
+     */
+    BuildExecutor newBuildExecutor() {
+        return executor.share();
+    }
+
+    Set<ITemplateModeHandler> getTemplateModeHandlers() {
+        return templateModeHandlers;
+    }
+
+    SassProcessor getSassProcessor() {
+        return sassProcessor;
+    }
+
+    FileHashes getFileHashes() {
+        return fileHashes;
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
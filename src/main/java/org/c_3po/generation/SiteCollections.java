@@ -0,0 +1,146 @@
+package org.c_3po.generation;
+
+import org.c_3po.generation.cache.CacheKey;
+import org.c_3po.generation.collections.CollectionGenerator;
+import org.c_3po.generation.markdown.ContentIndex;
+import org.c_3po.util.ChecksumCalculator;
+import org.c_3po.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoField;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Generates the listing pages and feeds of a site's markdown collections, setting up a
+ * {@link CollectionGenerator} as the site's settings say.
+ */
+final class SiteCollections {
+    private static final Logger LOG = LoggerFactory.getLogger(SiteCollections.class);
+
+    private final Path sourceDirectoryPath;
+    private final Path destinationDirectoryPath;
+    private final Path signaturesFile;
+    private final DirectoryStream.Filter<Path> sourceDirFilter;
+    private final CollectionGenerator.PageRenderer renderer;
+
+    // Note: Null until collections are generated for the first time or after the settings have changed
+    private CollectionGenerator collectionGenerator;
+
+    private SiteCollections(Path sourceDirectoryPath, Path destinationDirectoryPath, Path signaturesFile,
+                            DirectoryStream.Filter<Path> sourceDirFilter, CollectionGenerator.PageRenderer renderer) {
+        this.sourceDirectoryPath = sourceDirectoryPath;
+        this.destinationDirectoryPath = destinationDirectoryPath;
+        this.signaturesFile = signaturesFile;
+        this.sourceDirFilter = sourceDirFilter;
+        this.renderer = renderer;
+    }
+
+    /**
+     * @param signaturesFile the file signatures of generated outputs are kept in between builds
+     * @param sourceDirFilter accepts the source directories that templates are looked for in
+     * @param renderer renders listing pages
+     */
+    static SiteCollections create(Path sourceDirectoryPath, Path destinationDirectoryPath, Path signaturesFile,
+                                  DirectoryStream.Filter<Path> sourceDirFilter,
+                                  CollectionGenerator.PageRenderer renderer) {
+        return new SiteCollections(sourceDirectoryPath, destinationDirectoryPath, signaturesFile, sourceDirFilter,
+                renderer);
+    }
+
+    /**
+     * Generates the listing pages and feeds of the given collections that are affected by changes
+     * since the previous build and deletes the ones of collections that don't exist anymore.
+     *
+     * @param collectionDirs the collection directories relative to the site's root, e.g. `blog`
+     * @param dataDigest the digest of the site's data, which listing pages might render
+     */
+    synchronized void generate(Properties settings, ContentIndex contentIndex, List<String> collectionDirs,
+                               String dataDigest, BuildExecutor executor) throws IOException, GenerationException {
+        if (collectionDirs.isEmpty() && collectionGenerator == null && Files.notExists(signaturesFile)) {
+            return;
+        }
+
+        if (collectionGenerator == null) {
+            collectionGenerator = newCollectionGenerator(settings);
+        }
+        collectionGenerator.generate(contentIndex, collectionDirs, sourceDirectoryPath,
+                computeListingPagesSignature(settings, dataDigest), executor);
+    }
+
+    /**
+     * Forgets the generator, e.g. once settings it has been set up with have changed. Outputs are
+     * signed with the settings they've been generated with. Thus, a new generator only generates
+     * the ones again that the change affects.
+     */
+    synchronized void reset() {
+        collectionGenerator = null;
+    }
+
+    private CollectionGenerator newCollectionGenerator(Properties settings) throws GenerationException {
+        int pageSize;
+        try {
+            pageSize = Integer.parseInt(settings.getProperty(SiteGenerator.SETTING_COLLECTION_PAGE_SIZE, "10").trim());
+            if (pageSize < 1) {
+                throw new NumberFormatException();
+            }
+        } catch (NumberFormatException e) {
+            throw new GenerationException(String.format("Abort build because setting '%s' must be a " +
+                    "number greater than 0.", SiteGenerator.SETTING_COLLECTION_PAGE_SIZE), e);
+        }
+
+        var baseUrl = settings.getProperty(SiteGenerator.SETTING_BASE_URL);
+        var shouldGenerateFeeds = Boolean.parseBoolean(settings.getProperty(SiteGenerator.SETTING_GENERATE_FEEDS));
+        if (shouldGenerateFeeds && StringUtils.isBlank(baseUrl)) {
+            LOG.warn("Not generating feeds because setting '{}' is missing", SiteGenerator.SETTING_BASE_URL);
+        }
+
+        return CollectionGenerator.getInstance(destinationDirectoryPath, signaturesFile, pageSize,
+                shouldGenerateFeeds && !StringUtils.isBlank(baseUrl) ? baseUrl : null,
+                settings.getProperty(SiteGenerator.SETTING_FEED_TITLE), renderer);
+    }
+
+    /**
+     * Computes a signature of everything listing pages are rendered from besides their entries,
+     * i.e. all templates including layouts and fragments that are excluded from the result, the
+     * site's data and the settings and variables that affect rendering. It changes as soon as
+     * any of them does.
+     */
+    private String computeListingPagesSignature(Properties settings, String dataDigest) throws IOException {
+        return CacheKey.create()
+                .add(computeTemplatesSignature())
+                .add(dataDigest)
+                .add(settings.getProperty(SiteGenerator.SETTING_MINIFY_HTML, ""))
+                .add(String.valueOf(LocalDateTime.now().get(ChronoField.YEAR)))
+                .hash();
+    }
+
+    private String computeTemplatesSignature() throws IOException {
+        var signature = new StringBuilder();
+        Files.walkFileTree(sourceDirectoryPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                return sourceDirFilter.accept(dir.normalize())
+                        ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.toString().endsWith(".html")) {
+                    signature.append(file).append(attrs.lastModifiedTime().toMillis()).append(attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return ChecksumCalculator.sha1(signature.toString());
+    }
+}
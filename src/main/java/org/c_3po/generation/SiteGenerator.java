@@ -5,14 +5,32 @@ import nz.net.ultraq.thymeleaf.LayoutDialect;
 import nz.net.ultraq.thymeleaf.decorators.SortingStrategy;
 import nz.net.ultraq.thymeleaf.decorators.strategies.GroupingStrategy;
 import org.c_3po.cmd.CmdArguments;
+import org.c_3po.deploy.OutputManifest;
+import org.c_3po.deploy.OutputSync;
 import org.c_3po.generation.assets.AssetReferences;
 import org.c_3po.generation.assets.Fingerprinter;
+import org.c_3po.generation.assets.LinkChecker;
+import org.c_3po.generation.assets.ResponsiveImages;
+import org.c_3po.generation.cache.BuildCache;
+import org.c_3po.generation.cache.CacheKey;
+import org.c_3po.generation.cache.PageCache;
+import org.c_3po.generation.collections.CollectionGenerator;
 import org.c_3po.generation.crawl.RobotsGenerator;
 import org.c_3po.generation.crawl.SiteStructure;
 import org.c_3po.generation.crawl.SitemapGenerator;
+import org.c_3po.generation.data.SiteData;
+import org.c_3po.generation.html.HtmlMinifier;
+import org.c_3po.generation.markdown.ContentIndex;
 import org.c_3po.generation.markdown.MarkdownProcessor;
 import org.c_3po.generation.sass.SassProcessor;
+import org.c_3po.generation.profile.RenderProfiler;
+import org.c_3po.io.FileDeduplicator;
 import org.c_3po.io.FileFilters;
+import org.c_3po.io.FileHashes;
+import org.c_3po.io.OutputBuffer;
+import org.c_3po.io.watch.DirectoryWatcher;
+import org.c_3po.io.watch.FileChange;
+import org.c_3po.io.watch.PollingWatchBackend;
 import org.c_3po.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,49 +38,120 @@ import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.dom.Element;
 import org.thymeleaf.dom.Node;
+import org.thymeleaf.templatemode.StandardTemplateModeHandlers;
 import org.thymeleaf.templateresolver.FileTemplateResolver;
 import org.thymeleaf.templateresolver.TemplateResolver;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoField;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Pattern;
 
 import static java.nio.file.StandardOpenOption.*;
-import static java.nio.file.StandardWatchEventKinds.*;
 
 /**
  * Main class responsible for site generation.
  */
 public class SiteGenerator {
     private static final Logger LOG = LoggerFactory.getLogger(SiteGenerator.class);
-    private static final String C_3PO_IGNORE_FILE_NAME = ".c3poignore";
-    private static final String C_3PO_SETTINGS_FILE_NAME = ".c3posettings";
+    public static final String C_3PO_IGNORE_FILE_NAME = ".c3poignore";
+    public static final String C_3PO_SETTINGS_FILE_NAME = ".c3posettings";
+    private static final String C_3PO_CACHE_DIR_NAME = ".c3po-cache";
+    private static final String PROFILE_DIR_NAME = "profile";
+    private static final String REPORT_DIR_SUFFIX = "-reports";
+    private static final String CONTENT_INDEX_FILE_NAME = "content-index.bin";
+    private static final String ASSET_SUBSTITUTES_FILE_NAME = "asset-substitutes.properties";
     private static final String CONVENTIONAL_MARKDOWN_TEMPLATE_NAME = "md-template.html";
     private static final String SETTING_NODEJS_HOME = "nodejsHome";
     private static final String SETTING_PURIFYCSS_HOME = "purifycssHome";
     private static final String SETTING_PURIFYCSS_WHITELIST = "purifycssWhitelist";
+    private static final String SETTING_RESPONSIVE_IMAGE_WIDTHS = "responsiveImageWidths";
+    private static final String SETTING_RESPONSIVE_IMAGE_QUALITY = "responsiveImageQuality";
+    static final String SETTING_MINIFY_HTML = "minifyHtml";
+    static final String SETTING_COLLECTION_PAGE_SIZE = "collectionPageSize";
+    static final String SETTING_GENERATE_FEEDS = "generateFeeds";
+    static final String SETTING_FEED_TITLE = "feedTitle";
+    static final String SETTING_BASE_URL = "baseUrl";
+    static final String SETTING_GENERATE_SEARCH_INDEX = "generateSearchIndex";
+    private static final String SETTING_DEDUPLICATE_OUTPUTS = "deduplicateOutputs";
+    private static final String SETTING_POLL_FILE_CHANGES = "pollFileChanges";
+    private static final String SETTING_SHARD_JVM_OPTIONS = "shardJvmOptions";
+    private static final String SETTING_BUILD_CACHE = "buildCache";
+    private static final String SETTING_BUILD_CACHE_READ_ONLY = "buildCacheReadOnly";
+    private static final String SETTING_REPORT_DIRECTORY = "reportDirectory";
+
+    // Note: What a change of settings in auto-build mode requires to be rebuilt. Settings that
+    // aren't listed here don't affect the output.
+    private static final Set<String> SETTINGS_READ_AT_STARTUP = Set.of(SETTING_DEDUPLICATE_OUTPUTS,
+            SETTING_POLL_FILE_CHANGES, SETTING_SHARD_JVM_OPTIONS, SETTING_BUILD_CACHE, SETTING_BUILD_CACHE_READ_ONLY);
+    private static final Set<String> SETTINGS_AFFECTING_PAGES = Set.of(SETTING_MINIFY_HTML,
+            SETTING_RESPONSIVE_IMAGE_WIDTHS, SETTING_RESPONSIVE_IMAGE_QUALITY);
+    private static final Set<String> SETTINGS_AFFECTING_COLLECTIONS = Set.of(SETTING_COLLECTION_PAGE_SIZE,
+            SETTING_GENERATE_FEEDS, SETTING_FEED_TITLE, SETTING_BASE_URL);
+    private static final Set<String> SETTINGS_AFFECTING_PURGING = Set.of(SETTING_NODEJS_HOME,
+            SETTING_PURIFYCSS_HOME, SETTING_PURIFYCSS_WHITELIST);
+
+    private static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+    // Note: CSS files excluding fingerprinted ones
+    private static final Pattern CSS_FILE_PATTERN = Pattern.compile("\\.css$", Pattern.CASE_INSENSITIVE);
+    private static final DirectoryStream.Filter<Path> CSS_FILE_FILTER =
+            entry -> {
+                String fileName = entry.toFile().getName();
+                return Files.isRegularFile(entry)
+                        && CSS_FILE_PATTERN.matcher(fileName).find()
+                        && !Fingerprinter.isFingerprinted(fileName);
+            };
 
     private final Path sourceDirectoryPath;
     private final Path destinationDirectoryPath;
+    private final Path cacheDirectoryPath;
     private final boolean shouldFingerprintAssets;
     private final boolean shouldPurgeUnusedCss;
-    private final Properties settings;
+    private final boolean shouldCheckLinks;
+    private final BuildExecutor.Mode executionMode;
+    private final FileHashes fileHashes;
+    private final FileDeduplicator fileDeduplicator;
+    private final int shardCount;
+
+    // Note: Replaced when `.c3posettings` changes in auto-build mode
+    private volatile Properties settings;
+
+    private final PageCache pageCache;
+    private final SiteCollections siteCollections;
+    private final SiteSearchIndex siteSearchIndex;
+    private final AssetFingerprinting assetFingerprinting;
+
+    // Note: Null unless this is a worker building a shard of the site
+    private final Shard shard;
+
+    // Note: Null unless the site is built along with others
+    private final SharedResources sharedResources;
+
+    // Note: Null unless rendering is profiled
+    private final RenderProfiler renderProfiler;
 
     private final DirectoryStream.Filter<Path> sourceHtmlFilter =
             entry -> !isCompleteIgnorable(entry)
                     && !isResultIgnorable(entry)
-                    && FileFilters.htmlFilter.accept(entry);
+                    && FileFilters.htmlFilter.accept(entry)
+                    && !entry.toFile().getName().equals(CollectionGenerator.LIST_TEMPLATE_NAME);
     private final DirectoryStream.Filter<Path> markdownFilter =
             entry -> Files.isRegularFile(entry) && !isCompleteIgnorable(entry) && !isResultIgnorable(entry) && entry.toFile().getName().endsWith(".md");
     private final DirectoryStream.Filter<Path> markdownTemplateFilter =
             entry -> Files.isRegularFile(entry) && !isCompleteIgnorable(entry) && entry.toFile().getName().equals(CONVENTIONAL_MARKDOWN_TEMPLATE_NAME);
+    private final DirectoryStream.Filter<Path> markdownListTemplateFilter =
+            entry -> Files.isRegularFile(entry) && !isCompleteIgnorable(entry) && entry.toFile().getName().equals(CollectionGenerator.LIST_TEMPLATE_NAME);
 
     private final DirectoryStream.Filter<Path> sassFilter =
             entry -> {
@@ -75,25 +164,76 @@ public class SiteGenerator {
 
     private final DirectoryStream.Filter<Path> staticFileFilter =
             entry -> Files.isRegularFile(entry) && !isCompleteIgnorable(entry) && !isResultIgnorable(entry) && !sourceHtmlFilter.accept(entry)
-                    && !markdownFilter.accept(entry) && !sassFilter.accept(entry);
-    private final TemplateEngine templateEngine;
-    private final MarkdownProcessor markdownProcessor;
-    private final SassProcessor sassProcessor;
+                    && !markdownFilter.accept(entry) && !sassFilter.accept(entry)
+                    && !markdownListTemplateFilter.accept(entry);
+    private final DirectoryStream.Filter<Path> sourceSubDirFilter =
+            entry -> Files.isDirectory(entry) && !isCompleteIgnorable(entry.normalize())
+                    && !isResultIgnorable(entry.normalize());
+
+    // Note: Initialized lazily since a site doesn't necessarily make use of all of them
+    // and initializing them is expensive, e.g. the SASS processor loads a native library.
+    // Volatile, so that pages rendered concurrently don't need to lock once they're initialized.
+    private volatile TemplateEngine templateEngine;
+    private volatile MarkdownProcessor markdownProcessor;
+    private volatile SassProcessor sassProcessor;
+
+    // Note: Tells whether the build running in auto-build mode has been superseded
+    private volatile BooleanSupplier buildCancellation = NOT_CANCELLED;
+
+    // Note: The last modified time and size of each template as of the last time the template
+    // cache has been checked for changed templates, keyed by file
+    private final Map<Path, String> templateStamps = new HashMap<>();
+
+    private volatile ContentIndex contentIndex;
+    private volatile SiteData siteData = SiteData.empty();
+
+    // Note: Computed once per build and shared by all pages
+    private volatile Map<String, Object> templateVariables = Collections.emptyMap();
+    private volatile List<String> collectionDirectories = Collections.emptyList();
+    private volatile ShardReport shardReport;
+
+    // Note: Null unless a rebuild in auto-build mode keeps track of the documents it writes
+    private volatile Set<Path> writtenDocuments;
 
-    private IgnorablesMatcher completeIgnorablesMatcher;
-    private IgnorablesMatcher resultIgnorablesMatcher;
+    private volatile IgnorablesMatcher completeIgnorablesMatcher;
+    private volatile IgnorablesMatcher resultIgnorablesMatcher;
 
     private SiteGenerator(Path sourceDirectoryPath, Path destinationDirectoryPath, boolean fingerprintAssets,
-                          boolean purgeUnusedCss, List<String> completeIgnorables, List<String> resultIgnorables,
-                          Properties settings) {
+                          boolean purgeUnusedCss, boolean checkLinks, BuildExecutor.Mode executionMode,
+                          List<String> completeIgnorables, List<String> resultIgnorables, Properties settings,
+                          int shardCount, Shard shard, SharedResources sharedResources,
+                          RenderProfiler renderProfiler) {
         this.sourceDirectoryPath = sourceDirectoryPath;
         this.destinationDirectoryPath = destinationDirectoryPath;
+        this.cacheDirectoryPath = sourceDirectoryPath.resolve(C_3PO_CACHE_DIR_NAME);
         this.shouldFingerprintAssets = fingerprintAssets;
         this.shouldPurgeUnusedCss = purgeUnusedCss;
+        this.shouldCheckLinks = checkLinks;
+        this.executionMode = executionMode;
         this.settings = settings;
-        this.templateEngine = setupTemplateEngine(sourceDirectoryPath);
-        this.markdownProcessor = MarkdownProcessor.getInstance();
-        this.sassProcessor = SassProcessor.getInstance();
+        this.shardCount = shardCount;
+        this.shard = shard;
+        this.sharedResources = sharedResources;
+        this.renderProfiler = renderProfiler;
+        this.fileHashes = sharedResources != null ? sharedResources.getFileHashes() : FileHashes.create();
+        if (Boolean.parseBoolean(settings.getProperty(SETTING_DEDUPLICATE_OUTPUTS))) {
+            this.fileDeduplicator = FileDeduplicator.create(fileHashes);
+        } else {
+            this.fileDeduplicator = null;
+        }
+        var buildCacheLocation = settings.getProperty(SETTING_BUILD_CACHE);
+        var buildCache = StringUtils.isBlank(buildCacheLocation)
+                ? null : BuildCache.forLocation(buildCacheLocation, sourceDirectoryPath);
+        this.pageCache = PageCache.create(buildCache,
+                Boolean.parseBoolean(settings.getProperty(SETTING_BUILD_CACHE_READ_ONLY)), sourceDirectoryPath,
+                fileHashes);
+        this.siteCollections = SiteCollections.create(sourceDirectoryPath, destinationDirectoryPath,
+                cacheDirectoryPath.resolve("collections.properties"), dir -> !isCompleteIgnorable(dir),
+                this::renderListingPage);
+        this.siteSearchIndex = SiteSearchIndex.create(sourceDirectoryPath, destinationDirectoryPath,
+                cacheDirectoryPath.resolve("search-index.bin"));
+        this.assetFingerprinting = AssetFingerprinting.create(destinationDirectoryPath,
+                cacheDirectoryPath.resolve(ASSET_SUBSTITUTES_FILE_NAME), fileHashes, fileDeduplicator != null);
         this.completeIgnorablesMatcher = IgnorablesMatcher.from(sourceDirectoryPath, completeIgnorables);
         this.resultIgnorablesMatcher = IgnorablesMatcher.from(sourceDirectoryPath, resultIgnorables);
     }
@@ -102,6 +242,14 @@ public class SiteGenerator {
      * Factory method that creates a SiteGenerator from command line arguments.
      */
     public static SiteGenerator fromCmdArguments(CmdArguments cmdArguments) {
+        return fromCmdArguments(cmdArguments, null);
+    }
+
+    /**
+     * Factory method that creates a SiteGenerator for a site that is built along with others,
+     * sharing the given resources with them.
+     */
+    static SiteGenerator fromCmdArguments(CmdArguments cmdArguments, SharedResources sharedResources) {
         Objects.requireNonNull(cmdArguments);
         Path sourceDirectoryPath = Paths.get(cmdArguments.getSourceDirectory());
 
@@ -121,8 +269,17 @@ public class SiteGenerator {
                 Paths.get(cmdArguments.getDestinationDirectory()),
                 cmdArguments.shouldFingerprintAssets(),
                 cmdArguments.shouldPurgeUnusedCss(),
+                cmdArguments.shouldCheckLinks(),
+                cmdArguments.shouldUseVirtualThreads()
+                        ? BuildExecutor.Mode.VIRTUAL_THREADS : BuildExecutor.Mode.PLATFORM_THREADS,
                 getCompleteIgnorables(sourceDirectoryPath),
-                Ignorables.readResultIgnorables(sourceDirectoryPath.resolve(C_3PO_IGNORE_FILE_NAME)), settings);
+                getResultIgnorables(sourceDirectoryPath.resolve(C_3PO_IGNORE_FILE_NAME)), settings,
+                cmdArguments.getShardCount(),
+                cmdArguments.getShard().isEmpty() ? null : Shard.parse(cmdArguments.getShard()),
+                sharedResources,
+                cmdArguments.shouldProfile() && !cmdArguments.isAutoBuild() && cmdArguments.getShardCount() <= 1
+                        ? RenderProfiler.create(sourceDirectoryPath, Paths.get(cmdArguments.getDestinationDirectory()))
+                        : null);
     }
 
     private static void ensureValidSourceDirectory(Path sourceDirectoryPath) {
@@ -139,7 +296,9 @@ public class SiteGenerator {
     private static Properties readSettings(Path settingsFilePath) throws IOException {
         Properties properties = new Properties();
         if (Files.exists(settingsFilePath)) {
-            properties.load(Files.newInputStream(settingsFilePath));
+            try (InputStream in = Files.newInputStream(settingsFilePath)) {
+                properties.load(in);
+            }
         }
         return properties;
     }
@@ -149,12 +308,31 @@ public class SiteGenerator {
      * @throws IOException
      */
     public void generate() throws IOException, GenerationException {
-        buildWebsite();
+        if (shouldFingerprintAssets) {
+            assetFingerprinting.loadPreviousSubstitutes();
+        }
+
+        if (shard != null) {
+            buildShard();
+            return;
+        }
+
+        if (shardCount > 1) {
+            buildWebsiteInShards();
+        } else {
+            buildWebsite();
+        }
 
         // TODO: Clarify why this should not be supported in auto-build mode or simply
         //  make it work in auto-build mode.
         buildCrawlFiles();
 
+        checkLinksIfEnabled();
+
+        writeOutputManifest();
+
+        writeRenderProfileIfEnabled();
+
         // TODO Check if there are any files in destination directory that are to be ignored
         //  (e.g. because ignore file has changed since last generation)
         //  Update 2020-03-02: Not sure if `generate` is the right place to do so.
@@ -165,149 +343,481 @@ public class SiteGenerator {
      * @throws IOException
      */
     public void generateOnFileChange() throws IOException, GenerationException {
+        if (shardCount > 1) {
+            LOG.info("Auto-build mode doesn't support building in shards. Building without them.");
+        }
         buildWebsite();
 
-        WatchService watchService = FileSystems.getDefault().newWatchService();
-        Map<WatchKey, Path> watchKeyMap = registerWatchServices(sourceDirectoryPath, watchService);
+        // Note: Builds run on the scheduler's thread so that this one keeps watching
+        DirectoryStream.Filter<Path> pageFilter = entry -> sourceHtmlFilter.accept(entry) || markdownFilter.accept(entry);
+        BuildScheduler.Builder builder = new BuildScheduler.Builder() {
+            @Override
+            public void renderPages(List<Path> pages, BooleanSupplier cancelled) throws IOException {
+                buildCancellation = cancelled;
+                try {
+                    SiteGenerator.this.renderPages(pages);
+                } finally {
+                    buildCancellation = NOT_CANCELLED;
+                }
+            }
 
-        for (;;) {
-            WatchKey key;
-            try {
-                LOG.trace("In watcher loop waiting for a new change notification");
-                key = watchService.take();
-            } catch (InterruptedException ex) {
-                return; // stops the infinite loop
+            @Override
+            public void build(List<FileChange> changes, BooleanSupplier cancelled)
+                    throws IOException, GenerationException {
+                buildCancellation = cancelled;
+                try {
+                    handleFileChanges(changes);
+                } finally {
+                    buildCancellation = NOT_CANCELLED;
+                }
             }
+        };
 
-            // Now that we have a "signaled" (as opposed to "ready" and "invalid") watch key,
-            // let's see what's in there for us
-            for (WatchEvent<?> event : key.pollEvents()) {
-                WatchEvent.Kind<?> kind = event.kind();
-                LOG.debug("File '{}' with kind '{}' triggered a change", event.context(), event.kind());
+        try (DirectoryWatcher watcher = createDirectoryWatcher();
+             BuildScheduler scheduler = BuildScheduler.start(builder, pageFilter)) {
+            for (;;) {
+                List<FileChange> changes;
+                try {
+                    LOG.trace("In watcher loop waiting for a new change notification");
+                    changes = watcher.take();
+                } catch (InterruptedException ex) {
+                    return; // stops the infinite loop
+                }
 
-                // Ignore the overflow event, that can happen always - i.e. it does
-                // not have to be registered with the watcher
-                if (kind == OVERFLOW) {
-                    continue;
+                scheduler.submit(changes);
+            }
+        }
+    }
+
+    /**
+     * Renders just the given pages, e.g. the ones recently edited, ahead of a build.
+     */
+    private void renderPages(List<Path> pages) throws IOException {
+        evictChangedTemplates();
+
+        for (Path page : pages) {
+            if (buildCancellation.getAsBoolean()) {
+                throw new InterruptedIOException("Cancelled while rendering pages");
+            }
+
+            Path targetDir = destinationDirectoryPath.resolve(sourceDirectoryPath.relativize(page.getParent()));
+            if (markdownFilter.accept(page)) {
+                Path markdownTemplatePath = page.resolveSibling(CONVENTIONAL_MARKDOWN_TEMPLATE_NAME);
+                if (Files.exists(markdownTemplatePath)) {
+                    Files.createDirectories(targetDir);
+                    generateMarkdownPage(page, templateNameOf(markdownTemplatePath), targetDir);
                 }
+            } else if (sourceHtmlFilter.accept(page)) {
+                Files.createDirectories(targetDir);
+                generateHtmlPage(page, targetDir);
+            }
+        }
+    }
 
-                // Depending on type of resource let's build the whole site or just a portion
-                Path changedPath = (Path) event.context();
-                if (Files.exists(changedPath) && Files.isSameFile(changedPath, sourceDirectoryPath.resolve(C_3PO_IGNORE_FILE_NAME))) {
-                    updateIgnorables(changedPath);
-                } else {
-                    Path parent = watchKeyMap.get(key);
-                    changedPath = parent.resolve(changedPath);
-
-                    if (kind == ENTRY_CREATE || kind == ENTRY_MODIFY) {
-                        if (sourceHtmlFilter.accept(changedPath) || sassFilter.accept(changedPath)) {
-                            buildWebsite();
-                        } else if (staticFileFilter.accept(changedPath) ||
-                                markdownFilter.accept(changedPath) ||
-                                markdownTemplateFilter.accept(changedPath)) {
-                            Path srcSubDir = (Path) key.watchable();
-
-                            // Changed static assets and markdown articles don't require a full rebuild
-                            // because their contents isn't copied over into another file.
-                            buildPartOfWebsite(srcSubDir);
-                        } else if (Files.isDirectory(changedPath) && !isCompleteIgnorable(changedPath)) {
-                            if (kind == ENTRY_CREATE) {
-                                watchKeyMap.put(registerWatchService(watchService, changedPath), changedPath);
-                                LOG.debug("Registered autoBuild watcher for '{}'", changedPath);
-                            }
-                            buildWebsite();
+    private DirectoryWatcher createDirectoryWatcher() throws IOException {
+        DirectoryStream.Filter<Path> dirFilter = dir -> !isCompleteIgnorable(dir.normalize());
+        if (Boolean.parseBoolean(settings.getProperty(SETTING_POLL_FILE_CHANGES))) {
+            LOG.debug("Polling '{}' for changes", sourceDirectoryPath);
+            return DirectoryWatcher.create(sourceDirectoryPath, dirFilter,
+                    PollingWatchBackend.create(sourceDirectoryPath, DirectoryWatcher.DEFAULT_POLLING_INTERVAL));
+        }
+        return DirectoryWatcher.create(sourceDirectoryPath, dirFilter);
+    }
+
+    /**
+     * Builds what is affected by a batch of changes. Builds the whole site at most once per batch.
+     */
+    private void handleFileChanges(List<FileChange> changes) throws IOException, GenerationException {
+        boolean shouldBuildWebsite = false;
+        boolean shouldReloadSettings = false;
+        Set<Path> srcFilesToBuild = new LinkedHashSet<>();
+
+        for (FileChange change : changes) {
+            Path changedPath = change.getPath();
+            LOG.debug("File '{}' with kind '{}' triggered a change", changedPath, change.getKind());
+
+            // Depending on type of resource let's build the whole site or just a portion
+            if (changedPath.equals(sourceDirectoryPath.resolve(C_3PO_IGNORE_FILE_NAME))) {
+                updateIgnorables(changedPath);
+            } else if (changedPath.equals(sourceDirectoryPath.resolve(C_3PO_SETTINGS_FILE_NAME))) {
+                shouldReloadSettings = true;
+            } else if (changedPath.startsWith(sourceDirectoryPath.resolve(SiteData.DIRECTORY_NAME))) {
+
+                // Data files are available to all pages
+                shouldBuildWebsite = true;
+            } else if (change.getKind() == FileChange.Kind.DELETED) {
+                if (!isCompleteIgnorable(changedPath) && !isResultIgnorable(changedPath)) {
+                    Path targetPath = destinationDirectoryPath.resolve(sourceDirectoryPath.relativize(changedPath));
+
+                    // Delete files and directories in target directory
+                    if (Files.exists(targetPath)) {
+                        if (Files.isDirectory(targetPath)) {
+                            deleteDirectory(targetPath);
                         } else {
-                            LOG.warn("No particular action executed for '{}' that triggered a change with kind '{}'",
-                                    event.context(), event.kind());
+                            Files.deleteIfExists(targetPath);
                         }
-                    } else if (kind == ENTRY_DELETE) {
-                        if (!isCompleteIgnorable(changedPath) && !isResultIgnorable(changedPath)) {
-                            Path targetPath = destinationDirectoryPath.resolve(changedPath);
-
-                            // Delete files and directories in target directory
-                            if (Files.exists(targetPath)) {
-                                if (Files.isDirectory(targetPath)) {
-                                    deleteDirectory(targetPath);
-                                } else {
-                                    Files.deleteIfExists(destinationDirectoryPath.resolve(changedPath));
-                                }
-                            }
+                    }
+                }
+            } else if (sourceHtmlFilter.accept(changedPath) || sassFilter.accept(changedPath)
+                    || markdownListTemplateFilter.accept(changedPath)) {
+                shouldBuildWebsite = true;
+            } else if (staticFileFilter.accept(changedPath) ||
+                    markdownFilter.accept(changedPath) ||
+                    markdownTemplateFilter.accept(changedPath)) {
+
+                // Changed static assets and markdown articles don't require a full rebuild
+                // because their contents isn't copied over into another file.
+                srcFilesToBuild.add(changedPath);
+            } else if (change.isDirectory() && !isCompleteIgnorable(changedPath)) {
+                shouldBuildWebsite = true;
+            } else {
+                LOG.warn("No particular action executed for '{}' that triggered a change with kind '{}'",
+                        changedPath, change.getKind());
+            }
+        }
 
-                            // Cancel watcher for the path if there was one registered
-                            if (watchKeyMap.get(key).equals(changedPath)) {
-                                key.cancel();
-                                watchKeyMap.remove(key);
-                                LOG.debug("Cancelled autoBuild watcher for '{}", changedPath);
+        SettingsChange settingsChange = shouldReloadSettings ? reloadSettings() : SettingsChange.none();
+        if (settingsChange.affectsAny(SETTINGS_AFFECTING_PAGES)) {
+            shouldBuildWebsite = true;
+        }
+
+        if (shouldBuildWebsite) {
+            buildWebsite();
+        } else {
+            if (!srcFilesToBuild.isEmpty()) {
+                buildFiles(srcFilesToBuild);
+            }
+            buildForSettingsChange(settingsChange);
+        }
+    }
+
+    /**
+     * Reads `.c3posettings` again and resets what has been derived from the settings that changed.
+     *
+     * @return the change, which is empty if the settings failed to be read
+     */
+    private SettingsChange reloadSettings() {
+        Path settingsFilePath = sourceDirectoryPath.resolve(C_3PO_SETTINGS_FILE_NAME);
+        Properties newSettings;
+        try {
+            newSettings = readSettings(settingsFilePath);
+        } catch (IOException e) {
+            LOG.warn("Failed to reload settings from file '{}'. Keeping the previous ones.", settingsFilePath);
+            return SettingsChange.none();
+        }
+
+        var change = SettingsChange.between(settings, newSettings);
+        if (change.isEmpty()) {
+            LOG.debug("Settings file '{}' changed but none of its settings", settingsFilePath);
+            return change;
+        }
+
+        LOG.info("Applying changed settings {}", change.getChangedKeys());
+        var settingsReadAtStartup = change.changedKeysAmong(SETTINGS_READ_AT_STARTUP);
+        if (!settingsReadAtStartup.isEmpty()) {
+            LOG.warn("Changes of settings {} take effect once C-3PO is restarted", settingsReadAtStartup);
+        }
+
+        this.settings = newSettings;
+        if (change.affectsAny(SETTINGS_AFFECTING_COLLECTIONS)) {
+
+            siteCollections.reset();
+        }
+        if (change.affects(SETTING_GENERATE_SEARCH_INDEX)) {
+            siteSearchIndex.reset();
+        }
+        return change;
+    }
+
+    /**
+     * Rebuilds just what depends on the given changed settings, other than pages which
+     * require to build the whole website. E.g. a changed base URL only has listing pages
+     * regenerated and asset references replaced again.
+     */
+    private void buildForSettingsChange(SettingsChange change) throws IOException, GenerationException {
+        boolean affectsCollections = change.affectsAny(SETTINGS_AFFECTING_COLLECTIONS);
+        boolean affectsSearchIndex = change.affects(SETTING_GENERATE_SEARCH_INDEX);
+        boolean affectsPurging = shouldPurgeUnusedCss && change.affectsAny(SETTINGS_AFFECTING_PURGING);
+        boolean affectsAssetReferences = shouldFingerprintAssets && change.affects(SETTING_BASE_URL);
+        if (!affectsCollections && !affectsSearchIndex && !affectsPurging && !affectsAssetReferences) {
+            return;
+        }
+
+        Set<Path> documents = ConcurrentHashMap.newKeySet();
+        List<Path> assets = new ArrayList<>();
+        writtenDocuments = documents;
+        try (var executor = newBuildExecutor()) {
+            if (affectsCollections) {
+                generateCollections(executor);
+                generateResponsiveImagesIfEnabled(documents, executor);
+            }
+
+            if (affectsSearchIndex) {
+                siteSearchIndex.indexGeneratedPages(settings);
+            }
+
+            // Note: Stylesheets are built again since purging has removed what the previous
+            // settings didn't ask to keep
+            if (affectsPurging) {
+                Path sourceStylesheetDir = sourceDirectoryPath.resolve(stylesheetDirectory().getFileName().toString());
+                if (Files.isDirectory(sourceStylesheetDir)) {
+                    buildPagesAndAssets(sourceStylesheetDir, stylesheetDirectory(), executor);
+                    try (var files = Files.walk(stylesheetDirectory())) {
+                        for (Path file : (Iterable<Path>) files::iterator) {
+                            if (CSS_FILE_FILTER.accept(file)) {
+                                assets.add(file);
                             }
                         }
                     }
+                    purgeUnusedCssIfEnabled(assets, executor);
                 }
+            }
 
-                // Reset the key -- this step is critical if you want to
-                // receive further watch events. If the key is no longer valid,
-                // the directory is inaccessible, so exit the loop.
-                boolean valid = key.reset();
-                if (!valid) {
-                    break;
-                }
+            if (!assets.isEmpty() || !documents.isEmpty()) {
+                fingerprintAssetsIfEnabled(assets, documents, executor);
             }
+
+            if (affectsAssetReferences) {
+                assetFingerprinting.replaceReferences(settings, executor);
+            }
+        } finally {
+            writtenDocuments = null;
         }
     }
 
-    private Map<WatchKey, Path> registerWatchServices(Path rootDirectory, WatchService watchService) throws IOException {
-        Map<WatchKey, Path> watchKeyMap = new HashMap<>();
+    private void buildWebsite() throws IOException, GenerationException {
+        LOG.debug("Building entire website");
 
-        Files.walkFileTree(rootDirectory, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                if (!isCompleteIgnorable(Objects.requireNonNull(dir).normalize())) {
-                    watchKeyMap.put(registerWatchService(watchService, dir), dir);
-                    return FileVisitResult.CONTINUE;
-                } else {
-                    return FileVisitResult.SKIP_SUBTREE;
+        try (var executor = newBuildExecutor()) {
+            updateContentIndex(executor);
+
+            siteSearchIndex.prepare(settings);
+
+            buildPagesAndAssets(sourceDirectoryPath, destinationDirectoryPath, executor);
+
+            generateCollections(executor);
+
+            siteSearchIndex.write();
+
+            generateResponsiveImagesIfEnabled(executor);
+
+            purgeUnusedCssInAllStylesheetsIfEnabled(executor);
+
+            fingerprintAssetsIfEnabled(executor);
+        }
+    }
+
+    /**
+     * Builds the website with several worker processes, each rendering the pages and copying
+     * the assets of one shard. Stages that need to see the whole website, like fingerprinting,
+     * run once all workers are done.
+     */
+    private void buildWebsiteInShards() throws IOException, GenerationException {
+        LOG.debug("Building entire website in {} shards", shardCount);
+
+        try (var executor = newBuildExecutor()) {
+
+            // Note: Workers load the content index from the cache instead of updating it
+            updateContentIndex(executor);
+
+            List<String> jvmOptions = new ArrayList<>();
+            for (String jvmOption : settings.getProperty(SETTING_SHARD_JVM_OPTIONS, "").trim().split("\\s+")) {
+                if (!jvmOption.isEmpty()) {
+                    jvmOptions.add(jvmOption);
                 }
             }
-        });
+            ShardReport report = ShardCoordinator.run(sourceDirectoryPath, destinationDirectoryPath, shardCount,
+                    executionMode == BuildExecutor.Mode.VIRTUAL_THREADS, jvmOptions, shardReportDirectory());
+            report.getFailures().forEach(failure -> LOG.warn("Failed to generate {}", failure));
+            LOG.info("Workers generated {} files, failed to generate {}", report.getOutputCount(),
+                    report.getFailures().size());
+
+            generateCollections(executor);
+
+            siteSearchIndex.indexGeneratedPages(settings);
 
-        watchKeyMap.values().stream().forEach(path -> LOG.debug("Registered autoBuild watcher for '{}", path));
-        return watchKeyMap;
+            generateResponsiveImagesIfEnabled(executor);
+
+            purgeUnusedCssInAllStylesheetsIfEnabled(executor);
+
+            fingerprintAssetsIfEnabled(executor);
+        }
     }
 
-    private WatchKey registerWatchService(WatchService watchService, Path pathToWatch) throws IOException {
-        if (Files.exists(pathToWatch)) {
-            return pathToWatch.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
-        } else {
-            throw new FileNotFoundException(String.format("Path '%s' to watch does not exist", pathToWatch));
+    /**
+     * Renders the pages and copies the assets of this worker's shard into the destination directory.
+     */
+    private void buildShard() throws IOException {
+        LOG.info("Building shard {} of website", shard);
+
+        contentIndex = ContentIndex.load(cacheDirectoryPath.resolve(CONTENT_INDEX_FILE_NAME));
+        updateTemplateVariables();
+        shardReport = new ShardReport();
+        try (var executor = newBuildExecutor()) {
+            buildPagesAndAssets(sourceDirectoryPath, destinationDirectoryPath, executor);
         }
+        shardReport.writeTo(ShardCoordinator.reportFile(shardReportDirectory(), shard.getIndex()));
     }
 
-    private void buildWebsite() throws IOException, GenerationException {
-        LOG.debug("Building entire website");
+    private Path shardReportDirectory() {
+        return cacheDirectoryPath.resolve("shards");
+    }
 
-        buildPagesAndAssets(sourceDirectoryPath, destinationDirectoryPath);
+    private boolean isInShard(Path sourceFile) {
+        return shard == null || shard.contains(sourceDirectoryPath.relativize(sourceFile));
+    }
 
-        purgeUnusedCssInAllStylesheetsIfEnabled();
+    private void recordOutput() {
+        ShardReport shardReport = this.shardReport;
+        if (shardReport != null) {
+            shardReport.addOutput();
+        }
+    }
+
+    private void recordDocument(Path destinationPath) {
+        Set<Path> writtenDocuments = this.writtenDocuments;
+        if (writtenDocuments != null) {
+            writtenDocuments.add(destinationPath);
+        }
+    }
 
-        fingerprintAssetsIfEnabled();
+    private void recordFailure(Path sourceFile, String reason) {
+        ShardReport shardReport = this.shardReport;
+        if (shardReport != null) {
+            shardReport.addFailure(sourceFile, reason);
+        }
     }
 
-    private void buildPartOfWebsite(Path srcSubDir) throws IOException, GenerationException {
-        LOG.debug("Building part of website contained in '{}'", srcSubDir);
+    /**
+     * Builds just the given markdown documents, markdown templates and static files, e.g. the
+     * ones changed in auto-build mode. Post-processing is limited to what they affect: only
+     * copied stylesheets are purged, only copied assets are fingerprinted and only documents
+     * written by this build or referencing an outdated fingerprinted asset are updated.
+     */
+    private void buildFiles(Collection<Path> srcFiles) throws IOException, GenerationException {
+        LOG.debug("Building files {}", srcFiles);
+
+        Set<Path> documents = ConcurrentHashMap.newKeySet();
+        List<Path> assets = new ArrayList<>();
+        writtenDocuments = documents;
+        try (var executor = newBuildExecutor()) {
+            updateContentIndex(executor);
+
+            siteSearchIndex.prepare(settings);
+
+            buildPagesAndAssets(executor, tasks -> {
+                for (Path srcFile : srcFiles) {
+                    Path targetDir = destinationDirectoryPath.resolve(
+                            sourceDirectoryPath.relativize(srcFile.getParent()));
+                    Files.createDirectories(targetDir);
+
+                    if (markdownFilter.accept(srcFile)) {
+                        forkMarkdownPages(srcFile.getParent(), List.of(srcFile), targetDir, tasks);
+                    } else if (markdownTemplateFilter.accept(srcFile)) {
+
+                        // Note: A markdown template only applies to the documents of its own directory
+                        List<Path> markdownFiles = new ArrayList<>();
+                        try (DirectoryStream<Path> markdownFilesStream =
+                                     Files.newDirectoryStream(srcFile.getParent(), markdownFilter)) {
+                            markdownFilesStream.forEach(markdownFiles::add);
+                        }
+                        forkMarkdownPages(srcFile.getParent(), markdownFiles, targetDir, tasks);
+                    } else if (staticFileFilter.accept(srcFile)) {
+                        Path destinationPath = targetDir.resolve(srcFile.getFileName());
+                        assets.add(destinationPath);
+                        tasks.forkFileTask(() -> {
+                            copyStaticFile(srcFile, destinationPath);
+                            return null;
+                        });
+                    }
+                }
+            });
 
-        Path subDirPathRelativeToSrc = sourceDirectoryPath.relativize(srcSubDir);
+            generateCollections(executor);
 
-        buildPagesAndAssets(srcSubDir, destinationDirectoryPath.resolve(subDirPathRelativeToSrc));
+            siteSearchIndex.write();
 
-        purgeUnusedCssInAllStylesheetsIfEnabled();
+            generateResponsiveImagesIfEnabled(documents, executor);
 
-        fingerprintAssetsIfEnabled();
+            purgeUnusedCssIfEnabled(assets, executor);
+
+            fingerprintAssetsIfEnabled(assets, documents, executor);
+        } finally {
+            writtenDocuments = null;
+        }
     }
 
-    private void buildPagesAndAssets(Path sourceDir, Path targetDir) throws IOException {
-        LOG.debug("Building pages and assets contained in '{}'", sourceDir);
+    private void buildPagesAndAssets(Path sourceDir, Path targetDir, BuildExecutor executor) throws IOException {
+        buildPagesAndAssets(executor, tasks -> buildPagesAndAssets(sourceDir, targetDir, tasks));
+    }
+
+    /**
+     * Runs the given operations generating pages and assets, with templates and the build
+     * cache prepared for them.
+     */
+    private void buildPagesAndAssets(BuildExecutor executor, TaskForker forker) throws IOException {
+        evictChangedTemplates();
+
+        if (fileDeduplicator != null) {
+            fileDeduplicator.beginBuild();
+        }
+
+        if (pageCache.isEnabled()) {
+            pageCache.beginBuild(digestPageInputs(), pageCache.digestSourceFiles(
+                    dir -> !isCompleteIgnorable(dir), ".scss", ".sass", ".css"));
+        }
+
+        try (var tasks = executor.newTaskGroup()) {
+            forker.fork(tasks);
+            tasks.join();
+        } finally {
+            pageCache.endBuild();
+        }
+    }
+
+    /**
+     * Computes a digest of what all pages might be rendered from besides their own source file:
+     * the contents of all templates, as any of them might be included, the markdown documents
+     * they might list and what else goes into rendering them.
+     */
+    private String digestPageInputs() throws IOException {
+        var pageInputs = CacheKey.create()
+                .add(String.valueOf(LocalDateTime.now().get(ChronoField.YEAR)))
+                .add(settings.getProperty(SETTING_MINIFY_HTML, ""))
+                .add(pageCache.digestSourceFiles(dir -> !isCompleteIgnorable(dir), ".html"))
+                .add(siteData.getDigest());
+        List<ContentIndex.Entry> entries = new ArrayList<>(contentIndex.getEntries());
+        entries.sort(Comparator.comparing(ContentIndex.Entry::getSourcePath));
+        for (ContentIndex.Entry entry : entries) {
+            pageInputs.add(entry.getSourcePath()).add(entry.getContentHash()).add(entry.getDate().toString());
+        }
+        return pageInputs.hash();
+    }
+
+    /**
+     * @return the path of the given file relative to the source dir, delimited by slashes
+     */
+    private String sourcePathOf(Path file) {
+        return sourceDirectoryPath.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize())
+                .toString().replace('\\', '/');
+    }
+
+    /**
+     * @return the name of the given template relative to the source dir, i.e. as resolved
+     * by the template resolver prefixed with the source dir, e.g. `blog/md-template`
+     */
+    private String templateNameOf(Path templateFile) {
+        var path = sourcePathOf(templateFile);
+        return path.endsWith(".html") ? path.substring(0, path.length() - ".html".length()) : path;
+    }
 
-        // Clear Thymeleaf's template cache
-        templateEngine.clearTemplateCache();
+    /**
+     * Walks the given source dir and forks an operation per page or asset to generate.
+     * Directories are created right away so that operations never race for them.
+     */
+    private void buildPagesAndAssets(Path sourceDir, Path targetDir, BuildExecutor.TaskGroup tasks)
+            throws IOException {
+        LOG.debug("Building pages and assets contained in '{}'", sourceDir);
 
         // Ensure targetDir exists
         if (!Files.exists(targetDir)) {
@@ -317,76 +827,53 @@ public class SiteGenerator {
         // Look for HTML files to generate
         try (DirectoryStream<Path> htmlFilesStream = Files.newDirectoryStream(sourceDir, sourceHtmlFilter)) {
             for (Path htmlFile : htmlFilesStream) {
-                LOG.trace("Generate '{}'", htmlFile);
-
-                // Generate
-                try {
-                    List<String> lines = Collections.singletonList(
-                            templateEngine.process(htmlFile.toString().replace(".html", ""), getBaseTemplateContext()));
-                    // Write to file
-                    Path destinationPath = targetDir.resolve(htmlFile.getFileName());
-                    try {
-                        Files.write(destinationPath, lines, Charset.forName("UTF-8"), CREATE, WRITE, TRUNCATE_EXISTING);
-                    } catch (IOException e) {
-                        LOG.error("Failed to write generated document to {}", destinationPath, e);
-                    }
-                } catch (RuntimeException ex) {
-                    LOG.warn("Thymeleaf failed to process '{}'. Reason: '{}'", htmlFile, ex.getMessage());
+                if (!isInShard(htmlFile)) {
+                    continue;
                 }
+                tasks.forkCpuTask(() -> {
+                    generateHtmlPage(htmlFile, targetDir);
+                    return null;
+                });
             }
         }
 
         // Look for Markdown files to generate
+        List<Path> markdownFiles = new ArrayList<>();
         try (DirectoryStream<Path> markdownFilesStream = Files.newDirectoryStream(sourceDir, markdownFilter)) {
-            Iterator<Path> iterator = markdownFilesStream.iterator();
-            if (iterator.hasNext()) {
-                Path markdownTemplatePath = sourceDir.resolve(CONVENTIONAL_MARKDOWN_TEMPLATE_NAME);
-                if (Files.exists(markdownTemplatePath)) {
-                    String markdownTemplateName = markdownTemplatePath.toString().replace(".html", "");
-                    while (iterator.hasNext()) {
-                        final Path markdownFile = iterator.next();
-                        try {
-                            // Process markdown
-                            MarkdownProcessor.Result mdResult = markdownProcessor.process(markdownFile);
-
-                            // Integrate into Thymeleaf template
-                            Context context = getBaseTemplateContext();
-                            context.setVariable("markdownContent", mdResult.getContentResult());
-                            context.setVariable("markdownHead", mdResult.getHeadResult());
-                            context.setVariable("markdownFileName", markdownFile.toString());
-                            String result = templateEngine.process(markdownTemplateName, context);
-
-                            // Write result to file
-                            Path destinationPath = targetDir.resolve(markdownFile.getFileName().toString().replace(".md", ".html"));
-                            Files.write(destinationPath, Collections.singletonList(result), Charset.forName("UTF-8"), CREATE,
-                                    WRITE, TRUNCATE_EXISTING);
-                        } catch (IOException e) {
-                            LOG.error("Failed to generate document from markdown '{}': [{}]", markdownFile, e.getMessage());
-                        }
-                    }
-                } else {
-                    LOG.warn("Not processing markdown files in '{}' because expected template file '{}' is missing",
-                            sourceDir, markdownTemplatePath + ".html");
+            for (Path markdownFile : markdownFilesStream) {
+                if (isInShard(markdownFile)) {
+                    markdownFiles.add(markdownFile);
                 }
             }
         }
+        forkMarkdownPages(sourceDir, markdownFiles, targetDir, tasks);
 
         // Look for SASS files to generate
         try (DirectoryStream<Path> sassFilesStream = Files.newDirectoryStream(sourceDir, sassFilter)) {
             for (Path sassFile : sassFilesStream) {
-                try {
-                    boolean isNotSassPartial = !sassFile.toFile().getName().startsWith("_");
-
-                    if (isNotSassPartial) {
-                        String result = sassProcessor.process(sassFile);
-                        Path destinationPath = targetDir.resolve(sassFile.getFileName().toString()
-                                .replace(".sass", ".css")
-                                .replace(".scss", ".css"));
-                        Files.write(destinationPath, Collections.singletonList(result), Charset.forName("UTF-8"), CREATE,
-                                WRITE, TRUNCATE_EXISTING);
-                    }
-                } catch (CompilationException e) {
-                    LOG.error("Failed to process SASS file '{}'", sassFile, e);
+                boolean isNotSassPartial = !sassFile.toFile().getName().startsWith("_");
+
+                if (isNotSassPartial && isInShard(sassFile)) {
+                    tasks.forkCpuTask(() -> {
+                        try {
+                            String cacheKey = pageCache.stylesheetKey(sassFile);
+                            String result = pageCache.load(cacheKey);
+                            if (result == null) {
+                                result = sassProcessor().process(sassFile);
+                                pageCache.store(cacheKey, result);
+                            }
+                            Path destinationPath = targetDir.resolve(sassFile.getFileName().toString()
+                                    .replace(".sass", ".css")
+                                    .replace(".scss", ".css"));
+                            Files.write(destinationPath, Collections.singletonList(result), Charset.forName("UTF-8"), CREATE,
+                                    WRITE, TRUNCATE_EXISTING);
+                            recordOutput();
+                        } catch (CompilationException e) {
+                            LOG.error("Failed to process SASS file '{}'", sassFile, e);
+                            recordFailure(sassFile, e.getMessage());
+                        }
+                        return null;
+                    });
                 }
             }
         }
@@ -394,25 +881,333 @@ public class SiteGenerator {
         // Look for static files to synchronize
         try (DirectoryStream<Path> staticFilesStream = Files.newDirectoryStream(sourceDir, staticFileFilter)) {
             for (Path staticFile : staticFilesStream) {
-                Files.copy(staticFile, targetDir.resolve(staticFile.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                if (!isInShard(staticFile)) {
+                    continue;
+                }
+                tasks.forkFileTask(() -> {
+                    copyStaticFile(staticFile, targetDir.resolve(staticFile.getFileName()));
+                    return null;
+                });
             }
         }
 
         // Look for subdirectories to be processed
-        try (DirectoryStream<Path> subDirStream =
-                     Files.newDirectoryStream(sourceDir,
-                             entry -> Files.isDirectory(entry) && !isCompleteIgnorable(entry.normalize())
-                                     && !isResultIgnorable(entry.normalize()))) {
+        try (DirectoryStream<Path> subDirStream = Files.newDirectoryStream(sourceDir, sourceSubDirFilter)) {
             for (Path subDir : subDirStream) {
                 LOG.trace("I'm going to build pages in this subdirectory [{}]", subDir);
-                buildPagesAndAssets(subDir, targetDir.resolve(subDir.getFileName()));
+                buildPagesAndAssets(subDir, targetDir.resolve(subDir.getFileName()), tasks);
+            }
+        }
+    }
+
+    /**
+     * Forks an operation per markdown document of the given source dir to generate, provided
+     * the dir has a markdown template.
+     */
+    private void forkMarkdownPages(Path sourceDir, List<Path> markdownFiles, Path targetDir,
+                                   BuildExecutor.TaskGroup tasks) {
+        if (markdownFiles.isEmpty()) {
+            return;
+        }
+
+        Path markdownTemplatePath = sourceDir.resolve(CONVENTIONAL_MARKDOWN_TEMPLATE_NAME);
+        if (Files.exists(markdownTemplatePath)) {
+            String markdownTemplateName = templateNameOf(markdownTemplatePath);
+            for (Path markdownFile : markdownFiles) {
+                tasks.forkCpuTask(() -> {
+                    generateMarkdownPage(markdownFile, markdownTemplateName, targetDir);
+                    return null;
+                });
+            }
+        } else {
+            LOG.warn("Not processing markdown files in '{}' because expected template file '{}' is missing",
+                    sourceDir, markdownTemplatePath + ".html");
+        }
+    }
+
+    private void copyStaticFile(Path staticFile, Path destinationPath) throws IOException {
+        if (fileDeduplicator != null) {
+            fileDeduplicator.copy(staticFile, destinationPath);
+        } else {
+            Files.copy(staticFile, destinationPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        recordOutput();
+    }
+
+    /**
+     * Evicts the templates that have been added, modified or removed since the last check from
+     * the template cache, so that a long-running process, e.g. the build daemon, keeps the
+     * parsed templates that are still valid. Pages are evicted one by one. Layouts and fragments
+     * may be referenced by any name, e.g. with or without `./`, which is why a change to one of
+     * them clears the entire cache.
+     */
+    private synchronized void evictChangedTemplates() throws IOException {
+        Map<Path, String> stamps = new HashMap<>();
+        Files.walkFileTree(sourceDirectoryPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                return isCompleteIgnorable(dir.normalize()) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.toString().endsWith(".html")) {
+                    stamps.put(file, attrs.lastModifiedTime().toMillis() + "-" + attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Set<Path> changedTemplates = new HashSet<>();
+        stamps.forEach((file, stamp) -> {
+            if (!stamp.equals(templateStamps.get(file))) {
+                changedTemplates.add(file);
+            }
+        });
+        for (Path file : templateStamps.keySet()) {
+            if (!stamps.containsKey(file)) {
+                changedTemplates.add(file);
+            }
+        }
+        templateStamps.clear();
+        templateStamps.putAll(stamps);
+
+        TemplateEngine templateEngine = this.templateEngine;
+        if (templateEngine == null || changedTemplates.isEmpty()) {
+            return;
+        }
+        for (Path file : changedTemplates) {
+            if (!isPage(file)) {
+                LOG.debug("Clearing template cache since '{}' has changed", file);
+                templateEngine.clearTemplateCache();
+                return;
+            }
+        }
+        for (Path file : changedTemplates) {
+            templateEngine.clearTemplateCacheFor(templateNameOf(file));
+        }
+    }
+
+    /**
+     * @return true if the given source file is rendered as a page of its own rather than being
+     * a layout or fragment, i.e. neither it nor any of its dirs is ignorable
+     */
+    private boolean isPage(Path sourceFile) throws IOException {
+        if (!sourceHtmlFilter.accept(sourceFile)) {
+            return false;
+        }
+        for (Path dir = sourceFile.getParent(); dir != null && !dir.equals(sourceDirectoryPath); dir = dir.getParent()) {
+            if (isCompleteIgnorable(dir.normalize()) || isResultIgnorable(dir.normalize())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generateHtmlPage(Path htmlFile, Path targetDir) {
+        LOG.trace("Generate '{}'", htmlFile);
+
+        // Generate
+        try (OutputBuffer result = OutputBuffer.acquire()) {
+            String templateName = templateNameOf(htmlFile);
+            String cacheKey = pageCache.pageKey(htmlFile, templateName);
+            if (!pageCache.load(cacheKey, result)) {
+                render(htmlFile, templateName, getBaseTemplateContext(), result);
+                pageCache.store(cacheKey, result);
+            }
+
+            // Write to file
+            Path destinationPath = targetDir.resolve(htmlFile.getFileName());
+            try {
+                writeDocument(destinationPath, result);
+                siteSearchIndex.indexPage(destinationPath, result);
+                recordOutput();
+                recordDocument(destinationPath);
+            } catch (IOException e) {
+                LOG.error("Failed to write generated document to {}", destinationPath, e);
+                recordFailure(htmlFile, e.getMessage());
+            }
+        } catch (RuntimeException ex) {
+            LOG.warn("Thymeleaf failed to process '{}'. Reason: '{}'", htmlFile, ex.getMessage());
+            recordFailure(htmlFile, ex.getMessage());
+        }
+    }
+
+    private void generateMarkdownPage(Path markdownFile, String markdownTemplateName, Path targetDir) {
+        try (OutputBuffer result = OutputBuffer.acquire()) {
+            String cacheKey = pageCache.pageKey(markdownFile, markdownTemplateName);
+            if (!pageCache.load(cacheKey, result)) {
+
+                // Process markdown
+                MarkdownProcessor.Result mdResult = markdownProcessor().process(markdownFile);
+
+                // Integrate into Thymeleaf template
+                Context context = getBaseTemplateContext();
+                context.setVariable("markdownContent", mdResult.getContentResult());
+                context.setVariable("markdownHead", mdResult.getHeadResult());
+                context.setVariable("markdownFileName", sourcePathOf(markdownFile));
+                render(markdownFile, markdownTemplateName, context, result);
+                pageCache.store(cacheKey, result);
+            }
+
+            // Write result to file
+            Path destinationPath = targetDir.resolve(markdownFile.getFileName().toString().replace(".md", ".html"));
+            writeDocument(destinationPath, result);
+            siteSearchIndex.indexPage(destinationPath, result);
+            recordOutput();
+            recordDocument(destinationPath);
+        } catch (IOException e) {
+            LOG.error("Failed to generate document from markdown '{}': [{}]", markdownFile, e.getMessage());
+            recordFailure(markdownFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Brings the index of all markdown documents up to date, which is then
+     * available to all templates.
+     */
+    private void updateContentIndex(BuildExecutor executor) throws IOException {
+        Path contentIndexFile = cacheDirectoryPath.resolve(CONTENT_INDEX_FILE_NAME);
+        ContentIndex previousContentIndex = contentIndex != null ? contentIndex : ContentIndex.load(contentIndexFile);
+
+        List<Path> markdownFiles = new ArrayList<>();
+        List<String> collectionDirs = new ArrayList<>();
+        collectMarkdownFiles(sourceDirectoryPath, markdownFiles, collectionDirs);
+        contentIndex = previousContentIndex.update(sourceDirectoryPath, markdownFiles, executor);
+        collectionDirectories = collectionDirs;
+
+        if (contentIndex != previousContentIndex || Files.notExists(contentIndexFile)) {
+            LOG.debug("Storing content index of {} markdown documents", contentIndex.size());
+            contentIndex.store(contentIndexFile);
+        }
+
+        updateTemplateVariables();
+    }
+
+    /**
+     * Brings the variables available to all templates up to date, reading data files again
+     * if they've changed. The variables are immutable and shared by all pages of a build.
+     */
+    private void updateTemplateVariables() throws IOException {
+        siteData = siteData.update(sourceDirectoryPath.resolve(SiteData.DIRECTORY_NAME));
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("year", LocalDateTime.now().get(ChronoField.YEAR));
+        variables.put("contentIndex", contentIndex);
+        variables.put("data", siteData.getValues());
+        templateVariables = Collections.unmodifiableMap(variables);
+    }
+
+    /**
+     * Collects the markdown files that are turned into documents, i.e. the ones sitting
+     * next to a markdown template, as well as the directories that are markdown collections.
+     */
+    private void collectMarkdownFiles(Path dir, List<Path> markdownFiles, List<String> collectionDirs)
+            throws IOException {
+        if (Files.exists(dir.resolve(CONVENTIONAL_MARKDOWN_TEMPLATE_NAME))) {
+            try (DirectoryStream<Path> markdownFilesStream = Files.newDirectoryStream(dir, markdownFilter)) {
+                markdownFilesStream.forEach(markdownFiles::add);
             }
+            if (Files.exists(dir.resolve(CollectionGenerator.LIST_TEMPLATE_NAME))) {
+                collectionDirs.add(sourceDirectoryPath.relativize(dir).toString().replace('\\', '/'));
+            }
+        }
+
+        try (DirectoryStream<Path> subDirStream = Files.newDirectoryStream(dir, sourceSubDirFilter)) {
+            for (Path subDir : subDirStream) {
+                collectMarkdownFiles(subDir, markdownFiles, collectionDirs);
+            }
+        }
+    }
+
+    /**
+     * Generates the listing pages and feeds of markdown collections that are affected
+     * by changes since the previous build.
+     */
+    private void generateCollections(BuildExecutor executor) throws IOException, GenerationException {
+        siteCollections.generate(settings, contentIndex, collectionDirectories, siteData.getDigest(), executor);
+    }
+
+    private void renderListingPage(Path templateFile, Map<String, Object> variables, Path destinationFile)
+            throws IOException {
+        Context context = getBaseTemplateContext();
+        context.setVariables(variables);
+        try (OutputBuffer result = OutputBuffer.acquire()) {
+            render(destinationFile, templateNameOf(templateFile), context, result);
+
+            Files.createDirectories(destinationFile.getParent());
+            writeDocument(destinationFile, result);
         }
+        recordDocument(destinationFile);
     }
 
+    /**
+     * Renders the given template into the given buffer. If HTML minification is enabled,
+     * the output is minified while it's being written by the template engine.
+     *
+     * @param page the page being rendered, which its rendering is attributed to when profiling
+     */
+    private void render(Path page, String templateName, Context context, OutputBuffer output) {
+        Writer outputWriter = output.newWriter();
+        boolean shouldMinifyHtml = Boolean.parseBoolean(settings.getProperty(SETTING_MINIFY_HTML));
+        try (Writer writer = shouldMinifyHtml ? new HtmlMinifier(outputWriter) : outputWriter) {
+            if (renderProfiler != null) {
+                var span = renderProfiler.startPage(page, templateName);
+                try {
+                    templateEngine().process(templateName, context, writer);
+                    writer.flush();
+                } finally {
+                    span.close();
+                }
+            } else {
+                templateEngine().process(templateName, context, writer);
+            }
+        } catch (IOException e) {
+
+            // Note: Can't really happen since everything is written to a buffer in memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a generated document unless its file has the very same content already. This
+     * saves writing pages that haven't changed since the previous build.
+     */
+    private void writeDocument(Path destinationPath, OutputBuffer document) throws IOException {
+        boolean written;
+        Map<String, String> substitutes = assetFingerprinting.getSubstitutes();
+        if (this.shouldFingerprintAssets && substitutes != null) {
+
+            // Note: The file has fingerprinted references already, so the document is compared
+            // after its references have been replaced the same way. Documents with images yet to
+            // be made responsive are left as they are since their references must not be replaced
+            // before that.
+            String html = document.toString();
+            if (html.contains(ResponsiveImages.MARKER_ATTR_NAME)) {
+                written = document.writeTo(destinationPath);
+            } else {
+                try (var replaced = OutputBuffer.acquire(); Writer writer = replaced.newWriter()) {
+                    var hasReplaced = AssetReferences.replaceAssetsReferences(html, destinationPath,
+                            destinationDirectoryPath, substitutes, settings, writer);
+                    writer.flush();
+                    written = hasReplaced ? replaced.writeTo(destinationPath) : document.writeTo(destinationPath);
+                }
+            }
+        } else {
+            written = document.writeTo(destinationPath);
+        }
+
+        if (!written) {
+            LOG.trace("Not writing '{}' since it hasn't changed", destinationPath);
+        }
+    }
+
+    /**
+     * @return a context holding the variables shared by all pages, which page-specific variables can be added to
+     */
     private Context getBaseTemplateContext() {
         Context context = new Context();
-        context.setVariable("year", LocalDateTime.now().get(ChronoField.YEAR));
+        context.setVariables(templateVariables);
         return context;
     }
 
@@ -421,7 +1216,7 @@ public class SiteGenerator {
      */
     private void buildCrawlFiles() {
         String sitemapFileName = "sitemap.xml";
-        String baseUrl = settings.getProperty("baseUrl");
+        String baseUrl = settings.getProperty(SETTING_BASE_URL);
 
         boolean noSitemapFileInSourceDir = !Files.exists(sourceDirectoryPath.resolve(sitemapFileName));
         boolean baseSiteUrlIsSet = !StringUtils.isBlank(baseUrl);
@@ -484,7 +1279,118 @@ public class SiteGenerator {
         }
     }
 
-    private void purgeUnusedCssInAllStylesheetsIfEnabled() throws IOException, GenerationException {
+    /**
+     * Checks internal links and asset references of the generated site and fails
+     * the build if any of them is broken.
+     */
+    private void checkLinksIfEnabled() throws IOException, GenerationException {
+        if (this.shouldCheckLinks) {
+            LOG.info("Checking links and asset references");
+            LinkChecker.Report report;
+            try (var executor = newBuildExecutor()) {
+                report = LinkChecker.check(destinationDirectoryPath, settings.getProperty(SETTING_BASE_URL), executor);
+            }
+
+            Path reportFile = reportDirectory().resolve("link-check-report.json");
+            report.writeTo(reportFile);
+            report.getBrokenReferences().forEach(brokenReference -> LOG.warn("Broken reference {}", brokenReference));
+            LOG.info("Checked {} references in {} pages. Find the report in '{}'", report.getReferenceCount(),
+                    report.getPageCount(), reportFile);
+
+            if (!report.getBrokenReferences().isEmpty()) {
+                throw new GenerationException(String.format("Abort build because %d broken references were found.",
+                        report.getBrokenReferences().size()));
+            }
+        }
+    }
+
+    /**
+     * Lists all files of the result along with their hashes, so that deploying the site only
+     * needs to transfer the files that have changed. See {@link OutputSync}.
+     */
+    private void writeOutputManifest() throws IOException {
+        Path manifestFile = destinationDirectoryPath.resolve(OutputManifest.FILE_NAME);
+        OutputManifest previousManifest = null;
+        if (Files.exists(manifestFile)) {
+            try {
+                previousManifest = OutputManifest.read(manifestFile);
+            } catch (IOException e) {
+                LOG.debug("Not reusing hashes of previous output manifest. Reason: '{}'", e.getMessage());
+            }
+        }
+        OutputManifest.create(destinationDirectoryPath, previousManifest).writeTo(manifestFile);
+    }
+
+    /**
+     * Reports which templates the time and memory it took to render the pages went to.
+     */
+    private void writeRenderProfileIfEnabled() throws IOException {
+        if (renderProfiler != null) {
+            renderProfiler.writeReport(reportDirectory().resolve(PROFILE_DIR_NAME));
+        }
+    }
+
+    /**
+     * @return the directory reports of a build are written to, which is neither part of the site
+     * nor of its sources. Defaults to a sibling of the destination directory, e.g. `site-reports`
+     * next to `site`.
+     */
+    private Path reportDirectory() {
+        var reportDirectory = settings.getProperty(SETTING_REPORT_DIRECTORY);
+        if (StringUtils.isBlank(reportDirectory)) {
+            var destination = destinationDirectoryPath.toAbsolutePath().normalize();
+            return destination.resolveSibling(destination.getFileName() + REPORT_DIR_SUFFIX);
+        }
+        return sourceDirectoryPath.resolve(reportDirectory.trim());
+    }
+
+    private void generateResponsiveImagesIfEnabled(BuildExecutor executor) throws IOException, GenerationException {
+        generateResponsiveImagesIfEnabled(null, executor);
+    }
+
+    /**
+     * @param documents the documents to look for marked images in or null to look in all of them
+     */
+    private void generateResponsiveImagesIfEnabled(Collection<Path> documents, BuildExecutor executor)
+            throws IOException, GenerationException {
+        var widthsSetting = this.settings.getProperty(SETTING_RESPONSIVE_IMAGE_WIDTHS);
+        if (StringUtils.isBlank(widthsSetting)) {
+            return;
+        }
+
+        List<Integer> widths;
+        float quality;
+        try {
+            widths = ResponsiveImages.parseWidths(widthsSetting);
+            quality = Float.parseFloat(this.settings.getProperty(SETTING_RESPONSIVE_IMAGE_QUALITY, "0.8"));
+        } catch (IllegalArgumentException e) {
+            throw new GenerationException(String.format("Abort build because settings '%s' or '%s' are invalid.",
+                    SETTING_RESPONSIVE_IMAGE_WIDTHS, SETTING_RESPONSIVE_IMAGE_QUALITY), e);
+        }
+        if (quality <= 0 || quality > 1) {
+            throw new GenerationException(String.format("Abort build because setting '%s' must be greater " +
+                    "than 0 and less than or equal to 1.", SETTING_RESPONSIVE_IMAGE_QUALITY));
+        }
+
+        if (documents == null) {
+            ResponsiveImages.generateInDir(destinationDirectoryPath, widths, quality,
+                    cacheDirectoryPath.resolve("images"), executor);
+        } else {
+            ResponsiveImages.generateInDocs(destinationDirectoryPath, documents, widths, quality,
+                    cacheDirectoryPath.resolve("images"), executor);
+        }
+    }
+
+    private void purgeUnusedCssInAllStylesheetsIfEnabled(BuildExecutor executor)
+            throws IOException, GenerationException {
+        purgeUnusedCssIfEnabled(null, executor);
+    }
+
+    /**
+     * @param files the files to purge if they're stylesheets or null to purge all stylesheets
+     */
+    private void purgeUnusedCssIfEnabled(Collection<Path> files, BuildExecutor executor)
+            throws IOException, GenerationException {
         if (this.shouldPurgeUnusedCss) {
 
             // Check if purifycss is configured properly
@@ -505,26 +1411,50 @@ public class SiteGenerator {
             }
 
             // Trigger purging at /css root dir
-            purgeUnusedCSSInDir(destinationDirectoryPath.resolve("css"), nodejsHome, purifycssHome, purifycssWhitelist);
+            var stylesheetDir = stylesheetDirectory();
+            try (var tasks = executor.newTaskGroup()) {
+                if (files == null) {
+                    purgeUnusedCSSInDir(stylesheetDir, nodejsHome, purifycssHome, purifycssWhitelist, tasks);
+                } else {
+                    for (Path file : files) {
+                        if (file.startsWith(stylesheetDir) && CSS_FILE_FILTER.accept(file)) {
+                            tasks.forkCpuTask(() -> {
+                                purgeUnusedCSS(file, nodejsHome, purifycssHome, purifycssWhitelist);
+                                return null;
+                            });
+                        }
+                    }
+                }
+                tasks.join();
+            }
         }
     }
 
     private void purgeUnusedCSSInDir(final Path dir, final String nodejsHome, final String purifycssHome,
-                                     final String purifycssWhitelist)
+                                     final String purifycssWhitelist, final BuildExecutor.TaskGroup tasks)
             throws IOException {
 
-        // Build filter of CSS files excluding fingerprinted ones
-        var cssFileRegex = "\\.css$";
-        var fingerprintedCssFileRegex = "\\.[0123456789abcdef]{40}" + cssFileRegex; // TODO: DRY
-        var cssFilePattern = Pattern.compile(cssFileRegex, Pattern.CASE_INSENSITIVE);
-        var fingerprintedCssFilePattern = Pattern.compile(fingerprintedCssFileRegex, Pattern.CASE_INSENSITIVE);
-        DirectoryStream.Filter<Path> filter =
-                entry -> {
-                    String fileName = entry.toFile().getName();
-                    return Files.isRegularFile(entry)
-                            && cssFilePattern.matcher(fileName).find()
-                            && !fingerprintedCssFilePattern.matcher(fileName).find();
-                };
+        // Process each CSS file
+        try (var cssFiles = Files.newDirectoryStream(dir, CSS_FILE_FILTER)) {
+            for (Path cssFile : cssFiles) {
+                tasks.forkCpuTask(() -> {
+                    purgeUnusedCSS(cssFile, nodejsHome, purifycssHome, purifycssWhitelist);
+                    return null;
+                });
+            }
+        }
+
+        // Recurse into sub directories
+        try (DirectoryStream<Path> subDirs = FileFilters.subDirStream(dir)) {
+            for (Path subDir : subDirs) {
+                purgeUnusedCSSInDir(subDir, nodejsHome, purifycssHome, purifycssWhitelist, tasks);
+            }
+        }
+    }
+
+    private void purgeUnusedCSS(final Path cssFile, final String nodejsHome, final String purifycssHome,
+                                final String purifycssWhitelist) throws IOException {
+        LOG.debug("Purging unused CSS in '{}'", cssFile);
 
         // Prepare process
         var pb = new ProcessBuilder();
@@ -532,104 +1462,153 @@ public class SiteGenerator {
         pb.redirectOutput(ProcessBuilder.Redirect.INHERIT); // Redirect stdout to parent process
         pb.redirectError(ProcessBuilder.Redirect.INHERIT); // Redirect stderr to parent process
 
-        // Process each CSS file
-        try (var cssFiles = Files.newDirectoryStream(dir, filter)) {
-            for (Path cssFile : cssFiles) {
-                LOG.debug("Purging unused CSS in '{}'", cssFile);
-
-                var purifiedCssFileName = cssFile.getFileName().toString() + ".purified";
-                var purifiedCssFile = dir.resolve(purifiedCssFileName);
-
-                // Adapt command to css file currently in process
-                //
-                // Isn't this insecure?
-                //
-                // Because C-3PO passes a user-controlled setting
-                // as an argument to purifycss. What if a website creator puts a malicious
-                // argument into the settings file, other people clone the website and
-                // run C-3PO themselves and suddenly the malicious argument (e.g. `rm /`)
-                // is executed on their computer? This should not be a problem because
-                // Java's ProcessBuilder does not start a new process via a shell, but instead
-                // uses the system calls `fork` and `exec` to do so. And `exec` simply forwards
-                // arguments to the binary that is going to be executed. In other words, `exec`
-                // does not have the capability like a shell to run multiple processes with one
-                // command (e.g. `vagrant halt && exit`).
-                //
-                // A few notes on purifycss and its usage herein
-                //   - Why purifycss at all? Because it has the best CLI interface.
-                //   - Pass absolute paths to ensure they're valid in context of calling purifycss.
-                //   - The glob pattern for `content` takes care that html files in project root and any sub
-                //     directories are considered. This has been tested thoroughly by hand because automating
-                //     this test won't be worth my time.
-                //   - If given multiple files, purifycss' CLI will distinct their type by file extension.
-                pb.command(Paths.get(purifycssHome, "purifycss").toString(),
-                        cssFile.toString(), // The CSS file(s), multiple can be passed
-                        destinationDirectoryPath.toAbsolutePath().toString() + "/**/*html", // Content
-                        "-w", // -w ... whitelist
-                        purifycssWhitelist, // list of whitelisted selectors
-                        "-mir", // -m ... minimize; -i ... log compression info; -r ... log rejected CSS rules
-                        "-o", // -o ... output path switch
-                        purifiedCssFile.toString() // output path the purified version is written to
-                );
-
-                // Start external process
-                var process = pb.start();
-                try {
-                    var exitCode = process.waitFor();
-                    if (exitCode != 0) {
-                        LOG.warn("Caution! External process purging unused CSS " +
-                                "terminated with non-zero exit code " + exitCode);
-                    }
-
-                    // Replace original file with purified one. Sometimes the developer wants
-                    // to keep unused CSS in order to be able to use it later in the browser
-                    // dev tools.
-                    Files.delete(cssFile);
-                    Files.move(purifiedCssFile, cssFile);
-                } catch (InterruptedException e) {
-                    LOG.error("Failed to wait for external process purging unused CSS", e);
-                }
+        var purifiedCssFileName = cssFile.getFileName().toString() + ".purified";
+        var purifiedCssFile = cssFile.resolveSibling(purifiedCssFileName);
+
+        // Adapt command to css file currently in process
+        //
+        // Isn't this insecure?
+        //
+        // Because C-3PO passes a user-controlled setting
+        // as an argument to purifycss. What if a website creator puts a malicious
+        // argument into the settings file, other people clone the website and
+        // run C-3PO themselves and suddenly the malicious argument (e.g. `rm /`)
+        // is executed on their computer? This should not be a problem because
+        // Java's ProcessBuilder does not start a new process via a shell, but instead
+        // uses the system calls `fork` and `exec` to do so. And `exec` simply forwards
+        // arguments to the binary that is going to be executed. In other words, `exec`
+        // does not have the capability like a shell to run multiple processes with one
+        // command (e.g. `vagrant halt && exit`).
+        //
+        // A few notes on purifycss and its usage herein
+        //   - Why purifycss at all? Because it has the best CLI interface.
+        //   - Pass absolute paths to ensure they're valid in context of calling purifycss.
+        //   - The glob pattern for `content` takes care that html files in project root and any sub
+        //     directories are considered. This has been tested thoroughly by hand because automating
+        //     this test won't be worth my time.
+        //   - If given multiple files, purifycss' CLI will distinct their type by file extension.
+        pb.command(Paths.get(purifycssHome, "purifycss").toString(),
+                cssFile.toString(), // The CSS file(s), multiple can be passed
+                destinationDirectoryPath.toAbsolutePath().toString() + "/**/*html", // Content
+                "-w", // -w ... whitelist
+                purifycssWhitelist, // list of whitelisted selectors
+                "-mir", // -m ... minimize; -i ... log compression info; -r ... log rejected CSS rules
+                "-o", // -o ... output path switch
+                purifiedCssFile.toString() // output path the purified version is written to
+        );
+
+        // Start external process
+        var process = pb.start();
+        try {
+            var exitCode = process.waitFor();
+            if (exitCode != 0) {
+                LOG.warn("Caution! External process purging unused CSS " +
+                        "terminated with non-zero exit code " + exitCode);
             }
+
+            // Replace original file with purified one. Sometimes the developer wants
+            // to keep unused CSS in order to be able to use it later in the browser
+            // dev tools.
+            Files.delete(cssFile);
+            Files.move(purifiedCssFile, cssFile);
+        } catch (InterruptedException e) {
+            LOG.error("Failed to wait for external process purging unused CSS", e);
         }
+    }
 
-        // Recurse into sub directories
-        try (DirectoryStream<Path> subDirs = FileFilters.subDirStream(dir)) {
-            for (Path subDir : subDirs) {
-                purgeUnusedCSSInDir(subDir, nodejsHome, purifycssHome, purifycssWhitelist);
-            }
+    private void fingerprintAssetsIfEnabled(BuildExecutor executor) throws IOException {
+        if (this.shouldFingerprintAssets) {
+            assetFingerprinting.fingerprintAll(settings, executor);
         }
     }
 
-    private void fingerprintAssetsIfEnabled() throws IOException {
+    /**
+     * Fingerprints just the given assets and replaces references in the given documents as well
+     * as in those still referencing an outdated fingerprinted version of the assets.
+     */
+    private void fingerprintAssetsIfEnabled(Collection<Path> assets, Collection<Path> documents,
+                                            BuildExecutor executor) throws IOException {
         if (this.shouldFingerprintAssets) {
+            assetFingerprinting.fingerprint(assets, documents, settings, executor);
+        }
+    }
 
-            var assetSubstitutes = new HashMap<String, String>();
-            try {
-                var stylesheetDir = destinationDirectoryPath.resolve("css");
-                var jsDir = destinationDirectoryPath.resolve("js");
-                var imgDir = destinationDirectoryPath.resolve("img");
-                assetSubstitutes.putAll(Fingerprinter.fingerprintStylesheets(stylesheetDir, destinationDirectoryPath));
-                assetSubstitutes.putAll(Fingerprinter.fingerprintJsFiles(jsDir, destinationDirectoryPath));
-                assetSubstitutes.putAll(Fingerprinter.fingerprintImageFiles(imgDir, destinationDirectoryPath));
-            } catch (NoSuchAlgorithmException e) {
-                LOG.warn("Failed to fingerprint assets. Beware that your cache busting may not work.");
+    private Path stylesheetDirectory() {
+        return destinationDirectoryPath.resolve("css");
+    }
+
+    private TemplateEngine templateEngine() {
+        TemplateEngine templateEngine = this.templateEngine;
+        if (templateEngine == null) {
+            synchronized (this) {
+                templateEngine = this.templateEngine;
+                if (templateEngine == null) {
+                    templateEngine = setupTemplateEngine(sourceDirectoryPath);
+                    this.templateEngine = templateEngine;
+                }
             }
+        }
+        return templateEngine;
+    }
 
+    private MarkdownProcessor markdownProcessor() {
+        MarkdownProcessor markdownProcessor = this.markdownProcessor;
+        if (markdownProcessor == null) {
+            synchronized (this) {
+                markdownProcessor = this.markdownProcessor;
+                if (markdownProcessor == null) {
+                    markdownProcessor = MarkdownProcessor.getInstance();
+                    this.markdownProcessor = markdownProcessor;
+                }
+            }
+        }
+        return markdownProcessor;
+    }
 
-            // Replace references
-            AssetReferences.replaceAssetsReferencesInDir(destinationDirectoryPath, assetSubstitutes, settings);
+    private SassProcessor sassProcessor() {
+        SassProcessor sassProcessor = this.sassProcessor;
+        if (sassProcessor == null) {
+            synchronized (this) {
+                sassProcessor = this.sassProcessor;
+                if (sassProcessor == null) {
+                    sassProcessor = sharedResources != null
+                            ? sharedResources.getSassProcessor()
+                            : SassProcessor.getInstance();
+                    this.sassProcessor = sassProcessor;
+                }
+            }
         }
+        return sassProcessor;
+    }
+
+    private BuildExecutor newBuildExecutor() {
+        var executor = sharedResources != null
+                ? sharedResources.newBuildExecutor()
+                : BuildExecutor.create(executionMode);
+        return executor.cancelledWhen(buildCancellation);
     }
 
     private TemplateEngine setupTemplateEngine(Path sourceDirectoryPath) {
         TemplateEngine templateEngine = new TemplateEngine();
+        if (renderProfiler != null) {
+            templateEngine.setTemplateModeHandlers(renderProfiler.profileParsing(sharedResources != null
+                    ? sharedResources.getTemplateModeHandlers()
+                    : StandardTemplateModeHandlers.ALL_TEMPLATE_MODE_HANDLERS));
+        } else if (sharedResources != null) {
+            templateEngine.setTemplateModeHandlers(sharedResources.getTemplateModeHandlers());
+        }
 
         // Note: we need two FileTemplateResolvers
         // one that is able to deal with absolute path template names like 'D:/data/dev/blog/index'
         // and one that is able to resolve relative path template names like '_layouts/main-layout'
         templateEngine.addTemplateResolver(newTemplateResolver(sourceDirectoryPath.toAbsolutePath()));
         templateEngine.addTemplateResolver(newTemplateResolver());
-        templateEngine.addDialect(new LayoutDialect(new EnhancedGroupingStrategy()));
+        if (renderProfiler != null) {
+            templateEngine.setDialect(renderProfiler.newStandardDialect());
+            templateEngine.addDialect(renderProfiler.newLayoutDialect(new EnhancedGroupingStrategy(renderProfiler)));
+        } else {
+            templateEngine.addDialect(new LayoutDialect(new EnhancedGroupingStrategy(null)));
+        }
         return templateEngine;
     }
 
@@ -657,6 +1636,7 @@ public class SiteGenerator {
         // System standard ignorables
         ignorables.add(C_3PO_IGNORE_FILE_NAME);
         ignorables.add(C_3PO_SETTINGS_FILE_NAME);
+        ignorables.add(C_3PO_CACHE_DIR_NAME);
 
         // User-specific ignorables
         List<String> ignorablesFromFile = Ignorables.readCompleteIgnorables(baseDirectory.resolve(C_3PO_IGNORE_FILE_NAME));
@@ -665,6 +1645,21 @@ public class SiteGenerator {
         return ignorables;
     }
 
+    /**
+     * Reads result ignorables from ignore file and adds C-3PO standard directories.
+     */
+    private static List<String> getResultIgnorables(Path ignorablesFile) {
+        List<String> ignorables = new ArrayList<>();
+
+        // System standard ignorables
+        ignorables.add(SiteData.DIRECTORY_NAME);
+
+        // User-specific ignorables
+        ignorables.addAll(Ignorables.readResultIgnorables(ignorablesFile));
+
+        return ignorables;
+    }
+
     private boolean isCompleteIgnorable(Path path) throws IOException {
         return completeIgnorablesMatcher.matches(path)
                 || Files.exists(destinationDirectoryPath) && Files.exists(path) && Files.isSameFile(path, destinationDirectoryPath);
@@ -677,7 +1672,7 @@ public class SiteGenerator {
 
     private void updateIgnorables(Path ignorablesFile) {
         List<String> newCompleteIgnorables = getCompleteIgnorables(ignorablesFile);
-        List<String> newResultIgnorables = Ignorables.readResultIgnorables(ignorablesFile);
+        List<String> newResultIgnorables = getResultIgnorables(ignorablesFile);
 
         cleanOutputFromAddedIgnorables(newCompleteIgnorables, completeIgnorablesMatcher.getGlobPatterns());
         cleanOutputFromAddedIgnorables(newResultIgnorables, resultIgnorablesMatcher.getGlobPatterns());
@@ -760,6 +1755,13 @@ public class SiteGenerator {
         });
     }
 
+    /**
+     * Forks the operations of a build into a task group.
+     */
+    private interface TaskForker {
+        void fork(BuildExecutor.TaskGroup tasks) throws IOException;
+    }
+
     /**
      * Enhancing / fixing Layout Dialect's GroupingStrategy which doesn't know about
      * icon elements in &lt;head&gt;.
@@ -771,13 +1773,27 @@ public class SiteGenerator {
      */
     private static class EnhancedGroupingStrategy implements SortingStrategy {
         private final GroupingStrategy delegate;
+        private final RenderProfiler renderProfiler;
 
-        EnhancedGroupingStrategy() {
+        EnhancedGroupingStrategy(RenderProfiler renderProfiler) {
             this.delegate = new GroupingStrategy();
+            this.renderProfiler = renderProfiler;
         }
 
         @Override
         public int findPositionForContent(List<Node> decoratorNodes, Node contentNode) {
+            if (renderProfiler == null) {
+                return findPosition(decoratorNodes, contentNode);
+            }
+            var span = renderProfiler.startNested("(head grouping)");
+            try {
+                return findPosition(decoratorNodes, contentNode);
+            } finally {
+                span.close();
+            }
+        }
+
+        private int findPosition(List<Node> decoratorNodes, Node contentNode) {
             if (contentNode instanceof Element
                     && ((Element) contentNode).getNormalizedName().equals("base")) {
                 return 0;
@@ -0,0 +1,127 @@
+package org.c_3po.generation;
+
+import org.c_3po.generation.search.SearchIndex;
+import org.c_3po.io.OutputBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Keeps the search index of a site up to date across builds, if the site's settings ask for one.
+ * Pages are indexed while they're still in memory, so that they don't have to be read and parsed
+ * again later on. Pages excluded from the sitemap are excluded from search as well.
+ */
+final class SiteSearchIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(SiteSearchIndex.class);
+
+    private final Path sourceDirectoryPath;
+    private final Path destinationDirectoryPath;
+    private final Path cacheFile;
+
+    // Note: Null unless the settings ask for a search index
+    private volatile SearchIndex searchIndex;
+    private volatile IgnorablesMatcher ignorablesMatcher;
+
+    private SiteSearchIndex(Path sourceDirectoryPath, Path destinationDirectoryPath, Path cacheFile) {
+        this.sourceDirectoryPath = sourceDirectoryPath;
+        this.destinationDirectoryPath = destinationDirectoryPath;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * @param cacheFile the file the index is kept in between builds
+     */
+    static SiteSearchIndex create(Path sourceDirectoryPath, Path destinationDirectoryPath, Path cacheFile) {
+        return new SiteSearchIndex(sourceDirectoryPath, destinationDirectoryPath, cacheFile);
+    }
+
+    /**
+     * Gets the index ready for the pages of a build, loading it from the cache if it hasn't
+     * been used before.
+     */
+    void prepare(Properties settings) {
+        if (Boolean.parseBoolean(settings.getProperty(SiteGenerator.SETTING_GENERATE_SEARCH_INDEX))) {
+            if (searchIndex == null) {
+                searchIndex = SearchIndex.load(cacheFile);
+            }
+
+            // Note: Read on each build since pages excluded from the sitemap are excluded from search as well
+            var ignoreFile = sourceDirectoryPath.resolve(SiteGenerator.C_3PO_IGNORE_FILE_NAME);
+            ignorablesMatcher = IgnorablesMatcher.from(destinationDirectoryPath,
+                    Ignorables.readSitemapIgnorables(ignoreFile));
+        }
+    }
+
+    /**
+     * Forgets the index, e.g. once the settings have changed, so that the next build loads it again.
+     */
+    void reset() {
+        searchIndex = null;
+    }
+
+    /**
+     * Adds a page to the index while it's still in memory.
+     */
+    void indexPage(Path destinationPath, OutputBuffer html) {
+        if (searchIndex != null) {
+            indexPage(destinationPath, html.toString());
+        }
+    }
+
+    private void indexPage(Path destinationPath, String html) {
+        SearchIndex searchIndex = this.searchIndex;
+        if (searchIndex != null) {
+            String url = destinationDirectoryPath.relativize(destinationPath).toString().replace('\\', '/');
+            try {
+                if (ignorablesMatcher.matches(destinationPath)) {
+                    searchIndex.removePage(url);
+                } else {
+                    searchIndex.addPage(url, html);
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to add '{}' to the search index. Reason: '{}'", url, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds all pages in the destination directory that were rendered from a page or markdown
+     * document to the index and writes it. Used when pages have been rendered by other
+     * processes. Like in a regular build, listing pages of collections are not indexed.
+     */
+    void indexGeneratedPages(Properties settings) throws IOException {
+        prepare(settings);
+        if (searchIndex == null) {
+            return;
+        }
+
+        try (var files = Files.walk(destinationDirectoryPath)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || !file.getFileName().toString().endsWith(".html")) {
+                    continue;
+                }
+
+                Path sourceFile = sourceDirectoryPath.resolve(destinationDirectoryPath.relativize(file).toString());
+                Path markdownFile = sourceFile.resolveSibling(sourceFile.getFileName().toString()
+                        .replace(".html", ".md"));
+                if (Files.isRegularFile(sourceFile) || Files.isRegularFile(markdownFile)) {
+                    indexPage(file, Files.readString(file));
+                }
+            }
+        }
+        write();
+    }
+
+    /**
+     * Writes the index into the destination directory if there is one.
+     */
+    void write() throws IOException {
+        if (searchIndex != null) {
+            searchIndex.write(destinationDirectoryPath, cacheFile);
+        }
+    }
+}
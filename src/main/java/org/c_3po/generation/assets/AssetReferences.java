@@ -1,51 +1,107 @@
 package org.c_3po.generation.assets;
 
+import org.c_3po.generation.BuildExecutor;
 import org.c_3po.io.FileFilters;
-import org.jsoup.Jsoup;
+import org.c_3po.io.OutputBuffer;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
 public class AssetReferences {
     private static final Logger LOG = LoggerFactory.getLogger(AssetReferences.class);
     private static final Pattern FINGERPRINTED_ASSET_URI_PATTERN =
-            Pattern.compile("^(.*)\\.[0123456789abcdef]{40}(\\.css)$");
+            Pattern.compile("^(.*)\\.[0123456789abcdef]{40}(\\.[^./]+)$");
 
     /**
-     * Replaces asset references in the supplied {@link Jsoup} document.
+     * Replaces asset references in all HTML files found in supplied dir and sub dirs.
      */
-    public static void replaceAssetsReferencesInDoc(Document doc, URI docURI, Map<String, String> assetSubstitutes,
-                                                    Properties generatorSettings) {
-        var websiteBaseURI = URI.create(generatorSettings.getProperty("baseUrl"));
-        var docBaseURI = determineDocBaseURI(docURI, doc);
-
-        replaceStylesheetReferences(doc, websiteBaseURI, docBaseURI, assetSubstitutes);
-        replaceJSReferences(doc, websiteBaseURI, docBaseURI, assetSubstitutes);
-        replaceImageReferences(doc, websiteBaseURI, docBaseURI, assetSubstitutes);
+    public static void replaceAssetsReferencesInDir(Path dir, Map<String, String> assetSubstitutes,
+                                                    Properties generatorSettings) throws IOException {
+        try (var executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)) {
+            replaceAssetsReferencesInDir(dir, assetSubstitutes, generatorSettings, executor);
+        }
     }
 
     /**
      * Replaces asset references in all HTML files found in supplied dir and sub dirs.
+     * Each HTML file is processed as a separate task of the given executor.
      */
     public static void replaceAssetsReferencesInDir(Path dir, Map<String, String> assetSubstitutes,
-                                                    Properties generatorSettings) throws IOException {
+                                                    Properties generatorSettings, BuildExecutor executor)
+            throws IOException {
 
         // Note: Right now, param assetSubstitutes holds asset refs of any kind.
         // If there's ever the need to speed things up, grouping assetSubstitutes
         // by asset type (i.e. image, js, css, etc.) could be an option.
         // But at the moment it's YAGNI.
-        replaceAssetsReferencesInDirImpl(dir, dir, assetSubstitutes, generatorSettings);
+        try (var tasks = executor.newTaskGroup()) {
+            replaceAssetsReferencesInDirImpl(dir, dir, assetSubstitutes, generatorSettings, tasks);
+            tasks.join();
+        }
+    }
+
+    /**
+     * Replaces asset references in the given HTML files only, e.g. the ones just generated.
+     * Each HTML file is processed as a separate task of the given executor.
+     *
+     * @param rootDir the root directory of the generated site containing the HTML files
+     */
+    public static void replaceAssetsReferencesInFiles(Path rootDir, Collection<Path> htmlFiles,
+                                                      Map<String, String> assetSubstitutes,
+                                                      Properties generatorSettings, BuildExecutor executor)
+            throws IOException {
+        try (var tasks = executor.newTaskGroup()) {
+            for (Path htmlFile : htmlFiles) {
+                if (Files.isRegularFile(htmlFile)) {
+                    tasks.forkFileTask(() -> {
+                        replaceAssetsReferencesInFile(htmlFile, rootDir, assetSubstitutes, generatorSettings);
+                        return null;
+                    });
+                }
+            }
+            tasks.join();
+        }
+    }
+
+    /**
+     * Collects the HTML files in the supplied dir and sub dirs mentioning any of the given
+     * file names, e.g. the ones of outdated fingerprinted assets.
+     *
+     * Note: A plain text search is way cheaper than parsing every document. False positives
+     * (e.g. a file name mentioned in a text) merely cause a document to be processed in vain.
+     */
+    public static List<Path> findDocsMentioning(Path dir, Collection<String> fileNames) throws IOException {
+        var docs = new ArrayList<Path>();
+        if (fileNames.isEmpty() || !Files.isDirectory(dir)) {
+            return docs;
+        }
+
+        try (var files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (FileFilters.htmlFilter.accept(file)) {
+                    var content = Files.readString(file);
+                    if (fileNames.stream().anyMatch(content::contains)) {
+                        docs.add(file);
+                    }
+                }
+            }
+        }
+        return docs;
     }
 
     /**
@@ -59,80 +115,126 @@ public class AssetReferences {
      * @param rootDir root directory of the site needed to calculate
      *                the path of HTML files in order to properly resolve
      *                relative asset refs
+     * @param tasks the task group HTML files are processed in
      */
     private static void replaceAssetsReferencesInDirImpl(Path dir, Path rootDir, Map<String, String> assetSubstitutes,
-                                                         Properties generatorSettings) throws IOException {
+                                                         Properties generatorSettings, BuildExecutor.TaskGroup tasks)
+            throws IOException {
         // Replace references
         try (var htmlFiles = Files.newDirectoryStream(dir, FileFilters.htmlFilter)) {
             for (Path htmlFile : htmlFiles) {
-                Document doc = Jsoup.parse(htmlFile.toFile(), "UTF-8");
-                URI docURI = URI.create(rootDir.relativize(dir).resolve(htmlFile.getFileName()).toString());
-
-                LOG.debug(String.format("Replacing asset references in '%s'", htmlFile));
-                replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings);
-
-                Files.write(htmlFile, doc.outerHtml().getBytes());
+                tasks.forkFileTask(() -> {
+                    replaceAssetsReferencesInFile(htmlFile, rootDir, assetSubstitutes, generatorSettings);
+                    return null;
+                });
             }
         }
 
         // Replace refs in sub directories
         try (var subDirs = FileFilters.subDirStream(dir)) {
             for (var subDir : subDirs) {
-                replaceAssetsReferencesInDirImpl(subDir, rootDir, assetSubstitutes, generatorSettings);
+                replaceAssetsReferencesInDirImpl(subDir, rootDir, assetSubstitutes, generatorSettings, tasks);
             }
         }
     }
 
-    private static void replaceStylesheetReferences(Document doc, URI websiteBaseURI, URI docBaseURI,
-                                                    Map<String, String> stylesheetSubstitutes) {
-        // Note: According to https://html.spec.whatwg.org/#interactions-of-styling-and-scripting,
-        // `<link rel="stylesheet">` is the only way to load an external stylesheet.
-        var elements = doc.select("link[rel='stylesheet']");
-        replaceReferences(elements, "href", websiteBaseURI, docBaseURI, stylesheetSubstitutes);
+    /**
+     * Replaces asset references in the given HTML file by rewriting the affected attribute values
+     * in place. The rest of the markup is left exactly as it is and the file is only written if
+     * any reference has changed.
+     */
+    private static void replaceAssetsReferencesInFile(Path htmlFile, Path rootDir, Map<String, String> assetSubstitutes,
+                                                      Properties generatorSettings) throws IOException {
+        String html = Files.readString(htmlFile);
+
+        LOG.debug(String.format("Replacing asset references in '%s'", htmlFile));
+        try (var buffer = OutputBuffer.acquire(); Writer writer = buffer.newWriter()) {
+            var replaced = replaceAssetsReferences(html, htmlFile, rootDir, assetSubstitutes, generatorSettings,
+                    writer);
+            writer.flush();
+            if (replaced) {
+                buffer.writeTo(htmlFile);
+            }
+        }
     }
 
-    private static void replaceJSReferences(Document doc, URI websiteBaseURI, URI docBaseURI,
-                                            Map<String, String> substitutes) {
-        // Note: Quick research didn't reveal any other method of loading an
-        // external JavaScript file. And sites built with this generator
-        // don't use any other way.
-        var elements = doc.select("script[src]");
-        replaceReferences(elements, "src", websiteBaseURI, docBaseURI, substitutes);
+    /**
+     * Same as replacing asset references in an HTML file, but for markup that hasn't been written
+     * to its file yet, e.g. a page just rendered.
+     *
+     * @param htmlFile the file the markup is going to be written to
+     * @param rootDir the root directory of the generated site containing the HTML file
+     * @param out receives the markup, including the replaced references
+     * @return true if any reference has been replaced
+     */
+    public static boolean replaceAssetsReferences(CharSequence html, Path htmlFile, Path rootDir,
+                                                  Map<String, String> assetSubstitutes, Properties generatorSettings,
+                                                  Appendable out) throws IOException {
+        URI docURI = URI.create(rootDir.relativize(htmlFile).toString().replace('\\', '/'));
+        var websiteBaseURI = URI.create(generatorSettings.getProperty("baseUrl"));
+        var docBaseURI = determineDocBaseURI(docURI, html);
+        return HtmlAttributeRewriter.rewrite(html, out,
+                tag -> replaceReferencesInTag(tag, websiteBaseURI, docBaseURI, assetSubstitutes));
     }
 
-    private static void replaceImageReferences(Document doc, URI websiteBaseURI, URI docBaseURI,
-                                               Map<String, String> substitutes) {
-        // Note: Only those ways to embed an image in HTML are supported that
-        // are used right now by the sites built with C-3PO.
-
-        // Replace refs in standard `src` attributes
-        var elements = doc.select("img[src]");
-        replaceReferences(elements, "src", websiteBaseURI, docBaseURI, substitutes);
-
-        // Replace refs in `srcset` attributes
-        // Note: It's special cause it can include multiple refs.
-        // Therefore the generic method can't be used.
-        for (Element element : elements) {
-            if (element.hasAttr("srcset")) {
-                var srcsetAttr = element.attr("srcset");
-
-                var refs = HtmlSrcset.extractRefs(srcsetAttr);
-                for (String ref : refs) {
-                    var replacedRef = replaceReference(ref, websiteBaseURI, docBaseURI, substitutes);
-                    srcsetAttr = srcsetAttr.replace(ref, replacedRef);
+    /**
+     * Replaces the asset references of the given tag if it's one of the kinds of tags
+     * referencing stylesheets, scripts or images.
+     */
+    private static void replaceReferencesInTag(HtmlAttributeRewriter.StartTag tag, URI websiteBaseURI,
+                                               URI docBaseURI, Map<String, String> substitutes) {
+        switch (tag.getName()) {
+
+            // Note: According to https://html.spec.whatwg.org/#interactions-of-styling-and-scripting,
+            // `<link rel="stylesheet">` is the only way to load an external stylesheet.
+            case "link":
+                var rel = tag.attr("rel");
+                if (rel != null && rel.trim().equalsIgnoreCase("stylesheet")) {
+                    replaceReferenceInAttr(tag, "href", websiteBaseURI, docBaseURI, substitutes);
                 }
+                break;
+
+            // Note: Quick research didn't reveal any other method of loading an
+            // external JavaScript file. And sites built with this generator
+            // don't use any other way.
+            case "script":
+                replaceReferenceInAttr(tag, "src", websiteBaseURI, docBaseURI, substitutes);
+                break;
+
+            // Note: Only those ways to embed an image in HTML are supported that
+            // are used right now by the sites built with C-3PO.
+            case "img":
+                if (tag.hasAttr("src")) {
+                    replaceReferenceInAttr(tag, "src", websiteBaseURI, docBaseURI, substitutes);
+
+                    // Note: `srcset` is special cause it can include multiple refs
+                    if (tag.hasAttr("srcset")) {
+                        tag.replaceAttr("srcset",
+                                replaceSrcsetReferences(tag.attr("srcset"), websiteBaseURI, docBaseURI, substitutes));
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
 
-                element.attr("srcset", srcsetAttr);
-            }
+    private static void replaceReferenceInAttr(HtmlAttributeRewriter.StartTag tag, String refAttrName,
+                                               URI websiteBaseURI, URI docBaseURI, Map<String, String> substitutes) {
+        var assetRefValue = tag.attr(refAttrName);
+        if (assetRefValue != null) {
+            tag.replaceAttr(refAttrName, replaceReference(assetRefValue, websiteBaseURI, docBaseURI, substitutes));
         }
     }
 
-    private static void replaceReferences(Elements elements, String refAttrName, URI websiteBaseURI, URI docBaseURI,
-                                          Map<String, String> substitutes) {
-        for (Element element : elements) {
-            String assetRefValue = element.attr(refAttrName);
-            element.attr(refAttrName, replaceReference(assetRefValue, websiteBaseURI, docBaseURI, substitutes));
+    private static String replaceSrcsetReferences(String srcsetAttr, URI websiteBaseURI, URI docBaseURI,
+                                                  Map<String, String> substitutes) {
+        var refs = HtmlSrcset.extractRefs(srcsetAttr);
+        for (String ref : refs) {
+            var replacedRef = replaceReference(ref, websiteBaseURI, docBaseURI, substitutes);
+            srcsetAttr = srcsetAttr.replace(ref, replacedRef);
         }
+        return srcsetAttr;
     }
 
     private static String replaceReference(String assetRefValue, URI websiteBaseURI, URI docBaseURI,
@@ -141,7 +243,11 @@ public class AssetReferences {
         if (isAssetControlledByWebsite(assetURI, websiteBaseURI, docBaseURI)) {
             String assetPath = translateToAssetPath(assetURI, docBaseURI);
             String substitutePath = substitutes.get(assetPath);
-            if (substitutePath != null) {
+            if (substitutePath != null && !isInSameDir(assetPath, substitutePath)) {
+
+                // Note: The substitute is a deduplicated asset that lives in another directory
+                return relocateReference(assetURI, substitutePath.replace('\\', '/'), docBaseURI);
+            } else if (substitutePath != null) {
 
                 // Note: Replace the asset's name only and leave the URL untouched otherwise.
                 String oldAssetFileName = Paths.get(assetURI.getPath()).getFileName().toString();
@@ -158,6 +264,44 @@ public class AssetReferences {
         return assetRefValue;
     }
 
+    private static boolean isInSameDir(String assetPath, String otherAssetPath) {
+        return Objects.equals(Paths.get(assetPath).getParent(), Paths.get(otherAssetPath).getParent());
+    }
+
+    /**
+     * Builds a reference of the same URL type as the given one, pointing to an asset path
+     * in another directory. Query and fragment are kept.
+     */
+    static String relocateReference(URI assetRefURI, String assetPath, URI docBaseURI) {
+        var suffix = (assetRefURI.getRawQuery() != null ? "?" + assetRefURI.getRawQuery() : "")
+                + (assetRefURI.getRawFragment() != null ? "#" + assetRefURI.getRawFragment() : "");
+
+        if (assetRefURI.getHost() != null) {
+            var scheme = assetRefURI.getScheme() != null ? assetRefURI.getScheme() + ":" : "";
+            return scheme + "//" + assetRefURI.getRawAuthority() + assetPath + suffix;
+        } else if (isRootRelativeURI(assetRefURI)) {
+            return assetPath + suffix;
+        } else {
+
+            // Note: Document-relative, hence walk up from the document's base directory
+            // to the closest common directory and down to the asset from there.
+            var basePath = docBaseURI.getPath() != null ? docBaseURI.getPath() : "";
+            var baseDirSegments = basePath.substring(0, basePath.lastIndexOf('/') + 1).split("/");
+            var assetSegments = assetPath.substring(1).split("/");
+            var from = Arrays.stream(baseDirSegments).filter(segment -> !segment.isEmpty()).toArray(String[]::new);
+            var commonCount = 0;
+            while (commonCount < from.length && commonCount < assetSegments.length - 1
+                    && from[commonCount].equals(assetSegments[commonCount])) {
+                commonCount++;
+            }
+
+            var reference = new StringBuilder();
+            reference.append("../".repeat(from.length - commonCount));
+            reference.append(String.join("/", Arrays.asList(assetSegments).subList(commonCount, assetSegments.length)));
+            return reference + suffix;
+        }
+    }
+
     /**
      * Determines if the given URI is controlled by the website being built.
      *
@@ -198,7 +342,7 @@ public class AssetReferences {
      * @return the normalized asset path with a leading slash which represents
      *         the root directory of the project
      */
-    private static String translateToAssetPath(URI assetRefURI, URI docBaseURI) {
+    static String translateToAssetPath(URI assetRefURI, URI docBaseURI) {
         String assetPath;
 
         if (isDocumentRelativeURI(assetRefURI)) {
@@ -244,7 +388,7 @@ public class AssetReferences {
      * @return the effective document's base URI against which
      * relative sub-resources ought to be resolved
      */
-    private static URI determineDocBaseURI(URI docURI, Document doc) {
+    static URI determineDocBaseURI(URI docURI, Document doc) {
 
         // Note: The first base element with a href attribute is considered
         // valid in HTML. See https://developer.mozilla.org/en-US/docs/Web/HTML/Element/base.
@@ -252,6 +396,20 @@ public class AssetReferences {
         return baseElem != null ? docURI.resolve(baseElem.attr("href")) : docURI;
     }
 
+    /**
+     * Same as {@link #determineDocBaseURI(URI, Document)} but finds the <base> element
+     * by scanning the given markup instead of querying a DOM.
+     */
+    static URI determineDocBaseURI(URI docURI, CharSequence html) {
+        var baseHref = new String[1];
+        HtmlAttributeRewriter.scan(html, tag -> {
+            if (baseHref[0] == null && tag.getName().equals("base") && tag.hasAttr("href")) {
+                baseHref[0] = tag.attr("href");
+            }
+        });
+        return baseHref[0] != null ? docURI.resolve(baseHref[0]) : docURI;
+    }
+
     private static boolean isRootRelativeURI(URI uri) {
         return uri.getHost() == null && uri.toString().startsWith("/");
     }
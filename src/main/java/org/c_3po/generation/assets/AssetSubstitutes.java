@@ -0,0 +1,112 @@
+package org.c_3po.generation.assets;
+
+import org.c_3po.util.PathTrie;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the paths of assets, e.g. `/css/main.css`, to the paths of their fingerprinted versions,
+ * e.g. `/css/main.3f4c...e1.css`.
+ *
+ * Asset paths are kept in a {@link PathTrie}. Since a fingerprinted version usually lives in the
+ * directory of its asset, only its file name is stored and the path is put together when it's
+ * looked up. That way a site of many assets doesn't keep two full paths per asset around.
+ *
+ * Fingerprinted paths must start with a slash, like the URLs they replace references by.
+ * Removing substitutes isn't supported. Not thread-safe, the same as a {@link java.util.HashMap}.
+ */
+public final class AssetSubstitutes extends AbstractMap<String, String> {
+    private static final char DELIMITER = '/';
+
+    // Note: Values are either a file name relative to the asset's directory or a path
+    // starting with a slash, e.g. if deduplication has chosen a copy in another directory
+    private final PathTrie<String> substitutes = PathTrie.create();
+
+    private AssetSubstitutes() {
+    }
+
+    public static AssetSubstitutes create() {
+        return new AssetSubstitutes();
+    }
+
+    public static AssetSubstitutes copyOf(Map<String, String> substitutes) {
+        var copy = new AssetSubstitutes();
+        copy.putAll(substitutes);
+        return copy;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the fingerprinted path doesn't start with a slash
+     */
+    @Override
+    public String put(String assetPath, String fingerprintedPath) {
+        if (fingerprintedPath.isEmpty() || fingerprintedPath.charAt(0) != DELIMITER) {
+            throw new IllegalArgumentException("Fingerprinted path must start with a slash: " + fingerprintedPath);
+        }
+
+        var dirLength = assetPath.lastIndexOf(DELIMITER) + 1;
+        var isInSameDir = fingerprintedPath.length() > dirLength
+                && fingerprintedPath.regionMatches(0, assetPath, 0, dirLength)
+                && fingerprintedPath.indexOf(DELIMITER, dirLength) < 0;
+        var previous = substitutes.put(assetPath,
+                isInSameDir ? fingerprintedPath.substring(dirLength) : fingerprintedPath);
+        return previous != null ? toPath(assetPath, previous) : null;
+    }
+
+    @Override
+    public String get(Object assetPath) {
+        if (!(assetPath instanceof String)) {
+            return null;
+        }
+        var value = substitutes.get((String) assetPath);
+        return value != null ? toPath((String) assetPath, value) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object assetPath) {
+        return assetPath instanceof String && substitutes.contains((String) assetPath);
+    }
+
+    @Override
+    public int size() {
+        return substitutes.size();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                var entries = substitutes.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        var entry = entries.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), toPath(entry.getKey(), entry.getValue()));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return substitutes.size();
+            }
+        };
+    }
+
+    private static String toPath(String assetPath, String value) {
+        if (value.charAt(0) == DELIMITER) {
+            return value;
+        }
+        return assetPath.substring(0, assetPath.lastIndexOf(DELIMITER) + 1) + value;
+    }
+}
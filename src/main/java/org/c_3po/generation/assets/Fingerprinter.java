@@ -1,6 +1,8 @@
 package org.c_3po.generation.assets;
 
+import org.c_3po.generation.BuildExecutor;
 import org.c_3po.io.FileFilters;
+import org.c_3po.io.FileHashes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,111 +10,330 @@ import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
-import static org.c_3po.util.ChecksumCalculator.computeSha1Hash;
-import static org.c_3po.util.ChecksumCalculator.encodeHexString;
-
 public class Fingerprinter {
     private static final Logger LOG = LoggerFactory.getLogger(Fingerprinter.class);
+    private static final Pattern FINGERPRINT_PATTERN = Pattern.compile("\\.[0123456789abcdef]{40}\\.[^./]+$",
+            Pattern.CASE_INSENSITIVE);
+    private static final String[] STYLESHEET_EXTENSIONS = {"css"};
+    private static final String[] JS_EXTENSIONS = {"js"};
+    private static final String[] IMAGE_EXTENSIONS = {"png", "jpg", "jpeg", "svg", "gif", "webp"};
 
-    public static Map<String, String> fingerprintStylesheets(Path dir, Path rootDestDir)
-            throws IOException, NoSuchAlgorithmException {
-        return fingerprintAssets(dir, rootDestDir, "css");
+    public static Map<String, String> fingerprintStylesheets(Path dir, Path rootDestDir) throws IOException {
+        try (var executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)) {
+            return fingerprintStylesheets(dir, rootDestDir, executor, FileHashes.create());
+        }
     }
 
-    public static Map<String, String> fingerprintJsFiles(Path dir, Path rootDestDir)
-            throws IOException, NoSuchAlgorithmException {
-        return fingerprintAssets(dir, rootDestDir, "js");
+    public static Map<String, String> fingerprintStylesheets(Path dir, Path rootDestDir, BuildExecutor executor,
+                                                    FileHashes fileHashes) throws IOException {
+        return fingerprintAssets(dir, rootDestDir, executor, fileHashes, STYLESHEET_EXTENSIONS);
     }
 
-    public static Map<String, String> fingerprintImageFiles(Path dir, Path rootDestDir)
-            throws IOException, NoSuchAlgorithmException {
-        return fingerprintAssets(dir, rootDestDir, "png", "jpg", "jpeg", "svg", "gif", "webp");
+    public static Map<String, String> fingerprintJsFiles(Path dir, Path rootDestDir) throws IOException {
+        try (var executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)) {
+            return fingerprintJsFiles(dir, rootDestDir, executor, FileHashes.create());
+        }
     }
 
-    private static Map<String, String> fingerprintAssets(Path dir, Path rootDestDir, String... fileExtensions)
-            throws IOException, NoSuchAlgorithmException {
-        final var extensionsRegex = "\\.(" + String.join("|", fileExtensions) + ")$";
-        final var fingerprintedFileRegex = "\\.[0123456789abcdef]{40}" + extensionsRegex;
+    public static Map<String, String> fingerprintJsFiles(Path dir, Path rootDestDir, BuildExecutor executor,
+                                                    FileHashes fileHashes) throws IOException {
+        return fingerprintAssets(dir, rootDestDir, executor, fileHashes, JS_EXTENSIONS);
+    }
 
-        // Note: Using Matcher methods throughout method cause String equivalents
-        // rely on a more brittle and less clear way to set flags such as ignoring case.
-        final var filePattern = Pattern.compile(extensionsRegex, Pattern.CASE_INSENSITIVE);
-        final var fingerprintedFilePattern = Pattern.compile(fingerprintedFileRegex, Pattern.CASE_INSENSITIVE);
-        final var substitutes = new HashMap<String, String>();
+    public static Map<String, String> fingerprintImageFiles(Path dir, Path rootDestDir) throws IOException {
+        try (var executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)) {
+            return fingerprintImageFiles(dir, rootDestDir, executor, FileHashes.create());
+        }
+    }
+
+    public static Map<String, String> fingerprintImageFiles(Path dir, Path rootDestDir, BuildExecutor executor,
+                                                    FileHashes fileHashes) throws IOException {
+        return fingerprintAssets(dir, rootDestDir, executor, fileHashes, IMAGE_EXTENSIONS);
+    }
+
+    /**
+     * Fingerprints a single stylesheet, e.g. one that changed since all of them have been
+     * fingerprinted, and purges outdated fingerprinted versions of it.
+     *
+     * @return the substitute of the stylesheet or an empty map if the file isn't a stylesheet
+     */
+    public static Map<String, String> fingerprintStylesheet(Path file, Path rootDestDir) throws IOException {
+        return fingerprintStylesheet(file, rootDestDir, FileHashes.create());
+    }
+
+    /**
+     * Same as {@link #fingerprintStylesheet(Path, Path)} but takes the hash of the stylesheet
+     * from the given file hashes if it hasn't changed since it has been hashed.
+     */
+    public static Map<String, String> fingerprintStylesheet(Path file, Path rootDestDir, FileHashes fileHashes)
+            throws IOException {
+        return fingerprintAsset(file, rootDestDir, fileHashes, STYLESHEET_EXTENSIONS);
+    }
+
+    /**
+     * Same as {@link #fingerprintStylesheet(Path, Path)} but for a JavaScript file.
+     */
+    public static Map<String, String> fingerprintJsFile(Path file, Path rootDestDir) throws IOException {
+        return fingerprintJsFile(file, rootDestDir, FileHashes.create());
+    }
+
+    /**
+     * Same as {@link #fingerprintStylesheet(Path, Path, FileHashes)} but for a JavaScript file.
+     */
+    public static Map<String, String> fingerprintJsFile(Path file, Path rootDestDir, FileHashes fileHashes)
+            throws IOException {
+        return fingerprintAsset(file, rootDestDir, fileHashes, JS_EXTENSIONS);
+    }
+
+    /**
+     * Same as {@link #fingerprintStylesheet(Path, Path)} but for an image.
+     */
+    public static Map<String, String> fingerprintImageFile(Path file, Path rootDestDir) throws IOException {
+        return fingerprintImageFile(file, rootDestDir, FileHashes.create());
+    }
+
+    /**
+     * Same as {@link #fingerprintStylesheet(Path, Path, FileHashes)} but for an image.
+     */
+    public static Map<String, String> fingerprintImageFile(Path file, Path rootDestDir, FileHashes fileHashes)
+            throws IOException {
+        return fingerprintAsset(file, rootDestDir, fileHashes, IMAGE_EXTENSIONS);
+    }
+
+    /**
+     * @return true if the given file name is the one of a fingerprinted asset, e.g. `main.3f4c...e1.css`
+     */
+    public static boolean isFingerprinted(String fileName) {
+        return FINGERPRINT_PATTERN.matcher(fileName).find();
+    }
+
+    /**
+     * @return the fingerprint, i.e. the SHA-1 hash of the content, of a fingerprinted asset
+     * or null if the given file name isn't the one of a fingerprinted asset
+     */
+    public static String fingerprintOf(String fileName) {
+        var matcher = FINGERPRINT_PATTERN.matcher(fileName);
+        return matcher.find() ? matcher.group().substring(1, 41).toLowerCase() : null;
+    }
+
+    /**
+     * Maps assets with identical content, e.g. copies of the same vendor script in several
+     * directories, to a single fingerprinted file and deletes the other fingerprinted copies.
+     * This way browsers download and cache such assets only once.
+     *
+     * @param substitutes asset paths mapped to the paths of their fingerprinted versions
+     * @param rootDestDir the root directory of the generated site
+     * @return the substitutes with fingerprinted paths replaced by their canonical ones
+     */
+    public static Map<String, String> deduplicate(Map<String, String> substitutes, Path rootDestDir)
+            throws IOException {
+
+        // Group by fingerprint and file extension
+        var fingerprintedPathsByContent = new HashMap<String, TreeSet<String>>();
+        for (String fingerprintedPath : substitutes.values()) {
+            var matcher = FINGERPRINT_PATTERN.matcher(fingerprintedPath);
+            if (matcher.find()) {
+                fingerprintedPathsByContent.computeIfAbsent(matcher.group().toLowerCase(), k -> new TreeSet<>())
+                        .add(fingerprintedPath);
+            }
+        }
+
+        // Choose a canonical path per content and drop the others
+        var canonicalPaths = new HashMap<String, String>();
+        for (TreeSet<String> fingerprintedPaths : fingerprintedPathsByContent.values()) {
+            var canonicalPath = fingerprintedPaths.first();
+            for (String fingerprintedPath : fingerprintedPaths) {
+                canonicalPaths.put(fingerprintedPath, canonicalPath);
+                if (!fingerprintedPath.equals(canonicalPath)) {
+                    LOG.debug("Replacing '{}' by identical '{}'", fingerprintedPath, canonicalPath);
+                    Files.deleteIfExists(rootDestDir.resolve(fingerprintedPath.substring(1)));
+                }
+            }
+        }
+
+        var deduplicatedSubstitutes = AssetSubstitutes.create();
+        substitutes.forEach((assetPath, fingerprintedPath) -> deduplicatedSubstitutes.put(assetPath,
+                canonicalPaths.getOrDefault(fingerprintedPath, fingerprintedPath)));
+        return deduplicatedSubstitutes;
+    }
+
+    private static Map<String, String> fingerprintAssets(Path dir, Path rootDestDir, BuildExecutor executor,
+                                                         FileHashes fileHashes, String... fileExtensions)
+            throws IOException {
+        final var filePattern = filePattern(fileExtensions);
+        final var fingerprintedFilePattern = fingerprintedFilePattern(fileExtensions);
+        final var substitutes = AssetSubstitutes.create();
 
         // If no valid directory, return empty map
         if (!Files.isDirectory(dir)) {
             return substitutes;
         }
 
-        DirectoryStream.Filter<Path> assetFileFilter =
-                entry -> {
-                    String fileName = entry.toFile().getName();
-                    return Files.isRegularFile(entry)
-                            && filePattern.matcher(fileName).find()
-                            && !fingerprintedFilePattern.matcher(fileName).find();
-                };
-
-        try (DirectoryStream<Path> assetFiles = Files.newDirectoryStream(dir, assetFileFilter)) {
-            for (Path assetFile : assetFiles) {
-                LOG.info(String.format("Fingerprinting asset file '%s'", assetFile));
-
-                // Compute hash
-                var sha1 = encodeHexString(computeSha1Hash(assetFile));
-
-                // Create file
-                var fileName = assetFile.getFileName().toString();
-                var fileNameExt = fileName.substring(fileName.lastIndexOf(".") + 1);
-                var fingerprintedFileName = filePattern.matcher(fileName).replaceFirst("." + sha1 + "." + fileNameExt);
-                var fingerprintedFile = dir.resolve(fingerprintedFileName);
-                if (!Files.exists(fingerprintedFile)) {
-                    Files.copy(assetFile, fingerprintedFile);
-                }
+        // Note: Each directory is an independent unit of work. Its assets, their fingerprinted
+        // counterparts and outdated versions of them all live in the very same directory.
+        // That's why directories can be fingerprinted concurrently without any coordination.
+        var dirs = new ArrayList<Path>();
+        collectDirs(dir, dirs);
+
+        try (var tasks = executor.newTaskGroup()) {
+            var results = new ArrayList<Future<Map<String, String>>>(dirs.size());
+            for (Path assetDir : dirs) {
+                results.add(tasks.forkFileTask(() ->
+                        fingerprintAssetsInDir(assetDir, rootDestDir, filePattern, fingerprintedFilePattern,
+                                fileHashes)));
+            }
+            tasks.join();
+
+            for (Future<Map<String, String>> result : results) {
+                substitutes.putAll(result.get());
+            }
+        } catch (ExecutionException | InterruptedException e) {
+
+            // Note: Can't happen since all tasks have completed successfully when joined
+            throw new IllegalStateException(e);
+        }
+
+        return substitutes;
+    }
 
-                // Add substitution
-                Path dirAsUrlPath = rootDestDir.toAbsolutePath().relativize(dir.toAbsolutePath());
+    private static Map<String, String> fingerprintAsset(Path assetFile, Path rootDestDir, FileHashes fileHashes,
+                                                        String... fileExtensions) throws IOException {
+        final var filePattern = filePattern(fileExtensions);
+        final var fingerprintedFilePattern = fingerprintedFilePattern(fileExtensions);
+        final var substitutes = new HashMap<String, String>();
 
-                // Note: Leading slash makes it comparable to "implicit schema and domain absolute URLs"
-                substitutes.put("/" + dirAsUrlPath.resolve(fileName).toString(),
-                        "/" + dirAsUrlPath.resolve(fingerprintedFileName).toString());
+        var fileName = assetFile.getFileName().toString();
+        if (!Files.isRegularFile(assetFile) || !filePattern.matcher(fileName).find()
+                || fingerprintedFilePattern.matcher(fileName).matches()) {
+            return substitutes;
+        }
 
-                // Purge any outdated fingerprinted versions of this file
-                purgeOutdatedFingerprintedVersions(dir, fileName, fingerprintedFileName);
+        // Note: Only fingerprinted versions of this very asset are of interest
+        var dir = assetFile.getParent();
+        var fingerprintedVersions = new ArrayList<String>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                var entryName = entry.getFileName().toString();
+                var fingerprintedFileMatcher = fingerprintedFilePattern.matcher(entryName);
+                if (fingerprintedFileMatcher.matches() && Files.isRegularFile(entry)
+                        && fileName.equals(fingerprintedFileMatcher.group(1) + "." + fingerprintedFileMatcher.group(2))) {
+                    fingerprintedVersions.add(entryName);
+                }
             }
         }
 
-        // Recurse into sub directories
+        fingerprintAssetFile(assetFile, rootDestDir, filePattern, fingerprintedVersions, fileHashes, substitutes);
+        return substitutes;
+    }
+
+    // Note: Using Matcher methods throughout this class cause String equivalents
+    // rely on a more brittle and less clear way to set flags such as ignoring case.
+    private static Pattern filePattern(String... fileExtensions) {
+        return Pattern.compile(extensionsRegex(fileExtensions), Pattern.CASE_INSENSITIVE);
+    }
+
+    private static Pattern fingerprintedFilePattern(String... fileExtensions) {
+        return Pattern.compile("^(.*)\\.[0123456789abcdef]{40}" + extensionsRegex(fileExtensions),
+                Pattern.CASE_INSENSITIVE);
+    }
+
+    private static String extensionsRegex(String... fileExtensions) {
+        return "\\.(" + String.join("|", fileExtensions) + ")$";
+    }
+
+    private static void collectDirs(Path dir, List<Path> dirs) throws IOException {
+        dirs.add(dir);
         try (DirectoryStream<Path> subDirs = FileFilters.subDirStream(dir)) {
             for (Path subDir : subDirs) {
-                substitutes.putAll(fingerprintAssets(subDir, rootDestDir, fileExtensions));
+                collectDirs(subDir, dirs);
+            }
+        }
+    }
+
+    /**
+     * Fingerprints the assets located directly in the given dir.
+     *
+     * The dir is listed only once. Already fingerprinted files are grouped by the
+     * name of the asset they have been derived from, which makes spotting outdated
+     * versions a simple lookup instead of another scan of the dir for each asset.
+     */
+    private static Map<String, String> fingerprintAssetsInDir(Path dir, Path rootDestDir, Pattern filePattern,
+                                                              Pattern fingerprintedFilePattern, FileHashes fileHashes)
+            throws IOException {
+        final var substitutes = new HashMap<String, String>();
+        final var assetFiles = new ArrayList<Path>();
+        final var fingerprintedVersions = new HashMap<String, List<String>>();
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String fileName = entry.getFileName().toString();
+                var fingerprintedFileMatcher = fingerprintedFilePattern.matcher(fileName);
+                if (fingerprintedFileMatcher.matches()) {
+                    if (Files.isRegularFile(entry)) {
+                        var assetFileName = fingerprintedFileMatcher.group(1) + "." + fingerprintedFileMatcher.group(2);
+                        fingerprintedVersions.computeIfAbsent(assetFileName, k -> new ArrayList<>()).add(fileName);
+                    }
+                } else if (filePattern.matcher(fileName).find() && Files.isRegularFile(entry)) {
+                    assetFiles.add(entry);
+                }
             }
         }
 
+        for (Path assetFile : assetFiles) {
+            var existingVersions = fingerprintedVersions.getOrDefault(assetFile.getFileName().toString(), List.of());
+            fingerprintAssetFile(assetFile, rootDestDir, filePattern, existingVersions, fileHashes, substitutes);
+        }
+
         return substitutes;
     }
 
-    private static void purgeOutdatedFingerprintedVersions(Path dir, String fileName,
-                                                                          String fingerprintedFileName)
+    /**
+     * Creates the fingerprinted version of the given asset unless it exists already, adds its
+     * substitute and purges any outdated fingerprinted versions. The hash of an asset that hasn't
+     * changed since it has been hashed the last time is taken from the given file hashes.
+     */
+    private static void fingerprintAssetFile(Path assetFile, Path rootDestDir, Pattern filePattern,
+                                             List<String> existingVersions, FileHashes fileHashes,
+                                             Map<String, String> substitutes) throws IOException {
+        LOG.info(String.format("Fingerprinting asset file '%s'", assetFile));
+        var dir = assetFile.getParent();
+        Path dirAsUrlPath = rootDestDir.toAbsolutePath().relativize(dir.toAbsolutePath());
+
+        // Compute hash
+        var sha1 = fileHashes.sha1(assetFile);
+
+        // Create file
+        var fileName = assetFile.getFileName().toString();
+        var fileNameExt = fileName.substring(fileName.lastIndexOf(".") + 1);
+        var fingerprintedFileName = filePattern.matcher(fileName).replaceFirst("." + sha1 + "." + fileNameExt);
+        if (!existingVersions.contains(fingerprintedFileName)) {
+            Files.copy(assetFile, dir.resolve(fingerprintedFileName));
+        }
+
+        // Add substitution
+        // Note: Leading slash makes it comparable to "implicit schema and domain absolute URLs"
+        substitutes.put("/" + dirAsUrlPath.resolve(fileName).toString(),
+                "/" + dirAsUrlPath.resolve(fingerprintedFileName).toString());
+
+        // Purge any outdated fingerprinted versions of this file
+        purgeOutdatedFingerprintedVersions(dir, existingVersions, fingerprintedFileName);
+    }
+
+    private static void purgeOutdatedFingerprintedVersions(Path dir, List<String> fingerprintedVersions,
+                                                           String fingerprintedFileName)
             throws IOException {
-        var name = fileName.substring(0, fileName.lastIndexOf("."));
-        var ext = fileName.substring(fileName.lastIndexOf(".") + 1);
-
-        DirectoryStream.Filter<Path> outdatedFilter =
-                entry -> {
-                    String entryFileName = entry.toFile().getName();
-                    return Files.isRegularFile(entry)
-                            && !entryFileName.equals(fingerprintedFileName)
-                            && entryFileName.matches(String.format("^%s\\.[0123456789abcdef]{40}\\.%s$", name, ext));
-                };
-
-        try (DirectoryStream<Path> outdatedFiles = Files.newDirectoryStream(dir, outdatedFilter)) {
-            for (Path outdatedFile : outdatedFiles) {
-                Files.delete(outdatedFile);
+        for (String fingerprintedVersion : fingerprintedVersions) {
+            if (!fingerprintedVersion.equals(fingerprintedFileName)) {
+                Files.deleteIfExists(dir.resolve(fingerprintedVersion));
             }
         }
     }
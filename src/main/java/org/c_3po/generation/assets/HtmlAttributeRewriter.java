@@ -0,0 +1,353 @@
+package org.c_3po.generation.assets;
+
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Rewrites attributes of HTML start tags without parsing the markup into a DOM.
+ *
+ * The markup is tokenized just far enough to tell start tags and their attributes apart from
+ * text, comments and the content of raw text elements like `<script>`. Replaced values are
+ * spliced into the markup, which is left exactly as it is otherwise. That is, unlike a DOM
+ * round-trip this neither reformats a document nor undoes its minification.
+ *
+ * <b>Caution</b>: It does not fully implement the HTML tokenizer. Among others, it doesn't know
+ * about foreign content (e.g. CDATA sections in inline SVG), which C-3PO's sites don't make use of.
+ */
+final class HtmlAttributeRewriter {
+    private static final String[] RAW_TEXT_ELEMENTS = {"script", "style", "textarea", "title"};
+
+    private HtmlAttributeRewriter() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Handles a start tag, e.g. by replacing some of its attribute values.
+     */
+    interface TagHandler {
+        void handle(StartTag tag);
+    }
+
+    /**
+     * Visits the start tags of the given markup without rewriting anything.
+     */
+    static void scan(CharSequence html, TagHandler handler) {
+        try {
+            rewrite(html, null, handler);
+        } catch (IOException e) {
+
+            // Note: Can't happen as nothing is written
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the given markup to the given output, having the given handler replace, remove or
+     * append attributes of start tags along the way.
+     *
+     * @param out the output or null to merely visit the start tags
+     * @return true if any attribute has been replaced, removed or appended
+     */
+    static boolean rewrite(CharSequence html, Appendable out, TagHandler handler) throws IOException {
+        var replaced = false;
+        var length = html.length();
+        var copiedUpTo = 0;
+        var pos = 0;
+        while (pos < length) {
+            pos = indexOf(html, '<', pos);
+            if (pos < 0) {
+                break;
+            }
+
+            if (startsWith(html, pos, "<!--")) {
+                pos = endOfComment(html, pos + 4);
+            } else if (pos + 1 < length && isAsciiAlpha(html.charAt(pos + 1))) {
+                var tag = readStartTag(html, pos + 1);
+                handler.handle(tag);
+                for (Attribute attribute : tag.attributes) {
+                    if (attribute.replacement != null) {
+                        replaced = true;
+                        if (out != null) {
+                            out.append(html, copiedUpTo, attribute.replaceFrom);
+                            out.append(attribute.replacement);
+                        }
+                        copiedUpTo = attribute.replaceTo;
+                    }
+                }
+                if (tag.appended.length() > 0) {
+                    replaced = true;
+                    if (out != null) {
+                        out.append(html, copiedUpTo, tag.attributesEnd);
+                        out.append(tag.appended);
+                    }
+                    copiedUpTo = tag.attributesEnd;
+                }
+                pos = endOfRawText(html, tag.end, tag.name);
+            } else if (startsWith(html, pos, "<!") || startsWith(html, pos, "</") || startsWith(html, pos, "<?")) {
+
+                // Note: Doctype, end tag or bogus comment, none of which is of interest
+                pos = endOf(html, '>', pos + 2);
+            } else {
+                pos++;
+            }
+        }
+
+        if (out != null) {
+            out.append(html, copiedUpTo, length);
+        }
+        return replaced;
+    }
+
+    private static StartTag readStartTag(CharSequence html, int nameStart) {
+        var length = html.length();
+        var pos = nameStart;
+        while (pos < length && !isWhitespace(html.charAt(pos)) && html.charAt(pos) != '/' && html.charAt(pos) != '>') {
+            pos++;
+        }
+        var tag = new StartTag(html.subSequence(nameStart, pos).toString().toLowerCase(Locale.ROOT));
+        tag.attributesEnd = pos;
+
+        while (pos < length) {
+            var c = html.charAt(pos);
+            if (c == '>') {
+                pos++;
+                break;
+            } else if (isWhitespace(c) || c == '/') {
+                pos++;
+                continue;
+            }
+
+            // Attribute name
+            var attrNameStart = pos++;
+            while (pos < length && !isWhitespace(html.charAt(pos)) && "/>=".indexOf(html.charAt(pos)) < 0) {
+                pos++;
+            }
+            var attribute = new Attribute(html.subSequence(attrNameStart, pos).toString().toLowerCase(Locale.ROOT));
+            attribute.start = tag.attributesEnd;
+            attribute.replaceFrom = pos;
+            attribute.replaceTo = pos;
+
+            // Attribute value
+            var afterName = skipWhitespace(html, pos);
+            if (afterName < length && html.charAt(afterName) == '=') {
+                var valueStart = skipWhitespace(html, afterName + 1);
+                if (valueStart < length && (html.charAt(valueStart) == '"' || html.charAt(valueStart) == '\'')) {
+                    var valueEnd = indexOf(html, html.charAt(valueStart), valueStart + 1);
+                    valueEnd = valueEnd >= 0 ? valueEnd : length;
+                    attribute.rawValue = html.subSequence(valueStart + 1, valueEnd).toString();
+                    attribute.quote = html.charAt(valueStart);
+                    attribute.replaceFrom = valueStart + 1;
+                    attribute.replaceTo = valueEnd;
+                    pos = Math.min(valueEnd + 1, length);
+                } else {
+                    var valueEnd = valueStart;
+                    while (valueEnd < length && !isWhitespace(html.charAt(valueEnd)) && html.charAt(valueEnd) != '>') {
+                        valueEnd++;
+                    }
+                    attribute.rawValue = html.subSequence(valueStart, valueEnd).toString();
+                    attribute.replaceFrom = valueStart;
+                    attribute.replaceTo = valueEnd;
+                    pos = valueEnd;
+                }
+            }
+            attribute.end = pos;
+            tag.attributesEnd = pos;
+            tag.attributes.add(attribute);
+        }
+
+        tag.end = pos;
+        return tag;
+    }
+
+    /**
+     * Skips the content of elements whose content isn't markup, so that e.g. a string
+     * in a script that looks like a tag is left alone.
+     */
+    private static int endOfRawText(CharSequence html, int pos, String tagName) {
+        for (String rawTextElement : RAW_TEXT_ELEMENTS) {
+            if (rawTextElement.equals(tagName)) {
+                var endTag = "</" + tagName;
+                for (var i = indexOf(html, '<', pos); i >= 0; i = indexOf(html, '<', i + 1)) {
+                    if (startsWithIgnoreCase(html, i, endTag)) {
+                        return i;
+                    }
+                }
+                return html.length();
+            }
+        }
+        return pos;
+    }
+
+    private static int endOfComment(CharSequence html, int pos) {
+        for (var i = indexOf(html, '-', pos); i >= 0; i = indexOf(html, '-', i + 1)) {
+            if (startsWith(html, i, "-->")) {
+                return i + 3;
+            }
+        }
+        return html.length();
+    }
+
+    private static int endOf(CharSequence html, char c, int pos) {
+        var index = indexOf(html, c, pos);
+        return index >= 0 ? index + 1 : html.length();
+    }
+
+    private static int indexOf(CharSequence html, char c, int from) {
+        for (var i = from; i < html.length(); i++) {
+            if (html.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(CharSequence html, int pos) {
+        while (pos < html.length() && isWhitespace(html.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean startsWith(CharSequence html, int pos, String prefix) {
+        if (pos + prefix.length() > html.length()) {
+            return false;
+        }
+        for (var i = 0; i < prefix.length(); i++) {
+            if (html.charAt(pos + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithIgnoreCase(CharSequence html, int pos, String prefix) {
+        if (pos + prefix.length() > html.length()) {
+            return false;
+        }
+        for (var i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(html.charAt(pos + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiAlpha(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * A start tag along with its attributes.
+     */
+    static final class StartTag {
+        private final String name;
+        private final List<Attribute> attributes = new ArrayList<>();
+        private final StringBuilder appended = new StringBuilder();
+        private int attributesEnd;
+        private int end;
+
+        private StartTag(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the lower-cased tag name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the value of the given attribute with character references decoded, an empty
+         * string if the attribute has no value or null if there's no such attribute
+         */
+        String attr(String name) {
+            var attribute = find(name);
+            return attribute != null ? attribute.value() : null;
+        }
+
+        boolean hasAttr(String name) {
+            return find(name) != null;
+        }
+
+        /**
+         * Replaces the value of the given attribute, if there is one and the value differs.
+         */
+        void replaceAttr(String name, String value) {
+            var attribute = find(name);
+            if (attribute != null && !value.equals(attribute.value())) {
+                attribute.replacement = attribute.quote != 0
+                        ? escape(value, attribute.quote)
+                        : (attribute.rawValue != null ? "" : "=") + '"' + escape(value, '"') + '"';
+            }
+        }
+
+        /**
+         * Removes the given attribute along with the whitespace preceding it, if there is one.
+         */
+        void removeAttr(String name) {
+            var attribute = find(name);
+            if (attribute != null) {
+                attribute.replaceFrom = attribute.start;
+                attribute.replaceTo = attribute.end;
+                attribute.replacement = "";
+            }
+        }
+
+        /**
+         * Adds the given attribute after the last attribute of the tag. It's up to the caller to
+         * make sure the tag doesn't have such an attribute yet.
+         */
+        void appendAttr(String name, String value) {
+            appended.append(' ').append(name).append("=\"").append(escape(value, '"')).append('"');
+        }
+
+        private Attribute find(String name) {
+
+            // Note: Like browsers do, the first of duplicate attributes wins
+            for (Attribute attribute : attributes) {
+                if (attribute.name.equals(name)) {
+                    return attribute;
+                }
+            }
+            return null;
+        }
+
+        private static String escape(String value, char quote) {
+            var escaped = value.replace("&", "&amp;");
+            return quote == '"' ? escaped.replace("\"", "&quot;") : escaped.replace("'", "&#39;");
+        }
+    }
+
+    private static final class Attribute {
+        private final String name;
+        private String rawValue;
+        private char quote;
+
+        // Note: Where the attribute starts including the whitespace preceding it and where it ends
+        private int start;
+        private int end;
+        private int replaceFrom;
+        private int replaceTo;
+        private String replacement;
+
+        private Attribute(String name) {
+            this.name = name;
+        }
+
+        private String value() {
+            if (rawValue == null) {
+                return "";
+            }
+            return rawValue.indexOf('&') >= 0 ? Parser.unescapeEntities(rawValue, true) : rawValue;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.c_3po.generation.assets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.c_3po.util.ChecksumCalculator.sha1;
+
+/**
+ * Produces down-scaled, re-encoded variants (derivatives) of images.
+ *
+ * Image codecs are looked up through {@link ImageIO}, which means any codec registered
+ * with ImageIO's service provider mechanism (e.g. a WebP plugin on the classpath) is picked
+ * up without further ado. Images for which no reader or writer is available are skipped.
+ *
+ * Derivatives are cached by the SHA-1 hash of the source image's contents and the variant
+ * spec (width and quality). An unchanged image is therefore never decoded and resized again.
+ */
+final class ImageDerivatives {
+    private static final Logger LOG = LoggerFactory.getLogger(ImageDerivatives.class);
+
+    private final Path cacheDir;
+    private final float quality;
+
+    ImageDerivatives(Path cacheDir, float quality) {
+        this.cacheDir = cacheDir;
+        this.quality = quality;
+    }
+
+    /**
+     * Creates the derivatives of the given image next to it.
+     *
+     * Widths greater than or equal to the width of the image itself are skipped because
+     * upscaling an image only adds bytes but no details.
+     *
+     * @param imageFile the image to create derivatives of
+     * @param widths the desired widths in pixels
+     * @return the derivatives created or null if the image's format is not supported
+     */
+    Result derive(Path imageFile, List<Integer> widths) throws IOException {
+        var fileName = imageFile.getFileName().toString();
+        var extIndex = fileName.lastIndexOf(".");
+        if (extIndex < 0) {
+            return null;
+        }
+        var baseName = fileName.substring(0, extIndex);
+        var ext = fileName.substring(extIndex + 1);
+        if (!ImageIO.getImageWritersBySuffix(ext.toLowerCase(Locale.ROOT)).hasNext()) {
+            LOG.debug("No image writer available for '{}'. Not creating any derivatives.", imageFile);
+            return null;
+        }
+
+        var originalWidth = readWidth(imageFile);
+        if (originalWidth < 0) {
+            LOG.debug("Image format of '{}' is not supported. Not creating any derivatives.", imageFile);
+            return null;
+        }
+
+        var sha1 = sha1(imageFile);
+        var variants = new TreeMap<Integer, String>();
+        BufferedImage image = null;
+        for (int width : widths) {
+            if (width >= originalWidth) {
+                continue;
+            }
+
+            var cachedFile = cacheDir.resolve(String.format(Locale.ROOT, "%s-%dw-q%d.%s",
+                    sha1, width, Math.round(quality * 100), ext.toLowerCase(Locale.ROOT)));
+            if (!Files.exists(cachedFile)) {
+
+                // Note: The image is only decoded when there's at least one cache miss
+                if (image == null) {
+                    image = ImageIO.read(imageFile.toFile());
+                }
+                LOG.info("Creating {}px wide derivative of image '{}'", width, imageFile);
+                writeAtomically(resize(image, width), ext, cachedFile);
+            }
+
+            var variantFileName = baseName + "-" + width + "w." + ext;
+            copyAtomically(cachedFile, imageFile.resolveSibling(variantFileName));
+            variants.put(width, variantFileName);
+        }
+
+        return new Result(originalWidth, variants);
+    }
+
+    /**
+     * Reads the width of the given image from its header without decoding the pixels.
+     *
+     * @return the width or -1 if the image can't be read or consists of multiple frames (e.g. animated GIFs)
+     */
+    private static int readWidth(Path imageFile) throws IOException {
+        try (var input = ImageIO.createImageInputStream(imageFile.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return -1;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input);
+                var isAnimatable = "gif".equalsIgnoreCase(reader.getFormatName());
+                if (isAnimatable && reader.getNumImages(true) > 1) {
+                    return -1;
+                }
+                return reader.getWidth(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage image, int targetWidth) {
+        var targetHeight = Math.max(1, Math.round(image.getHeight() * (targetWidth / (float) image.getWidth())));
+        var type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        // Note: Halving the image step by step is way cheaper than bicubic interpolation
+        // but avoids the aliasing artifacts that bilinear interpolation causes for large
+        // scale factors when done in one go.
+        var current = image;
+        var width = image.getWidth();
+        var height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            var step = new BufferedImage(width, height, type);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    private void writeAtomically(BufferedImage image, String ext, Path targetFile) throws IOException {
+        Files.createDirectories(targetFile.getParent());
+
+        // Note: Writing to a temporary file first ensures that a crashed or concurrent
+        // build never leaves a half-written derivative in the cache.
+        var tmpFile = Files.createTempFile(targetFile.getParent(), targetFile.getFileName().toString(), ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersBySuffix(ext.toLowerCase(Locale.ROOT)).next();
+            try (var output = ImageIO.createImageOutputStream(tmpFile.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                        param.setCompressionType(param.getCompressionTypes()[0]);
+                    }
+                    param.setCompressionQuality(quality);
+                }
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(tmpFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Note: A variant is replaced in the destination directory, which might be served while it's
+     * built. Hence, it's copied next to its target first, so it's never seen half-written.
+     */
+    private static void copyAtomically(Path sourceFile, Path targetFile) throws IOException {
+        var tmpFile = Files.createTempFile(targetFile.getParent(), targetFile.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(sourceFile, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    static class Result {
+        private final int originalWidth;
+        private final SortedMap<Integer, String> variants;
+
+        Result(int originalWidth, SortedMap<Integer, String> variants) {
+            this.originalWidth = originalWidth;
+            this.variants = variants;
+        }
+
+        int getOriginalWidth() {
+            return originalWidth;
+        }
+
+        /**
+         * @return the file names of the derivatives keyed by their width
+         */
+        SortedMap<Integer, String> getVariants() {
+            return variants;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package org.c_3po.generation.assets;
+
+import org.c_3po.generation.BuildExecutor;
+import org.c_3po.generation.crawl.SiteStructure;
+import org.c_3po.util.Json;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks that internal links and asset references of a generated site point to files that exist.
+ *
+ * All output paths are put into a {@link SiteStructure} up front. Then the pages are parsed
+ * concurrently and each reference is resolved against the page's base URI and looked up in that
+ * structure, so checking a reference never touches the file system.
+ */
+public class LinkChecker {
+    private static final Logger LOG = LoggerFactory.getLogger(LinkChecker.class);
+    private static final String[][] REFERENCE_SELECTORS = {
+            {"a[href]", "href"},
+            {"link[href]", "href"},
+            {"script[src]", "src"},
+            {"img[src]", "src"},
+            {"img[srcset], source[srcset]", "srcset"}};
+    private static final Set<String> WEB_SCHEMES = Set.of("http", "https");
+
+    // Make it non-instantiable and prohibit subclassing.
+    private LinkChecker() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Checks all `a[href]`, `link[href]`, `script[src]`, `img[src]` and `srcset` references
+     * of the HTML files within the given directory.
+     *
+     * @param siteDir the root directory of the generated site
+     * @param baseUrl the base URL of the deployed website or null. If set, absolute URLs
+     *                with the same host are checked as well.
+     * @return the result of the check
+     */
+    public static Report check(Path siteDir, String baseUrl, BuildExecutor executor) throws IOException {
+        var siteHost = baseUrl != null && !baseUrl.isBlank() ? URI.create(baseUrl).getHost() : null;
+
+        // Index every output path the way they appear as URLs
+        var siteStructure = SiteStructure.getInstance(SiteStructure.URL_PATH_DELIMITER);
+        var htmlFiles = new ArrayList<Path>();
+        Files.walkFileTree(siteDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                var relativePath = siteDir.relativize(file);
+                siteStructure.add(relativePath);
+                if (file.getFileName().toString().endsWith(".html")) {
+                    htmlFiles.add(relativePath);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Check pages concurrently
+        var brokenReferences = new ConcurrentLinkedQueue<BrokenReference>();
+        var referenceCount = new LongAdder();
+        try (var tasks = executor.newTaskGroup()) {
+            for (Path htmlFile : htmlFiles) {
+                tasks.forkCpuTask(() -> {
+                    var doc = Jsoup.parse(siteDir.resolve(htmlFile).toFile(), "UTF-8");
+                    var page = toPageName(htmlFile);
+                    checkPage(doc, page, siteHost, siteStructure, brokenReferences, referenceCount);
+                    return null;
+                });
+            }
+            tasks.join();
+        }
+
+        LOG.debug("Checked {} references in {} pages", referenceCount.sum(), htmlFiles.size());
+        var sortedBrokenReferences = new ArrayList<>(brokenReferences);
+        sortedBrokenReferences.sort(Comparator.comparing(BrokenReference::getPage)
+                .thenComparing(BrokenReference::getReference));
+        return new Report(htmlFiles.size(), referenceCount.sum(), sortedBrokenReferences);
+    }
+
+    private static void checkPage(Document doc, String page, String siteHost, SiteStructure outputPaths,
+                                  Collection<BrokenReference> brokenReferences, LongAdder referenceCount) {
+        URI docBaseURI;
+        try {
+            docBaseURI = AssetReferences.determineDocBaseURI(new URI(null, null, "/" + page, null), doc);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            brokenReferences.add(new BrokenReference(page, "base", "href", doc.selectFirst("base[href]").attr("href"),
+                    "malformed URL"));
+            return;
+        }
+
+        for (String[] selector : REFERENCE_SELECTORS) {
+            var attribute = selector[1];
+            for (Element element : doc.select(selector[0])) {
+                var value = element.attr(attribute);
+                var references = attribute.equals("srcset") ? HtmlSrcset.extractRefs(value) : List.of(value);
+                for (String reference : references) {
+                    referenceCount.increment();
+                    var problem = checkReference(reference.trim(), docBaseURI, siteHost, outputPaths);
+                    if (problem != null) {
+                        brokenReferences.add(new BrokenReference(page, element.normalName(), attribute, reference,
+                                problem));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the reason why the reference is broken or null if it's not
+     */
+    static String checkReference(String reference, URI docBaseURI, String siteHost, SiteStructure outputPaths) {
+        if (reference.isEmpty() || reference.startsWith("#")) {
+            return null;
+        }
+
+        URI uri;
+        try {
+            uri = new URI(reference);
+        } catch (URISyntaxException e) {
+            return "malformed URL";
+        }
+
+        // Skip references to other sites and ones like `mailto:` or `data:`
+        if (uri.getScheme() != null && !WEB_SCHEMES.contains(uri.getScheme().toLowerCase(Locale.ROOT))) {
+            return null;
+        }
+        var resolvedURI = docBaseURI.resolve(uri).normalize();
+        if (resolvedURI.getHost() != null && !resolvedURI.getHost().equalsIgnoreCase(siteHost)) {
+            return null;
+        }
+
+        var path = resolvedURI.getPath();
+        if (path == null || path.isEmpty()) {
+            path = SiteStructure.URL_PATH_DELIMITER;
+        }
+        if (path.startsWith("/..")) {
+            return "points outside of the site";
+        }
+
+        var exists = outputPaths.containsUrl(path)
+                || path.endsWith("/") && outputPaths.containsUrl(path + "index.html")
+                || outputPaths.containsUrl(path + "/index.html");
+        return exists ? null : "not found";
+    }
+
+    private static String toPageName(Path relativePath) {
+        var joiner = new StringJoiner(SiteStructure.URL_PATH_DELIMITER);
+        relativePath.forEach(element -> joiner.add(element.toString()));
+        return joiner.toString();
+    }
+
+    /**
+     * The result of checking a site.
+     */
+    public static final class Report {
+        private final int pageCount;
+        private final long referenceCount;
+        private final List<BrokenReference> brokenReferences;
+
+        private Report(int pageCount, long referenceCount, List<BrokenReference> brokenReferences) {
+            this.pageCount = pageCount;
+            this.referenceCount = referenceCount;
+            this.brokenReferences = Collections.unmodifiableList(brokenReferences);
+        }
+
+        public int getPageCount() {
+            return pageCount;
+        }
+
+        public long getReferenceCount() {
+            return referenceCount;
+        }
+
+        /**
+         * @return the broken references ordered by page
+         */
+        public List<BrokenReference> getBrokenReferences() {
+            return brokenReferences;
+        }
+
+        /**
+         * Writes this report as JSON so that it can be processed by other tools, e.g. in a CI pipeline.
+         */
+        public void writeTo(Path file) throws IOException {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (var json = Json.newGenerator(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                json.writeStartObject();
+                json.writeNumberField("pages", pageCount);
+                json.writeNumberField("references", referenceCount);
+                json.writeArrayFieldStart("brokenReferences");
+                for (BrokenReference brokenReference : brokenReferences) {
+
+                    // Note: One broken reference per line keeps the report readable and diffable
+                    json.writeRaw('\n');
+                    json.writeStartObject();
+                    json.writeStringField("page", brokenReference.page);
+                    json.writeStringField("element", brokenReference.element);
+                    json.writeStringField("attribute", brokenReference.attribute);
+                    json.writeStringField("reference", brokenReference.reference);
+                    json.writeStringField("problem", brokenReference.problem);
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+                json.writeRaw('\n');
+            }
+        }
+    }
+
+    /**
+     * A reference within a page that doesn't resolve to a file of the site.
+     */
+    public static final class BrokenReference {
+        private final String page;
+        private final String element;
+        private final String attribute;
+        private final String reference;
+        private final String problem;
+
+        private BrokenReference(String page, String element, String attribute, String reference, String problem) {
+            this.page = page;
+            this.element = element;
+            this.attribute = attribute;
+            this.reference = reference;
+            this.problem = problem;
+        }
+
+        public String getPage() {
+            return page;
+        }
+
+        public String getElement() {
+            return element;
+        }
+
+        public String getAttribute() {
+            return attribute;
+        }
+
+        public String getReference() {
+            return reference;
+        }
+
+        public String getProblem() {
+            return problem;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("'%s' in <%s %s> of '%s' (%s)", reference, element, attribute, page, problem);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package org.c_3po.generation.assets;
+
+import org.c_3po.generation.BuildExecutor;
+import org.c_3po.io.FileFilters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates responsive variants of images referenced by marked `img` elements
+ * and lists them in the element's `srcset` attribute.
+ *
+ * An `img` element is marked by the `data-c3po-responsive` attribute. Its value may
+ * hold a comma separated list of widths overriding the site-wide default for this image,
+ * e.g. `&lt;img src="img/photo.jpg" data-c3po-responsive="320,640"&gt;`.
+ */
+public class ResponsiveImages {
+    private static final Logger LOG = LoggerFactory.getLogger(ResponsiveImages.class);
+    public static final String MARKER_ATTR_NAME = "data-c3po-responsive";
+
+    // Make it non-instantiable and prohibit subclassing.
+    private ResponsiveImages() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Parses a comma separated list of image widths like `480, 960, 1440`.
+     *
+     * @return the widths in ascending order
+     * @throws IllegalArgumentException if any of the widths is not a positive integer
+     */
+    public static List<Integer> parseWidths(String widths) {
+        var result = new TreeSet<Integer>();
+        for (String width : widths.split(",")) {
+            var parsedWidth = Integer.parseInt(width.trim());
+            if (parsedWidth <= 0) {
+                throw new IllegalArgumentException(String.format("Image width '%s' is not positive", width));
+            }
+            result.add(parsedWidth);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Creates image variants for all marked `img` elements in HTML files found in the supplied
+     * dir and sub dirs and adds corresponding `srcset` attributes.
+     *
+     * Images are processed on a parallel pool. Each distinct image is processed once no matter
+     * how many documents reference it.
+     *
+     * @param dir the root directory of the generated site
+     * @param defaultWidths the widths of variants to create unless the element says otherwise
+     * @param quality the encoding quality between 0 and 1 used for lossy image formats
+     * @param cacheDir the directory variants are cached in across builds
+     */
+    public static void generateInDir(Path dir, List<Integer> defaultWidths, float quality, Path cacheDir)
+            throws IOException {
+        try (var executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)) {
+            generateInDir(dir, defaultWidths, quality, cacheDir, executor);
+        }
+    }
+
+    /**
+     * Same as {@link #generateInDir(Path, List, float, Path)} but runs on the given executor.
+     */
+    public static void generateInDir(Path dir, List<Integer> defaultWidths, float quality, Path cacheDir,
+                                     BuildExecutor executor) throws IOException {
+        var markedDocs = new LinkedHashMap<Path, String>();
+        collectMarkedDocs(dir, markedDocs);
+        generate(dir, markedDocs, defaultWidths, quality, cacheDir, executor);
+    }
+
+    /**
+     * Same as {@link #generateInDir(Path, List, float, Path, BuildExecutor)} but only looks
+     * for marked `img` elements in the given HTML files, e.g. the ones just generated.
+     *
+     * @param dir the root directory of the generated site containing the HTML files
+     */
+    public static void generateInDocs(Path dir, Collection<Path> htmlFiles, List<Integer> defaultWidths,
+                                      float quality, Path cacheDir, BuildExecutor executor) throws IOException {
+        var markedDocs = new LinkedHashMap<Path, String>();
+        for (Path htmlFile : htmlFiles) {
+            collectIfMarked(htmlFile, markedDocs);
+        }
+        generate(dir, markedDocs, defaultWidths, quality, cacheDir, executor);
+    }
+
+    /**
+     * @param markedDocs the contents of the documents containing marked images by their files
+     */
+    private static void generate(Path dir, Map<Path, String> markedDocs, List<Integer> defaultWidths,
+                                 float quality, Path cacheDir, BuildExecutor executor) throws IOException {
+        var derivatives = new ImageDerivatives(cacheDir, quality);
+        var derivations = new HashMap<String, Future<ImageDerivatives.Result>>();
+
+        try (var tasks = executor.newTaskGroup()) {
+
+            // Find marked images and start creating their variants right away
+            var markedImagesByDoc = new LinkedHashMap<Path, List<MarkedImage>>();
+            for (Map.Entry<Path, String> markedDoc : markedDocs.entrySet()) {
+                var markedImages = findMarkedImages(markedDoc.getKey(), markedDoc.getValue(), dir, defaultWidths);
+                for (MarkedImage image : markedImages) {
+                    if (image.imageFile != null) {
+                        derivations.computeIfAbsent(derivationKey(image.imageFile, image.widths),
+                                key -> tasks.forkCpuTask(() -> derive(derivatives, image.imageFile, image.widths)));
+                    }
+                }
+                markedImagesByDoc.put(markedDoc.getKey(), markedImages);
+            }
+
+            // Write the `srcset` attributes once all variants of a document's images are available
+            for (Map.Entry<Path, List<MarkedImage>> entry : markedImagesByDoc.entrySet()) {
+                var htmlFile = entry.getKey();
+                for (MarkedImage image : entry.getValue()) {
+                    if (image.imageFile != null) {
+                        try {
+                            var result = derivations.get(derivationKey(image.imageFile, image.widths)).get();
+                            if (result != null && !result.getVariants().isEmpty()) {
+                                image.srcset = srcset(image.refValue, image.imageFile, result);
+                            }
+                        } catch (ExecutionException e) {
+                            throw new IllegalStateException(e.getCause());
+                        }
+                    }
+                }
+
+                LOG.debug("Writing responsive image variants into '{}'", htmlFile);
+                var html = markedDocs.get(htmlFile);
+                var out = new StringBuilder(html.length() + 256);
+                var images = entry.getValue().iterator();
+                HtmlAttributeRewriter.rewrite(html, out, tag -> {
+                    if (isMarkedImage(tag)) {
+                        var image = images.next();
+                        tag.removeAttr(MARKER_ATTR_NAME);
+                        if (image.srcset != null) {
+                            tag.appendAttr("srcset", image.srcset);
+                        }
+                    }
+                });
+                Files.writeString(htmlFile, out);
+            }
+
+            tasks.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while creating responsive image variants");
+        }
+    }
+
+    /**
+     * Creates the variants of a single image. Failures are logged but don't fail
+     * the build, the image is simply left as is.
+     */
+    private static ImageDerivatives.Result derive(ImageDerivatives derivatives, Path imageFile, List<Integer> widths) {
+        try {
+            return derivatives.derive(imageFile, widths);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to create responsive variants of image '{}'", imageFile, e);
+            return null;
+        }
+    }
+
+    private static void collectMarkedDocs(Path dir, Map<Path, String> markedDocs) throws IOException {
+        try (var htmlFiles = Files.newDirectoryStream(dir, FileFilters.htmlFilter)) {
+            for (Path htmlFile : htmlFiles) {
+                collectIfMarked(htmlFile, markedDocs);
+            }
+        }
+
+        try (var subDirs = FileFilters.subDirStream(dir)) {
+            for (var subDir : subDirs) {
+                collectMarkedDocs(subDir, markedDocs);
+            }
+        }
+    }
+
+    private static void collectIfMarked(Path htmlFile, Map<Path, String> markedDocs) throws IOException {
+        if (Files.isRegularFile(htmlFile)) {
+
+            // Note: A plain text search is way cheaper than scanning every document for marked
+            // images. False positives (e.g. the marker mentioned in a text) are sorted out later.
+            var html = Files.readString(htmlFile);
+            if (html.contains(MARKER_ATTR_NAME)) {
+                markedDocs.put(htmlFile, html);
+            }
+        }
+    }
+
+    private static boolean isMarkedImage(HtmlAttributeRewriter.StartTag tag) {
+        return tag.getName().equals("img") && tag.hasAttr(MARKER_ATTR_NAME);
+    }
+
+    /**
+     * Scans the given HTML document for marked images. The images are listed in the order they
+     * appear in, including the ones that can't be made responsive, whose image file is null.
+     */
+    private static List<MarkedImage> findMarkedImages(Path htmlFile, String html, Path rootDir,
+                                                      List<Integer> defaultWidths) {
+        URI docURI = URI.create(rootDir.relativize(htmlFile).toString().replace('\\', '/'));
+        URI docBaseURI = AssetReferences.determineDocBaseURI(docURI, html);
+
+        var markedImages = new ArrayList<MarkedImage>();
+        HtmlAttributeRewriter.scan(html, tag -> {
+            if (!isMarkedImage(tag)) {
+                return;
+            }
+            var widthsAttr = tag.attr(MARKER_ATTR_NAME);
+            var refValue = Objects.toString(tag.attr("src"), "");
+            var image = new MarkedImage(refValue);
+            markedImages.add(image);
+
+            var imageFile = resolveImageFile(refValue, docBaseURI, rootDir);
+            if (imageFile == null) {
+                LOG.warn("Can't create responsive variants of image '{}' referenced in '{}' " +
+                        "because it's not a file of the site", refValue, htmlFile);
+                return;
+            }
+            if (tag.hasAttr("srcset")) {
+                LOG.debug("Not overwriting existing srcset of image '{}' in '{}'", refValue, htmlFile);
+                return;
+            }
+
+            try {
+                image.widths = widthsAttr.isBlank() ? defaultWidths : parseWidths(widthsAttr);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Invalid widths '{}' of image '{}' in '{}'. Using the default widths instead.",
+                        widthsAttr, refValue, htmlFile);
+                image.widths = defaultWidths;
+            }
+            image.imageFile = imageFile;
+        });
+        return markedImages;
+    }
+
+    private static Path resolveImageFile(String refValue, URI docBaseURI, Path rootDir) {
+        try {
+            var refURI = URI.create(refValue);
+            if (refValue.isBlank() || refURI.getHost() != null || docBaseURI.getHost() != null) {
+                return null;
+            }
+
+            var assetPath = AssetReferences.translateToAssetPath(refURI, docBaseURI);
+            var normalizedRootDir = rootDir.toAbsolutePath().normalize();
+            var imageFile = normalizedRootDir.resolve(assetPath.substring(1)).normalize();
+            return imageFile.startsWith(normalizedRootDir) && Files.isRegularFile(imageFile) ? imageFile : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the `srcset` listing the given variants and the original image or null if they
+     * can't be listed
+     */
+    private static String srcset(String refValue, Path imageFile, ImageDerivatives.Result result) {
+        var fileName = imageFile.getFileName().toString();
+        var fileNamePattern = Pattern.compile(Pattern.quote(fileName) + "$");
+        if (!fileNamePattern.matcher(refValue).find()) {
+            LOG.warn("Can't list responsive variants of image '{}' because its URL doesn't end with its file name",
+                    refValue);
+            return null;
+        }
+
+        var srcset = new StringJoiner(", ");
+        for (Map.Entry<Integer, String> variant : result.getVariants().entrySet()) {
+            var variantRef = fileNamePattern.matcher(refValue)
+                    .replaceFirst(Matcher.quoteReplacement(variant.getValue()));
+            srcset.add(variantRef + " " + variant.getKey() + "w");
+        }
+        srcset.add(refValue + " " + result.getOriginalWidth() + "w");
+        return srcset.toString();
+    }
+
+    private static String derivationKey(Path imageFile, List<Integer> widths) {
+        return imageFile + "|" + widths;
+    }
+
+    /**
+     * A marked image of a document.
+     */
+    private static final class MarkedImage {
+        private final String refValue;
+
+        // Note: Null unless variants of the image are to be created
+        private Path imageFile;
+        private List<Integer> widths;
+
+        // Note: Null unless variants of the image have been created
+        private String srcset;
+
+        private MarkedImage(String refValue) {
+            this.refValue = refValue;
+        }
+    }
+}
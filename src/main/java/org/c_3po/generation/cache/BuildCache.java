@@ -0,0 +1,36 @@
+package org.c_3po.generation.cache;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * A content-addressed store of build outputs, e.g. rendered pages, keyed by the hash of
+ * all inputs of an output. See {@link CacheKey}.
+ *
+ * Since keys are derived from inputs only, a cache can be shared by all machines building
+ * the same site, e.g. developer machines and CI runners.
+ */
+public interface BuildCache {
+
+    /**
+     * @return the output stored under the given key or null if there's none
+     */
+    byte[] load(String key) throws IOException;
+
+    void store(String key, byte[] output) throws IOException;
+
+    /**
+     * Creates a build cache from its location, which is either the URL of an HTTP server
+     * or a directory.
+     *
+     * @param baseDir the directory a relative directory is resolved against
+     */
+    static BuildCache forLocation(String location, Path baseDir) {
+        var trimmedLocation = location.trim();
+        if (trimmedLocation.startsWith("http://") || trimmedLocation.startsWith("https://")) {
+            return HttpBuildCache.create(URI.create(trimmedLocation));
+        }
+        return LocalBuildCache.create(baseDir.resolve(trimmedLocation));
+    }
+}
@@ -0,0 +1,50 @@
+package org.c_3po.generation.cache;
+
+import org.c_3po.util.ChecksumCalculator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the key of an output of a build from all of its inputs, e.g. the source file,
+ * the templates and the version of C-3PO. Inputs are added in a fixed order and each of
+ * them is prefixed with its length, so that different inputs never yield the same key.
+ */
+public final class CacheKey {
+    private static final Pattern VALID_KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final MessageDigest digest;
+
+    private CacheKey(MessageDigest digest) {
+        this.digest = digest;
+    }
+
+    public static CacheKey create() {
+        return new CacheKey(ChecksumCalculator.newDigest("SHA-256"));
+    }
+
+    public CacheKey add(String input) {
+        return add(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public CacheKey add(byte[] input) {
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(input.length).array());
+        digest.update(input);
+        return this;
+    }
+
+    /**
+     * @return the key as a hex string. Completes the key, so no more inputs can be added.
+     */
+    public String hash() {
+        return ChecksumCalculator.encodeHexString(digest.digest());
+    }
+
+    static void requireValid(String key) {
+        if (!VALID_KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid build cache key '" + key + "'");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.c_3po.generation.cache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * A build cache backed by an HTTP server. An output is fetched with a `GET` request to
+ * the base URL followed by its key, e.g. `https://cache.example.com/c-3po/3f2a...`, and
+ * uploaded with a `PUT` request to the same URL. A `404` response means there's no output
+ * stored under a key. Any server supporting these two methods will do, e.g. nginx with
+ * WebDAV enabled.
+ */
+public final class HttpBuildCache implements BuildCache {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI baseUri;
+    private final HttpClient httpClient;
+
+    private HttpBuildCache(URI baseUri, HttpClient httpClient) {
+        this.baseUri = baseUri;
+        this.httpClient = httpClient;
+    }
+
+    public static HttpBuildCache create(URI baseUri) {
+        var path = baseUri.getPath();
+        var normalizedBaseUri = path == null || path.endsWith("/") ? baseUri : URI.create(baseUri + "/");
+        return new HttpBuildCache(normalizedBaseUri, HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build());
+    }
+
+    @Override
+    public byte[] load(String key) throws IOException {
+        var request = HttpRequest.newBuilder(uri(key)).timeout(REQUEST_TIMEOUT).GET().build();
+        var response = send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Failed to load '" + request.uri() + "', status code " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    @Override
+    public void store(String key, byte[] output) throws IOException {
+        var request = HttpRequest.newBuilder(uri(key))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/octet-stream")
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(output))
+                .build();
+        var response = send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Failed to store '" + request.uri() + "', status code " + response.statusCode());
+        }
+    }
+
+    private URI uri(String key) {
+        CacheKey.requireValid(key);
+        return baseUri.resolve(key);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException {
+        try {
+            return httpClient.send(request, bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting '" + request.uri() + "'");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return baseUri.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package org.c_3po.generation.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A build cache storing outputs in a directory, each in a file named after its key.
+ * Outputs are spread across subdirectories named after the first two characters of their keys.
+ */
+public final class LocalBuildCache implements BuildCache {
+    private final Path directory;
+
+    private LocalBuildCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static LocalBuildCache create(Path directory) {
+        return new LocalBuildCache(directory);
+    }
+
+    @Override
+    public byte[] load(String key) throws IOException {
+        try {
+            return Files.readAllBytes(file(key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void store(String key, byte[] output) throws IOException {
+        var file = file(key);
+        Files.createDirectories(file.getParent());
+
+        // Note: Moved into place so that concurrent builds never read a partially written output
+        var tempFile = Files.createTempFile(file.getParent(), key, ".tmp");
+        try {
+            Files.write(tempFile, output);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Path file(String key) {
+        CacheKey.requireValid(key);
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
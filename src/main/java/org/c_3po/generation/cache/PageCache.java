@@ -0,0 +1,247 @@
+package org.c_3po.generation.cache;
+
+import org.c_3po.io.FileHashes;
+import org.c_3po.io.OutputBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches rendered pages and compiled stylesheets of a build from a {@link BuildCache} and
+ * stores the ones built anew.
+ *
+ * The keys of all pages, respectively all stylesheets, of a build share a base that covers what
+ * any of them might depend on. See {@link #beginBuild(String, String)}. If the build cache fails,
+ * e.g. because its server is down, it isn't used for the rest of the build.
+ */
+public final class PageCache {
+    private static final Logger LOG = LoggerFactory.getLogger(PageCache.class);
+
+    // Note: Null unless a build cache is configured
+    private final BuildCache buildCache;
+    private final boolean readOnly;
+    private final Path sourceDir;
+    private final FileHashes fileHashes;
+
+    // Note: Only set while pages and assets are being built
+    private volatile String pageKeyBase;
+    private volatile String stylesheetKeyBase;
+    private volatile boolean unavailable;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private PageCache(BuildCache buildCache, boolean readOnly, Path sourceDir, FileHashes fileHashes) {
+        this.buildCache = buildCache;
+        this.readOnly = readOnly;
+        this.sourceDir = sourceDir;
+        this.fileHashes = fileHashes;
+    }
+
+    /**
+     * @param buildCache the build cache to use or null if nothing is to be cached
+     * @param readOnly true if outputs are fetched from the build cache but not stored
+     * @param sourceDir the root source directory of the site, which paths in keys are relative to
+     */
+    public static PageCache create(BuildCache buildCache, boolean readOnly, Path sourceDir, FileHashes fileHashes) {
+        return new PageCache(buildCache, readOnly, sourceDir, fileHashes);
+    }
+
+    /**
+     * @return false if there's no build cache, in which case no keys are handed out
+     */
+    public boolean isEnabled() {
+        return buildCache != null;
+    }
+
+    /**
+     * Starts handing out keys for the pages and stylesheets of a build. Also gives a build cache
+     * that has failed in a previous build another try.
+     *
+     * @param pageInputs a digest of what all pages are rendered from besides their own source
+     *                   file, e.g. the templates, the site's data and settings
+     * @param stylesheetInputs a digest of what all stylesheets are compiled from, e.g. all SASS files
+     */
+    public void beginBuild(String pageInputs, String stylesheetInputs) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        var version = Objects.toString(PageCache.class.getPackage().getImplementationVersion(), "development");
+        pageKeyBase = CacheKey.create().add("page").add(version).add(pageInputs).hash();
+        stylesheetKeyBase = CacheKey.create().add("stylesheet").add(version).add(stylesheetInputs).hash();
+        unavailable = false;
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Stops handing out keys and logs how many outputs have been fetched from the build cache.
+     */
+    public void endBuild() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        pageKeyBase = null;
+        stylesheetKeyBase = null;
+        LOG.info("Fetched {} of {} pages and stylesheets from build cache '{}'", hits.get(),
+                hits.get() + misses.get(), buildCache);
+    }
+
+    /**
+     * @return the key of a page or null if pages are not cached
+     */
+    public String pageKey(Path sourceFile, String templateName) {
+        var keyBase = pageKeyBase;
+        if (keyBase == null) {
+            return null;
+        }
+
+        // Note: Paths are part of the key since templates can access them, e.g. via `markdownFileName`.
+        // They are relative to the source dir, so that copies of a site in different dirs share entries.
+        try {
+            return CacheKey.create().add(keyBase).add(sourcePathOf(sourceFile)).add(fileHashes.sha1(sourceFile))
+                    .add(templateName).hash();
+        } catch (IOException e) {
+            LOG.debug("Not caching '{}'. Reason: '{}'", sourceFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the key of a stylesheet or null if stylesheets are not cached
+     */
+    public String stylesheetKey(Path sassFile) {
+        var keyBase = stylesheetKeyBase;
+        if (keyBase == null) {
+            return null;
+        }
+        return CacheKey.create().add(keyBase).add(sourcePathOf(sassFile)).hash();
+    }
+
+    /**
+     * @return the output stored under the given key or null if there's none or the build cache
+     * can't be reached
+     */
+    public String load(String key) {
+        if (key == null || unavailable) {
+            return null;
+        }
+
+        try {
+            byte[] output = buildCache.load(key);
+            if (output == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return new String(output, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            disable(e);
+            return null;
+        }
+    }
+
+    /**
+     * Same as {@link #load(String)} but appends the output to the given buffer.
+     *
+     * @return false if there's no output stored under the given key or the build cache can't be reached
+     */
+    public boolean load(String key, OutputBuffer buffer) {
+        String output = load(key);
+        if (output == null) {
+            return false;
+        }
+        buffer.write(output);
+        return true;
+    }
+
+    public void store(String key, String output) {
+        if (isWritable(key)) {
+            store(key, output.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public void store(String key, OutputBuffer output) {
+        if (isWritable(key)) {
+            store(key, output.toByteArray());
+        }
+    }
+
+    private void store(String key, byte[] output) {
+        try {
+            buildCache.store(key, output);
+        } catch (IOException e) {
+            disable(e);
+        }
+    }
+
+    private boolean isWritable(String key) {
+        return key != null && !readOnly && !unavailable;
+    }
+
+    /**
+     * Stops using the build cache for the rest of a build, e.g. if its server is down.
+     */
+    private void disable(IOException e) {
+        if (!unavailable) {
+            unavailable = true;
+            LOG.warn("Not using build cache '{}' for the rest of this build. Reason: '{}'", buildCache,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Computes a digest of the paths and contents of all source files with one of the given
+     * extensions, including the ones that are excluded from the result, e.g. layouts.
+     *
+     * @param dirFilter accepts the directories to look for files in
+     */
+    public String digestSourceFiles(DirectoryStream.Filter<Path> dirFilter, String... extensions)
+            throws IOException {
+        SortedMap<String, Path> files = new TreeMap<>();
+        Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                return dirFilter.accept(dir.normalize()) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                var fileName = file.getFileName().toString();
+                if (Arrays.stream(extensions).anyMatch(fileName::endsWith)) {
+                    files.put(sourceDir.relativize(file).toString().replace('\\', '/'), file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        var digest = CacheKey.create();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            digest.add(file.getKey()).add(fileHashes.sha1(file.getValue()));
+        }
+        return digest.hash();
+    }
+
+    /**
+     * @return the path of the given file relative to the source dir, delimited by slashes
+     */
+    private String sourcePathOf(Path file) {
+        return sourceDir.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize())
+                .toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,107 @@
+package org.c_3po.generation.collections;
+
+import org.c_3po.generation.markdown.ContentIndex;
+import org.c_3po.util.StringUtils;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Utility class for writing an <a href="https://tools.ietf.org/html/rfc4287">Atom</a> feed
+ * of markdown documents.
+ *
+ * The feed is streamed to disk entry by entry instead of building up a DOM first.
+ */
+class AtomFeedGenerator {
+    private static final String NAMESPACE_URI = "http://www.w3.org/2005/Atom";
+    private static final String META_TAG_DESCRIPTION = "description";
+
+    // Make it non-instantiable and prohibit subclassing.
+    private AtomFeedGenerator() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Writes a feed listing the given entries.
+     *
+     * @param file the file to write the feed to
+     * @param title the title of the feed
+     * @param baseUrl the base URL of the deployed website
+     * @param collection the directory of the collection relative to the site's root
+     * @param entries the entries to list, newest first
+     */
+    static void generate(Path file, String title, String baseUrl, String collection,
+                         List<ContentIndex.Entry> entries) throws IOException {
+        var collectionUrl = collection.isEmpty() ? joinUrl(baseUrl, "") : joinUrl(baseUrl, collection + "/");
+        var feedUrl = collectionUrl + CollectionGenerator.FEED_FILE_NAME;
+        var updated = entries.stream().map(ContentIndex.Entry::getLastModified).max(Instant::compareTo)
+                .orElse(Instant.EPOCH);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        var tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+
+            // Note: The JDK's default implementation since the XML parsers on the classpath don't provide one
+            XMLStreamWriter writer = XMLOutputFactory.newDefaultFactory().createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("feed");
+            writer.writeDefaultNamespace(NAMESPACE_URI);
+            writeTextElement(writer, "id", feedUrl);
+            writeTextElement(writer, "title", title);
+            writeTextElement(writer, "updated", updated.toString());
+            writeLinkElement(writer, "self", feedUrl);
+            writeLinkElement(writer, "alternate", collectionUrl);
+
+            for (ContentIndex.Entry entry : entries) {
+                var entryUrl = joinUrl(baseUrl, entry.getUrl());
+                writer.writeStartElement("entry");
+                writeTextElement(writer, "id", entryUrl);
+                writeTextElement(writer, "title", entry.getTitle());
+                writeTextElement(writer, "published", entry.getDate().atStartOfDay(ZoneOffset.UTC).toInstant().toString());
+                writeTextElement(writer, "updated", entry.getLastModified().toString());
+                writeLinkElement(writer, "alternate", entryUrl);
+                var description = entry.getMetaTags().get(META_TAG_DESCRIPTION);
+                if (!StringUtils.isBlank(description)) {
+                    writeTextElement(writer, "summary", description);
+                }
+                writer.writeEndElement();
+            }
+
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(String.format("Failed to write feed '%s'", file), e);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Note: Not using {@link StringUtils#trimmedJoin(String, String...)} since it would also
+     * remove the slashes within the URL.
+     */
+    private static String joinUrl(String baseUrl, String path) {
+        return baseUrl.replaceAll("/+$", "") + "/" + path.replaceAll("^/+", "");
+    }
+
+    private static void writeTextElement(XMLStreamWriter writer, String name, String text) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+
+    private static void writeLinkElement(XMLStreamWriter writer, String rel, String href) throws XMLStreamException {
+        writer.writeEmptyElement("link");
+        writer.writeAttribute("rel", rel);
+        writer.writeAttribute("href", href);
+    }
+}
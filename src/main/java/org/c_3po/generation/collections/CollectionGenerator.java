@@ -0,0 +1,357 @@
+package org.c_3po.generation.collections;
+
+import org.c_3po.generation.BuildExecutor;
+import org.c_3po.generation.markdown.ContentIndex;
+import org.c_3po.util.ChecksumCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the listing pages, tag pages and feed of markdown collections.
+ *
+ * A collection is a directory containing markdown documents, a `md-template.html`
+ * and a `md-list-template.html`. Its documents are split into pages of a fixed size
+ * where page 1 holds the oldest documents. That way adding a document only affects
+ * the newest page, the pages of its tags and the feed instead of shifting every
+ * document to another page.
+ *
+ * Each output is rendered along with a signature of everything it's derived from.
+ * Outputs whose signature hasn't changed since the previous generation are skipped.
+ */
+public class CollectionGenerator {
+    private static final Logger LOG = LoggerFactory.getLogger(CollectionGenerator.class);
+    public static final String LIST_TEMPLATE_NAME = "md-list-template.html";
+    public static final String FEED_FILE_NAME = "feed.xml";
+    static final int FEED_SIZE = 20;
+    private static final String META_TAG_TAGS = "tags";
+
+    // Note: Unicode-aware, so that letters of any script, e.g. umlauts, are kept in slugs
+    private static final Pattern SLUG_SEPARATORS = Pattern.compile("(?U)[^\\p{Alnum}\\p{M}]+");
+    private static final Pattern SLUG_PLUS_SIGNS = Pattern.compile("(?U)(?<=[\\p{Alnum}+])\\+");
+    private static final Pattern SLUG_SHARP_SIGNS = Pattern.compile("(?U)(?<=\\p{Alnum})#");
+    private static final Pattern TAG_KEY_IGNORED_CHARS = Pattern.compile("(?U)[^\\p{Alnum}\\p{M}+#]+");
+
+    private final Path destinationDir;
+    private final Path signaturesFile;
+    private final int pageSize;
+    private final String feedBaseUrl;
+    private final String feedTitle;
+    private final PageRenderer renderer;
+
+    private Properties signatures;
+
+    /**
+     * Renders a listing page from a template.
+     */
+    @FunctionalInterface
+    public interface PageRenderer {
+        void render(Path templateFile, Map<String, Object> variables, Path destinationFile) throws IOException;
+    }
+
+    private CollectionGenerator(Path destinationDir, Path signaturesFile, int pageSize, String feedBaseUrl,
+                                String feedTitle, PageRenderer renderer) {
+        this.destinationDir = destinationDir;
+        this.signaturesFile = signaturesFile;
+        this.pageSize = pageSize;
+        this.feedBaseUrl = feedBaseUrl;
+        this.feedTitle = feedTitle;
+        this.renderer = renderer;
+    }
+
+    /**
+     * @param destinationDir the root directory of the generated site
+     * @param signaturesFile the file signatures of generated outputs are kept in between builds
+     * @param pageSize the number of documents per listing page
+     * @param feedBaseUrl the base URL of the deployed website or null if no feeds should be generated
+     * @param feedTitle the title of feeds or null to use the collection's directory name
+     * @param renderer renders listing pages
+     */
+    public static CollectionGenerator getInstance(Path destinationDir, Path signaturesFile, int pageSize,
+                                                  String feedBaseUrl, String feedTitle, PageRenderer renderer) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be greater than 0 but is " + pageSize);
+        }
+        return new CollectionGenerator(destinationDir, signaturesFile, pageSize, feedBaseUrl, feedTitle,
+                Objects.requireNonNull(renderer));
+    }
+
+    /**
+     * Brings the outputs of all given collections up to date and deletes the ones
+     * of documents, tags and collections that don't exist anymore.
+     *
+     * @param contentIndex the index of all markdown documents
+     * @param collectionDirs the collection directories relative to the site's root, e.g. `blog`
+     * @param sourceDir the site's root source directory
+     * @param renderSignature changes whenever anything listing pages are rendered from besides their
+     *                        entries changes, e.g. a template, a data file or a setting
+     */
+    public synchronized void generate(ContentIndex contentIndex, Collection<String> collectionDirs, Path sourceDir,
+                                      String renderSignature, BuildExecutor executor) throws IOException {
+        if (signatures == null) {
+            signatures = loadSignatures(signaturesFile);
+        }
+
+        Map<String, String> currentSignatures = new ConcurrentHashMap<>();
+        int renderCount = 0;
+        try (var tasks = executor.newTaskGroup()) {
+            for (String collectionDir : collectionDirs) {
+                var collection = normalize(collectionDir);
+                var templateFile = sourceDir.resolve(collection).resolve(LIST_TEMPLATE_NAME);
+                var entries = contentIndex.getEntries().stream()
+                        .filter(entry -> isDirectChild(collection, entry.getSourcePath()))
+                        .collect(Collectors.toList());
+
+                // Listing pages of all documents and of each tag
+                for (Page page : paginate(collection, null, null, entries)) {
+                    renderCount += forkPageIfChanged(page, templateFile, renderSignature, currentSignatures, tasks);
+                }
+                for (Map.Entry<String, TagGroup> tag : groupByTag(entries).entrySet()) {
+                    for (Page page : paginate(collection, tag.getKey(), tag.getValue().slug,
+                            tag.getValue().entries)) {
+                        renderCount += forkPageIfChanged(page, templateFile, renderSignature, currentSignatures,
+                                tasks);
+                    }
+                }
+
+                // Feed
+                if (feedBaseUrl != null) {
+                    var feedEntries = entries.subList(0, Math.min(FEED_SIZE, entries.size()));
+                    var title = feedTitle != null ? feedTitle : collectionTitle(collection);
+                    var output = prefix(collection) + FEED_FILE_NAME;
+                    var signature = signature(feedEntries, feedBaseUrl, title);
+                    currentSignatures.put(output, signature);
+                    if (isOutdated(output, signature)) {
+                        renderCount++;
+                        tasks.forkFileTask(() -> {
+                            try {
+                                AtomFeedGenerator.generate(destinationDir.resolve(output), title, feedBaseUrl,
+                                        collection, feedEntries);
+                            } catch (IOException e) {
+                                LOG.error("Failed to generate feed '{}'", output, e);
+                                currentSignatures.remove(output);
+                            }
+                            return null;
+                        });
+                    }
+                }
+            }
+            tasks.join();
+        }
+
+        deleteStaleOutputs(currentSignatures.keySet());
+        LOG.debug("Generated {} outputs of {} markdown collection(s)", renderCount, collectionDirs.size());
+
+        if (!currentSignatures.equals(signatures)) {
+            signatures = new Properties();
+            signatures.putAll(currentSignatures);
+            storeSignatures(signaturesFile, signatures);
+        }
+    }
+
+    private int forkPageIfChanged(Page page, Path templateFile, String renderSignature,
+                                  Map<String, String> currentSignatures, BuildExecutor.TaskGroup tasks) {
+        var signature = signature(page.getEntries(), renderSignature, String.valueOf(page.getNumber()),
+                page.getNewerUrl(), page.getOlderUrl());
+        currentSignatures.put(page.getUrl(), signature);
+        if (!isOutdated(page.getUrl(), signature)) {
+            return 0;
+        }
+
+        tasks.forkCpuTask(() -> {
+            try {
+                var variables = new HashMap<String, Object>();
+                variables.put("page", page);
+                variables.put("tag", page.getTag());
+                renderer.render(templateFile, variables, destinationDir.resolve(page.getUrl()));
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Failed to generate listing page '{}' from '{}': [{}]", page.getUrl(), templateFile,
+                        e.getMessage());
+                currentSignatures.remove(page.getUrl());
+            }
+            return null;
+        });
+        return 1;
+    }
+
+    private boolean isOutdated(String output, String signature) {
+        return !signature.equals(signatures.getProperty(output)) || Files.notExists(destinationDir.resolve(output));
+    }
+
+    /**
+     * Splits the given entries, newest first, into pages where page 1 holds the oldest entries.
+     *
+     * @param tag the tag the entries are listed for or null if they're listed for the collection
+     * @param tagSlug the slug the URLs of the tag's pages are made of or null if there's no tag
+     */
+    List<Page> paginate(String collection, String tag, String tagSlug, List<ContentIndex.Entry> entries) {
+        var baseUrl = prefix(collection) + (tag != null ? "tags/" + tagSlug + "/" : "") + "page/";
+        var pageCount = Math.max(1, (entries.size() + pageSize - 1) / pageSize);
+        var pages = new ArrayList<Page>(pageCount);
+        for (int number = 1; number <= pageCount; number++) {
+
+            // Note: Entries are newest first, so the oldest page is at the end of the list
+            var toIndex = entries.size() - (number - 1) * pageSize;
+            var fromIndex = Math.max(0, toIndex - pageSize);
+            pages.add(new Page(collection, tag, number, entries.subList(fromIndex, toIndex),
+                    baseUrl + number + ".html",
+                    number < pageCount ? baseUrl + (number + 1) + ".html" : null,
+                    number > 1 ? baseUrl + (number - 1) + ".html" : null));
+        }
+        return pages;
+    }
+
+    /**
+     * Groups the given entries by tag. Tags differing only in case or punctuation, e.g.
+     * `Java EE` and `java-ee`, end up in the same group named after the first occurrence.
+     *
+     * Distinct tags might still have the same slug, e.g. `C#` and `C sharp`. Of those, the one
+     * whose key sorts first keeps the slug, the others get a hash appended to it. That way the
+     * URLs of tags don't depend on the order documents are indexed in.
+     */
+    private static SortedMap<String, TagGroup> groupByTag(List<ContentIndex.Entry> entries) {
+        var groupsByKey = new TreeMap<String, TagGroup>();
+        for (ContentIndex.Entry entry : entries) {
+            for (String tag : entry.getMetaTagValues(META_TAG_TAGS)) {
+                if (tag.isBlank()) {
+                    continue;
+                }
+                var group = groupsByKey.computeIfAbsent(tagKey(tag), key -> new TagGroup(tag));
+                if (group.entries.isEmpty() || group.entries.get(group.entries.size() - 1) != entry) {
+                    group.entries.add(entry);
+                }
+            }
+        }
+
+        var tagsBySlug = new HashMap<String, String>();
+        var groupsByTag = new TreeMap<String, TagGroup>();
+        for (Map.Entry<String, TagGroup> keyedGroup : groupsByKey.entrySet()) {
+            var group = keyedGroup.getValue();
+            var slug = slugify(group.tag);
+            var collidingTag = tagsBySlug.putIfAbsent(slug, group.tag);
+            if (collidingTag != null) {
+                var distinctSlug = slug + "-" + shortHash(keyedGroup.getKey());
+                LOG.warn("Tags '{}' and '{}' have the same slug '{}'. Using '{}' for the pages of '{}'.",
+                        collidingTag, group.tag, slug, distinctSlug, group.tag);
+                slug = distinctSlug;
+                tagsBySlug.put(slug, group.tag);
+            }
+            group.slug = slug;
+            groupsByTag.put(group.tag, group);
+        }
+        return groupsByTag;
+    }
+
+    /**
+     * @return what distinguishes a tag from others, i.e. its letters, digits and signs like `+`
+     * that make up names such as `C++`, regardless of case and other punctuation
+     */
+    private static String tagKey(String tag) {
+        var normalizedTag = Normalizer.normalize(tag, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        var key = TAG_KEY_IGNORED_CHARS.matcher(normalizedTag).replaceAll("");
+        return key.isEmpty() ? normalizedTag.strip() : key;
+    }
+
+    private void deleteStaleOutputs(Set<String> currentOutputs) throws IOException {
+        for (String output : signatures.stringPropertyNames()) {
+            if (!currentOutputs.contains(output)) {
+                LOG.debug("Deleting stale collection output '{}'", output);
+                Files.deleteIfExists(destinationDir.resolve(output));
+            }
+        }
+    }
+
+    private static String signature(List<ContentIndex.Entry> entries, String... parameters) {
+        var digest = ChecksumCalculator.newDigest("SHA-1");
+        for (String parameter : parameters) {
+            digest.update(String.valueOf(parameter).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        for (ContentIndex.Entry entry : entries) {
+            digest.update((entry.getSourcePath() + '\0' + entry.getContentHash() + '\0' + entry.getDate()
+                    + '\0' + entry.getLastModified().toEpochMilli() + '\0').getBytes(StandardCharsets.UTF_8));
+        }
+        return ChecksumCalculator.encodeHexString(digest.digest());
+    }
+
+    private static Properties loadSignatures(Path file) {
+        var properties = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                LOG.warn("Failed to load signatures of collection outputs from '{}'. Regenerating all of them.", file);
+                properties.clear();
+            }
+        }
+        return properties;
+    }
+
+    private static void storeSignatures(Path file, Properties signatures) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        var tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            signatures.store(out, null);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean isDirectChild(String collection, String sourcePath) {
+        var prefix = prefix(collection);
+        return sourcePath.startsWith(prefix) && sourcePath.indexOf('/', prefix.length()) == -1;
+    }
+
+    private static String collectionTitle(String collection) {
+        return collection.isEmpty() ? "Feed" : collection.substring(collection.lastIndexOf('/') + 1);
+    }
+
+    private static String normalize(String dir) {
+        return dir.replace('\\', '/').replaceAll("^/+|/+$", "");
+    }
+
+    private static String prefix(String collection) {
+        return collection.isEmpty() ? "" : collection + "/";
+    }
+
+    /**
+     * Turns a tag into a URL friendly string, e.g. `Java EE` into `java-ee` and `C++` into
+     * `c-plus-plus`. Letters of any script are kept. Tags without any letters or digits,
+     * e.g. an emoji, are turned into a hash such as `tag-3f4c2a1b`.
+     */
+    static String slugify(String tag) {
+        var normalizedTag = Normalizer.normalize(tag, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        var slug = SLUG_PLUS_SIGNS.matcher(normalizedTag).replaceAll("-plus-");
+        slug = SLUG_SHARP_SIGNS.matcher(slug).replaceAll("-sharp-");
+        slug = SLUG_SEPARATORS.matcher(slug).replaceAll("-").replaceAll("^-|-$", "");
+        return slug.isEmpty() ? "tag-" + shortHash(normalizedTag.strip()) : slug;
+    }
+
+    private static String shortHash(String value) {
+        return ChecksumCalculator.sha1(value).substring(0, 8);
+    }
+
+    /**
+     * The entries of a tag along with the slug of the URLs of its pages.
+     */
+    private static final class TagGroup {
+        private final String tag;
+        private final List<ContentIndex.Entry> entries = new ArrayList<>();
+        private String slug;
+
+        private TagGroup(String tag) {
+            this.tag = tag;
+        }
+    }
+}
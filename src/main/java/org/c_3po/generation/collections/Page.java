@@ -0,0 +1,89 @@
+package org.c_3po.generation.collections;
+
+import org.c_3po.generation.markdown.ContentIndex;
+
+import java.util.List;
+
+/**
+ * A single listing page of a markdown collection, available to `md-list-template.html` as `page`.
+ *
+ * URLs are relative to the site's root. Use {@link #getRootPath()} as the page's base href to
+ * resolve them, e.g. `&lt;base th:href="${page.rootPath}"&gt;`.
+ */
+public class Page {
+    private final String collection;
+    private final String tag;
+    private final int number;
+    private final List<ContentIndex.Entry> entries;
+    private final String url;
+    private final String newerUrl;
+    private final String olderUrl;
+
+    Page(String collection, String tag, int number, List<ContentIndex.Entry> entries, String url,
+         String newerUrl, String olderUrl) {
+        this.collection = collection;
+        this.tag = tag;
+        this.number = number;
+        this.entries = entries;
+        this.url = url;
+        this.newerUrl = newerUrl;
+        this.olderUrl = olderUrl;
+    }
+
+    /**
+     * @return the directory of the collection relative to the site's root, e.g. `blog`
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * @return the tag all entries of this page are tagged with or null if it lists all entries
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the number of this page. Page 1 holds the oldest entries.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * @return the entries of this page, newest first
+     */
+    public List<ContentIndex.Entry> getEntries() {
+        return entries;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the URL of the page with newer entries or null if this is the newest page
+     */
+    public String getNewerUrl() {
+        return newerUrl;
+    }
+
+    /**
+     * @return the URL of the page with older entries or null if this is the first page
+     */
+    public String getOlderUrl() {
+        return olderUrl;
+    }
+
+    public boolean isNewest() {
+        return newerUrl == null;
+    }
+
+    /**
+     * @return the relative path from this page to the site's root, e.g. `../../`
+     */
+    public String getRootPath() {
+        return "../".repeat((int) url.chars().filter(c -> c == '/').count());
+    }
+}
@@ -1,16 +1,21 @@
 package org.c_3po.generation.crawl;
 
+import org.c_3po.util.PathTrie;
+
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Represents the structure of a generated website.
+ *
+ * Pages are kept in a {@link PathTrie}, so a site of many pages takes memory in proportion to
+ * the number of its distinct path segments. Their URLs are created one by one while iterating
+ * {@link #urls()}.
  */
 public class SiteStructure {
     public static final String URL_PATH_DELIMITER = "/";
     private final String baseUrl;
-    private List<Path> paths = new ArrayList<>();
+    private final PathTrie<Boolean> paths = PathTrie.create();
 
     private SiteStructure(String baseUrl) {
         this.baseUrl = withTrailingSlash(baseUrl);
@@ -31,11 +36,49 @@ public class SiteStructure {
         if (path.isAbsolute()) {
             throw new IllegalArgumentException("Path must not be an absolute path.");
         }
-        paths.add(path);
+        paths.put(toUrlPart(path), Boolean.TRUE);
+    }
+
+    /**
+     * @return true if the given URL is the one of a page of this site structure
+     */
+    public boolean containsUrl(String url) {
+        return url.startsWith(baseUrl) && paths.contains(url.substring(baseUrl.length()));
+    }
+
+    /**
+     * @return the number of pages
+     */
+    public int size() {
+        return paths.size();
     }
 
+    /**
+     * @return the URLs of all pages, each of which is created only when iterated to
+     */
+    public Iterable<String> urls() {
+        return () -> new Iterator<>() {
+            private final Iterator<Map.Entry<String, Boolean>> entries = paths.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return baseUrl + entries.next().getKey();
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #urls()} but materializes all of them at once.
+     */
     public List<String> toUrls() {
-        return paths.stream().map(pagePath -> baseUrl + toUrlPart(pagePath)).collect(Collectors.toList());
+        List<String> urls = new ArrayList<>(paths.size());
+        urls().forEach(urls::add);
+        return urls;
     }
 
     public String getBaseUrl() {
@@ -3,19 +3,15 @@ package org.c_3po.generation.crawl;
 import org.c_3po.generation.GenerationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.nio.file.StandardCopyOption;
 import java.util.Objects;
 
 /**
@@ -42,42 +38,30 @@ public class SitemapGenerator {
     public static void generate(SiteStructure siteStructure, Path filePath) throws GenerationException {
         Objects.requireNonNull(siteStructure, "siteStructure must not be null");
         Objects.requireNonNull(filePath, "filePath must not be null");
-        List<String> urls = siteStructure.toUrls();
 
+        // Note: The URLs are written as they're iterated instead of building a DOM of all of them
+        var tempFilePath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
         try {
-            Document document = newSitemapDocument();
-            Element urlSetElem = document.getDocumentElement();
-            urls.forEach(url -> urlSetElem.appendChild(newUrlElem(url, document)));
-
-            writeToFile(document, filePath);
-        } catch (ParserConfigurationException | TransformerException e) {
+            try (Writer out = Files.newBufferedWriter(tempFilePath, StandardCharsets.UTF_8)) {
+                XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+                writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+                writer.writeStartElement(ELEM_URLSET);
+                writer.writeDefaultNamespace(NAMESPACE_URI);
+                for (String url : siteStructure.urls()) {
+                    writer.writeStartElement("url");
+                    writer.writeStartElement("loc");
+                    writer.writeCharacters(url);
+                    writer.writeEndElement();
+                    writer.writeEndElement();
+                }
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.close();
+            }
+            Files.move(tempFilePath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | XMLStreamException e) {
             LOG.debug("Failed to generate sitemap.xml. See enclosed exception for more details.", e);
             throw new GenerationException("Failed to generate sitemap xml file", e);
         }
     }
-
-    private static Document newSitemapDocument() throws ParserConfigurationException {
-        DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        return documentBuilder.getDOMImplementation().createDocument(NAMESPACE_URI, ELEM_URLSET, null);
-    }
-
-    private static Element newUrlElem(String url, Document document) {
-        Element urlElem = document.createElement("url");
-        urlElem.appendChild(newLocElem(url, document));
-        return urlElem;
-    }
-
-    private static Element newLocElem(String url, Document document) {
-        Element locElem = document.createElement("loc");
-        locElem.setTextContent(url);
-        return locElem;
-    }
-
-    private static void writeToFile(Document document, Path filePath) throws TransformerException {
-
-        // Note: for XML UTF-8 is the default character encoding. Therefore we assume that
-        // Transformer uses UTF-8 as well.
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.transform(new DOMSource(document), new StreamResult(filePath.toFile()));
-    }
 }
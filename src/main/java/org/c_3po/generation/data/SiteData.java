@@ -0,0 +1,163 @@
+package org.c_3po.generation.data;
+
+import org.c_3po.util.ChecksumCalculator;
+import org.c_3po.util.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Site-wide data, e.g. navigation entries or authors, read from the JSON, YAML and properties
+ * files in the `_data` directory of a site.
+ *
+ * Each file becomes an entry named after the file, e.g. `_data/authors.json` becomes
+ * `authors`, and files in subdirectories become entries of nested maps, e.g.
+ * `_data/shop/products.json` becomes `shop.products`. JSON and YAML objects become maps,
+ * arrays lists and properties files maps of strings. All of them are immutable, so they can be
+ * shared by all pages rendered concurrently.
+ */
+public final class SiteData {
+    private static final Logger LOG = LoggerFactory.getLogger(SiteData.class);
+    public static final String DIRECTORY_NAME = "_data";
+
+    private static final SiteData EMPTY = new SiteData(Collections.emptyMap(), "", "");
+
+    private final Map<String, Object> values;
+
+    // Note: Tells if any of the files has been touched since they were read
+    private final String signature;
+    private final String digest;
+
+    private SiteData(Map<String, Object> values, String signature, String digest) {
+        this.values = values;
+        this.signature = signature;
+        this.digest = digest;
+    }
+
+    public static SiteData empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Reads the data files in the given directory again unless none of them has changed since
+     * this data was read.
+     *
+     * @return this data if it's up to date
+     * @throws IOException if a file can't be read or is malformed
+     */
+    public SiteData update(Path dataDir) throws IOException {
+        var files = listDataFiles(dataDir);
+        var signature = new StringBuilder();
+        for (Path file : files) {
+            var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            signature.append(dataDir.relativize(file)).append(':').append(attributes.size()).append(':')
+                    .append(attributes.lastModifiedTime().toMillis()).append('\n');
+        }
+        if (signature.toString().equals(this.signature)) {
+            return this;
+        }
+
+        LOG.debug("Reading {} data files in '{}'", files.size(), dataDir);
+        var values = new TreeMap<String, Object>();
+        var digest = ChecksumCalculator.newDigest("SHA-1");
+        for (Path file : files) {
+            var relativePath = dataDir.relativize(file).toString().replace('\\', '/');
+            var bytes = Files.readAllBytes(file);
+            digest.update(relativePath.getBytes(StandardCharsets.UTF_8));
+            digest.update(bytes);
+
+            var names = relativePath.substring(0, relativePath.lastIndexOf('.')).split("/");
+            put(values, names, read(file, new String(bytes, StandardCharsets.UTF_8)), file);
+        }
+        return new SiteData(freeze(values), signature.toString(),
+                ChecksumCalculator.encodeHexString(digest.digest()));
+    }
+
+    /**
+     * @return the data by name, e.g. `authors` for the data read from `_data/authors.json`
+     */
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    /**
+     * @return a hash of the names and contents of all data files, e.g. to tell if pages need to be rendered again
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    private static List<Path> listDataFiles(Path dataDir) throws IOException {
+        if (!Files.isDirectory(dataDir)) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> {
+                        var fileName = file.getFileName().toString();
+                        return fileName.endsWith(".json") || fileName.endsWith(".yml") || fileName.endsWith(".yaml")
+                                || fileName.endsWith(".properties");
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Object read(Path file, String content) throws IOException {
+        var fileName = file.getFileName().toString();
+        if (!fileName.endsWith(".properties")) {
+            try {
+                return fileName.endsWith(".json") ? Json.parse(content) : Json.parseYaml(content);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed data file '" + file + "': " + e.getMessage(), e);
+            }
+        }
+
+        var properties = new Properties();
+        properties.load(new StringReader(content));
+        var values = new TreeMap<String, String>();
+        properties.stringPropertyNames().forEach(name -> values.put(name, properties.getProperty(name)));
+        return Collections.unmodifiableMap(values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(Map<String, Object> values, String[] names, Object value, Path file) {
+        var map = values;
+        for (int i = 0; i < names.length - 1; i++) {
+            var nested = map.computeIfAbsent(names[i], name -> new TreeMap<String, Object>());
+            if (!(nested instanceof TreeMap)) {
+                LOG.warn("Ignoring data file '{}' because data named '{}' exists already", file, names[i]);
+                return;
+            }
+            map = (Map<String, Object>) nested;
+        }
+
+        var name = names[names.length - 1];
+        if (map.containsKey(name)) {
+            LOG.warn("Ignoring data file '{}' because data named '{}' exists already", file, name);
+            return;
+        }
+        map.put(name, value);
+    }
+
+    /**
+     * Makes the maps created for subdirectories unmodifiable.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> freeze(Map<String, Object> values) {
+        var frozen = new LinkedHashMap<String, Object>();
+        values.forEach((name, value) -> frozen.put(name,
+                value instanceof TreeMap ? freeze((Map<String, Object>) value) : value));
+        return Collections.unmodifiableMap(frozen);
+    }
+}
@@ -0,0 +1,325 @@
+package org.c_3po.generation.html;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link Writer} that minifies the HTML written to it on the fly before passing
+ * it on to the underlying writer.
+ *
+ * Minification is conservative:
+ *   - runs of whitespace in text are collapsed into a single space or newline
+ *   - whitespace within tags is collapsed and attribute values are unquoted if safe
+ *   - comments are dropped, except conditional comments like `&lt;!--[if IE]&gt;`
+ *
+ * The contents of `pre`, `textarea`, `script` and `style` elements are passed through
+ * untouched since whitespace is significant there or their contents aren't HTML at all.
+ *
+ * Since it's a streaming pass, the document is never held in memory as a whole. The
+ * only thing buffered is the tag currently being written.
+ */
+public class HtmlMinifier extends Writer {
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("pre", "textarea", "script", "style");
+    private static final Pattern UNQUOTABLE_VALUE_PATTERN = Pattern.compile("[A-Za-z0-9_\\-.:]+");
+
+    private enum State {
+        TEXT, MARKUP, COMMENT, RAW_TEXT
+    }
+
+    private final Writer out;
+    private final StringBuilder markup = new StringBuilder();
+
+    private State state = State.TEXT;
+    private char pendingWhitespace;
+    private char quote;
+    private boolean keepComment;
+    private int commentDashes;
+    private String rawTextEndTag;
+
+    public HtmlMinifier(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            process(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes out whatever is still buffered and closes the underlying writer.
+     * Trailing whitespace of the document is dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        if (state != State.COMMENT) {
+            out.write(markup.toString());
+        }
+        markup.setLength(0);
+        out.close();
+    }
+
+    private void process(char c) throws IOException {
+        switch (state) {
+            case TEXT:
+                processText(c);
+                break;
+            case MARKUP:
+                processMarkup(c);
+                break;
+            case COMMENT:
+                processComment(c);
+                break;
+            case RAW_TEXT:
+                processRawText(c);
+                break;
+        }
+    }
+
+    private void processText(char c) throws IOException {
+        if (c == '<') {
+            markup.append(c);
+            state = State.MARKUP;
+        } else if (isWhitespace(c)) {
+            if (pendingWhitespace != '\n') {
+                pendingWhitespace = c == '\n' ? '\n' : ' ';
+            }
+        } else {
+            flushWhitespace();
+            out.write(c);
+        }
+    }
+
+    private void processMarkup(char c) throws IOException {
+
+        // A `<` that isn't followed by a tag name, `/`, `!` or `?` is just text, e.g. `a < b`
+        if (markup.length() == 1 && !(Character.isLetter(c) || c == '/' || c == '!' || c == '?')) {
+            markup.setLength(0);
+            flushWhitespace();
+            out.write('<');
+            state = State.TEXT;
+            processText(c);
+            return;
+        }
+
+        markup.append(c);
+        if (quote != 0) {
+            if (c == quote) {
+                quote = 0;
+            }
+        } else if ((c == '"' || c == '\'') && lastNonWhitespaceBefore(markup.length() - 1) == '=') {
+            quote = c;
+        } else if (markup.length() == 4 && "<!--".contentEquals(markup)) {
+            state = State.COMMENT;
+            commentDashes = 0;
+        } else if (c == '>') {
+            var tag = markup.toString();
+            markup.setLength(0);
+            state = State.TEXT;
+            writeTag(tag);
+        }
+    }
+
+    private void processComment(char c) throws IOException {
+        if (markup.length() == 4) {
+
+            // Note: Conditional comments like `<!--[if IE]>` and `<!--<![endif]-->` are kept
+            keepComment = c == '[' || c == '<';
+            if (keepComment) {
+                flushWhitespace();
+                out.write(markup.toString());
+            }
+            markup.append(c);
+        }
+
+        if (keepComment) {
+            out.write(c);
+        }
+
+        if (c == '-') {
+            commentDashes++;
+        } else if (c == '>' && commentDashes >= 2) {
+            markup.setLength(0);
+            state = State.TEXT;
+        } else {
+            commentDashes = 0;
+        }
+    }
+
+    private void processRawText(char c) throws IOException {
+        if (Character.toLowerCase(c) == rawTextEndTag.charAt(markup.length())) {
+            markup.append(c);
+            if (markup.length() == rawTextEndTag.length()) {
+                rawTextEndTag = null;
+                state = State.MARKUP;
+            }
+        } else {
+            out.write(markup.toString());
+            markup.setLength(0);
+            if (c == '<') {
+                markup.append(c);
+            } else {
+                out.write(c);
+            }
+        }
+    }
+
+    private void writeTag(String tag) throws IOException {
+        flushWhitespace();
+        if (tag.startsWith("<!") || tag.startsWith("<?")) {
+            out.write(tag);
+            return;
+        }
+
+        var isEndTag = tag.startsWith("</");
+        var nameStart = isEndTag ? 2 : 1;
+        var nameEnd = nameStart;
+        while (nameEnd < tag.length() && !isWhitespace(tag.charAt(nameEnd))
+                && tag.charAt(nameEnd) != '>' && tag.charAt(nameEnd) != '/') {
+            nameEnd++;
+        }
+        var name = tag.substring(nameStart, nameEnd);
+
+        if (isEndTag) {
+            out.write(name.isEmpty() ? tag : "</" + name + ">");
+        } else {
+            var minifiedTag = minifyStartTag(tag, name, nameEnd);
+            out.write(minifiedTag);
+
+            var lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (RAW_TEXT_ELEMENTS.contains(lowerCaseName) && !minifiedTag.endsWith("/>")) {
+                rawTextEndTag = "</" + lowerCaseName;
+                state = State.RAW_TEXT;
+            }
+        }
+    }
+
+    /**
+     * Minifies a start tag by collapsing whitespace between attributes and removing quotes
+     * around attribute values that consist of harmless characters only.
+     *
+     * @return the minified tag or the passed tag as is if it can't be parsed
+     */
+    private static String minifyStartTag(String tag, String name, int nameEnd) {
+        var result = new StringBuilder(tag.length()).append('<').append(name);
+        var end = tag.length() - 1; // index of closing `>`
+        var selfClosing = false;
+        var lastValueUnquoted = false;
+
+        var i = nameEnd;
+        while (true) {
+            while (i < end && isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            if (i >= end) {
+                break;
+            }
+            if (tag.charAt(i) == '/') {
+                selfClosing = true;
+                i++;
+                continue;
+            }
+
+            // Attribute name
+            var attrNameStart = i;
+            while (i < end && !isWhitespace(tag.charAt(i)) && tag.charAt(i) != '=' && tag.charAt(i) != '/') {
+                i++;
+            }
+            if (i == attrNameStart) {
+                return tag;
+            }
+            result.append(' ').append(tag, attrNameStart, i);
+            selfClosing = false;
+            lastValueUnquoted = false;
+
+            var afterAttrName = i;
+            while (i < end && isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            if (i >= end || tag.charAt(i) != '=') {
+                i = afterAttrName;
+                continue;
+            }
+
+            // Attribute value
+            i++;
+            while (i < end && isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            if (i >= end) {
+                return tag;
+            }
+            String value;
+            var valueQuote = tag.charAt(i);
+            if (valueQuote == '"' || valueQuote == '\'') {
+                var valueEnd = tag.indexOf(valueQuote, i + 1);
+                if (valueEnd < 0) {
+                    return tag;
+                }
+                value = tag.substring(i + 1, valueEnd);
+                i = valueEnd + 1;
+            } else {
+                var valueStart = i;
+                while (i < end && !isWhitespace(tag.charAt(i))) {
+                    i++;
+                }
+                value = tag.substring(valueStart, i);
+                valueQuote = 0;
+            }
+
+            // Note: `attr=""` is equivalent to just `attr` in HTML
+            if (value.isEmpty()) {
+                continue;
+            }
+            result.append('=');
+            if (UNQUOTABLE_VALUE_PATTERN.matcher(value).matches()) {
+                result.append(value);
+                lastValueUnquoted = true;
+            } else if (valueQuote == 0) {
+                result.append(value);
+            } else {
+                result.append(valueQuote).append(value).append(valueQuote);
+            }
+        }
+
+        if (selfClosing) {
+
+            // Note: The space is necessary, otherwise the slash becomes part of an unquoted value
+            result.append(lastValueUnquoted ? " />" : "/>");
+        } else {
+            result.append('>');
+        }
+        return result.toString();
+    }
+
+    private void flushWhitespace() throws IOException {
+        if (pendingWhitespace != 0) {
+            out.write(pendingWhitespace);
+            pendingWhitespace = 0;
+        }
+    }
+
+    private char lastNonWhitespaceBefore(int index) {
+        for (int i = index - 1; i >= 0; i--) {
+            if (!isWhitespace(markup.charAt(i))) {
+                return markup.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isWhitespace(char c) {
+
+        // Note: Deliberately not Character.isWhitespace since e.g. non-breaking spaces are significant
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
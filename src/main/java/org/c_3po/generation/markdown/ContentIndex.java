@@ -0,0 +1,388 @@
+package org.c_3po.generation.markdown;
+
+import org.c_3po.generation.BuildExecutor;
+import org.c_3po.util.ChecksumCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * An index of the metadata of all markdown documents of a site, e.g. to list blog posts.
+ *
+ * The index is exposed to templates as `contentIndex`. Entries are ordered newest first
+ * and the index can be narrowed down, e.g. `${contentIndex.inDirectory('blog').newest(10)}`.
+ *
+ * Metadata is read by a fast path that only looks at the leading meta tags of a document
+ * instead of rendering it. Besides, the index is persisted between builds. A document that
+ * hasn't changed since, judged by its size and last modification time or else its content
+ * hash, is not read again.
+ *
+ * An index is immutable. Updating it results in a new index.
+ */
+public class ContentIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(ContentIndex.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final String META_TAG_DATE = "date";
+    private static final Comparator<Entry> NEWEST_FIRST = Comparator.comparing(Entry::getDate).reversed()
+            .thenComparing(Entry::getSourcePath);
+
+    private final List<Entry> entries;
+
+    private ContentIndex(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    public static ContentIndex empty() {
+        return new ContentIndex(List.of());
+    }
+
+    /**
+     * Loads an index persisted by {@link #store(Path)}.
+     *
+     * @return the loaded index or an empty one if the file is missing or can't be read
+     */
+    public static ContentIndex load(Path file) {
+        if (!Files.exists(file)) {
+            return empty();
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOG.debug("Discarding content index '{}' of an outdated format", file);
+                return empty();
+            }
+
+            var count = in.readInt();
+            var entries = new ArrayList<Entry>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(Entry.readFrom(in));
+            }
+            return new ContentIndex(entries);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to load content index '{}'. Building it from scratch.", file, e);
+            return empty();
+        }
+    }
+
+    /**
+     * Persists this index to the given file.
+     */
+    public void store(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        var tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                entry.writeTo(out);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Creates an index of the given markdown documents. Entries of documents that haven't
+     * changed are taken over from this index, all others are read concurrently.
+     *
+     * @param rootDir the root source directory paths of entries are relative to
+     * @param markdownFiles all markdown documents of the site
+     * @return the updated index or this index if nothing has changed
+     */
+    public ContentIndex update(Path rootDir, Collection<Path> markdownFiles, BuildExecutor executor)
+            throws IOException {
+        var previousEntries = entries.stream().collect(Collectors.toMap(Entry::getSourcePath, entry -> entry));
+        var updatedEntries = new ArrayList<Entry>(markdownFiles.size());
+        var changedEntries = new ArrayList<Future<Entry>>();
+
+        try (var tasks = executor.newTaskGroup()) {
+            for (Path markdownFile : markdownFiles) {
+                var sourcePath = toSourcePath(rootDir, markdownFile);
+                var attributes = Files.readAttributes(markdownFile, BasicFileAttributes.class);
+                var previousEntry = previousEntries.get(sourcePath);
+                if (previousEntry != null && previousEntry.size == attributes.size()
+                        && previousEntry.lastModified.toEpochMilli() == attributes.lastModifiedTime().toMillis()) {
+                    updatedEntries.add(previousEntry);
+                } else {
+                    changedEntries.add(tasks.forkFileTask(() ->
+                            Entry.read(markdownFile, sourcePath, attributes, previousEntry)));
+                }
+            }
+
+            tasks.join();
+            for (Future<Entry> changedEntry : changedEntries) {
+                updatedEntries.add(changedEntry.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+
+            // Note: Can't happen since all tasks have completed successfully when joined
+            throw new IllegalStateException(e);
+        }
+
+        updatedEntries.sort(NEWEST_FIRST);
+        return updatedEntries.equals(entries) ? this : new ContentIndex(updatedEntries);
+    }
+
+    /**
+     * @return all entries, newest first
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the given number of newest entries at most
+     */
+    public List<Entry> newest(int count) {
+        return entries.subList(0, Math.min(count, entries.size()));
+    }
+
+    /**
+     * Narrows this index down to documents within the given directory and its sub-directories.
+     *
+     * @param dir a directory relative to the root source directory, e.g. `blog`
+     */
+    public ContentIndex inDirectory(String dir) {
+        var prefix = dir.replace('\\', '/').replaceAll("^/+|/+$", "") + "/";
+        return filter(entry -> prefix.equals("/") || entry.getSourcePath().startsWith(prefix));
+    }
+
+    /**
+     * Narrows this index down to documents with the given meta tag value. Meta tags like
+     * `$meta-tags: java, gradle` holding a comma separated list match any of its values.
+     */
+    public ContentIndex withMetaTag(String name, String value) {
+        return filter(entry -> entry.getMetaTagValues(name).contains(value));
+    }
+
+    private ContentIndex filter(Predicate<Entry> predicate) {
+        return new ContentIndex(entries.stream().filter(predicate).collect(Collectors.toList()));
+    }
+
+    private static String toSourcePath(Path rootDir, Path file) {
+        return rootDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    /**
+     * The metadata of a single markdown document.
+     */
+    public static final class Entry {
+        private final String sourcePath;
+        private final String title;
+        private final Map<String, String> metaTags;
+        private final LocalDate date;
+        private final int wordCount;
+        private final Instant lastModified;
+        private final long size;
+        private final String contentHash;
+
+        private Entry(String sourcePath, String title, Map<String, String> metaTags, LocalDate date,
+                      int wordCount, Instant lastModified, long size, String contentHash) {
+            this.sourcePath = sourcePath;
+            this.title = title;
+            this.metaTags = Collections.unmodifiableMap(metaTags);
+            this.date = date;
+            this.wordCount = wordCount;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.contentHash = contentHash;
+        }
+
+        private static Entry read(Path markdownFile, String sourcePath, BasicFileAttributes attributes,
+                                  Entry previousEntry) throws IOException {
+            var bytes = Files.readAllBytes(markdownFile);
+            var contentHash = ChecksumCalculator.sha1(bytes);
+            var lastModified = Instant.ofEpochMilli(attributes.lastModifiedTime().toMillis());
+
+            // Note: Touched but not changed, e.g. by checking out a branch. The date is determined
+            // again though since it's the modification time unless there's a date meta tag.
+            if (previousEntry != null && previousEntry.contentHash.equals(contentHash)) {
+                return new Entry(sourcePath, previousEntry.title, previousEntry.metaTags,
+                        dateOf(markdownFile, previousEntry.metaTags, lastModified), previousEntry.wordCount,
+                        lastModified, bytes.length, contentHash);
+            }
+
+            LOG.debug("Indexing markdown file '{}'", markdownFile);
+            var lines = new String(bytes, StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+            var head = new MarkdownProcessor.Head();
+            var contentStart = MetaTagsParser.parseLeadingMetaTags(lines, head::add);
+            var metaTags = head.getMetaTags();
+
+            return new Entry(sourcePath, head.getTitle(), metaTags, dateOf(markdownFile, metaTags, lastModified),
+                    countWords(lines.subList(contentStart, lines.size())), lastModified, bytes.length, contentHash);
+        }
+
+        /**
+         * @return the date given by the document's date meta tag or the day it has been modified last
+         */
+        private static LocalDate dateOf(Path markdownFile, Map<String, String> metaTags, Instant lastModified) {
+            if (metaTags.containsKey(META_TAG_DATE)) {
+                try {
+                    return LocalDate.parse(metaTags.get(META_TAG_DATE));
+                } catch (DateTimeParseException e) {
+                    LOG.warn("Ignoring date '{}' of '{}' because it's not like 'yyyy-mm-dd'",
+                            metaTags.get(META_TAG_DATE), markdownFile);
+                }
+            }
+            return LocalDate.ofInstant(lastModified, ZoneId.systemDefault());
+        }
+
+        private static int countWords(List<String> lines) {
+            int count = 0;
+            for (String line : lines) {
+                for (String token : line.split("\\s+")) {
+                    if (token.chars().anyMatch(Character::isLetterOrDigit)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private static Entry readFrom(DataInputStream in) throws IOException {
+            var sourcePath = in.readUTF();
+            var title = in.readUTF();
+            var metaTagCount = in.readInt();
+            var metaTags = new LinkedHashMap<String, String>();
+            for (int i = 0; i < metaTagCount; i++) {
+                metaTags.put(in.readUTF(), in.readUTF());
+            }
+            var date = LocalDate.ofEpochDay(in.readLong());
+            var wordCount = in.readInt();
+            var lastModified = Instant.ofEpochMilli(in.readLong());
+            var size = in.readLong();
+            var contentHash = in.readUTF();
+            return new Entry(sourcePath, title, metaTags, date, wordCount, lastModified, size, contentHash);
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(sourcePath);
+            out.writeUTF(title);
+            out.writeInt(metaTags.size());
+            for (Map.Entry<String, String> metaTag : metaTags.entrySet()) {
+                out.writeUTF(metaTag.getKey());
+                out.writeUTF(metaTag.getValue());
+            }
+            out.writeLong(date.toEpochDay());
+            out.writeInt(wordCount);
+            out.writeLong(lastModified.toEpochMilli());
+            out.writeLong(size);
+            out.writeUTF(contentHash);
+        }
+
+        /**
+         * @return the path of the markdown document relative to the root source directory, e.g. `blog/post.md`
+         */
+        public String getSourcePath() {
+            return sourcePath;
+        }
+
+        /**
+         * @return the path of the generated document relative to the site's root, e.g. `blog/post.html`
+         */
+        public String getUrl() {
+            return sourcePath.replaceAll("\\.md$", ".html");
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public Map<String, String> getMetaTags() {
+            return metaTags;
+        }
+
+        /**
+         * @return the values of a meta tag holding a comma separated list or an empty list if it's not set
+         */
+        public List<String> getMetaTagValues(String name) {
+            var value = metaTags.get(name);
+            if (value == null) {
+                return List.of();
+            }
+            var values = new ArrayList<String>();
+            for (String item : value.split(",")) {
+                if (!item.isBlank()) {
+                    values.add(item.trim());
+                }
+            }
+            return values;
+        }
+
+        /**
+         * @return the date of the `$meta-date` tag or else the date the document was last modified
+         */
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public int getWordCount() {
+            return wordCount;
+        }
+
+        public Instant getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return the SHA-1 hash of the markdown document, e.g. to tell if it has changed
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Entry entry = (Entry) o;
+            return sourcePath.equals(entry.sourcePath)
+                    && lastModified.equals(entry.lastModified)
+                    && size == entry.size
+                    && contentHash.equals(entry.contentHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sourcePath, lastModified, size, contentHash);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "sourcePath='" + sourcePath + '\'' +
+                    ", title='" + title + '\'' +
+                    ", date=" + date +
+                    '}';
+        }
+    }
+}
@@ -75,6 +75,8 @@ public class MarkdownProcessor {
     }
 
     public static class Head {
+        private static final String TITLE = "title";
+
         private final Map<String, String> metaTags = new HashMap<>();
 
         private String title = "";
@@ -87,6 +89,14 @@ public class MarkdownProcessor {
             metaTags.put(name, content);
         }
 
+        void add(MetaTag metaTag) {
+            if (TITLE.equals(metaTag.getName())) {
+                setTitle(metaTag.getContent());
+            } else {
+                addMetaTag(metaTag.getName(), metaTag.getContent());
+            }
+        }
+
         public String getTitle() {
             return title;
         }
@@ -97,19 +107,12 @@ public class MarkdownProcessor {
     }
 
     private static class MetaTagsVisitor extends AbstractVisitor {
-        private static final String TITLE = "title";
-
         private final Head head = new Head();
 
         @Override
         public void visit(CustomBlock customBlock) {
             if (customBlock instanceof MetaTag) {
-                MetaTag metaTag = (MetaTag) customBlock;
-                if (TITLE.equals(metaTag.getName())) {
-                    head.setTitle(metaTag.getContent());
-                } else {
-                    head.addMetaTag(metaTag.getName(), metaTag.getContent());
-                }
+                head.add((MetaTag) customBlock);
             }
         }
 
@@ -3,6 +3,8 @@ package org.c_3po.generation.markdown;
 import org.commonmark.node.Block;
 import org.commonmark.parser.block.*;
 
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,6 +20,41 @@ class MetaTagsParser extends AbstractBlockParser {
         this.metaTag = metaTag;
     }
 
+    /**
+     * Parses a single line of meta tag syntax like `$meta-title: Some title`.
+     *
+     * @return the meta tag or null if the line isn't a meta tag
+     */
+    static MetaTag parseLine(CharSequence line) {
+        Matcher matcher = META_PATTERN.matcher(line);
+        if (matcher.find()) {
+            return new MetaTag(matcher.group(1), matcher.group(2).trim());
+        }
+        return null;
+    }
+
+    /**
+     * A fast path for reading meta tags without parsing and rendering the whole document.
+     * Only the leading meta tags are considered, i.e. reading stops at the first line that
+     * is neither blank nor a meta tag. This is where meta tags are conventionally put.
+     *
+     * @return the index of the first line following the leading meta tags
+     */
+    static int parseLeadingMetaTags(List<String> lines, Consumer<MetaTag> consumer) {
+        int i = 0;
+        for (; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (!line.isBlank()) {
+                MetaTag metaTag = parseLine(line);
+                if (metaTag == null) {
+                    break;
+                }
+                consumer.accept(metaTag);
+            }
+        }
+        return i;
+    }
+
     @Override
     public Block getBlock() {
         return metaTag;
@@ -39,11 +76,8 @@ class MetaTagsParser extends AbstractBlockParser {
             }
 
             CharSequence line = state.getLine();
-            Matcher matcher;
-            if ((matcher = META_PATTERN.matcher(line)).find()) {
-                String name = matcher.group(1);
-                String content = matcher.group(2).trim();
-                MetaTag metaTag = new MetaTag(name, content);
+            MetaTag metaTag = parseLine(line);
+            if (metaTag != null) {
                 return BlockStart.of(new MetaTagsParser(metaTag)).atIndex(line.length());
             } else {
                 return BlockStart.none();
@@ -0,0 +1,64 @@
+package org.c_3po.generation.profile;
+
+import org.thymeleaf.Arguments;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.processor.AbstractProcessor;
+import org.thymeleaf.processor.IAttributeNameProcessorMatcher;
+import org.thymeleaf.processor.IElementNameProcessorMatcher;
+import org.thymeleaf.processor.IProcessorMatcher;
+import org.thymeleaf.processor.ProcessorMatchingContext;
+import org.thymeleaf.processor.ProcessorResult;
+
+/**
+ * A processor recording each execution of the processor it delegates to with a {@link RenderProfiler}.
+ *
+ * Note: Derives from {@link AbstractProcessor} so it's ordered by its delegate's precedence.
+ */
+final class ProfiledProcessor extends AbstractProcessor {
+    private final AbstractProcessor delegate;
+    private final RenderProfiler profiler;
+    private volatile String name;
+
+    ProfiledProcessor(AbstractProcessor delegate, RenderProfiler profiler) {
+        this.delegate = delegate;
+        this.profiler = profiler;
+    }
+
+    @Override
+    public IProcessorMatcher<? extends Node> getMatcher() {
+        return delegate.getMatcher();
+    }
+
+    @Override
+    public int getPrecedence() {
+        return delegate.getPrecedence();
+    }
+
+    @Override
+    protected ProcessorResult doProcess(Arguments arguments, ProcessorMatchingContext processorMatchingContext,
+                                        Node node) {
+        var span = profiler.startProcessor(nameOf(processorMatchingContext), node);
+        try {
+            return delegate.process(arguments, processorMatchingContext, node);
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * @return the attribute or element the processor applies to, e.g. `th:each`, or else its class name
+     */
+    private String nameOf(ProcessorMatchingContext context) {
+        if (name == null) {
+            var matcher = delegate.getMatcher();
+            String[] names = null;
+            if (matcher instanceof IAttributeNameProcessorMatcher) {
+                names = ((IAttributeNameProcessorMatcher) matcher).getAttributeNames(context);
+            } else if (matcher instanceof IElementNameProcessorMatcher) {
+                names = ((IElementNameProcessorMatcher) matcher).getElementNames(context);
+            }
+            name = names != null && names.length > 0 ? names[0] : delegate.getClass().getSimpleName();
+        }
+        return name;
+    }
+}
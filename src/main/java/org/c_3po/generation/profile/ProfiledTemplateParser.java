@@ -0,0 +1,38 @@
+package org.c_3po.generation.profile;
+
+import org.thymeleaf.Configuration;
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.templateparser.ITemplateParser;
+
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * A template parser recording the parsing of each template with a {@link RenderProfiler}.
+ * For the LEGACYHTML5 template mode, this includes nekohtml cleaning up the markup.
+ */
+final class ProfiledTemplateParser implements ITemplateParser {
+    private final ITemplateParser delegate;
+    private final RenderProfiler profiler;
+
+    ProfiledTemplateParser(ITemplateParser delegate, RenderProfiler profiler) {
+        this.delegate = delegate;
+        this.profiler = profiler;
+    }
+
+    @Override
+    public Document parseTemplate(Configuration configuration, String documentName, Reader source) {
+        var span = profiler.startParse(documentName);
+        try {
+            return delegate.parseTemplate(configuration, documentName, source);
+        } finally {
+            span.close();
+        }
+    }
+
+    @Override
+    public List<Node> parseFragment(Configuration configuration, String fragment) {
+        return delegate.parseFragment(configuration, fragment);
+    }
+}
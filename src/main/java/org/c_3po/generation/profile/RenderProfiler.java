@@ -0,0 +1,509 @@
+package org.c_3po.generation.profile;
+
+import nz.net.ultraq.thymeleaf.LayoutDialect;
+import nz.net.ultraq.thymeleaf.decorators.SortingStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.thymeleaf.dialect.IDialect;
+import org.thymeleaf.doctype.resolution.IDocTypeResolutionEntry;
+import org.thymeleaf.doctype.translation.IDocTypeTranslation;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.processor.AbstractProcessor;
+import org.thymeleaf.processor.IProcessor;
+import org.thymeleaf.standard.StandardDialect;
+import org.thymeleaf.templatemode.ITemplateModeHandler;
+import org.thymeleaf.templatemode.TemplateModeHandler;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Attributes the time and memory it takes to render pages to the templates and processors
+ * involved, across all pages of a build.
+ *
+ * The processors of the Standard and the Layout dialect as well as the template parser are
+ * hooked, so each of their executions is recorded along with the stack of templates it
+ * happened in. That stack is told by the templates the processed nodes stem from, e.g.
+ * `blog/post;_layouts/main;_fragments/nav;th:each`. Whatever isn't spent in a processor or
+ * parsing, e.g. walking the DOM and writing (and minifying) the output, is attributed to the
+ * page's template itself.
+ *
+ * From these stacks it reports the inclusive and exclusive time and allocation of each
+ * template as well as collapsed stacks as read by flame graph tools.
+ */
+public final class RenderProfiler {
+    private static final Logger LOG = LoggerFactory.getLogger(RenderProfiler.class);
+    private static final String REPORT_FILE_NAME = "render-profile.txt";
+    private static final String TIME_STACKS_FILE_NAME = "render-profile-time.collapsed";
+    private static final String ALLOCATION_STACKS_FILE_NAME = "render-profile-alloc.collapsed";
+    private static final String PARSE_FRAME = "(parse)";
+    private static final int SUMMARY_SIZE = 10;
+    private static final int SLOWEST_PAGES_SIZE = 20;
+
+    private final Path sourceDir;
+    private final Path destinationDir;
+    private final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean allocationMeasured;
+    private final ThreadLocal<Span> currentSpan = new ThreadLocal<>();
+    private final Map<List<Frame>, Stats> stacks = new ConcurrentHashMap<>();
+    private final Map<String, Stats> pages = new ConcurrentHashMap<>();
+    private final Map<String, String> templateNames = new ConcurrentHashMap<>();
+
+    private RenderProfiler(Path sourceDir, Path destinationDir) {
+        this.sourceDir = sourceDir.toAbsolutePath().normalize();
+        this.destinationDir = destinationDir.toAbsolutePath().normalize();
+        this.allocationMeasured = enableAllocationMeasurement(threads);
+    }
+
+    /**
+     * @param sourceDir the source directory, which template and page names are reported relative to
+     * @param destinationDir the destination directory, which names of generated pages are reported relative to
+     */
+    public static RenderProfiler create(Path sourceDir, Path destinationDir) {
+        return new RenderProfiler(sourceDir, destinationDir);
+    }
+
+    /**
+     * @return a Standard dialect whose processors are profiled
+     */
+    public StandardDialect newStandardDialect() {
+        return new StandardDialect() {
+            @Override
+            public Set<IProcessor> getProcessors() {
+                return profile(super.getProcessors());
+            }
+        };
+    }
+
+    /**
+     * @return a Layout dialect whose processors are profiled
+     */
+    public IDialect newLayoutDialect(SortingStrategy sortingStrategy) {
+
+        // Note: Unlike the Standard dialect, it doesn't let subclasses override its processors
+        var dialect = new LayoutDialect(sortingStrategy);
+        var processors = profile(dialect.getProcessors());
+        return new IDialect() {
+            @Override
+            public String getPrefix() {
+                return dialect.getPrefix();
+            }
+
+            @Override
+            public Set<IProcessor> getProcessors() {
+                return processors;
+            }
+
+            @Override
+            public Map<String, Object> getExecutionAttributes() {
+                return dialect.getExecutionAttributes();
+            }
+
+            @Override
+            public Set<IDocTypeTranslation> getDocTypeTranslations() {
+                return dialect.getDocTypeTranslations();
+            }
+
+            @Override
+            public Set<IDocTypeResolutionEntry> getDocTypeResolutionEntries() {
+                return dialect.getDocTypeResolutionEntries();
+            }
+        };
+    }
+
+    /**
+     * @return the given template mode handlers with their parsers being profiled
+     */
+    public Set<ITemplateModeHandler> profileParsing(Set<? extends ITemplateModeHandler> templateModeHandlers) {
+        Set<ITemplateModeHandler> handlers = new HashSet<>();
+        for (ITemplateModeHandler handler : templateModeHandlers) {
+            handlers.add(new TemplateModeHandler(handler.getTemplateModeName(),
+                    new ProfiledTemplateParser(handler.getTemplateParser(), this), handler.getTemplateWriter()));
+        }
+        return handlers;
+    }
+
+    /**
+     * Starts recording the rendering of a page. Everything recorded on the current thread until
+     * the returned span is closed is attributed to this page.
+     *
+     * @param page the source file of the page or, if it has none, the generated file
+     * @param templateName the name of the template the page is rendered with
+     */
+    public Span startPage(Path page, String templateName) {
+        return start(List.of(new Frame(templateName(templateName), true)), nameOf(page));
+    }
+
+    /**
+     * Starts recording an operation that's part of whatever is being recorded at the moment,
+     * e.g. arranging the head elements while decorating a page with its layout.
+     */
+    public Span startNested(String frameName) {
+        var frames = new ArrayList<>(currentFrames());
+        frames.add(new Frame(frameName, false));
+        return start(frames, null);
+    }
+
+    Span startProcessor(String processorName, Node node) {
+        var frames = new ArrayList<Frame>();
+        var span = currentSpan.get();
+        if (span != null) {
+            frames.addAll(span.pageSpan().frames);
+        }
+
+        // Note: The nodes of the page, its layout and included fragments keep the name
+        // of the template they stem from
+        var documentNames = new ArrayDeque<String>();
+        for (Node n = node; n != null; n = n.getParent()) {
+            if (n.getDocumentName() != null) {
+                documentNames.push(n.getDocumentName());
+            }
+        }
+        for (String documentName : documentNames) {
+            var frame = new Frame(templateName(documentName), true);
+            if (frames.isEmpty() || !frames.get(frames.size() - 1).equals(frame)) {
+                frames.add(frame);
+            }
+        }
+        frames.add(new Frame(processorName, false));
+        return start(frames, null);
+    }
+
+    Span startParse(String documentName) {
+        var frames = new ArrayList<>(currentFrames());
+        var frame = new Frame(templateName(documentName), true);
+        if (frames.isEmpty() || !frames.get(frames.size() - 1).equals(frame)) {
+            frames.add(frame);
+        }
+        frames.add(new Frame(PARSE_FRAME, false));
+        return start(frames, null);
+    }
+
+    /**
+     * Writes a report ranking templates, processors and pages by the time it took to render them
+     * along with the collapsed stacks of time and allocation to the given directory.
+     *
+     * @return the report file
+     */
+    public Path writeReport(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        var templates = templateStats();
+        var processors = processorStats();
+
+        var reportFile = dir.resolve(REPORT_FILE_NAME);
+        try (var out = new PrintWriter(Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8))) {
+            var total = new Stats();
+            pages.values().forEach(total::add);
+            out.printf("Rendered %d pages in %.1f ms%s%n", total.count, millis(total.nanos),
+                    allocationMeasured ? String.format(", allocating %.1f MB", megabytes(total.bytes))
+                            : ", allocation not measured by this JVM");
+            out.println("Times are summed up across threads.");
+
+            out.printf("%nTemplates by inclusive time%n");
+            out.printf("%14s %14s %14s %14s  %s%n", "incl. ms", "excl. ms", "incl. MB", "excl. MB", "template");
+            for (var template : sortedByTime(templates, stats -> stats.inclusive.nanos)) {
+                var stats = template.getValue();
+                out.printf("%14.1f %14.1f %14.1f %14.1f  %s%n", millis(stats.inclusive.nanos),
+                        millis(stats.exclusive.nanos), megabytes(stats.inclusive.bytes),
+                        megabytes(stats.exclusive.bytes), template.getKey());
+            }
+
+            out.printf("%nProcessors and parsing by time%n");
+            out.printf("%14s %14s %14s  %s%n", "ms", "MB", "calls", "processor");
+            for (var processor : sortedByTime(processors, stats -> stats.nanos)) {
+                var stats = processor.getValue();
+                out.printf("%14.1f %14.1f %14d  %s%n", millis(stats.nanos), megabytes(stats.bytes), stats.count,
+                        processor.getKey());
+            }
+
+            out.printf("%nSlowest pages%n");
+            out.printf("%14s %14s  %s%n", "ms", "MB", "page");
+            var slowestPages = sortedByTime(pages, stats -> stats.nanos);
+            for (var page : slowestPages.subList(0, Math.min(SLOWEST_PAGES_SIZE, slowestPages.size()))) {
+                out.printf("%14.1f %14.1f  %s%n", millis(page.getValue().nanos), megabytes(page.getValue().bytes),
+                        page.getKey());
+            }
+        }
+
+        writeCollapsedStacks(dir.resolve(TIME_STACKS_FILE_NAME), stats -> stats.nanos / 1000);
+        if (allocationMeasured) {
+            writeCollapsedStacks(dir.resolve(ALLOCATION_STACKS_FILE_NAME), stats -> stats.bytes);
+        }
+
+        LOG.info("Templates taking the most time to render, inclusive / exclusive:");
+        var ranking = sortedByTime(templates, stats -> stats.inclusive.nanos);
+        for (var template : ranking.subList(0, Math.min(SUMMARY_SIZE, ranking.size()))) {
+            LOG.info(String.format("%10.1f ms / %10.1f ms  %s", millis(template.getValue().inclusive.nanos),
+                    millis(template.getValue().exclusive.nanos), template.getKey()));
+        }
+        LOG.info("Wrote render profile to '{}'", reportFile);
+        return reportFile;
+    }
+
+    private void writeCollapsedStacks(Path file, ValueOf valueOf) throws IOException {
+        Map<String, Long> lines = new HashMap<>();
+        for (var stack : stacks.entrySet()) {
+            var line = new StringBuilder();
+            for (Frame frame : stack.getKey()) {
+                if (line.length() > 0) {
+                    line.append(';');
+                }
+
+                // Note: Semicolons separate frames
+                line.append(frame.name.replace(';', ','));
+            }
+            lines.merge(line.toString(), valueOf.of(stack.getValue()), Long::sum);
+        }
+
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (var line : sortedByTime(lines, value -> value)) {
+                if (line.getValue() > 0) {
+                    out.write(line.getKey() + " " + line.getValue() + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums up the stacks per template. A template's inclusive values count each stack it's part
+     * of once, even if it's included recursively. Its exclusive values count the stacks it's the
+     * innermost template of.
+     */
+    private Map<String, TemplateStats> templateStats() {
+        Map<String, TemplateStats> templates = new HashMap<>();
+        for (var stack : stacks.entrySet()) {
+            Set<String> seen = new HashSet<>();
+            String innermost = null;
+            for (Frame frame : stack.getKey()) {
+                if (frame.template) {
+                    innermost = frame.name;
+                    if (seen.add(frame.name)) {
+                        templates.computeIfAbsent(frame.name, name -> new TemplateStats()).inclusive
+                                .add(stack.getValue());
+                    }
+                }
+            }
+            if (innermost != null) {
+                templates.computeIfAbsent(innermost, name -> new TemplateStats()).exclusive.add(stack.getValue());
+            }
+        }
+        return templates;
+    }
+
+    private Map<String, Stats> processorStats() {
+        Map<String, Stats> processors = new HashMap<>();
+        for (var stack : stacks.entrySet()) {
+            var frames = stack.getKey();
+            var leaf = frames.get(frames.size() - 1);
+            if (!leaf.template) {
+                processors.computeIfAbsent(leaf.name, name -> new Stats()).add(stack.getValue());
+            }
+        }
+        return processors;
+    }
+
+    private Set<IProcessor> profile(Set<IProcessor> processors) {
+        Set<IProcessor> profiledProcessors = new HashSet<>();
+        for (IProcessor processor : processors) {
+
+            // Note: Processors are ordered by comparing their precedence, which only
+            // the ones derived from AbstractProcessor reveal
+            profiledProcessors.add(processor instanceof AbstractProcessor
+                    ? new ProfiledProcessor((AbstractProcessor) processor, this) : processor);
+        }
+        return profiledProcessors;
+    }
+
+    private Span start(List<Frame> frames, String page) {
+        var span = new Span(frames, page, currentSpan.get());
+        currentSpan.set(span);
+        return span;
+    }
+
+    private List<Frame> currentFrames() {
+        var span = currentSpan.get();
+        return span != null ? span.frames : Collections.emptyList();
+    }
+
+    private String templateName(String documentName) {
+        return templateNames.computeIfAbsent(documentName, name -> {
+            try {
+                return nameOf(Paths.get(name));
+            } catch (InvalidPathException e) {
+                return name;
+            }
+        });
+    }
+
+    private String nameOf(Path file) {
+        var absoluteFile = file.toAbsolutePath().normalize();
+        if (absoluteFile.startsWith(sourceDir)) {
+            return sourceDir.relativize(absoluteFile).toString().replace('\\', '/');
+        } else if (absoluteFile.startsWith(destinationDir)) {
+            return destinationDir.relativize(absoluteFile).toString().replace('\\', '/');
+        } else {
+            return file.toString();
+        }
+    }
+
+    private long allocatedBytes() {
+        if (!allocationMeasured) {
+            return 0;
+        }
+
+        // Note: Not supported for virtual threads, which report -1
+        var bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return Math.max(bytes, 0);
+    }
+
+    private static boolean enableAllocationMeasurement(java.lang.management.ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        var hotSpotThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!hotSpotThreads.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        hotSpotThreads.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    private static <T> List<Map.Entry<String, T>> sortedByTime(Map<String, T> entries, TimeOf<T> timeOf) {
+        var sorted = new ArrayList<>(entries.entrySet());
+        sorted.sort(Comparator.comparingLong((Map.Entry<String, T> entry) -> timeOf.of(entry.getValue())).reversed()
+                .thenComparing(Map.Entry::getKey));
+        return sorted;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private interface TimeOf<T> {
+        long of(T value);
+    }
+
+    private interface ValueOf {
+        long of(Stats stats);
+    }
+
+    /**
+     * A recorded operation, which has to be closed on the thread it has been started on.
+     * Its exclusive time and allocation, i.e. not counting the spans started within it,
+     * are attributed to its stack.
+     */
+    public final class Span implements AutoCloseable {
+        private final List<Frame> frames;
+        private final String page;
+        private final Span parent;
+        private final long startNanos;
+        private final long startBytes;
+        private long childNanos;
+        private long childBytes;
+
+        private Span(List<Frame> frames, String page, Span parent) {
+            this.frames = frames;
+            this.page = page;
+            this.parent = parent;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            var nanos = System.nanoTime() - startNanos;
+            var bytes = allocatedBytes() - startBytes;
+            stacks.computeIfAbsent(frames, key -> new Stats()).add(nanos - childNanos, bytes - childBytes);
+            if (page != null) {
+                pages.computeIfAbsent(page, key -> new Stats()).add(nanos, bytes);
+            }
+            if (parent != null) {
+                parent.childNanos += nanos;
+                parent.childBytes += bytes;
+            }
+            currentSpan.set(parent);
+        }
+
+        private Span pageSpan() {
+            var span = this;
+            while (span.page == null && span.parent != null) {
+                span = span.parent;
+            }
+            return span;
+        }
+    }
+
+    private static final class Frame {
+        private final String name;
+        private final boolean template;
+
+        private Frame(String name, boolean template) {
+            this.name = name;
+            this.template = template;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Frame frame = (Frame) o;
+            return template == frame.template && name.equals(frame.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, template);
+        }
+    }
+
+    private static final class Stats {
+        private long nanos;
+        private long bytes;
+        private long count;
+
+        synchronized void add(long nanos, long bytes) {
+            this.nanos += nanos;
+            this.bytes += bytes;
+            this.count++;
+        }
+
+        synchronized void add(Stats other) {
+            synchronized (other) {
+                this.nanos += other.nanos;
+                this.bytes += other.bytes;
+                this.count += other.count;
+            }
+        }
+    }
+
+    private static final class TemplateStats {
+        private final Stats inclusive = new Stats();
+        private final Stats exclusive = new Stats();
+    }
+}
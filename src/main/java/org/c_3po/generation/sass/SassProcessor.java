@@ -4,27 +4,226 @@ import io.bit3.jsass.*;
 import io.bit3.jsass.Compiler;
 import io.bit3.jsass.context.FileContext;
 import io.bit3.jsass.context.StringContext;
+import io.bit3.jsass.importer.Import;
+import io.bit3.jsass.importer.Importer;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Responsible for compiling SASS files to CSS files.
+ *
+ * A SASS processor may compile several files at once, e.g. the stylesheets of a build that
+ * are forked as CPU tasks. Failing to compile a file doesn't affect the others.
  */
 public class SassProcessor {
+    private static final List<String> SASS_EXTENSIONS = List.of(".scss", ".sass", ".css");
 
-    private SassProcessor() {
+    // Note: A jsass compiler holds no state of a compilation, each of which gets its own native
+    // context. That's why all compilations share a single compiler instead of creating one each.
+    private final Compiler compiler = new Compiler();
+    private final Options defaultOptions = newOptions();
+
+    // Note: Null if compilations are not cached
+    private final Map<Path, Compilation> compilations;
+
+    private SassProcessor(Map<Path, Compilation> compilations) {
+        this.compilations = compilations;
     }
 
     public static SassProcessor getInstance() {
-        return new SassProcessor();
+        return new SassProcessor(null);
+    }
+
+    /**
+     * Creates a SASS processor that remembers the CSS of each SASS file, keyed by its absolute
+     * path, along with the files it imports. A file is only compiled again once it or one of
+     * its imports has changed. Meant to be shared by several site generators.
+     */
+    public static SassProcessor getCachingInstance() {
+        return new SassProcessor(new ConcurrentHashMap<>());
     }
 
     public String process(Path sassFile) throws CompilationException {
-        Compiler compiler = new Compiler();
-        Options options = new Options();
-        options.setOutputStyle(OutputStyle.COMPRESSED);
+        if (compilations == null) {
+            return compile(sassFile, null);
+        }
+
+        var absoluteSassFile = sassFile.toAbsolutePath().normalize();
+        var compilation = compilations.get(absoluteSassFile);
+        if (compilation != null && compilation.isUpToDate()) {
+            return compilation.css;
+        }
+
+        var dependencyRecorder = new DependencyRecorder(absoluteSassFile);
+        var css = compile(absoluteSassFile, dependencyRecorder);
+        compilation = dependencyRecorder.isComplete() ? Compilation.of(css, dependencyRecorder.getDependencies()) : null;
+        if (compilation != null) {
+            compilations.put(absoluteSassFile, compilation);
+        } else {
+            compilations.remove(absoluteSassFile);
+        }
+        return css;
+    }
+
+    private String compile(Path sassFile, DependencyRecorder dependencyRecorder) throws CompilationException {
+        Options options = defaultOptions;
+        if (dependencyRecorder != null) {
+            options = newOptions();
+            options.getImporters().add(dependencyRecorder);
+        }
         FileContext fileContext = new FileContext(sassFile.toUri(), null, options);
         Output output = compiler.compile(fileContext);
         return output.getCss();
     }
+
+    private static Options newOptions() {
+        Options options = new Options();
+        options.setOutputStyle(OutputStyle.COMPRESSED);
+        return options;
+    }
+
+    /**
+     * Records the files an import might refer to, using the same lookup rules as libsass.
+     * Never handles an import itself.
+     */
+    private static final class DependencyRecorder implements Importer {
+        private final Set<Path> dependencies = new HashSet<>();
+        private boolean complete = true;
+
+        private DependencyRecorder(Path sassFile) {
+            dependencies.add(sassFile);
+        }
+
+        /**
+         * @return false if an import couldn't be resolved to a file
+         */
+        synchronized boolean isComplete() {
+            return complete;
+        }
+
+        synchronized Set<Path> getDependencies() {
+            return new HashSet<>(dependencies);
+        }
+
+        @Override
+        public synchronized Collection<Import> apply(String url, Import previous) {
+            if (url.startsWith("http:") || url.startsWith("https:") || url.startsWith("//")
+                    || url.startsWith("url(")) {
+                return null;
+            }
+
+            var candidates = new ArrayList<Path>();
+            try {
+                // Note: libsass hands out plain paths as URIs, e.g. `/site/css/main.scss`
+                var previousUri = previous.getAbsoluteUri();
+                var previousFile = previousUri.getScheme() == null
+                        ? Paths.get(previousUri.getPath()) : Paths.get(previousUri);
+                var baseDir = previousFile.getParent();
+                var path = baseDir.resolve(url).normalize();
+                var fileName = path.getFileName().toString();
+                var hasExtension = SASS_EXTENSIONS.stream().anyMatch(fileName::endsWith);
+                for (String extension : hasExtension ? List.of("") : SASS_EXTENSIONS) {
+                    candidates.add(path.resolveSibling(fileName + extension));
+                    candidates.add(path.resolveSibling("_" + fileName + extension));
+                    if (!hasExtension) {
+                        candidates.add(path.resolve("_index" + extension));
+                        candidates.add(path.resolve("index" + extension));
+                    }
+                }
+            } catch (RuntimeException e) {
+
+                // Note: The importing file is not a regular file, e.g. it's been passed as a string
+                complete = false;
+                return null;
+            }
+
+            var found = false;
+            for (Path candidate : candidates) {
+                if (Files.isRegularFile(candidate)) {
+                    dependencies.add(candidate);
+                    found = true;
+                }
+            }
+            if (!found && !url.endsWith(".css")) {
+                complete = false;
+            }
+            return null;
+        }
+    }
+
+    private static final class Compilation {
+        private final String css;
+        private final Map<Path, FileStamp> dependencies;
+
+        private Compilation(String css, Map<Path, FileStamp> dependencies) {
+            this.css = css;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * @return the compilation or null if its dependencies are unknown
+         */
+        private static Compilation of(String css, Set<Path> dependencies) {
+            Map<Path, FileStamp> stamps = new HashMap<>();
+            for (Path dependency : dependencies) {
+                var stamp = FileStamp.of(dependency);
+                if (stamp == null) {
+                    return null;
+                }
+                stamps.put(dependency, stamp);
+            }
+            return new Compilation(css, stamps);
+        }
+
+        private boolean isUpToDate() {
+            for (Map.Entry<Path, FileStamp> dependency : dependencies.entrySet()) {
+                if (!dependency.getValue().equals(FileStamp.of(dependency.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class FileStamp {
+        private final long size;
+        private final long lastModified;
+
+        private FileStamp(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private static FileStamp of(Path file) {
+            try {
+                var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FileStamp that = (FileStamp) o;
+            return size == that.size && lastModified == that.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified);
+        }
+    }
 }
@@ -0,0 +1,342 @@
+package org.c_3po.generation.search;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.c_3po.util.ChecksumCalculator;
+import org.c_3po.util.Json;
+import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index of the text of generated pages that is published as static JSON files,
+ * so that a website can offer a search without a server.
+ *
+ * The index is written to the `search-index` directory of the generated site:
+ * `index.json` lists the documents and shards, and each shard `<prefix>.json` holds the
+ * alphabetically sorted terms starting with a certain two characters along with their
+ * postings. A client only needs to fetch the shard matching the beginning of a query and
+ * can look up all terms starting with the query by a binary search.
+ *
+ * Pages are indexed right after they have been rendered. A page whose HTML hasn't changed
+ * since it's been indexed last is not parsed again, and only shards containing terms of
+ * changed pages are written again.
+ */
+public class SearchIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchIndex.class);
+    public static final String OUTPUT_DIR_NAME = "search-index";
+    private static final String INDEX_FILE_NAME = "index.json";
+    private static final int FORMAT_VERSION = 1;
+    private static final int SHARD_PREFIX_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 32;
+    private static final Pattern TERM_DELIMITER = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern PLAIN_SHARD_NAME = Pattern.compile("[a-z0-9]+");
+
+    private final Map<String, Document> documents;
+    private final Set<String> dirtyShards = ConcurrentHashMap.newKeySet();
+    private int nextId;
+    private volatile boolean hasChanged;
+
+    private SearchIndex(Map<String, Document> documents, int nextId) {
+        this.documents = new ConcurrentHashMap<>(documents);
+        this.nextId = nextId;
+    }
+
+    public static SearchIndex empty() {
+        return new SearchIndex(Collections.emptyMap(), 0);
+    }
+
+    /**
+     * Loads an index previously stored by {@link #write(Path, Path)}. Returns an empty
+     * index if the file doesn't exist or can't be read.
+     */
+    public static SearchIndex load(Path cacheFile) {
+        if (Files.notExists(cacheFile)) {
+            return empty();
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return empty();
+            }
+            var nextId = in.readInt();
+            var documentCount = in.readInt();
+            var documents = new HashMap<String, Document>(documentCount);
+            for (int i = 0; i < documentCount; i++) {
+                var document = Document.readFrom(in);
+                documents.put(document.url, document);
+            }
+            return new SearchIndex(documents, nextId);
+        } catch (IOException e) {
+            LOG.warn("Failed to load search index from '{}'. Rebuilding it.", cacheFile);
+            return empty();
+        }
+    }
+
+    /**
+     * Indexes a rendered page unless it's unchanged since it's been indexed last.
+     * Can be called concurrently.
+     *
+     * @param url the URL of the page relative to the site's root, e.g. `blog/post.html`
+     * @param html the rendered page
+     */
+    public void addPage(String url, String html) {
+        var contentHash = ChecksumCalculator.sha1(html);
+        var previousDocument = documents.get(url);
+        if (previousDocument != null && previousDocument.contentHash.equals(contentHash)) {
+            return;
+        }
+
+        var doc = Jsoup.parse(html);
+        var title = !doc.title().isBlank() ? doc.title() : doc.select("h1").text();
+        var terms = tokenize(doc.body() != null ? doc.body().text() : doc.text());
+
+        var document = new Document(previousDocument != null ? previousDocument.id : newId(), url,
+                title.isBlank() ? url : title, contentHash, terms);
+        documents.put(url, document);
+        markDirty(previousDocument);
+        markDirty(document);
+        hasChanged = true;
+    }
+
+    /**
+     * Removes a page from the index, e.g. because it's excluded from search.
+     */
+    public void removePage(String url) {
+        var previousDocument = documents.remove(url);
+        if (previousDocument != null) {
+            markDirty(previousDocument);
+            hasChanged = true;
+        }
+    }
+
+    /**
+     * Drops pages that don't exist anymore, writes the shards affected by changes since the
+     * last write and stores the index for the next build.
+     *
+     * @param destinationDir the root directory of the generated site
+     * @param cacheFile the file the index is stored in between builds
+     */
+    public synchronized void write(Path destinationDir, Path cacheFile) throws IOException {
+        for (String url : new ArrayList<>(documents.keySet())) {
+            if (Files.notExists(destinationDir.resolve(url))) {
+                removePage(url);
+            }
+        }
+
+        var outputDir = destinationDir.resolve(OUTPUT_DIR_NAME);
+        var isOutputMissing = Files.notExists(outputDir.resolve(INDEX_FILE_NAME));
+        if (!hasChanged && !isOutputMissing) {
+            return;
+        }
+
+        // Merge the postings of all shards that need to be written
+        var allShards = new TreeSet<String>();
+        var shards = new HashMap<String, SortedMap<String, List<int[]>>>();
+        for (Document document : sortedDocuments()) {
+            for (Map.Entry<String, Integer> term : document.terms.entrySet()) {
+                var shard = shardOf(term.getKey());
+                allShards.add(shard);
+                if (isOutputMissing || dirtyShards.contains(shard)) {
+                    shards.computeIfAbsent(shard, key -> new TreeMap<>())
+                            .computeIfAbsent(term.getKey(), key -> new ArrayList<>())
+                            .add(new int[] {document.id, term.getValue()});
+                }
+            }
+        }
+
+        Files.createDirectories(outputDir);
+        for (Map.Entry<String, SortedMap<String, List<int[]>>> shard : shards.entrySet()) {
+            writeShard(outputDir.resolve(shardFileName(shard.getKey())), shard.getValue());
+        }
+        for (String shard : dirtyShards) {
+            if (!allShards.contains(shard)) {
+                Files.deleteIfExists(outputDir.resolve(shardFileName(shard)));
+            }
+        }
+        writeIndexFile(outputDir.resolve(INDEX_FILE_NAME), allShards);
+        LOG.debug("Wrote {} shard(s) of search index with {} documents", shards.size(), documents.size());
+
+        store(cacheFile);
+        dirtyShards.clear();
+        hasChanged = false;
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    private List<Document> sortedDocuments() {
+        var sortedDocuments = new ArrayList<>(documents.values());
+        sortedDocuments.sort(Comparator.comparingInt(document -> document.id));
+        return sortedDocuments;
+    }
+
+    private void writeIndexFile(Path file, Set<String> shards) throws IOException {
+        var sortedDocuments = sortedDocuments();
+
+        writeAtomically(file, json -> {
+            json.writeStartObject();
+            json.writeNumberField("version", FORMAT_VERSION);
+            json.writeArrayFieldStart("documents");
+            for (Document document : sortedDocuments) {
+                json.writeStartArray();
+                json.writeNumber(document.id);
+                json.writeString(document.url);
+                json.writeString(document.title);
+                json.writeEndArray();
+            }
+            json.writeEndArray();
+            json.writeArrayFieldStart("shards");
+            for (String shard : shards) {
+                json.writeString(shardFileName(shard));
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        });
+    }
+
+    /**
+     * Writes a shard. Postings of a term are flattened into pairs of document id and term frequency.
+     */
+    private static void writeShard(Path file, SortedMap<String, List<int[]>> terms) throws IOException {
+        writeAtomically(file, json -> {
+            json.writeStartObject();
+            json.writeArrayFieldStart("terms");
+            for (String term : terms.keySet()) {
+                json.writeString(term);
+            }
+            json.writeEndArray();
+            json.writeArrayFieldStart("postings");
+            for (List<int[]> postings : terms.values()) {
+                json.writeStartArray();
+                for (int[] posting : postings) {
+                    json.writeNumber(posting[0]);
+                    json.writeNumber(posting[1]);
+                }
+                json.writeEndArray();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        });
+    }
+
+    private void store(Path cacheFile) throws IOException {
+        Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+        var tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(nextId);
+            out.writeInt(documents.size());
+            for (Document document : documents.values()) {
+                document.writeTo(out);
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized int newId() {
+        return nextId++;
+    }
+
+    private void markDirty(Document document) {
+        if (document != null) {
+            document.terms.keySet().forEach(term -> dirtyShards.add(shardOf(term)));
+        }
+    }
+
+    static Map<String, Integer> tokenize(String text) {
+        var terms = new HashMap<String, Integer>();
+        for (String term : TERM_DELIMITER.split(text.toLowerCase(Locale.ROOT))) {
+            if (term.length() >= SHARD_PREFIX_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+                terms.merge(term, 1, Integer::sum);
+            }
+        }
+        return terms;
+    }
+
+    private static String shardOf(String term) {
+        return term.substring(0, SHARD_PREFIX_LENGTH);
+    }
+
+    /**
+     * Builds a file name that is safe on all file systems, escaping characters other than
+     * a-z and 0-9 by their code, e.g. `_00e9t.json` for shard `&eacute;t`.
+     */
+    static String shardFileName(String shard) {
+        if (PLAIN_SHARD_NAME.matcher(shard).matches()) {
+            return shard + ".json";
+        }
+        var fileName = new StringBuilder();
+        for (char c : shard.toCharArray()) {
+            fileName.append(PLAIN_SHARD_NAME.matcher(String.valueOf(c)).matches()
+                    ? String.valueOf(c) : String.format("_%04x", (int) c));
+        }
+        return fileName.append(".json").toString();
+    }
+
+    private static void writeAtomically(Path file, JsonConsumer consumer) throws IOException {
+        var tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var json = Json.newGenerator(Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8))) {
+            consumer.accept(json);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @FunctionalInterface
+    private interface JsonConsumer {
+        void accept(JsonGenerator json) throws IOException;
+    }
+
+    /**
+     * A single indexed page.
+     */
+    private static final class Document {
+        private final int id;
+        private final String url;
+        private final String title;
+        private final String contentHash;
+        private final Map<String, Integer> terms;
+
+        private Document(int id, String url, String title, String contentHash, Map<String, Integer> terms) {
+            this.id = id;
+            this.url = url;
+            this.title = title;
+            this.contentHash = contentHash;
+            this.terms = terms;
+        }
+
+        private static Document readFrom(DataInputStream in) throws IOException {
+            var id = in.readInt();
+            var url = in.readUTF();
+            var title = in.readUTF();
+            var contentHash = in.readUTF();
+            var termCount = in.readInt();
+            var terms = new HashMap<String, Integer>(termCount);
+            for (int i = 0; i < termCount; i++) {
+                terms.put(in.readUTF(), in.readInt());
+            }
+            return new Document(id, url, title, contentHash, terms);
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(id);
+            out.writeUTF(url);
+            out.writeUTF(title.length() > 1000 ? title.substring(0, 1000) : title);
+            out.writeUTF(contentHash);
+            out.writeInt(terms.size());
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                out.writeUTF(term.getKey());
+                out.writeInt(term.getValue());
+            }
+        }
+    }
+}
@@ -12,6 +12,17 @@ public class Directories {
      * Copies a directory recursively.
      */
     public static void copyDir(Path sourceDirectory, Path targetDirectory) throws IOException {
+        copyDir(sourceDirectory, targetDirectory, null);
+    }
+
+    /**
+     * Copies a directory recursively, storing files with identical content only once
+     * if a deduplicator is given.
+     *
+     * @param deduplicator the deduplicator to copy files with or null to copy each file
+     */
+    public static void copyDir(Path sourceDirectory, Path targetDirectory, FileDeduplicator deduplicator)
+            throws IOException {
         if (Files.exists(sourceDirectory)) {
             validateDirectory(sourceDirectory);
             validateDirectory(targetDirectory);
@@ -23,7 +34,9 @@ public class Directories {
             try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(sourceDirectory)) {
                 for (Path entry : directoryStream) {
                     if (Files.isDirectory(entry)) {
-                        copyDir(entry, targetDirectory.resolve(entry.getFileName()));
+                        copyDir(entry, targetDirectory.resolve(entry.getFileName()), deduplicator);
+                    } else if (deduplicator != null) {
+                        deduplicator.copy(entry, targetDirectory.resolve(entry.getFileName()));
                     } else {
                         Files.copy(entry, targetDirectory.resolve(entry.getFileName()),
                                 StandardCopyOption.REPLACE_EXISTING);
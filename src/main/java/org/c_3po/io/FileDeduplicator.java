@@ -0,0 +1,100 @@
+package org.c_3po.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Copies files such that there's only one physical copy per unique content in the target
+ * directory tree. The first file of a certain content is copied, all further files with
+ * the same content become hard links to it.
+ *
+ * Files are identified by the SHA-1 hash of their content. Hashes are cached by
+ * {@link FileHashes}, so unchanged source files are not read again by subsequent builds.
+ *
+ * Note: Hard linked files share their content. Outputs must therefore be replaced instead
+ * of being modified in place, which C-3PO does anyway.
+ */
+public final class FileDeduplicator {
+    private static final Logger LOG = LoggerFactory.getLogger(FileDeduplicator.class);
+
+    private final FileHashes fileHashes;
+    private final Map<String, CompletableFuture<Path>> canonicalFiles = new ConcurrentHashMap<>();
+    private volatile boolean canLink = true;
+
+    private FileDeduplicator(FileHashes fileHashes) {
+        this.fileHashes = fileHashes;
+    }
+
+    public static FileDeduplicator create() {
+        return create(FileHashes.create());
+    }
+
+    public static FileDeduplicator create(FileHashes fileHashes) {
+        return new FileDeduplicator(Objects.requireNonNull(fileHashes));
+    }
+
+    /**
+     * Forgets the files copied so far. Needs to be called before each build since outputs
+     * of a previous build may have been changed or deleted since.
+     */
+    public void beginBuild() {
+        canonicalFiles.clear();
+    }
+
+    /**
+     * Copies the source file to the target file or links the target file to a previously
+     * copied file with the same content. Can be called concurrently.
+     */
+    public void copy(Path source, Path target) throws IOException {
+        var hash = fileHashes.sha1(source);
+        var copied = new CompletableFuture<Path>();
+        var canonicalFile = canonicalFiles.putIfAbsent(hash, copied);
+        if (canonicalFile == null) {
+            try {
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+                copied.complete(target);
+            } catch (IOException | RuntimeException e) {
+                copied.completeExceptionally(e);
+                throw e;
+            }
+            return;
+        }
+
+        // Note: Waits for the canonical file to be completely written, because it replaces the
+        // file a previous build has written to its location, which might have had another content.
+        Path canonicalPath;
+        try {
+            canonicalPath = canonicalFile.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for '" + source + "' to be copied");
+        } catch (ExecutionException e) {
+            canonicalPath = null;
+        }
+
+        if (canonicalPath == null || canonicalPath.equals(target) || !canLink) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } else if (!Files.exists(target) || !Files.isSameFile(target, canonicalPath)) {
+            try {
+                Files.deleteIfExists(target);
+                Files.createLink(target, canonicalPath);
+            } catch (UnsupportedOperationException | IOException e) {
+                LOG.warn("Failed to create hard link '{}'. Copying files instead. Reason: '{}'", target,
+                        e.getMessage());
+                canLink = false;
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
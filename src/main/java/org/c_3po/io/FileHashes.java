@@ -0,0 +1,58 @@
+package org.c_3po.io;
+
+import org.c_3po.util.ChecksumCalculator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the SHA-1 hashes of file contents.
+ *
+ * Hashes are keyed by the real path of a file and remembered along with its size and
+ * modification time, so a file is only read again once it has changed. Since symbolic links
+ * are resolved, a file that several sites link to is hashed only once. Can be used concurrently.
+ */
+public final class FileHashes {
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    private FileHashes() {
+    }
+
+    public static FileHashes create() {
+        return new FileHashes();
+    }
+
+    /**
+     * @return the SHA-1 hash of the file's content as a hex string
+     */
+    public String sha1(Path file) throws IOException {
+        var realPath = file.toRealPath();
+        var attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+        var entry = entries.get(realPath);
+        if (entry != null && entry.size == attributes.size()
+                && entry.lastModified == attributes.lastModifiedTime().toMillis()) {
+            return entry.hash;
+        }
+
+        var hash = ChecksumCalculator.sha1(realPath);
+        entries.put(realPath, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+        return hash;
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+
+        private Entry(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = Objects.requireNonNull(hash);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.c_3po.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A buffer that a document is rendered into as UTF-8 before it's written to its file.
+ *
+ * Buffers are pooled, so rendering a page doesn't allocate a buffer of its size over and over
+ * again. A file is only replaced if its content differs from the buffer's, which leaves
+ * unchanged documents, including their modification time, as they are.
+ *
+ * The pool holds at most {@value #MAX_POOLED_BYTES} bytes of buffers in total, whatever their
+ * number. Not thread-safe. Acquire a buffer per operation and close it once done to return it to the pool.
+ */
+public final class OutputBuffer extends OutputStream {
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MAX_POOLED_CAPACITY = 4 * 1024 * 1024;
+    static final long MAX_POOLED_BYTES = 16 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 8192;
+    private static final Queue<OutputBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicLong POOLED_BYTES = new AtomicLong();
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    private OutputBuffer() {
+    }
+
+    /**
+     * @return an empty buffer, either a pooled or a new one
+     */
+    public static OutputBuffer acquire() {
+        var buffer = POOL.poll();
+        if (buffer == null) {
+            return new OutputBuffer();
+        }
+        POOLED_BYTES.addAndGet(-buffer.bytes.length);
+        return buffer;
+    }
+
+    /**
+     * @return a writer encoding to this buffer as UTF-8, which has to be flushed or closed
+     * before the buffer's content is used. Closing it leaves the buffer open.
+     */
+    public Writer newWriter() {
+        var target = new OutputStream() {
+            @Override
+            public void write(int b) {
+                OutputBuffer.this.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                OutputBuffer.this.write(b, off, len);
+            }
+        };
+        return new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), CHUNK_SIZE);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        bytes[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, bytes, count, len);
+        count += len;
+    }
+
+    public void write(String s) {
+        var encoded = s.getBytes(StandardCharsets.UTF_8);
+        write(encoded, 0, encoded.length);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, count);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the buffer's content to the given file unless the file has exactly that content already.
+     *
+     * @return true if the file has been written
+     */
+    public boolean writeTo(Path file) throws IOException {
+        if (hasSameContent(file)) {
+            return false;
+        }
+
+        try (var channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            var source = ByteBuffer.wrap(bytes, 0, count);
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the buffer to the pool. Buffers that have grown large are left to the garbage
+     * collector instead, so the pool doesn't pin the memory of the largest documents. So is any
+     * buffer that doesn't fit into the pool anymore.
+     */
+    @Override
+    public void close() {
+        count = 0;
+        if (bytes.length <= MAX_POOLED_CAPACITY && reservePoolCapacity(bytes.length)) {
+            POOL.offer(this);
+        }
+    }
+
+    /**
+     * @return the total capacity of the buffers in the pool
+     */
+    static long pooledBytes() {
+        return POOLED_BYTES.get();
+    }
+
+    private static boolean reservePoolCapacity(int capacity) {
+        while (true) {
+            var pooledBytes = POOLED_BYTES.get();
+            if (pooledBytes + capacity > MAX_POOLED_BYTES) {
+                return false;
+            }
+            if (POOLED_BYTES.compareAndSet(pooledBytes, pooledBytes + capacity)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Compares the file chunk by chunk, so it's never read into memory as a whole.
+     * Files of a different length are told apart without reading them at all.
+     */
+    private boolean hasSameContent(Path file) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) != count) {
+            return false;
+        }
+
+        try (var channel = FileChannel.open(file, READ)) {
+            var chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            var position = 0;
+            while (position < count) {
+                chunk.clear();
+                var read = channel.read(chunk);
+                if (read < 0 || position + read > count) {
+                    return false;
+                }
+                if (Arrays.mismatch(chunk.array(), 0, read, bytes, position, position + read) >= 0) {
+                    return false;
+                }
+                position += read;
+            }
+            return channel.read(chunk.clear()) < 0;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.c_3po.io.watch;
+
+import org.c_3po.io.watch.WatchBackend.Rescan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory tree for changes.
+ *
+ * The watcher keeps a snapshot of the attributes of all files in the tree. Whenever its
+ * {@link WatchBackend} signals that a directory might have changed, only this directory,
+ * or the subtree below it if notifications have been lost, is compared against the snapshot.
+ * This makes the watcher independent of how reliable the notifications of a backend are.
+ *
+ * Directories that are rejected by the given filter are neither watched nor scanned.
+ */
+public final class DirectoryWatcher implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryWatcher.class);
+    public static final Duration DEFAULT_POLLING_INTERVAL = Duration.ofSeconds(1);
+    private static final long SETTLE_MILLIS = 50;
+    private static final long MAX_BATCH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path rootDir;
+    private final DirectoryStream.Filter<Path> dirFilter;
+    private final WatchBackend backend;
+    private final Map<Path, SortedMap<Path, Entry>> snapshot = new HashMap<>();
+    private boolean initialized;
+
+    private DirectoryWatcher(Path rootDir, DirectoryStream.Filter<Path> dirFilter, WatchBackend backend) {
+        this.rootDir = rootDir;
+        this.dirFilter = dirFilter;
+        this.backend = backend;
+    }
+
+    /**
+     * Creates a watcher that relies on native change notifications and falls back to polling
+     * if they aren't available, e.g. because the system's limit of watches has been reached.
+     */
+    public static DirectoryWatcher create(Path rootDir, DirectoryStream.Filter<Path> dirFilter) throws IOException {
+        try {
+            return create(rootDir, dirFilter, NativeWatchBackend.create());
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("Failed to watch '{}' natively. Polling for changes instead. Reason: '{}'", rootDir,
+                    e.getMessage());
+            return create(rootDir, dirFilter, PollingWatchBackend.create(rootDir, DEFAULT_POLLING_INTERVAL));
+        }
+    }
+
+    /**
+     * Creates a watcher that uses the given backend. The backend is closed along with the watcher.
+     */
+    public static DirectoryWatcher create(Path rootDir, DirectoryStream.Filter<Path> dirFilter,
+                                          WatchBackend backend) throws IOException {
+        var watcher = new DirectoryWatcher(Objects.requireNonNull(rootDir), Objects.requireNonNull(dirFilter),
+                Objects.requireNonNull(backend));
+        try {
+            watcher.addSubtree(rootDir);
+        } catch (IOException | RuntimeException e) {
+            backend.close();
+            throw e;
+        }
+        watcher.initialized = true;
+        LOG.debug("Watching {} directories beneath '{}'", watcher.snapshot.size(), rootDir);
+        return watcher;
+    }
+
+    /**
+     * Waits for changes. Notifications arriving in quick succession, e.g. the ones caused by
+     * a checkout, are gathered so that they're returned as a single batch.
+     *
+     * @return the changes since the last call, never empty
+     */
+    public List<FileChange> take() throws InterruptedException, IOException {
+        for (;;) {
+            Set<Rescan> rescans = new HashSet<>(backend.take());
+            long deadline = System.nanoTime() + MAX_BATCH_NANOS;
+            while (System.nanoTime() < deadline) {
+                var moreRescans = backend.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (moreRescans.isEmpty()) {
+                    break;
+                }
+                rescans.addAll(moreRescans);
+            }
+
+            var changes = rescan(rescans);
+            if (!changes.isEmpty()) {
+                return changes;
+            }
+        }
+    }
+
+    private List<FileChange> rescan(Set<Rescan> rescans) throws IOException {
+
+        // Drop rescans that are covered by the rescan of a subtree anyway
+        Set<Path> subtrees = new HashSet<>();
+        rescans.stream().filter(Rescan::isSubtree).forEach(rescan -> subtrees.add(rescan.getDir()));
+        List<Rescan> effectiveRescans = new ArrayList<>();
+        for (Rescan rescan : rescans) {
+            var coveringDir = rescan.isSubtree() ? rescan.getDir().getParent() : rescan.getDir();
+            while (coveringDir != null && !subtrees.contains(coveringDir)) {
+                coveringDir = coveringDir.getParent();
+            }
+            if (coveringDir == null) {
+                effectiveRescans.add(rescan);
+            }
+        }
+        effectiveRescans.sort(Comparator.comparing(Rescan::getDir));
+
+        List<FileChange> changes = new ArrayList<>();
+        for (Rescan rescan : effectiveRescans) {
+
+            // A directory that isn't part of the snapshot is either gone already or new and will
+            // be found when scanning its closest known ancestor.
+            var dir = rescan.getDir();
+            var subtree = rescan.isSubtree();
+            while (!snapshot.containsKey(dir) && !dir.equals(rootDir) && dir.startsWith(rootDir)) {
+                dir = dir.getParent();
+                subtree = false;
+            }
+            if (snapshot.containsKey(dir)) {
+                rescan(dir, subtree, changes);
+            }
+        }
+        return changes;
+    }
+
+    private void rescan(Path dir, boolean subtree, List<FileChange> changes) throws IOException {
+        SortedMap<Path, Entry> currentEntries;
+        try {
+            currentEntries = list(dir);
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            if (dir.equals(rootDir)) {
+                LOG.warn("Watched directory '{}' doesn't exist anymore", rootDir);
+            } else {
+
+                // Note: Reported as deleted by the parent directory
+                rescan(dir.getParent(), false, changes);
+            }
+            return;
+        }
+
+        var previousEntries = snapshot.put(dir, currentEntries);
+        if (previousEntries == null) {
+            previousEntries = Collections.emptySortedMap();
+        }
+
+        for (Map.Entry<Path, Entry> current : currentEntries.entrySet()) {
+            var path = current.getKey();
+            var entry = current.getValue();
+            var previousEntry = previousEntries.get(path);
+            if (previousEntry == null || !previousEntry.isSameKind(entry)) {
+                if (previousEntry != null) {
+                    removeEntry(path, previousEntry, changes);
+                }
+                changes.add(new FileChange(FileChange.Kind.CREATED, path, entry.directory));
+                if (entry.directory) {
+                    addSubtree(path);
+                }
+            } else if (entry.directory) {
+                if (subtree) {
+                    rescan(path, true, changes);
+                }
+            } else if (!entry.equals(previousEntry)) {
+                changes.add(new FileChange(FileChange.Kind.MODIFIED, path, false));
+            }
+        }
+
+        for (Map.Entry<Path, Entry> previous : previousEntries.entrySet()) {
+            if (!currentEntries.containsKey(previous.getKey())) {
+                removeEntry(previous.getKey(), previous.getValue(), changes);
+            }
+        }
+    }
+
+    private void removeEntry(Path path, Entry entry, List<FileChange> changes) {
+        changes.add(new FileChange(FileChange.Kind.DELETED, path, entry.directory));
+        if (entry.directory) {
+            removeSubtree(path);
+        }
+    }
+
+    private void addSubtree(Path dir) throws IOException {
+
+        // Note: Registers before listing so that no file created in between goes unnoticed
+        try {
+            backend.register(dir);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            if (!initialized) {
+                throw e;
+            }
+            LOG.warn("Failed to watch '{}'. Changes within it might go unnoticed. Reason: '{}'", dir, e.getMessage());
+        }
+
+        SortedMap<Path, Entry> entries;
+        try {
+            entries = list(dir);
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            backend.unregister(dir);
+            return;
+        }
+        snapshot.put(dir, entries);
+        for (Map.Entry<Path, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().directory) {
+                addSubtree(entry.getKey());
+            }
+        }
+    }
+
+    private void removeSubtree(Path dir) {
+        backend.unregister(dir);
+        var entries = snapshot.remove(dir);
+        if (entries != null) {
+            entries.forEach((path, entry) -> {
+                if (entry.directory) {
+                    removeSubtree(path);
+                }
+            });
+        }
+    }
+
+    private SortedMap<Path, Entry> list(Path dir) throws IOException {
+        SortedMap<Path, Entry> entries = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (!attributes.isDirectory() || dirFilter.accept(path)) {
+                    entries.put(path, new Entry(attributes));
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        backend.close();
+    }
+
+    private static final class Entry {
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+        private final Object fileKey;
+
+        private Entry(BasicFileAttributes attributes) {
+            this.directory = attributes.isDirectory();
+            this.size = directory ? 0 : attributes.size();
+            this.lastModified = directory ? 0 : attributes.lastModifiedTime().toMillis();
+            this.fileKey = attributes.fileKey();
+        }
+
+        /**
+         * Tells whether both entries are files or both are the same directory. A directory
+         * that has been replaced by another one, e.g. by moving it, is not the same.
+         */
+        private boolean isSameKind(Entry other) {
+            return directory == other.directory && (!directory || Objects.equals(fileKey, other.fileKey));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return directory == entry.directory && size == entry.size && lastModified == entry.lastModified
+                    && Objects.equals(fileKey, entry.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(directory, size, lastModified, fileKey);
+        }
+    }
+}
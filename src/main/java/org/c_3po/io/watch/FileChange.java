@@ -0,0 +1,60 @@
+package org.c_3po.io.watch;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * A change of a file or directory detected by a {@link DirectoryWatcher}.
+ *
+ * Note: A created, moved or deleted directory is reported as a single change of the directory
+ * itself. There are no separate changes for the files contained in it.
+ */
+public final class FileChange {
+    public enum Kind {
+        CREATED, MODIFIED, DELETED
+    }
+
+    private final Kind kind;
+    private final Path path;
+    private final boolean directory;
+
+    FileChange(Kind kind, Path path, boolean directory) {
+        this.kind = Objects.requireNonNull(kind);
+        this.path = Objects.requireNonNull(path);
+        this.directory = directory;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        FileChange that = (FileChange) o;
+        return directory == that.directory && kind == that.kind && path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, path, directory);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + path + (directory ? " (directory)" : "");
+    }
+}
@@ -0,0 +1,121 @@
+package org.c_3po.io.watch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * A {@link WatchBackend} based on the platform's {@link WatchService}, e.g. inotify on Linux.
+ *
+ * Lost events are not a problem: an {@code OVERFLOW} event leads to a rescan of the
+ * affected subtree, and a key that becomes invalid because its directory is gone leads
+ * to a rescan of the parent directory.
+ */
+public final class NativeWatchBackend implements WatchBackend {
+    private static final Logger LOG = LoggerFactory.getLogger(NativeWatchBackend.class);
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> dirsByKey = new HashMap<>();
+    private final Map<Path, WatchKey> keysByDir = new HashMap<>();
+
+    private NativeWatchBackend(WatchService watchService) {
+        this.watchService = watchService;
+    }
+
+    public static NativeWatchBackend create() throws IOException {
+        return new NativeWatchBackend(FileSystems.getDefault().newWatchService());
+    }
+
+    @Override
+    public synchronized void register(Path dir) throws IOException {
+        var key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        dirsByKey.put(key, dir);
+        keysByDir.put(dir, key);
+    }
+
+    @Override
+    public synchronized void unregister(Path dir) {
+        var key = keysByDir.remove(dir);
+        if (key != null) {
+            key.cancel();
+            dirsByKey.remove(key);
+        }
+    }
+
+    @Override
+    public Set<Rescan> take() throws InterruptedException {
+        Set<Rescan> rescans = new HashSet<>();
+        while (rescans.isEmpty()) {
+            collect(watchService.take(), rescans);
+        }
+        drain(rescans);
+        return rescans;
+    }
+
+    @Override
+    public Set<Rescan> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        Set<Rescan> rescans = new HashSet<>();
+        var key = watchService.poll(timeout, unit);
+        if (key != null) {
+            collect(key, rescans);
+            drain(rescans);
+        }
+        return rescans;
+    }
+
+    /**
+     * Collects the keys that are signalled already without waiting.
+     */
+    private void drain(Set<Rescan> rescans) {
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            collect(key, rescans);
+        }
+    }
+
+    private synchronized void collect(WatchKey key, Set<Rescan> rescans) {
+        var dir = dirsByKey.get(key);
+        if (dir == null) {
+
+            // Note: The directory has been unregistered while the key was queued
+            key.pollEvents();
+            return;
+        }
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                LOG.debug("Lost change notifications for '{}'. Rescanning it.", dir);
+                rescans.add(Rescan.subtree(dir));
+            } else {
+                rescans.add(Rescan.directory(dir));
+            }
+        }
+
+        if (!key.reset()) {
+
+            // The directory is inaccessible, probably deleted or moved away along with its parent
+            LOG.debug("Watch key of '{}' became invalid", dir);
+            dirsByKey.remove(key);
+            keysByDir.remove(dir);
+            rescans.add(dir.getParent() != null ? Rescan.directory(dir.getParent()) : Rescan.subtree(dir));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
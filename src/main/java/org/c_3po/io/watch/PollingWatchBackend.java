@@ -0,0 +1,57 @@
+package org.c_3po.io.watch;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link WatchBackend} that periodically has the whole tree compared against the snapshot.
+ *
+ * Meant for file systems that don't deliver native change notifications, such as network shares
+ * or directories mounted into containers. A rescan only reads file attributes, not contents.
+ */
+public final class PollingWatchBackend implements WatchBackend {
+    private final Path rootDir;
+    private final long intervalMillis;
+
+    private PollingWatchBackend(Path rootDir, long intervalMillis) {
+        this.rootDir = Objects.requireNonNull(rootDir);
+        this.intervalMillis = intervalMillis;
+    }
+
+    public static PollingWatchBackend create(Path rootDir, Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Polling interval must be positive but was " + interval);
+        }
+        return new PollingWatchBackend(rootDir, interval.toMillis());
+    }
+
+    @Override
+    public void register(Path dir) {
+    }
+
+    @Override
+    public void unregister(Path dir) {
+    }
+
+    @Override
+    public Set<Rescan> take() throws InterruptedException {
+        Thread.sleep(intervalMillis);
+        return Set.of(Rescan.subtree(rootDir));
+    }
+
+    /**
+     * Doesn't wait at all, since there's nothing to gather between two polls.
+     */
+    @Override
+    public Set<Rescan> poll(long timeout, TimeUnit unit) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void close() {
+    }
+}
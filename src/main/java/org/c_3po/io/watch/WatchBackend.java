@@ -0,0 +1,100 @@
+package org.c_3po.io.watch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The source of change notifications of a {@link DirectoryWatcher}.
+ *
+ * A backend doesn't need to tell what exactly changed. It only tells which directories
+ * might contain changes. The watcher then compares these directories against its snapshot.
+ */
+public interface WatchBackend extends Closeable {
+
+    /**
+     * Starts watching the entries of the given directory. The watcher calls this for
+     * every directory of the tree, including the ones created later on.
+     */
+    void register(Path dir) throws IOException;
+
+    /**
+     * Stops watching the given directory, e.g. because it has been deleted.
+     */
+    void unregister(Path dir);
+
+    /**
+     * Waits until there might be changes.
+     *
+     * @return the directories to rescan, never empty
+     */
+    Set<Rescan> take() throws InterruptedException;
+
+    /**
+     * Waits until there might be changes or the timeout elapses.
+     *
+     * @return the directories to rescan or an empty set if the timeout elapsed
+     */
+    Set<Rescan> poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * A directory that needs to be compared against the snapshot.
+     */
+    final class Rescan {
+        private final Path dir;
+        private final boolean subtree;
+
+        private Rescan(Path dir, boolean subtree) {
+            this.dir = Objects.requireNonNull(dir);
+            this.subtree = subtree;
+        }
+
+        /**
+         * Rescans the entries of the given directory but not the ones of its subdirectories.
+         */
+        public static Rescan directory(Path dir) {
+            return new Rescan(dir, false);
+        }
+
+        /**
+         * Rescans the given directory and all its subdirectories, e.g. because change
+         * notifications have been lost.
+         */
+        public static Rescan subtree(Path dir) {
+            return new Rescan(dir, true);
+        }
+
+        public Path getDir() {
+            return dir;
+        }
+
+        public boolean isSubtree() {
+            return subtree;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Rescan rescan = (Rescan) o;
+            return subtree == rescan.subtree && dir.equals(rescan.dir);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dir, subtree);
+        }
+
+        @Override
+        public String toString() {
+            return (subtree ? "subtree " : "directory ") + dir;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.c_3po.util;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
@@ -9,7 +10,45 @@ import java.security.NoSuchAlgorithmException;
 
 public class ChecksumCalculator {
     public static byte[] computeSha1Hash(Path file) throws NoSuchAlgorithmException, IOException {
-        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        return digest(file, MessageDigest.getInstance("SHA-1"));
+    }
+
+    /**
+     * @return the SHA-1 hash of the file's content as a hex string
+     */
+    public static String sha1(Path file) throws IOException {
+        return encodeHexString(digest(file, newDigest("SHA-1")));
+    }
+
+    /**
+     * @return the SHA-1 hash of the given bytes as a hex string
+     */
+    public static String sha1(byte[] bytes) {
+        return encodeHexString(newDigest("SHA-1").digest(bytes));
+    }
+
+    /**
+     * @return the SHA-1 hash of the UTF-8 encoded string as a hex string
+     */
+    public static String sha1(String s) {
+        return sha1(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param algorithm an algorithm every Java platform is required to support, e.g. SHA-1 or SHA-256
+     * @return a digest to compute a hash of several inputs with
+     */
+    public static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+
+            // Note: Every Java platform is required to support SHA-1 and SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] digest(Path file, MessageDigest md) throws IOException {
         try (var bis = new BufferedInputStream(Files.newInputStream(file))) {
             byte[] buffer = new byte[1024];
 
@@ -0,0 +1,88 @@
+package org.c_3po.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility class for streaming the JSON files C-3PO produces and reading the JSON and YAML
+ * data files of a site. Backed by Jackson.
+ */
+public class Json {
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .enable(DeserializationFeature.USE_LONG_FOR_INTS, DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+            .build();
+    private static final ObjectMapper YAML_MAPPER = YAMLMapper.builder()
+            .enable(DeserializationFeature.USE_LONG_FOR_INTS, DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+            .build();
+
+    // Make it non-instantiable and prohibit subclassing.
+    private Json() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Creates a generator that writes JSON to the given writer and closes it once it's closed
+     * itself, so that large files like search indexes don't need to be held in memory.
+     */
+    public static JsonGenerator newGenerator(Writer writer) throws IOException {
+        return MAPPER.createGenerator(writer);
+    }
+
+    /**
+     * Parses the given JSON document. Objects become unmodifiable maps keeping the order of
+     * their members, arrays unmodifiable lists, integral numbers longs (or big integers if they
+     * don't fit) and all other numbers doubles.
+     *
+     * @throws IllegalArgumentException if the document is malformed
+     */
+    public static Object parse(String json) {
+        return parse(MAPPER, json);
+    }
+
+    /**
+     * Parses the given YAML document into the same kind of values as {@link #parse(String)}.
+     * Scalars that aren't numbers, booleans or null, e.g. dates, become strings.
+     *
+     * @throws IllegalArgumentException if the document is malformed
+     */
+    public static Object parseYaml(String yaml) {
+        return parse(YAML_MAPPER, yaml);
+    }
+
+    private static Object parse(ObjectMapper mapper, String content) {
+        try {
+            return toUnmodifiable(mapper.readValue(content, Object.class));
+        } catch (JsonProcessingException e) {
+            var location = e.getLocation();
+            throw new IllegalArgumentException(location != null
+                    ? e.getOriginalMessage() + " at line " + location.getLineNr() + ", column " + location.getColumnNr()
+                    : e.getOriginalMessage(), e);
+        }
+    }
+
+    private static Object toUnmodifiable(Object value) {
+        if (value instanceof Map) {
+            var members = new LinkedHashMap<String, Object>();
+            ((Map<?, ?>) value).forEach((name, member) -> members.put((String) name, toUnmodifiable(member)));
+            return Collections.unmodifiableMap(members);
+        }
+        if (value instanceof List) {
+            var elements = new ArrayList<>();
+            ((List<?>) value).forEach(element -> elements.add(toUnmodifiable(element)));
+            return Collections.unmodifiableList(elements);
+        }
+        return value;
+    }
+}
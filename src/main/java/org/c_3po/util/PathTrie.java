@@ -0,0 +1,283 @@
+package org.c_3po.util;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Maps slash-separated paths, e.g. `/css/main.css` or `blog/2017/index.html`, to values.
+ *
+ * Paths are stored as a tree of their segments, so the directories shared by many paths are
+ * stored only once. Segments are interned per trie, so a segment like `index.html` that occurs
+ * in thousands of directories is a single string. That's why the memory a trie takes grows with
+ * the number of distinct segments rather than with the total length of the paths it contains.
+ *
+ * Looking up a path doesn't create any strings. Iterating a trie creates the string of a path
+ * only when its entry is visited, so paths can be streamed without materializing all of them.
+ *
+ * Each path is kept exactly as it was put, i.e. `/a`, `a` and `a/` are distinct paths. A trie
+ * isn't thread-safe.
+ *
+ * @param <V> the type of the values
+ */
+public final class PathTrie<V> implements Iterable<Map.Entry<String, V>> {
+    private static final char DELIMITER = '/';
+
+    // Note: Children are searched linearly up to this number, beyond it an index is built
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
+    private final Node<V> root = new Node<>("");
+    private final Map<String, String> segments = new HashMap<>();
+    private int size;
+
+    private PathTrie() {
+    }
+
+    public static <V> PathTrie<V> create() {
+        return new PathTrie<>();
+    }
+
+    /**
+     * Associates the given value with the given path.
+     *
+     * @return the previous value of the path or null if there was none
+     */
+    public V put(CharSequence path, V value) {
+        Objects.requireNonNull(path, "path must not be null");
+        Objects.requireNonNull(value, "value must not be null");
+
+        var node = root;
+        var segmentStart = 0;
+        while (true) {
+            var segmentEnd = indexOfDelimiter(path, segmentStart);
+            var child = node.find(path, segmentStart, segmentEnd);
+            if (child == null) {
+                var segment = path.subSequence(segmentStart, segmentEnd).toString();
+                child = new Node<>(segments.computeIfAbsent(segment, s -> s));
+                node.add(child);
+            }
+            node = child;
+
+            if (segmentEnd == path.length()) {
+                break;
+            }
+            segmentStart = segmentEnd + 1;
+        }
+
+        var previousValue = node.value;
+        node.value = value;
+        if (previousValue == null) {
+            size++;
+        }
+        return previousValue;
+    }
+
+    /**
+     * @return the value of the given path or null if the trie doesn't contain the path
+     */
+    public V get(CharSequence path) {
+        var node = root;
+        var segmentStart = 0;
+        while (node != null) {
+            var segmentEnd = indexOfDelimiter(path, segmentStart);
+            node = node.find(path, segmentStart, segmentEnd);
+            if (segmentEnd == path.length()) {
+                break;
+            }
+            segmentStart = segmentEnd + 1;
+        }
+        return node != null ? node.value : null;
+    }
+
+    public boolean contains(CharSequence path) {
+        return get(path) != null;
+    }
+
+    /**
+     * @return the number of paths
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterates the paths depth-first. Paths of the same directory are visited in the order
+     * in which they have been put for the first time.
+     */
+    @Override
+    public Iterator<Map.Entry<String, V>> iterator() {
+        return new EntryIterator();
+    }
+
+    private static int indexOfDelimiter(CharSequence path, int from) {
+        for (var i = from; i < path.length(); i++) {
+            if (path.charAt(i) == DELIMITER) {
+                return i;
+            }
+        }
+        return path.length();
+    }
+
+    // Note: Same as String#hashCode, so that regions and segments can be compared by hash
+    private static int hash(CharSequence s, int from, int to) {
+        var h = 0;
+        for (var i = from; i < to; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean regionEquals(String segment, CharSequence s, int from, int to) {
+        if (segment.length() != to - from) {
+            return false;
+        }
+        for (var i = 0; i < segment.length(); i++) {
+            if (segment.charAt(i) != s.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Note: Safe since the arrays only ever hold nodes of the trie they're created for
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V>[] newNodes(int length) {
+        return (Node<V>[]) new Node<?>[length];
+    }
+
+    private static final class Node<V> {
+        private final String segment;
+        private Node<V>[] children;
+        private int childCount;
+
+        // Open addressing hash table over the children once there are too many to search linearly
+        private Node<V>[] index;
+        private V value;
+
+        private Node(String segment) {
+            this.segment = segment;
+        }
+
+        private Node<V> find(CharSequence path, int from, int to) {
+            if (index == null) {
+                for (var i = 0; i < childCount; i++) {
+                    if (regionEquals(children[i].segment, path, from, to)) {
+                        return children[i];
+                    }
+                }
+                return null;
+            }
+
+            var mask = index.length - 1;
+            for (var i = hash(path, from, to) & mask; index[i] != null; i = (i + 1) & mask) {
+                if (regionEquals(index[i].segment, path, from, to)) {
+                    return index[i];
+                }
+            }
+            return null;
+        }
+
+        private void add(Node<V> child) {
+            if (children == null) {
+                children = newNodes(1);
+            } else if (childCount == children.length) {
+                children = Arrays.copyOf(children, childCount + (childCount >> 1) + 1);
+            }
+            children[childCount++] = child;
+
+            if (childCount > LINEAR_SEARCH_LIMIT) {
+
+                // Note: Keeps the load factor of the index at or below 0.5
+                if (index == null || childCount * 2 > index.length) {
+                    index = newNodes(Integer.highestOneBit(childCount) * 4);
+                    for (var i = 0; i < childCount; i++) {
+                        addToIndex(children[i]);
+                    }
+                } else {
+                    addToIndex(child);
+                }
+            }
+        }
+
+        private void addToIndex(Node<V> child) {
+            var mask = index.length - 1;
+            var i = hash(child.segment, 0, child.segment.length()) & mask;
+            while (index[i] != null) {
+                i = (i + 1) & mask;
+            }
+            index[i] = child;
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, V>> {
+        private final StringBuilder path = new StringBuilder();
+
+        // Note: The nodes from the root down to the current one, the position of the next child
+        // to visit of each of them and the length of the path up to each of them
+        private Node<V>[] nodes = newNodes(8);
+        private int[] nextChildren = new int[8];
+        private int[] pathLengths = new int[8];
+        private int depth;
+        private Map.Entry<String, V> next;
+
+        private EntryIterator() {
+            nodes[0] = root;
+            depth = 1;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            var entry = next;
+            advance();
+            return entry;
+        }
+
+        private void advance() {
+            next = null;
+            while (depth > 0 && next == null) {
+                var top = depth - 1;
+                var node = nodes[top];
+                if (nextChildren[top] == node.childCount) {
+                    depth--;
+                    continue;
+                }
+
+                var child = node.children[nextChildren[top]++];
+                path.setLength(pathLengths[top]);
+                if (top > 0) {
+                    path.append(DELIMITER);
+                }
+                path.append(child.segment);
+                push(child);
+                if (child.value != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(path.toString(), child.value);
+                }
+            }
+        }
+
+        private void push(Node<V> node) {
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                nextChildren = Arrays.copyOf(nextChildren, depth * 2);
+                pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+            }
+            nodes[depth] = node;
+            nextChildren[depth] = 0;
+            pathLengths[depth] = path.length();
+            depth++;
+        }
+    }
+}
@@ -24,4 +24,45 @@ class CmdArgumentsTest extends Specification {
         "./a-not-existing-folder" | "." | true
         "./a-not-existing-folder" | "./a-not-existing-folder" | false
     }
+
+    def "test that .validate of a sync without build returns '#expectedResult' for '#dest' and '#syncTarget'"() {
+        def cmdArgs = CmdArguments.builder()
+                .destinationDirectory(dest)
+                .syncTarget(syncTarget)
+                .syncOnly(true)
+                .build()
+
+        expect:
+        cmdArgs.validate() == expectedResult
+
+        where:
+        dest | syncTarget | expectedResult
+        "./a-not-existing-folder" | "./another-not-existing-folder" | true
+        "./a-not-existing-folder" | "" | false
+        "" | "./another-not-existing-folder" | false
+        "./a-not-existing-folder" | "./a-not-existing-folder" | false
+    }
+
+    def "test that .toBuilder keeps every option that isn't set anew"() {
+        given:
+        def cmdArgs = CmdArguments.builder()
+                .sourceDirectory("src")
+                .destinationDirectory("dest")
+                .fingerprintAssets(true)
+                .virtualThreads(true)
+                .daemonMode(CmdArguments.DaemonMode.USE)
+                .checkLinks(true)
+                .shardCount(4)
+                .syncTarget("target")
+                .syncManifest("manifest.properties")
+                .syncOnly(true)
+                .build()
+
+        when:
+        def copy = cmdArgs.toBuilder().sourceDirectory("other-src").build()
+
+        then:
+        copy.sourceDirectory == "other-src"
+        copy.toString() == cmdArgs.toString().replace("'src'", "'other-src'")
+    }
 }
@@ -0,0 +1,121 @@
+package org.c_3po.daemon
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class BuildDaemonSpec extends Specification {
+    @TempDir Path tempDir
+
+    Path infoFile
+    BuildDaemon daemon
+    Thread daemonThread
+
+    def setup() {
+        infoFile = tempDir.resolve("daemon.properties")
+        daemon = BuildDaemon.start(infoFile)
+        daemonThread = Thread.start { daemon.run() }
+    }
+
+    def cleanup() {
+        daemon.close()
+        daemonThread.join(5000)
+    }
+
+    def "builds a site on behalf of a client and streams the log back" () {
+        given:
+        def destDir = tempDir.resolve("build")
+        def log = new ByteArrayOutputStream()
+        def args = ["-src", "src/test/resources/test-project-src", "-dest", destDir.toString(), "--use-daemon"]
+
+        when:
+        def exitCode = BuildDaemonClient.build(infoFile, args, new PrintStream(log, true, "UTF-8"))
+
+        then:
+        exitCode.asInt == 0
+        Files.exists(destDir.resolve("about.html"))
+        Files.exists(destDir.resolve("blog/first-blog-post.html"))
+        log.toString("UTF-8").contains("Building entire website")
+
+        when: "the same site is built once more"
+        exitCode = BuildDaemonClient.build(infoFile, args, new PrintStream(new ByteArrayOutputStream()))
+
+        then:
+        exitCode.asInt == 0
+    }
+
+    def "builds a site in as many shards as the client asks for" () {
+        given:
+        def srcDir = Files.createDirectories(tempDir.resolve("src"))
+        Files.writeString(srcDir.resolve("index.html"), "<!DOCTYPE html><html><body>Hello</body></html>")
+        Files.writeString(srcDir.resolve("about.html"), "<!DOCTYPE html><html><body>About</body></html>")
+        def destDir = tempDir.resolve("build")
+        def log = new ByteArrayOutputStream()
+
+        when:
+        def exitCode = BuildDaemonClient.build(infoFile, ["-src", srcDir.toString(), "-dest", destDir.toString(),
+                                                          "--use-daemon", "--shards", "2"],
+                new PrintStream(log, true, "UTF-8"))
+
+        then:
+        exitCode.asInt == 0
+        log.toString("UTF-8").contains("Building entire website in 2 shards")
+        Files.exists(destDir.resolve("index.html"))
+        Files.exists(destDir.resolve("about.html"))
+    }
+
+    def "reports a failed build with a non-zero exit code" () {
+        given:
+        def destDir = tempDir.resolve("build")
+
+        when:
+        def exitCode = BuildDaemonClient.build(infoFile, ["-src", tempDir.resolve("does-not-exist").toString(),
+                                                          "-dest", destDir.toString()],
+                new PrintStream(new ByteArrayOutputStream()))
+
+        then:
+        exitCode.asInt == 1
+    }
+
+    def "is stopped by a client" () {
+        when:
+        def stopped = BuildDaemonClient.stop(infoFile)
+        daemonThread.join(5000)
+
+        then:
+        stopped
+        !daemonThread.alive
+        Files.notExists(infoFile)
+        BuildDaemonClient.build(infoFile, [], System.out).empty
+    }
+
+    def "rejects requests with a wrong token" () {
+        given:
+        def properties = new Properties()
+        infoFile.toFile().withInputStream { properties.load(it) }
+        properties.setProperty("token", "guessed")
+        def forgedInfoFile = tempDir.resolve("forged.properties")
+        forgedInfoFile.toFile().withOutputStream { properties.store(it, null) }
+        def srcDir = Files.createDirectories(tempDir.resolve("src"))
+        Files.writeString(srcDir.resolve("index.html"), "<!DOCTYPE html><html><body>Hello</body></html>")
+        def destDir = tempDir.resolve("build")
+
+        when:
+        def exitCode = BuildDaemonClient.build(forgedInfoFile, ["-src", srcDir.toString(), "-dest", destDir.toString()],
+                new PrintStream(new ByteArrayOutputStream()))
+
+        then:
+        exitCode.asInt == 1
+        Files.notExists(destDir)
+    }
+
+    def "refuses to start while another daemon is running" () {
+        when:
+        BuildDaemon.start(infoFile)
+
+        then:
+        thrown(IOException)
+    }
+}
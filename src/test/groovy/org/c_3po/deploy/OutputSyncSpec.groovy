@@ -0,0 +1,162 @@
+package org.c_3po.deploy
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class OutputSyncSpec extends Specification {
+    static final String FINGERPRINT = "0123456789abcdef0123456789abcdef01234567"
+
+    def outputDir = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+    def targetDir = Files.createTempDirectory("c-3po_sync-dir-for-specs_")
+    def targetManifestFile = targetDir.resolveSibling(targetDir.fileName.toString() + OutputManifest.FILE_NAME)
+
+    def "lists files with their hash, content type and whether they're fingerprinted" () {
+        given:
+        write(outputDir, "index.html", "<p>Hello</p>")
+        write(outputDir, "css/main.${FINGERPRINT}.css", "body {}")
+
+        when:
+        def manifest = OutputManifest.create(outputDir, null)
+
+        then:
+        manifest.getEntries().keySet() as List == ["css/main.${FINGERPRINT}.css".toString(), "index.html"]
+        manifest.get("index.html").getContentType() == "text/html"
+        manifest.get("index.html").getSize() == 12
+        !manifest.get("index.html").isFingerprinted()
+        manifest.get("css/main.${FINGERPRINT}.css").getContentType() == "text/css"
+        manifest.get("css/main.${FINGERPRINT}.css").isFingerprinted()
+
+        and: "the hash of a fingerprinted file is taken from its name"
+        manifest.get("css/main.${FINGERPRINT}.css").getHash() == FINGERPRINT
+
+        and: "the manifest survives being written and read again"
+        manifest.writeTo(outputDir.resolve(OutputManifest.FILE_NAME))
+        def readManifest = OutputManifest.read(outputDir.resolve(OutputManifest.FILE_NAME))
+        readManifest.get("index.html").hasSameContent(manifest.get("index.html"))
+        OutputManifest.create(outputDir, readManifest).getEntries().keySet() == manifest.getEntries().keySet()
+    }
+
+    def "transfers only changed files, assets before pages, and deletes stale files last" () {
+        given: "a site that has been synced before"
+        write(outputDir, "index.html", "<p>Hello</p>")
+        write(outputDir, "about.html", "<p>About</p>")
+        write(outputDir, "img/logo.svg", "<svg/>")
+        write(outputDir, "old/page.html", "<p>Old</p>")
+        writeManifest()
+        OutputSync.sync(outputDir, DirectorySyncTarget.of(targetDir))
+        def untouchedTime = FileTime.fromMillis(0)
+        Files.setLastModifiedTime(targetDir.resolve("about.html"), untouchedTime)
+
+        and: "it has changed since"
+        write(outputDir, "index.html", "<p>Hello <link href='/css/main.${FINGERPRINT}.css'></p>")
+        write(outputDir, "css/main.${FINGERPRINT}.css", "body {}")
+        Files.delete(outputDir.resolve("old/page.html"))
+        writeManifest()
+
+        when:
+        def target = new RecordingTarget(DirectorySyncTarget.of(targetDir))
+        def result = OutputSync.sync(outputDir, target)
+
+        then:
+        target.operations == ["upload css/main.${FINGERPRINT}.css", "upload index.html", "delete old/page.html",
+                              "write manifest"]*.toString()
+        result.getUploadCount() == 2
+        result.getDeletionCount() == 1
+        result.getUnchangedCount() == 2
+
+        and:
+        Files.readString(targetDir.resolve("index.html")).contains(FINGERPRINT)
+        Files.getLastModifiedTime(targetDir.resolve("about.html")) == untouchedTime
+        Files.notExists(targetDir.resolve("old"))
+    }
+
+    def "refuses to sync a site without output manifest" () {
+        when:
+        OutputSync.sync(outputDir, DirectorySyncTarget.of(targetDir))
+
+        then:
+        thrown(IOException)
+    }
+
+    def "never lets a path escape the target directory" () {
+        when:
+        DirectorySyncTarget.of(targetDir).delete("../outside.html")
+
+        then:
+        thrown(IOException)
+    }
+
+    def "keeps the manifest of the target outside of it" () {
+        given:
+        write(outputDir, "index.html", "<p>Hello</p>")
+        writeManifest()
+        def manifestFile = outputDir.resolveSibling(outputDir.fileName.toString() + "-sync.properties")
+
+        when:
+        OutputSync.sync(outputDir, DirectorySyncTarget.of(targetDir))
+        OutputSync.sync(outputDir, DirectorySyncTarget.of(targetDir, manifestFile))
+
+        then: "it's kept next to the target unless its location is given"
+        Files.notExists(targetDir.resolve(OutputManifest.FILE_NAME))
+        OutputManifest.read(targetManifestFile).get("index.html") != null
+        OutputManifest.read(manifestFile).get("index.html") != null
+
+        when:
+        DirectorySyncTarget.of(targetDir, targetDir.resolve("sync.properties"))
+
+        then: "it's never kept within the target"
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        Files.deleteIfExists(manifestFile)
+    }
+
+    def cleanup() {
+        deleteDirs(outputDir, targetDir)
+        Files.deleteIfExists(targetManifestFile)
+    }
+
+    void writeManifest() {
+        def manifestFile = outputDir.resolve(OutputManifest.FILE_NAME)
+        def previous = Files.exists(manifestFile) ? OutputManifest.read(manifestFile) : null
+        OutputManifest.create(outputDir, previous).writeTo(manifestFile)
+    }
+
+    static class RecordingTarget implements SyncTarget {
+        final SyncTarget delegate
+        final List<String> operations = []
+
+        RecordingTarget(SyncTarget delegate) {
+            this.delegate = delegate
+        }
+
+        @Override
+        OutputManifest readManifest() {
+            return delegate.readManifest()
+        }
+
+        @Override
+        void upload(String path, Path file, OutputManifest.Entry entry) {
+            operations << "upload ${path}".toString()
+            delegate.upload(path, file, entry)
+        }
+
+        @Override
+        void delete(String path) {
+            operations << "delete ${path}".toString()
+            delegate.delete(path)
+        }
+
+        @Override
+        void writeManifest(OutputManifest manifest) {
+            operations << "write manifest"
+            delegate.writeManifest(manifest)
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.c_3po.generation
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+@Unroll
+class BuildExecutorSpec extends Specification {
+    def "runs all forked operations before join returns using #mode" () {
+        given:
+        def results = new ConcurrentLinkedQueue<Integer>()
+
+        when:
+        BuildExecutor.create(mode).withCloseable { executor ->
+            executor.newTaskGroup().withCloseable { tasks ->
+                (1..100).each { i -> tasks.forkFileTask { results.add(i) } }
+                (101..200).each { i -> tasks.forkCpuTask { results.add(i) } }
+                tasks.join()
+            }
+        }
+
+        then:
+        results.sort() == (1..200).toList()
+
+        where:
+        mode << BuildExecutor.Mode.values()
+    }
+
+    def "falls back to platform threads if virtual threads are not supported" () {
+        expect:
+        def executor = BuildExecutor.create(BuildExecutor.Mode.VIRTUAL_THREADS)
+        executor.mode == (Runtime.version().feature() >= 21
+                ? BuildExecutor.Mode.VIRTUAL_THREADS : BuildExecutor.Mode.PLATFORM_THREADS)
+
+        cleanup:
+        executor?.close()
+    }
+
+    def "fails fast with the exception of a failing operation and cancels the others" () {
+        given:
+        def blocked = new CountDownLatch(1)
+        def cancelled = new CountDownLatch(1)
+        def executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)
+        def tasks = executor.newTaskGroup()
+
+        when:
+        tasks.forkFileTask {
+            try {
+                blocked.await()
+            } catch (InterruptedException ignored) {
+                cancelled.countDown()
+            }
+        }
+        tasks.forkFileTask { throw new IOException("Disk full") }
+        tasks.join()
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Disk full"
+        cancelled.await(5, TimeUnit.SECONDS)
+
+        cleanup:
+        tasks.close()
+        executor.close()
+    }
+
+    def "skips pending operations once cancelled but lets running ones finish without interrupting them" () {
+        given:
+        def cancelled = false
+        def running = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def finished = new CountDownLatch(1)
+        def interrupted = false
+        def skippedRan = false
+        def executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS).cancelledWhen { cancelled }
+        def tasks = executor.newTaskGroup()
+
+        when:
+        tasks.forkFileTask {
+            running.countDown()
+            try {
+                release.await()
+            } catch (InterruptedException ignored) {
+                interrupted = true
+            }
+            finished.countDown()
+        }
+        running.await()
+        cancelled = true
+        tasks.forkFileTask { skippedRan = true }
+        tasks.join()
+
+        then:
+        thrown(InterruptedIOException)
+
+        when:
+        tasks.close()
+        release.countDown()
+
+        then:
+        finished.await(5, TimeUnit.SECONDS)
+        !interrupted
+        !skippedRan
+
+        cleanup:
+        executor.close()
+    }
+}
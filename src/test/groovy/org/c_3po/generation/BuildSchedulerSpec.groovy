@@ -0,0 +1,120 @@
+package org.c_3po.generation
+
+import org.c_3po.io.watch.FileChange
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.function.BooleanSupplier
+
+@Timeout(10)
+class BuildSchedulerSpec extends Specification {
+    def renderedPages = new CopyOnWriteArrayList<List<Path>>()
+    def builtChanges = new CopyOnWriteArrayList<List<FileChange>>()
+    def buildStarted = new CountDownLatch(1)
+    def blockBuilds = false
+    def interruptedBuilds = new CopyOnWriteArrayList<Boolean>()
+
+    def builder = new BuildScheduler.Builder() {
+        @Override
+        void renderPages(List<Path> pages, BooleanSupplier cancelled) {
+            renderedPages << List.copyOf(pages)
+        }
+
+        @Override
+        void build(List<FileChange> changes, BooleanSupplier cancelled) {
+
+            // Note: Read before signalling the start, since the spec unblocks builds right after it
+            def shouldBlock = blockBuilds
+            buildStarted.countDown()
+            if (shouldBlock) {
+                def deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30)
+                while (!cancelled.asBoolean && System.nanoTime() < deadline) {
+                    Thread.sleep(10)
+                }
+                interruptedBuilds << Thread.currentThread().isInterrupted()
+                throw new InterruptedIOException("Cancelled")
+            }
+            builtChanges << List.copyOf(changes)
+        }
+    }
+
+    def scheduler = BuildScheduler.start(builder, { it.toString().endsWith(".html") })
+
+    def cleanup() {
+        scheduler.close()
+    }
+
+    def "builds submitted changes in the background" () {
+        when:
+        scheduler.submit([modified("css/main.css")])
+        def completedBuildCount = scheduler.awaitIdle()
+
+        then:
+        completedBuildCount == 1
+        builtChanges == [[modified("css/main.css")]]
+        renderedPages.isEmpty()
+        scheduler.state == BuildScheduler.State.IDLE
+    }
+
+    def "supersedes a running build with one covering its changes as well as the new ones" () {
+        given:
+        blockBuilds = true
+        scheduler.submit([modified("index.html")])
+        buildStarted.await()
+
+        when:
+        blockBuilds = false
+        scheduler.submit([modified("about.html")])
+        def completedBuildCount = scheduler.awaitIdle()
+
+        then:
+        completedBuildCount == 1
+        builtChanges == [[modified("index.html"), modified("about.html")]]
+
+        and: "the superseded build has been cancelled without interrupting it"
+        interruptedBuilds == [false]
+    }
+
+    def "waits for a running build to give up when being closed" () {
+        given:
+        blockBuilds = true
+        scheduler.submit([modified("index.html")])
+        buildStarted.await()
+
+        when:
+        scheduler.close()
+
+        then:
+        interruptedBuilds == [false]
+        builtChanges.isEmpty()
+    }
+
+    def "renders the most recently edited pages first" () {
+        when:
+        scheduler.submit([modified("index.html")])
+        scheduler.awaitIdle()
+        scheduler.submit([modified("about.html"), modified("css/main.css")])
+        scheduler.awaitIdle()
+        scheduler.submit([new FileChange(FileChange.Kind.DELETED, page("index.html"), false),
+                          modified("blog/post.html")])
+        scheduler.awaitIdle()
+
+        then:
+        renderedPages == [[page("index.html")],
+                          [page("about.html"), page("index.html")],
+                          [page("blog/post.html"), page("about.html")]]
+    }
+
+    FileChange modified(String path) {
+        new FileChange(FileChange.Kind.MODIFIED, page(path), false)
+    }
+
+    Path page(String path) {
+        Paths.get("site").resolve(path)
+    }
+}
@@ -0,0 +1,89 @@
+package org.c_3po.generation
+
+import org.c_3po.cmd.CmdArguments
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class MultiSiteBuilderSpec extends Specification {
+    def baseDir = Files.createTempDirectory("c-3po_sites-dir-for-specs_")
+
+    def "builds all sites listed in the sites file sharing a layout" () {
+        given:
+        write(baseDir, "shared/_layouts/main.html", """<!DOCTYPE html>
+<html xmlns:th="http://www.thymeleaf.org"><body><h1 th:text="\${title}">Title</h1></body></html>""")
+        ["blog", "docs"].each { name ->
+            write(baseDir, "sites/${name}/index.html", """<!DOCTYPE html>
+<html xmlns:th="http://www.thymeleaf.org" th:with="title='${name}'">
+<body th:replace="../../shared/_layouts/main :: body"></body></html>""")
+        }
+        write(baseDir, "sites.properties",
+                "blog.src=sites/blog\nblog.dest=build/blog\ndocs.src=sites/docs\ndocs.dest=build/docs\n")
+        def builder = MultiSiteBuilder.fromSitesFile(baseDir.resolve("sites.properties"), cmdArguments())
+
+        when:
+        builder.validate()
+        builder.build()
+
+        then:
+        builder.sites.keySet() as List == ["blog", "docs"]
+        read("build/blog/index.html").contains("<h1>blog</h1>")
+        read("build/docs/index.html").contains("<h1>docs</h1>")
+    }
+
+    def "rejects a site without a destination directory" () {
+        given:
+        write(baseDir, "sites.properties", "blog.src=sites/blog\n")
+
+        when:
+        MultiSiteBuilder.fromSitesFile(baseDir.resolve("sites.properties"), cmdArguments())
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "rejects sites sharing a source directory" () {
+        given:
+        write(baseDir, "sites.properties",
+                "blog.src=sites/blog\nblog.dest=build/blog\ncopy.src=sites/./blog\ncopy.dest=build/copy\n")
+
+        when:
+        MultiSiteBuilder.fromSitesFile(baseDir.resolve("sites.properties"), cmdArguments())
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "builds the other sites if one fails and reports the failing one" () {
+        given:
+        write(baseDir, "sites/ok/index.html", "<!DOCTYPE html><html><body>ok</body></html>")
+        write(baseDir, "sites/broken/index.html", "<!DOCTYPE html><html><body>broken</body></html>")
+        write(baseDir, "sites/broken/.c3posettings", "responsiveImageWidths=400\nresponsiveImageQuality=2\n")
+        write(baseDir, "sites.properties",
+                "ok.src=sites/ok\nok.dest=build/ok\nbroken.src=sites/broken\nbroken.dest=build/broken\n")
+        def builder = MultiSiteBuilder.fromSitesFile(baseDir.resolve("sites.properties"), cmdArguments())
+
+        when:
+        builder.build()
+
+        then:
+        def e = thrown(GenerationException)
+        e.message == "Failed to build sites [broken]"
+        Files.exists(baseDir.resolve("build/ok/index.html"))
+    }
+
+    def cleanup() {
+        deleteDirs(baseDir)
+    }
+
+    private static CmdArguments cmdArguments() {
+        new CmdArguments("", "", false, false, false)
+    }
+
+    private String read(String relativePath) {
+        Files.readString(baseDir.resolve(relativePath))
+    }
+}
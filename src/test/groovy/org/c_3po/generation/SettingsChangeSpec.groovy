@@ -0,0 +1,28 @@
+package org.c_3po.generation
+
+import spock.lang.Specification
+
+class SettingsChangeSpec extends Specification {
+    def "tells the settings that have been added, removed or changed" () {
+        given:
+        def previous = new Properties()
+        previous.putAll([baseUrl: "https://example.com", minifyHtml: "true", feedTitle: "Blog"])
+        def current = new Properties()
+        current.putAll([baseUrl: "https://example.org", minifyHtml: "true", generateFeeds: "true"])
+
+        when:
+        def change = SettingsChange.between(previous, current)
+
+        then:
+        change.getChangedKeys() as List == ["baseUrl", "feedTitle", "generateFeeds"]
+        change.affects("baseUrl")
+        !change.affects("minifyHtml")
+        change.affectsAny(["minifyHtml", "feedTitle"])
+        !change.affectsAny(["minifyHtml", "pollFileChanges"])
+        change.changedKeysAmong(["generateFeeds", "minifyHtml", "baseUrl"]) as List == ["baseUrl", "generateFeeds"]
+
+        and:
+        SettingsChange.between(previous, previous).isEmpty()
+        SettingsChange.none().isEmpty()
+    }
+}
@@ -0,0 +1,37 @@
+package org.c_3po.generation
+
+import spock.lang.Specification
+
+import java.nio.file.Paths
+
+class ShardSpec extends Specification {
+    def "assigns each file to exactly one shard" () {
+        given:
+        def shards = (0..<4).collect { Shard.of(it, 4) }
+        def files = (1..200).collect { Paths.get("blog", "post-${it}.md") }
+
+        expect:
+        files.every { file -> shards.count { it.contains(file) } == 1 }
+
+        and: "no shard is left empty"
+        shards.every { shard -> files.any { shard.contains(it) } }
+    }
+
+    def "parses a shard given as index and count" () {
+        expect:
+        Shard.parse("2/4").index == 2
+        Shard.parse("2/4").count == 4
+        Shard.parse("2/4").toString() == "2/4"
+    }
+
+    def "rejects invalid shard '#shard'" () {
+        when:
+        Shard.parse(shard)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        shard << ["4/4", "-1/4", "1", "a/b", "0/0"]
+    }
+}
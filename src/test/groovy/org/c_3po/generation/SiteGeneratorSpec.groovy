@@ -1,14 +1,19 @@
 package org.c_3po.generation
 
 import org.c_3po.cmd.CmdArguments
+import org.c_3po.io.Directories
+import org.c_3po.io.watch.FileChange
+import org.c_3po.util.ChecksumCalculator
 import spock.lang.Shared
 import spock.lang.Specification
 
 import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.nio.file.attribute.FileTime
 
 import static org.c_3po.generation.assets.AssetReferencesHelpers.assertRefsReplacedIn
+import static org.c_3po.generation.assets.AssetReferencesHelpers.queryJsElems
 
 /**
  * Integration tests for site generation.
@@ -108,6 +113,190 @@ class SiteGeneratorSpec extends Specification {
         Files.notExists(destDir.resolve("css/vendor/normalize.05802ba9503c8a062ee85857fc774d41e96d3a80.css"))
     }
 
+    def "builds a site in shards with worker processes, fingerprinting assets once all of them are done" () {
+        given: "a site that shall be generated in two shards"
+        def cmdArguments = CmdArguments.builder()
+                .sourceDirectory(srcDir.toString())
+                .destinationDirectory(destDir.toString())
+                .fingerprintAssets(true)
+                .shardCount(2)
+                .build()
+        def siteGenerator = SiteGenerator.fromCmdArguments(cmdArguments)
+
+        when:
+        siteGenerator.generate()
+
+        then: "the pages and assets of all shards are generated"
+        Files.exists(destDir.resolve("blog/first-blog-post.html"))
+        Files.exists(destDir.resolve("css/main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css"))
+        Files.exists(destDir.resolve("js/vendor/jquery.083f0c5df3398060df50f99d59edf31127720da0.js"))
+
+        and: "references are replaced in pages of all shards"
+        assertRefsReplacedIn(destDir.resolve("blog.html"))
+        assertRefsReplacedIn(destDir.resolve("about.html"))
+        assertRefsReplacedIn(destDir.resolve("blog/first-blog-post.html"))
+    }
+
+    def "rebuilds a changed asset only, replacing refs to its outdated fingerprinted version" () {
+        given: "a clone of the test project that has been generated with fingerprinting"
+        def srcDirClone = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Directories.copyDir(srcDir, srcDirClone)
+        def siteGenerator = SiteGenerator.fromCmdArguments(
+                new CmdArguments(srcDirClone.toString(), destDirClone.toString(), false, true, false))
+        siteGenerator.generate()
+        def outdatedJsFile = destDirClone.resolve("js/main.44782b626616c6098994363811a6014c6771c5d5.js")
+        assert Files.exists(outdatedJsFile)
+
+        when: "a script is changed in auto-build mode"
+        def jsFile = srcDirClone.resolve("js/main.js")
+        Files.writeString(jsFile, "console.log('changed');")
+        siteGenerator.handleFileChanges([new FileChange(FileChange.Kind.MODIFIED, jsFile, false)])
+
+        then: "the outdated fingerprinted version is replaced by a new one"
+        Files.notExists(outdatedJsFile)
+        def jsFileName = "main.${ChecksumCalculator.encodeHexString(ChecksumCalculator.computeSha1Hash(jsFile))}.js"
+        Files.exists(destDirClone.resolve("js").resolve(jsFileName))
+
+        and: "documents referencing the script refer to its new version"
+        queryJsElems(destDirClone.resolve("about.html")).get(1).attr("src") == "/js/${jsFileName}"
+        queryJsElems(destDirClone.resolve("blog/first-blog-post.html")).get(1).attr("src") == "/js/${jsFileName}"
+
+        cleanup:
+        srcDirClone.toFile().deleteDir()
+        destDirClone.toFile().deleteDir()
+    }
+
+    def "rebuilds a changed markdown document only, leaving other documents untouched" () {
+        given: "a clone of the test project that has been generated with fingerprinting"
+        def srcDirClone = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Directories.copyDir(srcDir, srcDirClone)
+        def siteGenerator = SiteGenerator.fromCmdArguments(
+                new CmdArguments(srcDirClone.toString(), destDirClone.toString(), false, true, false))
+        siteGenerator.generate()
+        def untouchedTime = FileTime.fromMillis(0)
+        Files.setLastModifiedTime(destDirClone.resolve("about.html"), untouchedTime)
+
+        when: "a markdown document is changed in auto-build mode"
+        def markdownFile = srcDirClone.resolve("blog/first-blog-post.md")
+        Files.writeString(markdownFile, "# First Blog Post\nSome changed content here.")
+        siteGenerator.handleFileChanges([new FileChange(FileChange.Kind.MODIFIED, markdownFile, false)])
+
+        then: "its page is generated with references to fingerprinted assets"
+        def page = destDirClone.resolve("blog/first-blog-post.html")
+        Files.readString(page).contains("Some changed content here.")
+        assertRefsReplacedIn(page)
+
+        and: "other pages are left as they are"
+        Files.getLastModifiedTime(destDirClone.resolve("about.html")) == untouchedTime
+
+        cleanup:
+        srcDirClone.toFile().deleteDir()
+        destDirClone.toFile().deleteDir()
+    }
+
+    def "leaves unchanged pages untouched when a site is generated with fingerprinting again" () {
+        given: "a clone of the test project that has been generated with fingerprinting"
+        def srcDirClone = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Directories.copyDir(srcDir, srcDirClone)
+        def cmdArguments = new CmdArguments(srcDirClone.toString(), destDirClone.toString(), false, true, false)
+        SiteGenerator.fromCmdArguments(cmdArguments).generate()
+        def untouchedTime = FileTime.fromMillis(0)
+        Files.setLastModifiedTime(destDirClone.resolve("about.html"), untouchedTime)
+
+        when: "it's generated again by another generator"
+        SiteGenerator.fromCmdArguments(cmdArguments).generate()
+
+        then: "the unchanged page hasn't been written"
+        Files.getLastModifiedTime(destDirClone.resolve("about.html")) == untouchedTime
+        assertRefsReplacedIn(destDirClone.resolve("about.html"))
+
+        cleanup:
+        srcDirClone.toFile().deleteDir()
+        destDirClone.toFile().deleteDir()
+    }
+
+    def "applies changed settings in auto-build mode, rebuilding only what depends on them" () {
+        given: "a clone of the test project with a page referring to an asset by another base URL"
+        def srcDirClone = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Directories.copyDir(srcDir, srcDirClone)
+        def aboutFile = srcDirClone.resolve("about.html")
+        Files.writeString(aboutFile, Files.readString(aboutFile).replace("</p>",
+                "</p><img src=\"https://www.example.org/img/logo.svg\">"))
+
+        and: "it has been generated with fingerprinting"
+        def siteGenerator = SiteGenerator.fromCmdArguments(
+                new CmdArguments(srcDirClone.toString(), destDirClone.toString(), false, true, false))
+        siteGenerator.generate()
+        assert Files.readString(destDirClone.resolve("about.html")).contains("https://www.example.org/img/logo.svg")
+        def untouchedTime = FileTime.fromMillis(0)
+        Files.setLastModifiedTime(destDirClone.resolve("blog.html"), untouchedTime)
+
+        when: "the base URL is changed to the one of the reference"
+        def settingsFile = srcDirClone.resolve(".c3posettings")
+        Files.writeString(settingsFile, "baseUrl=https://www.example.org\npollFileChanges=true\n")
+        siteGenerator.handleFileChanges([new FileChange(FileChange.Kind.MODIFIED, settingsFile, false)])
+
+        then: "the reference is replaced without rendering the page again"
+        def aboutPage = Files.readString(destDirClone.resolve("about.html"))
+        aboutPage =~ /https:\/\/www\.example\.org\/img\/logo\.[0-9a-f]{40}\.svg/
+
+        and: "pages without references to replace are left as they are"
+        Files.getLastModifiedTime(destDirClone.resolve("blog.html")) == untouchedTime
+
+        when: "the settings file is touched without changing any setting"
+        Files.setLastModifiedTime(destDirClone.resolve("about.html"), untouchedTime)
+        siteGenerator.handleFileChanges([new FileChange(FileChange.Kind.MODIFIED, settingsFile, false)])
+
+        then: "nothing is rebuilt"
+        Files.getLastModifiedTime(destDirClone.resolve("about.html")) == untouchedTime
+
+        cleanup:
+        srcDirClone.toFile().deleteDir()
+        destDirClone.toFile().deleteDir()
+    }
+
+    def "evicts only changed pages from the template cache, but clears it entirely if a layout has changed" () {
+        given: "a clone of the test project that has been generated"
+        def srcDirClone = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Directories.copyDir(srcDir, srcDirClone)
+        def siteGenerator = SiteGenerator.fromCmdArguments(
+                new CmdArguments(srcDirClone.toString(), destDirClone.toString(), false, false, false))
+        siteGenerator.generate()
+        def templateCache = siteGenerator.@templateEngine.cacheManager.templateCache
+
+        expect:
+        templateCache.get("about") != null
+        templateCache.get("blog") != null
+
+        when: "a page is changed"
+        def aboutFile = srcDirClone.resolve("about.html")
+        Files.writeString(aboutFile, Files.readString(aboutFile).replace("</p>", " Changed.</p>"))
+        siteGenerator.evictChangedTemplates()
+
+        then: "only that page is evicted"
+        templateCache.get("about") == null
+        templateCache.get("blog") != null
+        templateCache.get("_layouts/main-layout") != null
+
+        when: "the layout is changed"
+        def layoutFile = srcDirClone.resolve("_layouts/main-layout.html")
+        Files.setLastModifiedTime(layoutFile, FileTime.fromMillis(Files.getLastModifiedTime(layoutFile).toMillis() + 1000))
+        siteGenerator.evictChangedTemplates()
+
+        then: "all templates are evicted"
+        templateCache.get("blog") == null
+        templateCache.get("_layouts/main-layout") == null
+
+        cleanup:
+        srcDirClone.toFile().deleteDir()
+        destDirClone.toFile().deleteDir()
+    }
+
 // NOTE: Inactive because generateSite under the hoods causes a full build and thus HTML files
 //  are regenerted anyways which makes testing for the replacement of refs to old fingerprinted assets
 //  pointless. Instead, the generation would need to be started in autobuild mode, but as described
@@ -0,0 +1,41 @@
+package org.c_3po.generation.assets
+
+import spock.lang.Specification
+
+class AssetSubstitutesSpec extends Specification {
+    static final String FINGERPRINT = "0123456789abcdef0123456789abcdef01234567"
+
+    def "behaves like a map of asset paths to fingerprinted paths" () {
+        given:
+        def expected = [
+                "/css/main.css": "/css/main.${FINGERPRINT}.css".toString(),
+                "/main.css": "/main.${FINGERPRINT}.css".toString(),
+                "/blog/js/vendor.js": "/js/vendor.${FINGERPRINT}.js".toString(),
+                "/img/logo.svg": "/img/sub/logo.${FINGERPRINT}.svg".toString()]
+
+        when:
+        def substitutes = AssetSubstitutes.copyOf(expected)
+
+        then:
+        substitutes == expected
+        substitutes.size() == 4
+        expected.every { assetPath, fingerprintedPath -> substitutes.get(assetPath) == fingerprintedPath }
+        substitutes.get("/css/other.css") == null
+        !substitutes.containsKey("/css")
+
+        and: "only the file name is kept of a fingerprinted version in the directory of its asset"
+        substitutes.@substitutes.get("/css/main.css") == "main.${FINGERPRINT}.css".toString()
+        substitutes.@substitutes.get("/blog/js/vendor.js") == "/js/vendor.${FINGERPRINT}.js".toString()
+
+        and: "putting an asset again returns its previous fingerprinted path"
+        substitutes.put("/css/main.css", "/css/main.css") == "/css/main.${FINGERPRINT}.css".toString()
+    }
+
+    def "refuses fingerprinted paths that don't start with a slash" () {
+        when:
+        AssetSubstitutes.create().put("/css/main.css", "main.${FINGERPRINT}.css".toString())
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
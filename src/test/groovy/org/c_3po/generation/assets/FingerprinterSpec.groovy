@@ -1,6 +1,8 @@
 package org.c_3po.generation.assets
 
+import org.c_3po.generation.BuildExecutor
 import org.c_3po.io.Directories
+import org.c_3po.io.FileHashes
 import spock.lang.Shared
 import spock.lang.Specification
 
@@ -249,6 +251,111 @@ class FingerprinterSpec extends Specification {
         Files.notExists(imgDir.resolve(oldFilename))
     }
 
+    def "does not purge fingerprinted versions of other assets sharing a common file name prefix" () {
+        given: "a dest dir clone, in which files can be added without the need to delete " +
+                "those files prior other specs in this suite"
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Directories.copyDir(destDir, destDirClone)
+        def cssDirClone = destDirClone.resolve("css")
+
+        and: "a second stylesheet whose name starts with the name of an existing one"
+        Files.write(cssDirClone.resolve("main.min.css"), ".button { color: red; }".getBytes())
+
+        when: "fingerprinting the stylesheets"
+        Fingerprinter.fingerprintStylesheets(cssDirClone, destDirClone)
+
+        and: "fingerprinting them again after one of them has changed"
+        Files.write(cssDirClone.resolve("main.css"), ".button { color: blue; }".getBytes(), StandardOpenOption.APPEND)
+        def substitutes = Fingerprinter.fingerprintStylesheets(cssDirClone, destDirClone)
+
+        then: "the fingerprinted version of the unchanged stylesheet is kept"
+        Files.exists(destDirClone.resolve(substitutes.get("/css/main.min.css").substring(1)))
+
+        and: "the outdated fingerprinted version of the changed one is purged"
+        Files.notExists(cssDirClone.resolve("main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css"))
+        Files.exists(destDirClone.resolve(substitutes.get("/css/main.css").substring(1)))
+
+        cleanup:
+        destDirClone.toFile().deleteDir()
+    }
+
+    def "maps identical assets in different directories to a single fingerprinted file" () {
+        given:
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Files.createDirectories(destDirClone.resolve("js/vendor"))
+        Files.createDirectories(destDirClone.resolve("js/blog/vendor"))
+        Files.write(destDirClone.resolve("js/vendor/jquery.js"), "jQuery".getBytes())
+        Files.write(destDirClone.resolve("js/blog/vendor/jquery.js"), "jQuery".getBytes())
+        Files.write(destDirClone.resolve("js/main.js"), "main".getBytes())
+
+        when:
+        def substitutes = Fingerprinter.deduplicate(Fingerprinter.fingerprintJsFiles(destDirClone.resolve("js"),
+                destDirClone), destDirClone)
+
+        then:
+        substitutes.get("/js/vendor/jquery.js") == substitutes.get("/js/blog/vendor/jquery.js")
+        substitutes.get("/js/vendor/jquery.js").startsWith("/js/blog/vendor/jquery.")
+        Files.exists(destDirClone.resolve(substitutes.get("/js/vendor/jquery.js").substring(1)))
+        Files.list(destDirClone.resolve("js/vendor")).count() == 1
+        substitutes.get("/js/main.js").startsWith("/js/main.")
+
+        cleanup:
+        destDirClone.toFile().deleteDir()
+    }
+
+    def "fingerprints a single asset, deleting its outdated versions only" () {
+        given:
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Files.createDirectories(destDirClone.resolve("js"))
+        Files.write(destDirClone.resolve("js/main.js"), "main".getBytes())
+        Files.write(destDirClone.resolve("js/other.js"), "other".getBytes())
+        def previousSubstitutes = Fingerprinter.fingerprintJsFiles(destDirClone.resolve("js"), destDirClone)
+
+        when: "one of the assets changes and is fingerprinted on its own"
+        Files.write(destDirClone.resolve("js/main.js"), "changed".getBytes())
+        def substitutes = Fingerprinter.fingerprintJsFile(destDirClone.resolve("js/main.js"), destDirClone)
+
+        then: "just its substitute is returned"
+        substitutes.size() == 1
+        substitutes.get("/js/main.js") != previousSubstitutes.get("/js/main.js")
+        Files.exists(destDirClone.resolve(substitutes.get("/js/main.js").substring(1)))
+
+        and: "its outdated version is deleted while the other asset's version is kept"
+        Files.notExists(destDirClone.resolve(previousSubstitutes.get("/js/main.js").substring(1)))
+        Files.exists(destDirClone.resolve(previousSubstitutes.get("/js/other.js").substring(1)))
+
+        and: "files that aren't scripts are not fingerprinted"
+        Fingerprinter.fingerprintJsFile(destDirClone.resolve(substitutes.get("/js/main.js").substring(1)),
+                destDirClone).isEmpty()
+
+        cleanup:
+        destDirClone.toFile().deleteDir()
+    }
+
+    def "takes the hashes of unchanged assets from the given file hashes" () {
+        given: "an asset that has been hashed already"
+        def destDirClone = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Files.createDirectories(destDirClone.resolve("js"))
+        def jsFile = destDirClone.resolve("js/main.js")
+        Files.write(jsFile, "main".getBytes())
+        def fileHashes = FileHashes.create()
+        def hash = fileHashes.sha1(jsFile)
+
+        when: "it's fingerprinted while its size and modification time are the same"
+        def lastModified = Files.getLastModifiedTime(jsFile)
+        Files.write(jsFile, "MAIN".getBytes())
+        Files.setLastModifiedTime(jsFile, lastModified)
+        def substitutes = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS).withCloseable { executor ->
+            Fingerprinter.fingerprintJsFiles(destDirClone.resolve("js"), destDirClone, executor, fileHashes)
+        }
+
+        then: "its hash isn't computed again"
+        substitutes.get("/js/main.js") == "/js/main.${hash}.js"
+
+        cleanup:
+        destDirClone.toFile().deleteDir()
+    }
+
     def filesExist(dir, String... fileNames) {
         fileNames.each { fileName -> assert Files.exists(dir.resolve(fileName)) }
     }
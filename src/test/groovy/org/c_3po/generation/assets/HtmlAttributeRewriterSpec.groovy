@@ -0,0 +1,76 @@
+package org.c_3po.generation.assets
+
+import spock.lang.Specification
+
+class HtmlAttributeRewriterSpec extends Specification {
+
+    def "replaces attribute values and leaves the rest of the markup as it is" () {
+        given:
+        def html = """<!DOCTYPE html>\n<HTML><head>\n  <Link REL=stylesheet href='a.css'  >\n<img src=a.png alt="x"/></head></HTML>"""
+
+        when:
+        def out = new StringBuilder()
+        def replaced = HtmlAttributeRewriter.rewrite(html, out, { tag ->
+            if (tag.getName() == "link") tag.replaceAttr("href", "b.css")
+            if (tag.getName() == "img") tag.replaceAttr("src", "b.png")
+        })
+
+        then:
+        replaced
+        out.toString() == """<!DOCTYPE html>\n<HTML><head>\n  <Link REL=stylesheet href='b.css'  >\n<img src="b.png" alt="x"/></head></HTML>"""
+    }
+
+    def "ignores tags within comments and raw text elements" () {
+        given:
+        def html = """<!-- <img src="a.png"> --><script>var s = '<img src="a.png">';</script><img src="a.png">"""
+        def sources = []
+
+        when:
+        HtmlAttributeRewriter.scan(html, { tag -> if (tag.getName() == "img") sources << tag.attr("src") })
+
+        then:
+        sources == ["a.png"]
+    }
+
+    def "decodes character references of values and escapes replacements" () {
+        given:
+        def html = """<script src="a.js?x=1&amp;y=2"></script>"""
+
+        when:
+        def out = new StringBuilder()
+        def value
+        HtmlAttributeRewriter.rewrite(html, out, { tag ->
+            value = tag.attr("src")
+            tag.replaceAttr("src", "b.js?x=1&y=\"2\"")
+        })
+
+        then:
+        value == "a.js?x=1&y=2"
+        out.toString() == """<script src="b.js?x=1&amp;y=&quot;2&quot;"></script>"""
+    }
+
+    def "doesn't report a replacement by the same value" () {
+        given:
+        def html = """<img src="a.png">"""
+
+        expect:
+        !HtmlAttributeRewriter.rewrite(html, new StringBuilder(), { tag -> tag.replaceAttr("src", "a.png") })
+    }
+
+    def "removes and appends attributes" () {
+        given:
+        def html = """<img data-x src=a.png><img src=a.png data-x='1'/><p data-x>"""
+
+        when:
+        def out = new StringBuilder()
+        def replaced = HtmlAttributeRewriter.rewrite(html, out, { tag ->
+            tag.removeAttr("data-x")
+            if (tag.getName() == "img") tag.appendAttr("alt", "\"A\" & B")
+        })
+
+        then:
+        replaced
+        out.toString() == """<img src=a.png alt="&quot;A&quot; &amp; B">""" +
+                """<img src=a.png alt="&quot;A&quot; &amp; B"/><p>"""
+    }
+}
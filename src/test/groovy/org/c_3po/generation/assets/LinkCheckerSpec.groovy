@@ -0,0 +1,92 @@
+package org.c_3po.generation.assets
+
+import org.c_3po.generation.BuildExecutor
+import org.c_3po.io.FileHelpers
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+
+class LinkCheckerSpec extends Specification {
+    def siteDir = Files.createTempDirectory("c-3po_site-dir-for-specs_")
+    @AutoCleanup def executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)
+
+    def setup() {
+        write("index.html", "")
+        write("css/main.css", "")
+        write("img/logo.png", "")
+        write("img/logo-480.png", "")
+        write("blog/index.html", "")
+    }
+
+    def "reports references to files that don't exist" () {
+        given:
+        write("blog/post.html", """
+            <html><head>
+                <link rel="stylesheet" href="../css/main.css">
+                <link rel="stylesheet" href="../css/missing.css">
+                <script src="/js/missing.js"></script>
+            </head><body>
+                <a href="../index.html">Home</a>
+                <a href="./">Blog</a>
+                <a href="../blog">Blog</a>
+                <a href="#top">Top</a>
+                <a href="mailto:me@example.com">Mail</a>
+                <a href="https://other.com/missing.html">Elsewhere</a>
+                <a href="https://example.com/missing.html">Here</a>
+                <img src="/img/logo.png" srcset="/img/logo-480.png 480w, /img/logo-960.png 960w">
+            </body></html>""")
+
+        when:
+        def report = LinkChecker.check(siteDir, "https://example.com", executor)
+
+        then:
+        report.pageCount == 3
+        report.brokenReferences*.reference == ["../css/missing.css", "/img/logo-960.png", "/js/missing.js",
+                                               "https://example.com/missing.html"]
+        report.brokenReferences*.page.unique() == ["blog/post.html"]
+        report.brokenReferences.find { it.reference == "/js/missing.js" }.element == "script"
+    }
+
+    def "resolves references against the base element" () {
+        given:
+        write("blog/post.html", """
+            <html><head><base href="../"></head><body>
+                <img src="img/logo.png">
+                <img src="blog/img/logo.png">
+            </body></html>""")
+
+        when:
+        def report = LinkChecker.check(siteDir, null, executor)
+
+        then:
+        report.brokenReferences*.reference == ["blog/img/logo.png"]
+    }
+
+    def "writes a JSON report" () {
+        given:
+        write("page.html", '<a href="missing.html">Missing</a>')
+        def reportFile = siteDir.resolveSibling(siteDir.fileName.toString() + "-report.json")
+
+        when:
+        LinkChecker.check(siteDir, null, executor).writeTo(reportFile)
+
+        then:
+        Files.readString(reportFile) == '{"pages":3,"references":1,"brokenReferences":[\n' +
+                '{"page":"page.html","element":"a","attribute":"href","reference":"missing.html",' +
+                '"problem":"not found"}]}\n'
+
+        cleanup:
+        Files.deleteIfExists(reportFile)
+    }
+
+    def cleanup() {
+        deleteDirs(siteDir)
+    }
+
+    void write(String path, String content) {
+        FileHelpers.write(siteDir, path, content.stripIndent())
+    }
+}
@@ -71,6 +71,23 @@ class ReplaceAssetsReferencesInDirSpec extends Specification {
         assertRefsReplacedIn("blog/first-blog-post.html")
     }
 
+    def "leaves markup other than asset references byte for byte intact" () {
+        given:
+        def htmlFile = destDirClone.resolve("about.html")
+        def before = Files.readString(htmlFile)
+
+        when:
+        AssetReferences.replaceAssetsReferencesInDir(destDirClone, assetSubstitutes, generatorSettings)
+
+        then: "only the referencing attribute values have changed, not e.g. a comment mentioning an asset"
+        def expected = before
+        assetSubstitutes.each { asset, substitute ->
+            expected = expected.replace(asset.substring(asset.lastIndexOf('/') + 1) + '"',
+                    substitute.substring(substitute.lastIndexOf('/') + 1) + '"')
+        }
+        Files.readString(htmlFile) == expected
+    }
+
     def cleanup() {
         destDirClone.toFile().deleteDir()
     }
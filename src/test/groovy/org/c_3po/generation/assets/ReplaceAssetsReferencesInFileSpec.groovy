@@ -1,13 +1,14 @@
 package org.c_3po.generation.assets
 
 import org.jsoup.Jsoup
+import org.jsoup.nodes.Document
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import java.nio.file.Files
 import java.nio.file.Paths
 
-class ReplaceAssetsReferencesInDocSpec extends Specification {
+class ReplaceAssetsReferencesInFileSpec extends Specification {
     def assetSubstitutes = [
             '/css/main.css': '/css/main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css',
             '/css/vendor/normalize.css': '/css/vendor/normalize.05802ba9503c8a062ee85857fc774d41e96d3a80.css',
@@ -16,6 +17,7 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
             '/img/picture.jpg': '/img/picture.e53496215f3b967267859fd2b108e29dbffc555c.jpg',
     ]
     def generatorSettings = new Properties()
+    def siteDir = Files.createTempDirectory("c-3po_site-dir-for-specs_")
 
     def setup() {
         def srcDir = Paths.get("src/test/resources/test-project-src")
@@ -31,17 +33,17 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, "/css/main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css")
+        assertStylesheetRef(result, "/css/main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css")
     }
 
     def "replaces JavaScript references" () {
         given:
         def assetURI = "/js/main.js"
         def docURI = URI.create("/blog/a-blog-article.html")
-        def doc = Jsoup.parse("""\
+        def doc = """\
             <!DOCTYPE html>
             <html lang="en">
             <head>
@@ -51,20 +53,20 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
             </head>
             <body></body>
             </html>
-            """)
+            """
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        doc.select("script[src]").get(0).attr("src") == "/js/main.44782b626616c6098994363811a6014c6771c5d5.js"
+        result.select("script[src]").get(0).attr("src") == "/js/main.44782b626616c6098994363811a6014c6771c5d5.js"
     }
 
     def "replaces image references of sort <img src=\"...\">" () {
         given:
         def assetURI = "/img/picture.jpg"
         def docURI = URI.create("/blog/a-blog-article.html")
-        def doc = Jsoup.parse("""\
+        def doc = """\
             <!DOCTYPE html>
             <html lang="en">
             <head>
@@ -74,13 +76,13 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
             </head>
             <body></body>
             </html>
-            """)
+            """
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        doc.select("img[src]").get(0).attr("src") == "/img/picture.e53496215f3b967267859fd2b108e29dbffc555c.jpg"
+        result.select("img[src]").get(0).attr("src") == "/img/picture.e53496215f3b967267859fd2b108e29dbffc555c.jpg"
     }
 
     def "replaces image references of sort <img srcset=\"...\">" () {
@@ -90,7 +92,7 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
                 '/img/picture_380x.jpg': '/img/picture_380x.9fd2b108e29dbffc555ce53496215f3b96726785.jpg'
         ]
         def docURI = URI.create("/blog/a-blog-article.html")
-        def doc = Jsoup.parse("""\
+        def doc = """\
             <!DOCTYPE html>
             <html lang="en">
             <head>
@@ -102,14 +104,14 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
             </head>
             <body></body>
             </html>
-            """)
+            """
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, substitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, substitutes)
 
         then:
-        doc.select("img").get(0).attr("src") == "/img/picture_1470x.e53496215f3b967267859fd2b108e29dbffc555c.jpg"
-        doc.select("img").get(0).attr("srcset") ==
+        result.select("img").get(0).attr("src") == "/img/picture_1470x.e53496215f3b967267859fd2b108e29dbffc555c.jpg"
+        result.select("img").get(0).attr("srcset") ==
             "/img/picture_1470x.e53496215f3b967267859fd2b108e29dbffc555c.jpg 1470w, " +
             "/img/picture_760x.267859fd2b108e29dbffc555ce53496215f3b967.jpg 760w, " +
             "/img/picture_380x.9fd2b108e29dbffc555ce53496215f3b96726785.jpg 380w"
@@ -122,10 +124,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, refPastReplacement)
+        assertStylesheetRef(result, refPastReplacement)
 
         where:
         ref | refPastReplacement
@@ -142,10 +144,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, ref)
+        assertStylesheetRef(result, ref)
 
         where:
         ref | _
@@ -160,10 +162,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, refPastReplacement)
+        assertStylesheetRef(result, refPastReplacement)
 
         where:
         ref | refPastReplacement
@@ -180,10 +182,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, ref)
+        assertStylesheetRef(result, ref)
 
         where:
         ref | _
@@ -198,10 +200,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, refPastReplacement)
+        assertStylesheetRef(result, refPastReplacement)
 
         where:
         ref | refPastReplacement
@@ -218,10 +220,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, ref)
+        assertStylesheetRef(result, ref)
 
         where:
         ref | _
@@ -236,10 +238,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def doc = createDoc(ref)
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, URI.create(docURI), assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, URI.create(docURI), assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, refPastReplacement)
+        assertStylesheetRef(result, refPastReplacement)
 
         where:
         ref | docURI | refPastReplacement
@@ -260,10 +262,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, refPastReplacement)
+        assertStylesheetRef(result, refPastReplacement)
 
         where:
         baseHref | ref | refPastReplacement
@@ -292,10 +294,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def doc = createDoc(ref)
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, URI.create(docURI), assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, URI.create(docURI), assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, ref)
+        assertStylesheetRef(result, ref)
 
         where:
         docURI | ref
@@ -310,10 +312,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/a-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, ref)
+        assertStylesheetRef(result, ref)
     }
 
     @Unroll
@@ -323,10 +325,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/blog/2020/03/04/fine-blog-article.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then:
-        assertStylesheetRef(doc, ref)
+        assertStylesheetRef(result, ref)
 
         where:
         // Note: the '_' is the way single column tables can be written
@@ -342,10 +344,10 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/about.html")
 
         when: "replacing references"
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, assetSubstitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, assetSubstitutes)
 
         then: "this outdated fingerprinted asset ref is replaced by the new fingerprinted ref"
-        assertStylesheetRef(doc, "/css/main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css")
+        assertStylesheetRef(result, "/css/main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css")
     }
 
     def "omits replacing asset name strings that are part of the asset path as well" () {
@@ -359,10 +361,28 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         def docURI = URI.create("/about.html")
 
         when:
-        AssetReferences.replaceAssetsReferencesInDoc(doc, docURI, substitutes, generatorSettings)
+        def result = replaceAssetsReferencesIn(doc, docURI, substitutes)
 
         then:
-        assertStylesheetRef(doc, "/css/main.css/main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css")
+        assertStylesheetRef(result, "/css/main.css/main.6180d1743d1be0d975ed1afbdc3b4c0bfb134124.css")
+    }
+
+    def cleanup() {
+        siteDir.toFile().deleteDir()
+    }
+
+    /**
+     * Writes the given markup to the file of the given document URI within a site and
+     * replaces the asset references in it.
+     *
+     * @return the resulting document
+     */
+    Document replaceAssetsReferencesIn(CharSequence html, URI docURI, Map<String, String> substitutes) {
+        def htmlFile = siteDir.resolve(docURI.path.substring(1))
+        Files.createDirectories(htmlFile.parent)
+        Files.writeString(htmlFile, html)
+        AssetReferences.replaceAssetsReferencesInFile(htmlFile, siteDir, substitutes, generatorSettings)
+        return Jsoup.parse(htmlFile.toFile(), "UTF-8")
     }
 
     void assertStylesheetRef(doc, expectedRef, linkElemIndex = 0) {
@@ -375,7 +395,7 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
 
     def createDocWithStylesheet(String assetURI, String baseHref = null) {
         def baseElem = baseHref ? """<base href="${baseHref}">""" : ""
-        return Jsoup.parse("""\
+        return """\
         <!DOCTYPE html>
         <html lang="en">
         <head>
@@ -386,6 +406,26 @@ class ReplaceAssetsReferencesInDocSpec extends Specification {
         </head>
         <body></body>
         </html>
-        """)
+        """
+    }
+
+    @Unroll
+    def "relocates '#ref' to a deduplicated asset in another directory" (String ref, String expectedRef) {
+        given:
+        def substitutes = ['/blog/js/jquery.js': '/js/jquery.083f0c5df3398060df50f99d59edf31127720da0.js']
+        def doc = """<html><head><script src="${ref}"></script></head><body></body></html>"""
+        def docURI = URI.create("/blog/posts/a-blog-article.html")
+
+        when:
+        def result = replaceAssetsReferencesIn(doc, docURI, substitutes)
+
+        then:
+        result.select("script[src]").get(0).attr("src") == expectedRef
+
+        where:
+        ref                                      | expectedRef
+        "../js/jquery.js"                        | "../../js/jquery.083f0c5df3398060df50f99d59edf31127720da0.js"
+        "/blog/js/jquery.js"                     | "/js/jquery.083f0c5df3398060df50f99d59edf31127720da0.js"
+        "https://example.com/blog/js/jquery.js"  | "https://example.com/js/jquery.083f0c5df3398060df50f99d59edf31127720da0.js"
     }
 }
@@ -0,0 +1,102 @@
+package org.c_3po.generation.assets
+
+import org.jsoup.Jsoup
+import spock.lang.Specification
+
+import javax.imageio.ImageIO
+import java.awt.image.BufferedImage
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class ResponsiveImagesSpec extends Specification {
+    def siteDir = Files.createTempDirectory("c-3po_site-dir-for-specs_")
+    def cacheDir = Files.createTempDirectory("c-3po_cache-dir-for-specs_")
+
+    def setup() {
+        Files.createDirectories(siteDir.resolve("img"))
+        ImageIO.write(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB), "png",
+                siteDir.resolve("img/photo.png").toFile())
+    }
+
+    def "creates variants of marked images and lists them in srcset" () {
+        given:
+        writePage("index.html", '<img src="img/photo.png" data-c3po-responsive>')
+
+        when:
+        ResponsiveImages.generateInDir(siteDir, [200, 400, 2000], 0.8f, cacheDir)
+
+        then: "variants narrower than the image are created"
+        ImageIO.read(siteDir.resolve("img/photo-200w.png").toFile()).width == 200
+        ImageIO.read(siteDir.resolve("img/photo-400w.png").toFile()).height == 200
+        Files.notExists(siteDir.resolve("img/photo-2000w.png"))
+
+        and: "no temporary files of copying the variants are left behind"
+        Files.list(siteDir.resolve("img")).map { it.fileName.toString() }.sorted().toList() ==
+                ["photo-200w.png", "photo-400w.png", "photo.png"]
+
+        and: "the variants and the original are listed in srcset"
+        def img = queryImg("index.html")
+        img.attr("srcset") == "img/photo-200w.png 200w, img/photo-400w.png 400w, img/photo.png 1000w"
+
+        and: "the marker is removed"
+        !img.hasAttr(ResponsiveImages.MARKER_ATTR_NAME)
+    }
+
+    def "respects widths given by the marker and the document's base URL" () {
+        given:
+        writePage("blog/post.html", '<base href="../"><img src="img/photo.png" data-c3po-responsive="300">')
+
+        when:
+        ResponsiveImages.generateInDir(siteDir, [200, 400], 0.8f, cacheDir)
+
+        then:
+        queryImg("blog/post.html").attr("srcset") == "img/photo-300w.png 300w, img/photo.png 1000w"
+    }
+
+    def "leaves the rest of the markup as it is, e.g. unquoted attributes of minified pages" () {
+        given:
+        write(siteDir, "index.html", '<!doctype html><title>Foo</title>' +
+                '<img class=a src=img/photo.png data-c3po-responsive=300><p>Mentions data-c3po-responsive</p><img src=img/photo.png alt=b>')
+
+        when:
+        ResponsiveImages.generateInDir(siteDir, [200], 0.8f, cacheDir)
+
+        then:
+        Files.readString(siteDir.resolve("index.html")) == '<!doctype html><title>Foo</title><img class=a ' +
+                'src=img/photo.png srcset="img/photo-300w.png 300w, img/photo.png 1000w">' +
+                '<p>Mentions data-c3po-responsive</p><img src=img/photo.png alt=b>'
+    }
+
+    def "reuses cached variants of unchanged images" () {
+        given: "variants created by a previous build"
+        writePage("index.html", '<img src="/img/photo.png" data-c3po-responsive>')
+        ResponsiveImages.generateInDir(siteDir, [200], 0.8f, cacheDir)
+        def cachedFile = Files.list(cacheDir).findFirst().get()
+        def cachedFileModified = Files.getLastModifiedTime(cachedFile)
+        Files.delete(siteDir.resolve("img/photo-200w.png"))
+
+        when: "the site is built again"
+        writePage("index.html", '<img src="/img/photo.png" data-c3po-responsive>')
+        ResponsiveImages.generateInDir(siteDir, [200], 0.8f, cacheDir)
+
+        then: "the cached variant is used instead of resizing the image again"
+        Files.list(cacheDir).count() == 1
+        Files.getLastModifiedTime(cachedFile) == cachedFileModified
+        Files.exists(siteDir.resolve("img/photo-200w.png"))
+    }
+
+    def cleanup() {
+        deleteDirs(siteDir, cacheDir)
+    }
+
+    void writePage(String path, String body) {
+        write(siteDir, path, "<!DOCTYPE html><html><head><title>Foo</title></head><body>${body}</body></html>")
+    }
+
+    def queryImg(String path) {
+        return Jsoup.parse(siteDir.resolve(path).toFile(), "UTF-8").selectFirst("img")
+    }
+}
@@ -0,0 +1,170 @@
+package org.c_3po.generation.cache
+
+import com.sun.net.httpserver.HttpServer
+import org.c_3po.cmd.CmdArguments
+import org.c_3po.generation.SiteGenerator
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+
+class BuildCacheSpec extends Specification {
+    def cacheDir = Files.createTempDirectory("c-3po_build-cache-dir-for-specs_")
+    def server = new StandInServer()
+
+    def cleanup() {
+        server.stop()
+        deleteDirs(cacheDir)
+    }
+
+    def "stores and loads outputs in a #cacheType build cache" () {
+        given:
+        def buildCache = cacheType == "local" ? LocalBuildCache.create(cacheDir) : HttpBuildCache.create(server.uri)
+        def key = CacheKey.create().add("page").add("index.html").hash()
+
+        expect:
+        buildCache.load(key) == null
+
+        when:
+        buildCache.store(key, "<html></html>".bytes)
+
+        then:
+        buildCache.load(key) == "<html></html>".bytes
+
+        where:
+        cacheType << ["local", "HTTP"]
+    }
+
+    def "computes different keys for different inputs" () {
+        expect:
+        CacheKey.create().add("ab").add("c").hash() != CacheKey.create().add("a").add("bc").hash()
+        CacheKey.create().add("a").hash() == CacheKey.create().add("a").hash()
+    }
+
+    def "rejects keys that aren't hashes" () {
+        when:
+        LocalBuildCache.create(cacheDir).load("../../etc/passwd")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "fetches unchanged pages and stylesheets from the build cache instead of generating them" () {
+        given: "a site using a build cache served via HTTP"
+        def srcDir = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+        def destDir = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        Files.writeString(srcDir.resolve(".c3posettings"), "buildCache=${server.uri}")
+        Files.writeString(srcDir.resolve("index.html"), "<!DOCTYPE html><html><body>Hello</body></html>")
+        Files.writeString(srcDir.resolve("main.scss"), "\$color: red; body { color: \$color; }")
+        def generate = {
+            SiteGenerator.fromCmdArguments(new CmdArguments(srcDir.toString(), destDir.toString(), false, false,
+                    false)).generate()
+        }
+
+        when: "the site is generated for the first time"
+        generate()
+
+        then: "the page and the stylesheet are stored in the build cache"
+        server.storeCount.get() == 2
+        server.hitCount.get() == 0
+
+        when: "the site is generated again from scratch, e.g. on another machine"
+        destDir.toFile().deleteDir()
+        generate()
+
+        then: "both are fetched from the build cache"
+        server.hitCount.get() == 2
+        server.storeCount.get() == 2
+        Files.readString(destDir.resolve("index.html")).contains("Hello")
+        Files.readString(destDir.resolve("main.css")).contains("color:red")
+
+        when: "the stylesheet has changed"
+        Files.writeString(srcDir.resolve("main.scss"), "body { color: blue; }")
+        generate()
+
+        then: "only the stylesheet is generated again"
+        server.hitCount.get() == 3
+        server.storeCount.get() == 3
+        Files.readString(destDir.resolve("main.css")).contains("color:blue")
+
+        cleanup:
+        deleteDirs(srcDir, destDir)
+    }
+
+    def "shares build cache entries between copies of a site in different directories" () {
+        given: "two copies of a site with markdown and html pages, using the same build cache"
+        def sources = (1..2).collect { Files.createTempDirectory("c-3po_src-dir-for-specs_") }
+        def destDir = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        sources.each { srcDir ->
+            Files.writeString(srcDir.resolve(".c3posettings"), "buildCache=${cacheDir}")
+            Files.writeString(srcDir.resolve("index.html"), "<!DOCTYPE html><html><body>Hello</body></html>")
+            Files.createDirectories(srcDir.resolve("blog"))
+            Files.writeString(srcDir.resolve("blog/md-template.html"),
+                    "<!DOCTYPE html><html><body><div th:utext=\"\${markdownContent}\"></div>" +
+                            "<p th:text=\"\${markdownFileName}\"></p></body></html>")
+            Files.writeString(srcDir.resolve("blog/post.md"), "# A post")
+        }
+        def generate = { srcDir ->
+            SiteGenerator.fromCmdArguments(new CmdArguments(srcDir.toString(), destDir.toString(), false, false,
+                    false)).generate()
+        }
+
+        when: "the first copy is generated"
+        generate(sources[0])
+        def cachedEntries = Files.walk(cacheDir).withCloseable { it.filter { Files.isRegularFile(it) }.count() }
+
+        and: "the second copy is generated from scratch"
+        destDir.toFile().deleteDir()
+        generate(sources[1])
+
+        then: "its pages are fetched from the build cache rather than stored anew"
+        cachedEntries > 0
+        Files.walk(cacheDir).withCloseable { it.filter { Files.isRegularFile(it) }.count() } == cachedEntries
+        Files.readString(destDir.resolve("blog/post.html")).contains("<p>blog/post.md</p>")
+
+        cleanup:
+        deleteDirs(*sources, destDir)
+    }
+
+    /**
+     * A minimal HTTP server storing bodies of PUT requests in memory and serving them on GET requests.
+     */
+    private static class StandInServer {
+        final Map<String, byte[]> outputs = new ConcurrentHashMap<>()
+        final AtomicInteger hitCount = new AtomicInteger()
+        final AtomicInteger storeCount = new AtomicInteger()
+        final HttpServer httpServer
+
+        StandInServer() {
+            httpServer = HttpServer.create(new InetSocketAddress(InetAddress.loopbackAddress, 0), 0)
+            httpServer.createContext("/cache/") { exchange ->
+                def key = exchange.requestURI.path.substring("/cache/".length())
+                if (exchange.requestMethod == "PUT") {
+                    outputs.put(key, exchange.requestBody.readAllBytes())
+                    storeCount.incrementAndGet()
+                    exchange.sendResponseHeaders(201, -1)
+                } else if (outputs.containsKey(key)) {
+                    hitCount.incrementAndGet()
+                    def output = outputs.get(key)
+                    exchange.sendResponseHeaders(200, output.length)
+                    exchange.responseBody.write(output)
+                } else {
+                    exchange.sendResponseHeaders(404, -1)
+                }
+                exchange.close()
+            }
+            httpServer.start()
+        }
+
+        URI getUri() {
+            URI.create("http://${httpServer.address.hostString}:${httpServer.address.port}/cache")
+        }
+
+        void stop() {
+            httpServer.stop(0)
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.c_3po.generation.collections
+
+import org.c_3po.generation.BuildExecutor
+import org.c_3po.generation.markdown.ContentIndex
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class CollectionGeneratorSpec extends Specification {
+    def siteDir = Files.createTempDirectory("c-3po_site-dir-for-specs_")
+    def destinationDir = Files.createTempDirectory("c-3po_destination-dir-for-specs_")
+    def signaturesFile = Files.createTempDirectory("c-3po_cache-dir-for-specs_").resolve("collections.properties")
+    @AutoCleanup def executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)
+    def renderedPages = Collections.synchronizedList([])
+    def renderer = { Path templateFile, Map<String, Object> variables, Path destinationFile ->
+        renderedPages << destinationDir.relativize(destinationFile).toString().replace('\\', '/')
+        Files.createDirectories(destinationFile.parent)
+        Files.writeString(destinationFile, variables.page.entries*.sourcePath.join(","))
+    } as CollectionGenerator.PageRenderer
+    def posts = []
+
+    def "paginates entries so that the first page holds the oldest ones" () {
+        given:
+        (1..5).each { writePost("blog/post-$it", "2020-01-0$it", "") }
+        def generator = CollectionGenerator.getInstance(destinationDir, signaturesFile, 2, null, null, renderer)
+
+        when:
+        def pages = generator.paginate("blog", null, null, index().entries)
+
+        then:
+        pages*.url == ["blog/page/1.html", "blog/page/2.html", "blog/page/3.html"]
+        pages*.entries*.sourcePath == [["blog/post-2.md", "blog/post-1.md"],
+                                       ["blog/post-4.md", "blog/post-3.md"],
+                                       ["blog/post-5.md"]]
+        pages[0].olderUrl == null
+        pages[0].newerUrl == "blog/page/2.html"
+        pages[2].newest
+        pages[2].rootPath == "../../"
+    }
+
+    def "only re-renders the pages affected by a new post" () {
+        given:
+        (1..9).each { writePost("blog/post-$it", "2020-01-0$it", it % 2 ? "odd" : "even") }
+        def generator = CollectionGenerator.getInstance(destinationDir, signaturesFile, 2, null, null, renderer)
+        generator.generate(index(), ["blog"], siteDir, "templates", executor)
+
+        expect:
+        renderedPages.size() == 5 + 3 + 2
+
+        when:
+        renderedPages.clear()
+        writePost("blog/post-10", "2020-01-10", "even")
+        CollectionGenerator.getInstance(destinationDir, signaturesFile, 2, null, null, renderer)
+                .generate(index(), ["blog"], siteDir, "templates", executor)
+
+        then:
+        renderedPages.sort() == ["blog/page/5.html", "blog/tags/even/page/2.html", "blog/tags/even/page/3.html"]
+    }
+
+    def "re-renders all pages when the templates change and deletes stale pages" () {
+        given:
+        writePost("blog/post-1", "2020-01-01", "java")
+        def generator = CollectionGenerator.getInstance(destinationDir, signaturesFile, 2, null, null, renderer)
+        generator.generate(index(), ["blog"], siteDir, "templates", executor)
+
+        when:
+        renderedPages.clear()
+        writePost("blog/post-1", "2020-01-01", "gradle")
+        generator.generate(index(), ["blog"], siteDir, "changed templates", executor)
+
+        then:
+        renderedPages.sort() == ["blog/page/1.html", "blog/tags/gradle/page/1.html"]
+        Files.notExists(destinationDir.resolve("blog/tags/java/page/1.html"))
+    }
+
+    def "streams an Atom feed of the newest entries" () {
+        given:
+        (1..3).each { writePost("blog/post-$it", "2020-01-0$it", "") }
+        def generator = CollectionGenerator.getInstance(destinationDir, signaturesFile, 10,
+                "https://example.com/", "My Blog", renderer)
+
+        when:
+        generator.generate(index(), ["blog"], siteDir, "templates", executor)
+        def feed = Files.readString(destinationDir.resolve("blog/feed.xml"))
+
+        then:
+        feed.contains("<title>My Blog</title>")
+        feed.contains("<id>https://example.com/blog/feed.xml</id>")
+        (feed =~ /<entry><id>([^<]+)<\/id>/)*.getAt(1) == ["https://example.com/blog/post-3.html",
+                                                          "https://example.com/blog/post-2.html",
+                                                          "https://example.com/blog/post-1.html"]
+    }
+
+    def "slugifies tags" () {
+        expect:
+        CollectionGenerator.slugify(tag) == slug
+
+        where:
+        tag                 | slug
+        "Java EE"           | "java-ee"
+        " C++ "             | "c-plus-plus"
+        "C#"                | "c-sharp"
+        "C"                 | "c"
+        "Z\u00fcrich"       | "z\u00fcrich"
+        "\u6771\u4eac"      | "\u6771\u4eac"
+        "Cafe\u0301"        | "caf\u00e9"
+        "\uff2a\uff41\uff56\uff41" | "java"
+    }
+
+    def "turns tags without letters or digits into a hash" () {
+        expect:
+        CollectionGenerator.slugify("\ud83c\udf89") ==~ /tag-[0-9a-f]{8}/
+        CollectionGenerator.slugify("\ud83c\udf89") != CollectionGenerator.slugify("\ud83d\ude80")
+    }
+
+    def "generates distinct tag pages for tags having the same slug" () {
+        given:
+        writePost("blog/post-1", "2017-01-01", "C, C++")
+        writePost("blog/post-2", "2017-01-02", "C#, c sharp")
+        writePost("blog/post-3", "2017-01-03", "\ud83c\udf89")
+        def generator = CollectionGenerator.getInstance(destinationDir, signaturesFile, 2, null, null, renderer)
+
+        when:
+        generator.generate(index(), ["blog"], siteDir, "templates", executor)
+
+        then:
+        ["c", "c-plus-plus", "c-sharp"].every {
+            Files.exists(destinationDir.resolve("blog/tags/$it/page/1.html"))
+        }
+        Files.list(destinationDir.resolve("blog/tags")).withCloseable { dirs ->
+            dirs.map { it.fileName.toString() }.filter { it ==~ /c-sharp-[0-9a-f]{8}/ }.count()
+        } == 1
+        Files.list(destinationDir.resolve("blog/tags")).withCloseable { dirs ->
+            dirs.map { it.fileName.toString() }.filter { it ==~ /tag-[0-9a-f]{8}/ }.count()
+        } == 1
+    }
+
+    def cleanup() {
+        deleteDirs(siteDir, destinationDir, signaturesFile.parent)
+    }
+
+    ContentIndex index() {
+        return ContentIndex.empty().update(siteDir, posts, executor)
+    }
+
+    void writePost(String name, String date, String tags) {
+        def file = write(siteDir, "${name}.md",
+                "\$meta-title: $name\n\$meta-date: $date\n\$meta-tags: $tags\n# $name\n")
+        if (!posts.contains(file)) {
+            posts << file
+        }
+    }
+}
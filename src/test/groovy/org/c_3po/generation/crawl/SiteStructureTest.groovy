@@ -66,4 +66,22 @@ class SiteStructureTest extends Specification {
         urls.size() == 5
         pages.each({page -> urls.contains("http://yodaconditions.net/" + page)})
     }
+
+    def "test that urls streams each added page once and containsUrl looks them up"() {
+        setup:
+        def siteStructure = SiteStructure.getInstance("/")
+        def pages = ["index.html", "blog/index.html", "blog/2017/post.html", "blog/2017/index.html"]
+
+        when:
+        pages.each({page -> siteStructure.add(Paths.get(page))})
+        siteStructure.add(Paths.get("index.html"))
+
+        then:
+        siteStructure.size() == 4
+        siteStructure.urls().collect() == ["/index.html", "/blog/index.html", "/blog/2017/post.html",
+                                           "/blog/2017/index.html"]
+        siteStructure.containsUrl("/blog/2017/post.html")
+        !siteStructure.containsUrl("/blog/2017")
+        !siteStructure.containsUrl("blog/index.html")
+    }
 }
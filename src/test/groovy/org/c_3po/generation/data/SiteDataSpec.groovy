@@ -0,0 +1,134 @@
+package org.c_3po.generation.data
+
+import org.c_3po.cmd.CmdArguments
+import org.c_3po.generation.SiteGenerator
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class SiteDataSpec extends Specification {
+    def srcDir = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+    def dataDir = srcDir.resolve(SiteData.DIRECTORY_NAME)
+
+    def "reads JSON, YAML and properties files, nesting the ones in subdirectories" () {
+        given:
+        write(dataDir, "authors.json", '{"alice": {"name": "Alice"}}')
+        write(dataDir, "site.properties", "title=My Site")
+        write(dataDir, "shop/products.json", '[{"name": "Tea"}]')
+        write(dataDir, "nav.yml", "- label: Home\n- label: Blog\n")
+        write(dataDir, "shop/opening-hours.yaml", "weekdays: 9-18\n")
+        write(dataDir, "notes.txt", "not data")
+
+        when:
+        def values = SiteData.empty().update(dataDir).values
+
+        then:
+        values.keySet() as List == ["authors", "nav", "shop", "site"]
+        values.authors.alice.name == "Alice"
+        values.site.title == "My Site"
+        values.shop.products[0].name == "Tea"
+        values.nav*.label == ["Home", "Blog"]
+        values.shop."opening-hours".weekdays == "9-18"
+    }
+
+    def "reads data files again only once they've changed" () {
+        given:
+        write(dataDir, "site.properties", "title=Before")
+        def siteData = SiteData.empty().update(dataDir)
+
+        expect:
+        siteData.update(dataDir).is(siteData)
+
+        when:
+        write(dataDir, "site.properties", "title=After")
+        Files.setLastModifiedTime(dataDir.resolve("site.properties"),
+                FileTime.fromMillis(System.currentTimeMillis() + 10_000))
+        def updatedSiteData = siteData.update(dataDir)
+
+        then:
+        updatedSiteData.values.site.title == "After"
+        updatedSiteData.digest != siteData.digest
+    }
+
+    def "reports the file that is malformed" () {
+        given:
+        write(dataDir, fileName, content)
+
+        when:
+        SiteData.empty().update(dataDir)
+
+        then:
+        def e = thrown(IOException)
+        e.message.contains(fileName)
+
+        where:
+        fileName | content
+        "broken.json" | '{"a": '
+        "broken.yml" | 'a: [1, 2'
+    }
+
+    def "makes data available to all templates without copying the data directory into the result" () {
+        given:
+        def destDir = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        write(dataDir, "site.json", '{"title": "My Site", "nav": [{"label": "Home"}, {"label": "Blog"}]}')
+        Files.writeString(srcDir.resolve("index.html"), '''<!DOCTYPE html>
+<html xmlns:th="http://www.thymeleaf.org"><head><title th:text="${data.site.title}">Title</title></head>
+<body><a th:each="entry : ${data.site.nav}" th:text="${entry.label}">Label</a></body></html>''')
+
+        when:
+        SiteGenerator.fromCmdArguments(new CmdArguments(srcDir.toString(), destDir.toString(), false, false, false))
+                .generate()
+
+        then:
+        def html = Files.readString(destDir.resolve("index.html"))
+        html.contains("<title>My Site</title>")
+        html.contains("<a>Home</a><a>Blog</a>")
+        Files.notExists(destDir.resolve(SiteData.DIRECTORY_NAME))
+
+        cleanup:
+        deleteDirs(destDir)
+    }
+
+    def "renders the listing pages of collections again once data they use has changed" () {
+        given:
+        def destDir = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+        write(dataDir, "nav.json", '[{"label": "Home"}]')
+        write(srcDir, "blog/md-template.html", '''<!DOCTYPE html>
+<html xmlns:th="http://www.thymeleaf.org"><head><title th:text="${markdownHead.title}">Title</title></head>
+<body><div th:utext="${markdownContent}">Content</div></body></html>''')
+        write(srcDir, "blog/md-list-template.html", '''<!DOCTYPE html>
+<html xmlns:th="http://www.thymeleaf.org"><head><title>Blog</title></head>
+<body><a th:each="entry : ${data.nav}" th:text="${entry.label}">Label</a>
+<p th:each="post : ${page.entries}" th:text="${post.title}">Title</p></body></html>''')
+        write(srcDir, "blog/first-post.md", '$meta-title: First Post\n\n# First Post')
+        def generator = SiteGenerator.fromCmdArguments(
+                new CmdArguments(srcDir.toString(), destDir.toString(), false, false, false))
+        generator.generate()
+        def listingPage = destDir.resolve("blog/page/1.html")
+
+        expect:
+        Files.readString(listingPage).contains("<a>Home</a>")
+
+        when:
+        write(dataDir, "nav.json", '[{"label": "Start"}]')
+        Files.setLastModifiedTime(dataDir.resolve("nav.json"),
+                FileTime.fromMillis(System.currentTimeMillis() + 10_000))
+        generator.generate()
+
+        then:
+        def html = Files.readString(listingPage)
+        html.contains("<a>Start</a>")
+        !html.contains("<a>Home</a>")
+
+        cleanup:
+        deleteDirs(destDir)
+    }
+
+    def cleanup() {
+        deleteDirs(srcDir)
+    }
+}
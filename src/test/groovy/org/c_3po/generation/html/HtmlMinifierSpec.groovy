@@ -0,0 +1,71 @@
+package org.c_3po.generation.html
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+@Unroll
+class HtmlMinifierSpec extends Specification {
+    def "collapses whitespace in text" () {
+        expect:
+        minify("<p>\n    Hello    there,\n\n  C-3PO!  </p>\n") == "<p>\nHello there,\nC-3PO! </p>"
+    }
+
+    def "removes comments but keeps conditional comments" () {
+        expect:
+        minify("<p>a <!-- a <b>comment</b> --> b</p><!--[if IE]><p>IE</p><![endif]-->") ==
+                "<p>a b</p><!--[if IE]><p>IE</p><![endif]-->"
+    }
+
+    def "minifies tags: '#tag' -> '#expected'" () {
+        expect:
+        minify(tag) == expected
+
+        where:
+        tag                                                   | expected
+        '<div   class="container"\n   id="main" >'            | '<div class=container id=main>'
+        '<a href="/blog/index.html" title="A blog">'          | '<a href="/blog/index.html" title="A blog">'
+        "<a title='Say \"hi\"'>"                              | "<a title='Say \"hi\"'>"
+        '<input type="checkbox" checked="" disabled>'         | '<input type=checkbox checked disabled>'
+        '<meta charset="utf-8" />'                            | '<meta charset=utf-8 />'
+        '<link href="css/main.css" rel="stylesheet"/>'        | '<link href="css/main.css" rel=stylesheet />'
+        '<img alt="a > b" src="x.png">'                       | '<img alt="a > b" src=x.png>'
+        '</div   >'                                           | '</div>'
+        '<!DOCTYPE html>'                                     | '<!DOCTYPE html>'
+    }
+
+    def "preserves the contents of #element elements" () {
+        given:
+        def html = "<${element}>\n  if (a <  b) {\n    <!-- c -->\n  }\n</${element.toUpperCase()}>  <p>"
+
+        expect:
+        minify(html) == html.replace("</${element.toUpperCase()}>  <p>", "</${element.toUpperCase()}> <p>")
+
+        where:
+        element << ["pre", "textarea", "script", "style"]
+    }
+
+    def "treats a less-than sign not starting a tag as text" () {
+        expect:
+        minify("<p>1 < 2  and 3 <4</p>") == "<p>1 < 2 and 3 <4</p>"
+    }
+
+    def "produces the same result no matter how the input is chunked" () {
+        given:
+        def html = "<div  class=\"a\">\n  <!-- x -->\n  <pre>  a  </pre>\n</div>"
+        def writer = new StringWriter()
+
+        when:
+        new HtmlMinifier(writer).withCloseable { minifier ->
+            html.each { c -> minifier.write(c) }
+        }
+
+        then:
+        writer.toString() == minify(html)
+    }
+
+    String minify(String html) {
+        def writer = new StringWriter()
+        new HtmlMinifier(writer).withCloseable { it.write(html) }
+        return writer.toString()
+    }
+}
@@ -0,0 +1,131 @@
+package org.c_3po.generation.markdown
+
+import org.c_3po.generation.BuildExecutor
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Instant
+import java.time.LocalDate
+import java.time.ZoneId
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class ContentIndexSpec extends Specification {
+    def siteDir = Files.createTempDirectory("c-3po_site-dir-for-specs_")
+    def indexFile = Files.createTempDirectory("c-3po_cache-dir-for-specs_").resolve("content-index.bin")
+    @AutoCleanup def executor = BuildExecutor.create(BuildExecutor.Mode.PLATFORM_THREADS)
+
+    def "indexes the leading meta tags, date and word count of markdown files" () {
+        given:
+        def post = writePost("blog/post.md", """\
+            \$meta-title: A Post
+            \$meta-description: About posts
+
+            \$meta-date: 2020-04-22
+            \$meta-tags: java, gradle
+            # A Post
+            Some words, and *more* words.
+            \$meta-late: not considered
+            """)
+
+        when:
+        def entry = ContentIndex.empty().update(siteDir, [post], executor).entries[0]
+
+        then:
+        entry.sourcePath == "blog/post.md"
+        entry.url == "blog/post.html"
+        entry.title == "A Post"
+        entry.metaTags == [description: "About posts", date: "2020-04-22", tags: "java, gradle"]
+        entry.getMetaTagValues("tags") == ["java", "gradle"]
+        entry.date == LocalDate.of(2020, 4, 22)
+        entry.wordCount == 10
+    }
+
+    def "orders entries newest first and can be narrowed down" () {
+        given:
+        def files = [
+                writePost("blog/old.md", '$meta-date: 2019-01-01\n$meta-tags: java'),
+                writePost("blog/new.md", '$meta-date: 2021-01-01\n$meta-tags: gradle, java'),
+                writePost("notes/note.md", '$meta-date: 2020-01-01')]
+
+        when:
+        def index = ContentIndex.empty().update(siteDir, files, executor)
+
+        then:
+        index.entries*.sourcePath == ["blog/new.md", "notes/note.md", "blog/old.md"]
+        index.inDirectory("blog").entries*.sourcePath == ["blog/new.md", "blog/old.md"]
+        index.withMetaTag("tags", "java").newest(1)*.sourcePath == ["blog/new.md"]
+        index.withMetaTag("tags", "gradle").size() == 1
+    }
+
+    def "only re-reads changed files after being stored and loaded" () {
+        given:
+        def unchanged = writePost("a.md", '$meta-title: A')
+        def changed = writePost("b.md", '$meta-title: B')
+        def touched = writePost("c.md", '$meta-title: C')
+        def index = ContentIndex.empty().update(siteDir, [unchanged, changed, touched], executor)
+        index.store(indexFile)
+
+        when: "nothing has changed"
+        def loadedIndex = ContentIndex.load(indexFile)
+
+        then:
+        loadedIndex.update(siteDir, [unchanged, changed, touched], executor).is(loadedIndex)
+
+        when: "a file is changed and another one is touched without changing it"
+        Files.writeString(changed, '$meta-title: B2')
+        Files.setLastModifiedTime(changed, FileTime.from(Instant.now().plusSeconds(60)))
+        Files.setLastModifiedTime(touched, FileTime.from(Instant.now().plusSeconds(60)))
+        def updatedIndex = loadedIndex.update(siteDir, [unchanged, changed, touched], executor)
+
+        then:
+        updatedIndex.entries*.title.sort() == ["A", "B2", "C"]
+        updatedIndex.entries.find { it.sourcePath == "a.md" }.is(loadedIndex.entries.find { it.sourcePath == "a.md" })
+
+        when: "a file is deleted"
+        updatedIndex = updatedIndex.update(siteDir, [unchanged, changed], executor)
+
+        then:
+        updatedIndex.entries*.sourcePath.sort() == ["a.md", "b.md"]
+    }
+
+    def "dates a touched file by its new modification time unless it has a date meta tag" () {
+        given:
+        def undated = writePost("undated.md", '$meta-title: Undated')
+        def dated = writePost("dated.md", '$meta-date: 2020-04-22')
+        Files.setLastModifiedTime(undated, FileTime.from(Instant.parse("2019-01-01T12:00:00Z")))
+        Files.setLastModifiedTime(dated, FileTime.from(Instant.parse("2019-01-01T12:00:00Z")))
+        def index = ContentIndex.empty().update(siteDir, [undated, dated], executor)
+
+        when: "both are touched without changing them"
+        def touchedTime = Instant.parse("2021-06-15T12:00:00Z")
+        Files.setLastModifiedTime(undated, FileTime.from(touchedTime))
+        Files.setLastModifiedTime(dated, FileTime.from(touchedTime))
+        def updatedIndex = index.update(siteDir, [undated, dated], executor)
+
+        then:
+        updatedIndex.entries.find { it.sourcePath == "undated.md" }.date ==
+                LocalDate.ofInstant(touchedTime, ZoneId.systemDefault())
+        updatedIndex.entries.find { it.sourcePath == "dated.md" }.date == LocalDate.of(2020, 4, 22)
+    }
+
+    def "loads an empty index from a corrupt file" () {
+        given:
+        Files.write(indexFile, [0, 0, 0, 1, 0, 0, 0, 5] as byte[])
+
+        expect:
+        ContentIndex.load(indexFile).size() == 0
+    }
+
+    def cleanup() {
+        deleteDirs(siteDir, indexFile.parent)
+    }
+
+    Path writePost(String path, String content) {
+        write(siteDir, path, content.stripIndent())
+    }
+}
@@ -0,0 +1,75 @@
+package org.c_3po.generation.profile
+
+import org.c_3po.cmd.CmdArguments
+import org.c_3po.generation.SiteGenerator
+import org.c_3po.io.Directories
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Paths
+
+class RenderProfilerSpec extends Specification {
+    def srcDir = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+    def destDir = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+    def reportDir = destDir.resolveSibling(destDir.fileName.toString() + "-reports")
+
+    def setup() {
+        Directories.copyDir(Paths.get("src/test/resources/test-project-src"), srcDir)
+    }
+
+    def "attributes render time to templates and processors across all pages" () {
+        given:
+        def cmdArguments = CmdArguments.builder()
+                .sourceDirectory(srcDir.toString())
+                .destinationDirectory(destDir.toString())
+                .profile(true)
+                .build()
+
+        when:
+        SiteGenerator.fromCmdArguments(cmdArguments).generate()
+
+        then: "templates are ranked, named relative to the source directory"
+        def profileDir = reportDir.resolve("profile")
+        def report = Files.readString(profileDir.resolve("render-profile.txt"))
+        report.contains("_layouts/main-layout")
+        report.contains("about")
+        report.contains("layout:decorator")
+        report.contains("(parse)")
+
+        and: "stacks nest the layout within the page and end in a processor"
+        def stacks = Files.readAllLines(profileDir.resolve("render-profile-time.collapsed"))
+        stacks.every { it ==~ /\S.* \d+/ }
+        stacks.any { it.startsWith("about;") && it.contains(";_layouts/main-layout") }
+
+        and: "neither the site nor its sources are touched"
+        Files.notExists(destDir.resolve(".c3po-cache"))
+        Files.notExists(srcDir.resolve(".c3po-cache/profile"))
+        Files.exists(destDir.resolve("about.html"))
+    }
+
+    def "writes the profile to the configured report directory" () {
+        given:
+        Files.writeString(srcDir.resolve(SiteGenerator.C_3PO_SETTINGS_FILE_NAME), "reportDirectory=../reports\n")
+        def cmdArguments = CmdArguments.builder()
+                .sourceDirectory(srcDir.toString())
+                .destinationDirectory(destDir.toString())
+                .profile(true)
+                .build()
+
+        when:
+        SiteGenerator.fromCmdArguments(cmdArguments).generate()
+
+        then:
+        Files.exists(srcDir.resolve("../reports/profile/render-profile.txt"))
+        Files.notExists(reportDir)
+
+        cleanup:
+        srcDir.resolveSibling("reports").toFile().deleteDir()
+    }
+
+    def cleanup() {
+        srcDir.toFile().deleteDir()
+        destDir.toFile().deleteDir()
+        reportDir.toFile().deleteDir()
+    }
+}
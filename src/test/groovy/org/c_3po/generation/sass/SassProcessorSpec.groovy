@@ -0,0 +1,81 @@
+package org.c_3po.generation.sass
+
+import io.bit3.jsass.CompilationException
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class SassProcessorSpec extends Specification {
+    def sassDir = Files.createTempDirectory("c-3po_sass-dir-for-specs_")
+
+    def "compiles a SASS file including its imports" () {
+        given:
+        write(sassDir, "_colors.scss", "\$primary: #ff0000;")
+        write(sassDir, "main.scss", "@import 'colors';\nbody { color: \$primary; }")
+
+        expect:
+        SassProcessor.getInstance().process(sassDir.resolve("main.scss")).contains("color:red")
+    }
+
+    def "compiles a cached SASS file again once an imported partial has changed" () {
+        given:
+        def sassProcessor = SassProcessor.getCachingInstance()
+        write(sassDir, "_colors.scss", "\$primary: #ff0000;")
+        write(sassDir, "main.scss", "@import 'colors';\nbody { color: \$primary; }")
+        def firstCss = sassProcessor.process(sassDir.resolve("main.scss"))
+
+        when: "nothing has changed"
+        def secondCss = sassProcessor.process(sassDir.resolve("main.scss"))
+
+        then:
+        secondCss.is(firstCss)
+
+        when: "the imported partial has changed"
+        write(sassDir, "_colors.scss", "\$primary: #0000ff;")
+        Files.setLastModifiedTime(sassDir.resolve("_colors.scss"),
+                FileTime.fromMillis(System.currentTimeMillis() + 10_000))
+        def thirdCss = sassProcessor.process(sassDir.resolve("main.scss"))
+
+        then:
+        thirdCss.contains("color:blue")
+    }
+
+    def "compiles several SASS files at once, isolating a failing one" () {
+        given:
+        def sassProcessor = SassProcessor.getCachingInstance()
+        write(sassDir, "_colors.scss", "\$primary: #ff0000;")
+        def themes = (0..<16).collect { "theme-${it}.scss".toString() }
+        themes.each { write(sassDir, it, "@import 'colors';\n.theme-${themes.indexOf(it)} { color: \$primary; }") }
+        write(sassDir, "broken.scss", "body { color: \$undefined; }")
+        def expectedCss = themes.collect { SassProcessor.getInstance().process(sassDir.resolve(it)) }
+
+        when:
+        def pool = Executors.newFixedThreadPool(4)
+        def results = (themes + ["broken.scss"]).collect { file ->
+            pool.submit({ sassProcessor.process(sassDir.resolve(file)) } as Callable<String>)
+        }
+        pool.shutdown()
+
+        then:
+        results.take(themes.size())*.get() == expectedCss
+        expectedCss.every { it.contains("color:red") }
+
+        when:
+        results.last().get()
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof CompilationException
+    }
+
+    def cleanup() {
+        deleteDirs(sassDir)
+    }
+}
@@ -0,0 +1,87 @@
+package org.c_3po.generation.search
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class SearchIndexSpec extends Specification {
+    def destinationDir = Files.createTempDirectory("c-3po_destination-dir-for-specs_")
+    def cacheFile = Files.createTempDirectory("c-3po_cache-dir-for-specs_").resolve("search-index.bin")
+    def outputDir = destinationDir.resolve(SearchIndex.OUTPUT_DIR_NAME)
+
+    def "writes documents and sorted terms sharded by their first two characters" () {
+        given:
+        def index = SearchIndex.empty()
+        index.addPage("java.html", writePage("java.html", "Java", "Java and javadoc, java again"))
+        index.addPage("blog/gradle.html", writePage("blog/gradle.html", "Gradle", "Gradle builds Java"))
+
+        when:
+        index.write(destinationDir, cacheFile)
+
+        then:
+        Files.readString(outputDir.resolve("index.json")) ==
+                '{"version":1,"documents":[[0,"java.html","Java"],[1,"blog/gradle.html","Gradle"]],' +
+                '"shards":["ag.json","an.json","bu.json","gr.json","ja.json"]}'
+        Files.readString(outputDir.resolve("ja.json")) == '{"terms":["java","javadoc"],"postings":[[0,2,1,1],[0,1]]}'
+    }
+
+    def "only writes shards of changed pages after being stored and loaded" () {
+        given:
+        def index = SearchIndex.empty()
+        index.addPage("a.html", writePage("a.html", "A", "alpha beta"))
+        index.addPage("b.html", writePage("b.html", "B", "gamma"))
+        index.write(destinationDir, cacheFile)
+        def past = FileTime.fromMillis(0)
+        ["al.json", "be.json", "ga.json"].each { Files.setLastModifiedTime(outputDir.resolve(it), past) }
+
+        when:
+        def loadedIndex = SearchIndex.load(cacheFile)
+        loadedIndex.addPage("a.html", Files.readString(destinationDir.resolve("a.html")))
+        loadedIndex.addPage("b.html", writePage("b.html", "B", "delta"))
+        loadedIndex.write(destinationDir, cacheFile)
+
+        then:
+        loadedIndex.size() == 2
+        Files.getLastModifiedTime(outputDir.resolve("al.json")) == past
+        Files.getLastModifiedTime(outputDir.resolve("be.json")) == past
+        Files.notExists(outputDir.resolve("ga.json"))
+        Files.readString(outputDir.resolve("de.json")) == '{"terms":["delta"],"postings":[[1,1]]}'
+    }
+
+    def "drops pages that don't exist anymore" () {
+        given:
+        def index = SearchIndex.empty()
+        index.addPage("a.html", writePage("a.html", "A", "alpha"))
+        index.addPage("b.html", writePage("b.html", "B", "beta"))
+        index.write(destinationDir, cacheFile)
+
+        when:
+        Files.delete(destinationDir.resolve("b.html"))
+        index.write(destinationDir, cacheFile)
+
+        then:
+        index.size() == 1
+        Files.notExists(outputDir.resolve("be.json"))
+    }
+
+    def "escapes shard file names with characters other than a-z and 0-9" () {
+        expect:
+        SearchIndex.shardFileName("ja") == "ja.json"
+        SearchIndex.shardFileName("ét") == "_00e9t.json"
+    }
+
+    def cleanup() {
+        deleteDirs(destinationDir, cacheFile.parent)
+    }
+
+    String writePage(String url, String title, String text) {
+        def html = "<html><head><title>$title</title></head><body><p>$text</p><script>var ignored;</script></body></html>"
+        write(destinationDir, url, html)
+        return html
+    }
+}
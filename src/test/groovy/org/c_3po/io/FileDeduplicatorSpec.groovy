@@ -0,0 +1,49 @@
+package org.c_3po.io
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class FileDeduplicatorSpec extends Specification {
+    def sourceDir = Files.createTempDirectory("c-3po_src-dir-for-specs_")
+    def targetDir = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+
+    def "stores files with identical content only once" () {
+        given:
+        write(sourceDir, "a/vendor/jquery.js", "jQuery")
+        write(sourceDir, "b/vendor/jquery.js", "jQuery")
+        write(sourceDir, "b/main.js", "main")
+
+        when:
+        Directories.copyDir(sourceDir, targetDir, FileDeduplicator.create())
+
+        then:
+        Files.readString(targetDir.resolve("b/vendor/jquery.js")) == "jQuery"
+        Files.isSameFile(targetDir.resolve("a/vendor/jquery.js"), targetDir.resolve("b/vendor/jquery.js"))
+        !Files.isSameFile(targetDir.resolve("a/vendor/jquery.js"), targetDir.resolve("b/main.js"))
+    }
+
+    def "doesn't let a changed file affect its former duplicates" () {
+        given:
+        def deduplicator = FileDeduplicator.create()
+        write(sourceDir, "a.js", "same")
+        write(sourceDir, "b.js", "same")
+        Directories.copyDir(sourceDir, targetDir, deduplicator)
+
+        when:
+        write(sourceDir, "b.js", "changed")
+        deduplicator.beginBuild()
+        Directories.copyDir(sourceDir, targetDir, deduplicator)
+
+        then:
+        Files.readString(targetDir.resolve("a.js")) == "same"
+        Files.readString(targetDir.resolve("b.js")) == "changed"
+    }
+
+    def cleanup() {
+        deleteDirs(sourceDir, targetDir)
+    }
+}
@@ -0,0 +1,25 @@
+package org.c_3po.io
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * Writes the files that specs run against and deletes the temporary directories they live in.
+ */
+class FileHelpers {
+
+    /**
+     * Writes the given content to the file at the given path within the given dir, creating
+     * the directories it's located in.
+     */
+    static Path write(Path dir, String path, CharSequence content) {
+        def file = dir.resolve(path)
+        Files.createDirectories(file.parent)
+        Files.writeString(file, content)
+        return file
+    }
+
+    static void deleteDirs(Path... dirs) {
+        dirs.each { it.toFile().deleteDir() }
+    }
+}
@@ -0,0 +1,92 @@
+package org.c_3po.io
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+
+class OutputBufferSpec extends Specification {
+    def targetDir = Files.createTempDirectory("c-3po_dest-dir-for-specs_")
+
+    def "writes what has been written to it as UTF-8" () {
+        given:
+        def file = targetDir.resolve("page.html")
+
+        when:
+        def written
+        try (def buffer = OutputBuffer.acquire()) {
+            try (def writer = buffer.newWriter()) {
+                writer.write("<p>Caf\u00e9</p>")
+            }
+            written = buffer.writeTo(file)
+        }
+
+        then:
+        written
+        Files.readString(file) == "<p>Caf\u00e9</p>"
+    }
+
+    def "doesn't write a file that has the same content already" () {
+        given:
+        def file = targetDir.resolve("page.html")
+        Files.writeString(file, "<p>unchanged</p>")
+        def untouchedTime = FileTime.fromMillis(0)
+        Files.setLastModifiedTime(file, untouchedTime)
+
+        when:
+        def written
+        try (def buffer = OutputBuffer.acquire()) {
+            buffer.write("<p>unchanged</p>")
+            written = buffer.writeTo(file)
+        }
+
+        then:
+        !written
+        Files.getLastModifiedTime(file) == untouchedTime
+    }
+
+    def "replaces a file whose content differs, even if it's of the same length" () {
+        given:
+        def file = targetDir.resolve("page.html")
+        Files.writeString(file, "<p>before</p>")
+
+        when:
+        def written
+        try (def buffer = OutputBuffer.acquire()) {
+            buffer.write("<p>after!</p>")
+            written = buffer.writeTo(file)
+        }
+
+        then:
+        written
+        Files.readString(file) == "<p>after!</p>"
+    }
+
+    def "hands out empty buffers only" () {
+        given:
+        try (def buffer = OutputBuffer.acquire()) {
+            buffer.write("leftover")
+        }
+
+        expect:
+        try (def buffer = OutputBuffer.acquire()) {
+            assert buffer.size() == 0
+        }
+    }
+
+    def "pools no more than a limited number of bytes of buffers" () {
+        given: "more large buffers than the pool may hold"
+        def buffers = (1..8).collect { OutputBuffer.acquire() }
+        buffers.each { it.write(new byte[4 * 1024 * 1024 - 1], 0, 4 * 1024 * 1024 - 1) }
+
+        when:
+        buffers.each { it.close() }
+
+        then:
+        OutputBuffer.pooledBytes() <= OutputBuffer.MAX_POOLED_BYTES
+    }
+
+    def cleanup() {
+        targetDir.toFile().deleteDir()
+    }
+}
@@ -0,0 +1,178 @@
+package org.c_3po.io.watch
+
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Duration
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+import static org.c_3po.io.watch.FileChange.Kind.*
+import static org.c_3po.io.FileHelpers.deleteDirs
+import static org.c_3po.io.FileHelpers.write
+
+class DirectoryWatcherSpec extends Specification {
+    def rootDir = Files.createTempDirectory("c-3po_watched-dir-for-specs_").toRealPath()
+    def backend = new ManualBackend()
+
+    def "reports created, modified and deleted files" () {
+        given:
+        write(rootDir, "modified.html", "before")
+        write(rootDir, "deleted.html", "")
+        def watcher = DirectoryWatcher.create(rootDir, { true }, backend)
+
+        when:
+        write(rootDir, "modified.html", "after")
+        Files.delete(rootDir.resolve("deleted.html"))
+        write(rootDir, "created.html", "")
+        backend.signal(WatchBackend.Rescan.directory(rootDir))
+
+        then:
+        watcher.take() as Set == [change(CREATED, "created.html"), change(MODIFIED, "modified.html"),
+                                  change(DELETED, "deleted.html")] as Set
+
+        cleanup:
+        watcher?.close()
+    }
+
+    def "reports a moved directory as a single deletion and creation" () {
+        given:
+        write(rootDir, "blog/posts/a.md", "")
+        write(rootDir, "blog/posts/b.md", "")
+        def watcher = DirectoryWatcher.create(rootDir, { true }, backend)
+
+        when:
+        Files.move(rootDir.resolve("blog"), rootDir.resolve("journal"))
+        backend.signal(WatchBackend.Rescan.directory(rootDir))
+
+        then:
+        watcher.take() as Set == [change(DELETED, "blog", true), change(CREATED, "journal", true)] as Set
+        backend.registeredDirs == [rootDir, rootDir.resolve("journal"), rootDir.resolve("journal/posts")] as Set
+
+        cleanup:
+        watcher?.close()
+    }
+
+    def "rescans only the affected subtree after notifications have been lost" () {
+        given:
+        write(rootDir, "a/deep/file.js", "before")
+        write(rootDir, "b/file.js", "before")
+        def watcher = DirectoryWatcher.create(rootDir, { true }, backend)
+
+        when:
+        write(rootDir, "a/deep/file.js", "after")
+        write(rootDir, "b/file.js", "after")
+        backend.signal(WatchBackend.Rescan.subtree(rootDir.resolve("a")))
+        def changesOfA = watcher.take()
+        backend.signal(WatchBackend.Rescan.subtree(rootDir))
+        def remainingChanges = watcher.take()
+
+        then:
+        changesOfA == [change(MODIFIED, "a/deep/file.js")]
+        remainingChanges == [change(MODIFIED, "b/file.js")]
+
+        cleanup:
+        watcher?.close()
+    }
+
+    def "neither watches nor reports directories rejected by the filter" () {
+        given:
+        write(rootDir, ".c3po-cache/index.bin", "")
+        def watcher = DirectoryWatcher.create(rootDir, { !it.fileName.toString().startsWith(".") }, backend)
+
+        when:
+        write(rootDir, ".c3po-cache/index.bin", "changed")
+        write(rootDir, ".git/HEAD", "")
+        write(rootDir, "index.html", "")
+        backend.signal(WatchBackend.Rescan.subtree(rootDir))
+
+        then:
+        watcher.take() == [change(CREATED, "index.html")]
+        backend.registeredDirs == [rootDir] as Set
+
+        cleanup:
+        watcher?.close()
+    }
+
+    @Timeout(10)
+    def "picks up changes through native notifications" () {
+        given:
+        def watcher = DirectoryWatcher.create(rootDir, { true }, NativeWatchBackend.create())
+
+        when:
+        Files.createDirectories(rootDir.resolve("css"))
+        def dirChanges = watcher.take()
+        write(rootDir, "css/main.css", "")
+        def fileChanges = watcher.take()
+
+        then:
+        dirChanges == [change(CREATED, "css", true)]
+        fileChanges == [change(CREATED, "css/main.css")]
+
+        cleanup:
+        watcher?.close()
+    }
+
+    @Timeout(10)
+    def "picks up changes by polling" () {
+        given:
+        def watcher = DirectoryWatcher.create(rootDir, { true },
+                PollingWatchBackend.create(rootDir, Duration.ofMillis(10)))
+
+        when:
+        write(rootDir, "img/logo.png", "")
+
+        then:
+        watcher.take() == [change(CREATED, "img", true)]
+
+        cleanup:
+        watcher?.close()
+    }
+
+    def cleanup() {
+        deleteDirs(rootDir)
+    }
+
+    FileChange change(FileChange.Kind kind, String path, boolean directory = false) {
+        new FileChange(kind, rootDir.resolve(path), directory)
+    }
+
+    /**
+     * A backend that signals changes only when told to.
+     */
+    static class ManualBackend implements WatchBackend {
+        def registeredDirs = [] as Set<Path>
+        def signals = new LinkedBlockingQueue<WatchBackend.Rescan>()
+
+        void signal(WatchBackend.Rescan rescan) {
+            signals.put(rescan)
+        }
+
+        @Override
+        void register(Path dir) {
+            registeredDirs << dir
+        }
+
+        @Override
+        void unregister(Path dir) {
+            registeredDirs.remove(dir)
+        }
+
+        @Override
+        Set<WatchBackend.Rescan> take() {
+            [signals.take()] as Set
+        }
+
+        @Override
+        Set<WatchBackend.Rescan> poll(long timeout, TimeUnit unit) {
+            def rescan = signals.poll()
+            return rescan != null ? Set.of(rescan) : Set.of()
+        }
+
+        @Override
+        void close() {
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.nio.file.Paths
 
 import static org.c_3po.util.ChecksumCalculator.computeSha1Hash
 import static org.c_3po.util.ChecksumCalculator.encodeHexString
+import static org.c_3po.util.ChecksumCalculator.sha1
 
 class ChecksumCalculatorTest extends Specification {
 
@@ -20,4 +21,12 @@ class ChecksumCalculatorTest extends Specification {
         "src/test/resources/test-project-src/css/main.scss" | "e6ce2eaf06d4aa5c64169a225282a19f55ced190"
         "src/test/resources/test-project-src/css/vendor/normalize.scss" | "9056e884fdbde2c1e837f421c7c971cf8be09ba9"
     }
+
+    def "test that .sha1 computes the sha-1 hash of files, bytes and strings as hex strings"() {
+        expect:
+        sha1(Paths.get("src/test/resources/test-project-src/css/main.scss")) == "e6ce2eaf06d4aa5c64169a225282a19f55ced190"
+        sha1("abc") == "a9993e364706816aba3e25717850c26c9cd0d89d"
+        sha1("abc".bytes) == sha1("abc")
+        sha1("") == "da39a3ee5e6b4b0d3255bfef95601890afd80709"
+    }
 }
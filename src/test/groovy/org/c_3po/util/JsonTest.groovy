@@ -0,0 +1,69 @@
+package org.c_3po.util
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Unit tests for {@Json}.
+ */
+@Unroll
+class JsonTest extends Specification {
+    def "test that .parse reads '#json'"(String json, Object expectedResult) {
+        expect:
+        Json.parse(json) == expectedResult
+
+        where:
+        json | expectedResult
+        '{"a": 1, "b": [true, false, null]}' | [a: 1L, b: [true, false, null]]
+        ' [1.5, -2, 3e2] ' | [1.5d, -2L, 300d]
+        '"tab\\there \\"quoted\\" \\u00e9"' | 'tab\there "quoted" \u00e9'
+        '{}' | [:]
+        '[]' | []
+        '{"nested": {"list": [{"x": "y"}]}}' | [nested: [list: [[x: "y"]]]]
+    }
+
+    def "test that .parse keeps the order of members and returns unmodifiable collections"() {
+        when:
+        def result = Json.parse('{"z": 1, "a": [2], "m": 3}') as Map
+
+        then:
+        result.keySet() as List == ["z", "a", "m"]
+
+        when:
+        result.put("b", 4)
+
+        then:
+        thrown(UnsupportedOperationException)
+
+        when:
+        (result.a as List).add(5)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+
+    def "test that .parseYaml reads YAML into the same values as JSON"() {
+        expect:
+        Json.parseYaml('''
+            title: My Site
+            since: 2015
+            nav:
+              - label: Home
+                url: /
+              - {label: Blog, url: /blog.html}
+            draft: false
+            '''.stripIndent()) == [title: "My Site", since: 2015L, nav: [[label: "Home", url: "/"],
+                                   [label: "Blog", url: "/blog.html"]], draft: false]
+    }
+
+    def "test that .parse rejects malformed JSON '#json'"(String json) {
+        when:
+        Json.parse(json)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        json << ['{"a" 1}', '[1, 2', '"unterminated', '{"a": 1} x', 'tru', '', '[1,]', '{"a": 01.2.3}']
+    }
+}
@@ -0,0 +1,72 @@
+package org.c_3po.util
+
+import spock.lang.Specification
+
+/**
+ * Unit tests for {@link PathTrie}.
+ */
+class PathTrieTest extends Specification {
+    def "test that paths are kept exactly as they have been put"() {
+        setup:
+        def trie = PathTrie.create()
+        def paths = ["/css/main.css", "css/main.css", "/css/", "/css", "", "/", "//a//b"]
+
+        when:
+        paths.eachWithIndex { path, i -> trie.put(path, i) }
+
+        then:
+        trie.size() == paths.size()
+        paths.eachWithIndex { path, i -> assert trie.get(path) == i }
+        trie.collect { it.key } as Set == paths as Set
+
+        and: "directories in between aren't paths of their own"
+        !trie.contains("/css/main")
+        !trie.contains("css")
+        trie.get("/nope") == null
+    }
+
+    def "test that putting a path again replaces its value"() {
+        setup:
+        def trie = PathTrie.create()
+
+        when:
+        def first = trie.put("/a/b.html", "x")
+        def second = trie.put("/a/b.html", "y")
+
+        then:
+        first == null
+        second == "x"
+        trie.size() == 1
+        trie.get("/a/b.html") == "y"
+    }
+
+    def "test that many paths of a directory are found and iterated in the order they have been put"() {
+        setup:
+        def trie = PathTrie.create()
+        def paths = (0..<1000).collect { "/img/${it}.png".toString() }
+
+        when:
+        paths.each { trie.put(it, true) }
+        trie.put("/index.html", true)
+
+        then:
+        trie.size() == 1001
+        paths.every { trie.contains(it) }
+        !trie.contains("/img/1000.png")
+        trie.collect { it.key } == paths + ["/index.html"]
+    }
+
+    def "test that segments shared by paths are stored only once"() {
+        setup:
+        def trie = PathTrie.create()
+
+        when:
+        trie.put("/blog/" + new String("index.html"), 1)
+        trie.put("/about/" + new String("index.html"), 2)
+
+        then:
+        def keys = trie.collect { it.key }
+        keys == ["/blog/index.html", "/about/index.html"]
+        trie.@segments.size() == 4
+    }
+}